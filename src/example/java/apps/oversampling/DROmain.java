@@ -90,7 +90,7 @@ public class DROmain {
 		
 		if(cleanTraining){
 			msg("Cleaning training data ENN.");
-			SMOTE_ENN.removeMisclassifiedKnn(3, latentTraining, (short)0);
+			SMOTE_ENN.removeMisclassifiedKnn(3, latentTraining, (short)0, DistributionalRandomOversampling.MAX_THREADS);
 		}
 		
 		//train learner
@@ -34,5 +34,12 @@ public enum ClassificationMode {
     /**
      * Classify iterating over categories and considering for aech categoy all test documents.
      */
-    PER_CATEGORY
+    PER_CATEGORY,
+
+    /**
+     * Classify iterating over documents, splitting them among several threads. The classifier must be an
+     * {@link it.cnr.jatecs.classification.interfaces.IConcurrentClassifier}, otherwise the documents are
+     * classified one at a time as in {@link #PER_DOCUMENT}.
+     */
+    PARALLEL_PER_DOCUMENT
 }
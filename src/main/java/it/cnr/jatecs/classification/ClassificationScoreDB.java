@@ -25,36 +25,82 @@
 package it.cnr.jatecs.classification;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.Map.Entry;
 
+/**
+ * The scores assigned by a classifier to the documents, stored in a row of
+ * primitive (category, score) entries for each document with the layout
+ * given at construction, see {@link ClassificationScoreLayout}. The
+ * classifier ranges are stored once for each category, plus the ones of the
+ * scores whose range differs from the one of their category.
+ * <p>
+ * The DB can be saved in a binary file with {@link #writeBinary(File)}, or
+ * directly by a {@link ClassificationScoreWriter}, and read back with
+ * {@link #readBinary(File, boolean)}, either in memory or memory mapped. A
+ * mapped DB is read-only, {@link #cloneDB()} returns a modifiable copy.
+ * <p>
+ * {@link #getDocumentScoresAsHashtable(int)} and
+ * {@link #getDocumentScoresAsSet(int)} build a detached copy of the scores
+ * of a document on each call, changing it does not change the DB; scans
+ * over many documents should use {@link #getScore(int, short)} or the row
+ * accessors such as {@link #getDocumentScore(int, int)}, which allocate
+ * nothing.
+ */
 public class ClassificationScoreDB {
 
-    private Vector<Hashtable<Short, ClassifierRangeWithScore>> _res;
+    protected ClassificationScoreRows _rows;
+    protected ClassifierRange[] _ranges;
+    protected HashMap<Long, ClassifierRange> _rangesExceptions;
 
+    /**
+     * Create a DB in the {@link ClassificationScoreLayout#SPARSE} layout.
+     *
+     * @param documentCount the number of documents
+     */
     public ClassificationScoreDB(int documentCount) {
-        _res = new Vector<Hashtable<Short, ClassifierRangeWithScore>>(documentCount);
-        for (int i = 0; i < documentCount; i++) {
-            _res.add(new Hashtable<Short, ClassifierRangeWithScore>());
-        }
+        this(documentCount, ClassificationScoreLayout.SPARSE, 0);
+    }
+
+    /**
+     * @param documentCount the number of documents
+     * @param layout        the layout of the scores
+     * @param width         the number of categories in the
+     *                      {@link ClassificationScoreLayout#DENSE} layout, the
+     *                      number of scores kept for each document in the
+     *                      {@link ClassificationScoreLayout#TOP_N} layout,
+     *                      ignored in the sparse layout
+     */
+    public ClassificationScoreDB(int documentCount,
+                                 ClassificationScoreLayout layout, int width) {
+        this(ClassificationScoreRows.create(layout, documentCount, width));
+    }
+
+    ClassificationScoreDB(ClassificationScoreRows rows) {
+        _rows = rows;
+        _ranges = new ClassifierRange[0];
+        _rangesExceptions = new HashMap<Long, ClassifierRange>();
     }
 
     public static void write(String path, ClassificationScoreDB classification) throws IOException {
         File f = new File(path);
         f.getParentFile().mkdirs();
-        FileWriter writer = new FileWriter(path);
+        Writer writer = new BufferedWriter(new FileWriter(path));
         int numDoc = classification.getDocumentCount();
         writer.write(numDoc + "\n");
         for (int docID = 0; docID < numDoc; ++docID) {
-            Set<Entry<Short, ClassifierRangeWithScore>> entries = classification.getDocumentScoresAsSet(docID);
-            int entriesCount = entries.size();
+            int entriesCount = classification.getDocumentScoresCount(docID);
             writer.write(entriesCount + "\n");
-            Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = entries.iterator();
-            while (iterator.hasNext()) {
-                Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-                writer.write(docID + " " + next.getKey() + " ");
-                ClassifierRangeWithScore value = next.getValue();
-                writer.write(value.score + " " + value.border + " " + value.minimum + " " + value.maximum + "\n");
+            for (int i = 0; i < entriesCount; ++i) {
+                short catID = classification.getDocumentCategory(docID, i);
+                writer.write(docID + " " + catID + " ");
+                ClassifierRange range = classification.range(docID, catID);
+                writer.write(classification.getDocumentScore(docID, i) + " " + range.border + " "
+                        + range.minimum + " " + range.maximum + "\n");
             }
         }
         writer.close();
@@ -88,32 +134,413 @@ public class ClassificationScoreDB {
         return classification;
     }
 
+    /**
+     * Write the DB in the binary format of {@link ClassificationScoreWriter},
+     * keeping its layout.
+     *
+     * @param file the destination file
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBinary(File file) throws IOException {
+        ClassificationScoreWriter writer = new ClassificationScoreWriter(file,
+                getLayout(), getDocumentCount(), getWidth());
+        try {
+            int documents = getDocumentCount();
+            for (int docID = 0; docID < documents; ++docID) {
+                int count = _rows.getCount(docID);
+                for (int i = 0; i < count; ++i) {
+                    short catID = _rows.getCategory(docID, i);
+                    writer.insertScore(docID, catID, _rows.getScore(docID, i),
+                            range(docID, catID));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read a DB written by {@link #writeBinary(File)} or by a
+     * {@link ClassificationScoreWriter}.
+     *
+     * @param file the file to read
+     * @param map  true to memory map the file, obtaining a read-only DB, false
+     *             to copy it in memory
+     * @return the DB
+     * @throws IOException if an I/O error occurs or the file is not valid
+     */
+    public static ClassificationScoreDB readBinary(File file, boolean map)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer
+                    .allocate(ClassificationScoreWriter.HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != ClassificationScoreWriter.MAGIC)
+                throw new IOException("The file is not a classification score DB");
+            int version = header.getInt();
+            if (version != ClassificationScoreWriter.VERSION)
+                throw new IOException("Unsupported classification score DB version "
+                        + version);
+            int layoutID = header.getInt();
+            if (layoutID < 0 || layoutID >= ClassificationScoreLayout.values().length)
+                throw new IOException("Unknown classification score layout "
+                        + layoutID);
+            ClassificationScoreLayout layout = ClassificationScoreLayout.values()[layoutID];
+            int documents = header.getInt();
+            int width = header.getInt();
+            int rangesCount = header.getInt();
+            int exceptionsCount = header.getInt();
+            header.getInt();
+            long indexPosition = header.getLong();
+            long rangesPosition = header.getLong();
+            long exceptionsPosition = header.getLong();
+            long end = header.getLong();
+            if (channel.size() < end)
+                throw new EOFException("Truncated classification score DB");
+
+            ByteBuffer index;
+            if (map) {
+                index = channel.map(FileChannel.MapMode.READ_ONLY,
+                        indexPosition, rangesPosition - indexPosition);
+            } else {
+                index = ByteBuffer.allocate((int) (rangesPosition - indexPosition));
+                readFully(channel, index, indexPosition);
+                index.flip();
+            }
+            ByteBuffer section = index.duplicate();
+            section.limit(4 * documents);
+            IntBuffer counts = section.slice().asIntBuffer();
+            LongBuffer offsets = null;
+            if (layout == ClassificationScoreLayout.SPARSE) {
+                section = index.duplicate();
+                section.position((4 * documents + 7) & ~7);
+                offsets = section.slice().asLongBuffer();
+            }
+
+            ByteBuffer tail = ByteBuffer.allocate((int) (end - rangesPosition));
+            readFully(channel, tail, rangesPosition);
+            tail.flip();
+
+            ClassificationScoreRows rows;
+            if (map)
+                rows = new ClassificationScoreRows.Mapped(layout, documents,
+                        width, counts, offsets, channel);
+            else
+                rows = readRows(file, layout, documents, width, counts);
+            ClassificationScoreDB db = new ClassificationScoreDB(rows);
+
+            db._ranges = new ClassifierRange[rangesCount];
+            for (int i = 0; i < rangesCount; ++i)
+                db._ranges[i] = readRange(tail);
+            tail.position((int) (exceptionsPosition - rangesPosition));
+            for (int i = 0; i < exceptionsCount; ++i) {
+                int docID = tail.getInt();
+                short catID = tail.getShort();
+                tail.getShort();
+                db._rangesExceptions.put(rangeKey(docID, catID),
+                        readRange(tail));
+            }
+            return db;
+        } finally {
+            raf.close();
+        }
+    }
+
+    protected static ClassificationScoreRows readRows(File file,
+                                                      ClassificationScoreLayout layout, int documents, int width,
+                                                      IntBuffer counts) throws IOException {
+        ClassificationScoreRows rows = ClassificationScoreRows.create(layout,
+                documents, width);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 1 << 16));
+        try {
+            input.readFully(new byte[ClassificationScoreWriter.HEADER_SIZE]);
+            short[] categories = new short[layout == ClassificationScoreLayout.SPARSE ? 0
+                    : width];
+            for (int docID = 0; docID < documents; ++docID) {
+                int count = counts.get(docID);
+                switch (layout) {
+                    case DENSE:
+                        for (short catID = 0; catID < width; ++catID) {
+                            float score = input.readFloat();
+                            if (!Float.isNaN(score))
+                                rows.put(docID, catID, score);
+                        }
+                        break;
+                    case TOP_N:
+                        for (int i = 0; i < width; ++i)
+                            categories[i] = input.readShort();
+                        input.skipBytes(ClassificationScoreWriter
+                                .getCategoriesSize(layout, width) - 2 * width);
+                        for (int i = 0; i < width; ++i) {
+                            float score = input.readFloat();
+                            if (i < count)
+                                rows.put(docID, categories[i], score);
+                        }
+                        break;
+                    default:
+                        if (categories.length < count)
+                            categories = new short[count];
+                        for (int i = 0; i < count; ++i)
+                            categories[i] = input.readShort();
+                        input.skipBytes(ClassificationScoreWriter
+                                .getCategoriesSize(layout, count) - 2 * count);
+                        for (int i = 0; i < count; ++i)
+                            rows.put(docID, categories[i], input.readDouble());
+                        break;
+                }
+            }
+        } finally {
+            input.close();
+        }
+        return rows;
+    }
+
+    protected static ClassifierRange readRange(ByteBuffer buffer) {
+        ClassifierRange range = new ClassifierRange();
+        range.border = buffer.getDouble();
+        range.minimum = buffer.getDouble();
+        range.maximum = buffer.getDouble();
+        if (Double.isNaN(range.border) && Double.isNaN(range.minimum)
+                && Double.isNaN(range.maximum))
+            return null;
+        return range;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0)
+                throw new EOFException("Truncated classification score DB");
+            pos += read;
+        }
+    }
+
+    /**
+     * @return a modifiable in-memory copy of this DB, with the same layout
+     */
+    public ClassificationScoreDB cloneDB() {
+        ClassificationScoreDB db = new ClassificationScoreDB(getDocumentCount(),
+                getLayout(), getWidth());
+        int documents = getDocumentCount();
+        for (int docID = 0; docID < documents; ++docID) {
+            int count = _rows.getCount(docID);
+            for (int i = 0; i < count; ++i)
+                db._rows.put(docID, _rows.getCategory(docID, i),
+                        _rows.getScore(docID, i));
+        }
+        db._ranges = new ClassifierRange[_ranges.length];
+        for (int i = 0; i < _ranges.length; ++i)
+            db._ranges[i] = _ranges[i] == null ? null : copyRange(_ranges[i]);
+        for (Entry<Long, ClassifierRange> entry : _rangesExceptions.entrySet())
+            db._rangesExceptions.put(entry.getKey(), copyRange(entry.getValue()));
+        return db;
+    }
+
+    /**
+     * Set the score of a category for a document. In the
+     * {@link ClassificationScoreLayout#DENSE} and
+     * {@link ClassificationScoreLayout#TOP_N} layouts the score is stored as a
+     * float, and in the top-N layout it is discarded if the document has
+     * already N higher scores.
+     *
+     * @param docID the document
+     * @param catID the category
+     * @param score the score
+     * @param res   the range of the classifier of the category
+     */
     public void insertScore(int docID, short catID, double score, ClassifierRange res) {
-        Hashtable<Short, ClassifierRangeWithScore> r = _res.get(docID);
-        ClassifierRangeWithScore sc = new ClassifierRangeWithScore();
-        sc.border = res.border;
-        sc.maximum = res.maximum;
-        sc.minimum = res.minimum;
-        sc.score = score;
-        r.put(catID, sc);
+        if (res == null)
+            throw new NullPointerException("The specified range is 'null'");
+        short dropped = _rows.put(docID, catID, score);
+        if (dropped == catID) {
+            removeRange(docID, catID);
+            return;
+        }
+        if (dropped >= 0)
+            removeRange(docID, dropped);
+
+        if (catID >= _ranges.length) {
+            ClassifierRange[] ranges = new ClassifierRange[Math.max(catID + 1,
+                    _ranges.length * 2)];
+            System.arraycopy(_ranges, 0, ranges, 0, _ranges.length);
+            _ranges = ranges;
+        }
+        if (_ranges[catID] == null)
+            _ranges[catID] = copyRange(res);
+        else if (!sameRange(_ranges[catID], res))
+            _rangesExceptions.put(rangeKey(docID, catID), copyRange(res));
+        else
+            removeRange(docID, catID);
     }
 
     public void removeScore(int docID, short catID) {
-        Hashtable<Short, ClassifierRangeWithScore> r = _res.get(docID);
-        r.remove(catID);
+        if (_rows.remove(docID, catID))
+            removeRange(docID, catID);
+    }
+
+    protected void removeRange(int docID, short catID) {
+        if (!_rangesExceptions.isEmpty())
+            _rangesExceptions.remove(rangeKey(docID, catID));
     }
 
+    /**
+     * @return the range of a score of the DB
+     */
+    protected ClassifierRange range(int docID, short catID) {
+        if (!_rangesExceptions.isEmpty()) {
+            ClassifierRange range = _rangesExceptions.get(rangeKey(docID, catID));
+            if (range != null)
+                return range;
+        }
+        return _ranges[catID];
+    }
+
+    /**
+     * @return the scores of the document, as a new set that does not
+     * reflect the later changes of the DB
+     */
     public Set<Entry<Short, ClassifierRangeWithScore>> getDocumentScoresAsSet(int docID) {
-        Hashtable<Short, ClassifierRangeWithScore> r = _res.get(docID);
-        return r.entrySet();
+        return getDocumentScoresAsHashtable(docID).entrySet();
     }
 
+    /**
+     * @return the scores of the document, as a new table that does not
+     * reflect the later changes of the DB
+     */
     public Hashtable<Short, ClassifierRangeWithScore> getDocumentScoresAsHashtable(int docID) {
-        Hashtable<Short, ClassifierRangeWithScore> r = _res.get(docID);
+        Hashtable<Short, ClassifierRangeWithScore> r = new Hashtable<Short, ClassifierRangeWithScore>();
+        int count = _rows.getCount(docID);
+        for (int i = 0; i < count; ++i) {
+            short catID = _rows.getCategory(docID, i);
+            ClassifierRange range = range(docID, catID);
+            ClassifierRangeWithScore sc = new ClassifierRangeWithScore();
+            sc.border = range.border;
+            sc.maximum = range.maximum;
+            sc.minimum = range.minimum;
+            sc.score = _rows.getScore(docID, i);
+            r.put(catID, sc);
+        }
         return r;
     }
 
     public int getDocumentCount() {
-        return _res.size();
+        return _rows.getDocumentsCount();
+    }
+
+    public ClassificationScoreLayout getLayout() {
+        return _rows.getLayout();
+    }
+
+    /**
+     * @return the number of categories in the
+     * {@link ClassificationScoreLayout#DENSE} layout, the number of scores
+     * kept for each document in the {@link ClassificationScoreLayout#TOP_N}
+     * layout, 0 in the sparse layout
+     */
+    public int getWidth() {
+        return _rows.getWidth();
+    }
+
+    /**
+     * @return true if the DB is memory mapped, so it can not be modified
+     */
+    public boolean isReadOnly() {
+        return _rows.isReadOnly();
+    }
+
+    /**
+     * @param docID the document
+     * @return the number of scores of the document
+     */
+    public int getDocumentScoresCount(int docID) {
+        return _rows.getCount(docID);
+    }
+
+    /**
+     * @param docID the document
+     * @param i     the position of the score, from 0 to
+     *              {@link #getDocumentScoresCount(int)} - 1; the scores are
+     *              sorted by category, except in the
+     *              {@link ClassificationScoreLayout#TOP_N} layout where they
+     *              are sorted by decreasing score
+     * @return the category of the score
+     */
+    public short getDocumentCategory(int docID, int i) {
+        return _rows.getCategory(docID, i);
+    }
+
+    /**
+     * @param docID the document
+     * @param i     the position of the score, as in
+     *              {@link #getDocumentCategory(int, int)}
+     * @return the score
+     */
+    public double getDocumentScore(int docID, int i) {
+        return _rows.getScore(docID, i);
+    }
+
+    /**
+     * @param docID the document
+     * @param i     the position of the score, as in
+     *              {@link #getDocumentCategory(int, int)}
+     * @return the border of the classifier range of the score
+     */
+    public double getDocumentBorder(int docID, int i) {
+        return range(docID, _rows.getCategory(docID, i)).border;
+    }
+
+    /**
+     * @return the border of the classifier range of the score of the
+     * category for the document, NaN if the DB has no such score
+     */
+    public double getBorder(int docID, short catID) {
+        if (!hasScore(docID, catID))
+            return Double.NaN;
+        return range(docID, catID).border;
+    }
+
+    public boolean hasScore(int docID, short catID) {
+        return _rows.indexOf(docID, catID) >= 0;
+    }
+
+    /**
+     * @return the score of the category for the document, NaN if the DB has
+     * no such score
+     */
+    public double getScore(int docID, short catID) {
+        return _rows.get(docID, catID);
+    }
+
+    /**
+     * @return a copy of the classifier range of the score, null if the DB
+     * has no such score
+     */
+    public ClassifierRange getClassifierRange(int docID, short catID) {
+        if (!hasScore(docID, catID))
+            return null;
+        return copyRange(range(docID, catID));
+    }
+
+    static long rangeKey(int docID, short catID) {
+        return ((long) docID << 16) | (catID & 0xffff);
+    }
+
+    static ClassifierRange copyRange(ClassifierRange range) {
+        ClassifierRange copy = new ClassifierRange();
+        copy.border = range.border;
+        copy.minimum = range.minimum;
+        copy.maximum = range.maximum;
+        return copy;
+    }
+
+    static boolean sameRange(ClassifierRange r1, ClassifierRange r2) {
+        return Double.compare(r1.border, r2.border) == 0
+                && Double.compare(r1.minimum, r2.minimum) == 0
+                && Double.compare(r1.maximum, r2.maximum) == 0;
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+/**
+ * How a {@link ClassificationScoreDB} stores the scores of each document.
+ */
+public enum ClassificationScoreLayout {
+
+    /**
+     * Only the scores actually inserted, sorted by category, at full double
+     * precision.
+     */
+    SPARSE,
+
+    /**
+     * A float score for each of a fixed number of categories, which is the
+     * most compact layout when almost every document has a score for every
+     * category.
+     */
+    DENSE,
+
+    /**
+     * At most a fixed number N of float scores per document, keeping the N
+     * highest scores inserted, sorted by decreasing score.
+     */
+    TOP_N
+}
@@ -0,0 +1,672 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The primitive storage of the scores of a {@link ClassificationScoreDB}, a
+ * row of (category, score) entries for each document. The entries of a row
+ * are addressed by position, from 0 to {@link #getCount(int)} - 1, in the
+ * order of the layout: increasing category for {@link Sparse} and
+ * {@link Dense} rows, decreasing score for {@link TopN} rows.
+ */
+abstract class ClassificationScoreRows {
+
+    protected int _documentsCount;
+
+    ClassificationScoreRows(int documentsCount) {
+        if (documentsCount < 0)
+            throw new IllegalArgumentException(
+                    "The number of documents must not be negative");
+        _documentsCount = documentsCount;
+    }
+
+    abstract ClassificationScoreLayout getLayout();
+
+    /**
+     * @return the number of categories of a dense row or the number of
+     * entries of a top-N row, 0 for sparse rows
+     */
+    abstract int getWidth();
+
+    int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    abstract int getCount(int doc);
+
+    abstract short getCategory(int doc, int i);
+
+    abstract double getScore(int doc, int i);
+
+    /**
+     * @return the position of the category in the row of the document, -1 if
+     * the document has no score for it
+     */
+    abstract int indexOf(int doc, short cat);
+
+    /**
+     * @return the score of the category, NaN if the document has no score for
+     * it
+     */
+    double get(int doc, short cat) {
+        int pos = indexOf(doc, cat);
+        return pos < 0 ? Double.NaN : getScore(doc, pos);
+    }
+
+    /**
+     * Set the score of a category, replacing the previous one.
+     *
+     * @return the category dropped from the row to make room for the score,
+     * the category itself if the score has not been stored, or -1
+     */
+    abstract short put(int doc, short cat, double score);
+
+    /**
+     * @return true if the document had a score for the category
+     */
+    abstract boolean remove(int doc, short cat);
+
+    abstract void clear(int doc);
+
+    boolean isReadOnly() {
+        return false;
+    }
+
+    void checkCategory(short cat) {
+        if (cat < 0)
+            throw new IllegalArgumentException("The category " + cat
+                    + " is not valid");
+    }
+
+    /**
+     * @return empty rows with the given layout
+     */
+    static ClassificationScoreRows create(ClassificationScoreLayout layout,
+                                          int documentsCount, int width) {
+        if (layout == null)
+            throw new NullPointerException("The specified layout is 'null'");
+        switch (layout) {
+            case DENSE:
+                return new Dense(documentsCount, width);
+            case TOP_N:
+                return new TopN(documentsCount, width);
+            default:
+                return new Sparse(documentsCount);
+        }
+    }
+
+    /**
+     * The rows of all the inserted scores, as doubles sorted by category.
+     */
+    static class Sparse extends ClassificationScoreRows {
+
+        protected short[][] _categories;
+        protected double[][] _scores;
+        protected int[] _counts;
+
+        Sparse(int documentsCount) {
+            super(documentsCount);
+            _categories = new short[documentsCount][];
+            _scores = new double[documentsCount][];
+            _counts = new int[documentsCount];
+        }
+
+        @Override
+        ClassificationScoreLayout getLayout() {
+            return ClassificationScoreLayout.SPARSE;
+        }
+
+        @Override
+        int getWidth() {
+            return 0;
+        }
+
+        @Override
+        int getCount(int doc) {
+            return _counts[doc];
+        }
+
+        @Override
+        short getCategory(int doc, int i) {
+            return _categories[doc][i];
+        }
+
+        @Override
+        double getScore(int doc, int i) {
+            return _scores[doc][i];
+        }
+
+        @Override
+        int indexOf(int doc, short cat) {
+            if (_counts[doc] == 0)
+                return -1;
+            int pos = Arrays.binarySearch(_categories[doc], 0, _counts[doc],
+                    cat);
+            return pos < 0 ? -1 : pos;
+        }
+
+        @Override
+        short put(int doc, short cat, double score) {
+            checkCategory(cat);
+            int count = _counts[doc];
+            short[] categories = _categories[doc];
+            int pos = count == 0 ? -1 : Arrays.binarySearch(categories, 0,
+                    count, cat);
+            if (pos >= 0) {
+                _scores[doc][pos] = score;
+                return -1;
+            }
+            pos = -pos - 1;
+            if (categories == null || count == categories.length) {
+                int capacity = Math.max(4, count * 2);
+                categories = _categories[doc] = categories == null ? new short[capacity]
+                        : Arrays.copyOf(categories, capacity);
+                _scores[doc] = _scores[doc] == null ? new double[capacity]
+                        : Arrays.copyOf(_scores[doc], capacity);
+            }
+            double[] scores = _scores[doc];
+            System.arraycopy(categories, pos, categories, pos + 1, count - pos);
+            System.arraycopy(scores, pos, scores, pos + 1, count - pos);
+            categories[pos] = cat;
+            scores[pos] = score;
+            _counts[doc] = count + 1;
+            return -1;
+        }
+
+        @Override
+        boolean remove(int doc, short cat) {
+            int pos = indexOf(doc, cat);
+            if (pos < 0)
+                return false;
+            int count = _counts[doc] - 1;
+            System.arraycopy(_categories[doc], pos + 1, _categories[doc], pos,
+                    count - pos);
+            System.arraycopy(_scores[doc], pos + 1, _scores[doc], pos, count
+                    - pos);
+            _counts[doc] = count;
+            return true;
+        }
+
+        @Override
+        void clear(int doc) {
+            _counts[doc] = 0;
+        }
+    }
+
+    /**
+     * A float score for each category from 0 to the width of the rows, NaN
+     * meaning that the document has no score for the category. A row is
+     * allocated at the first score inserted.
+     */
+    static class Dense extends ClassificationScoreRows {
+
+        protected int _width;
+        protected float[][] _scores;
+        protected int[] _counts;
+
+        Dense(int documentsCount, int width) {
+            super(documentsCount);
+            if (width <= 0)
+                throw new IllegalArgumentException(
+                        "The number of categories must be positive");
+            _width = width;
+            _scores = new float[documentsCount][];
+            _counts = new int[documentsCount];
+        }
+
+        @Override
+        ClassificationScoreLayout getLayout() {
+            return ClassificationScoreLayout.DENSE;
+        }
+
+        @Override
+        int getWidth() {
+            return _width;
+        }
+
+        @Override
+        int getCount(int doc) {
+            return _counts[doc];
+        }
+
+        /**
+         * @return the category of the i-th score of a row, which is i itself
+         * when the row is complete
+         */
+        protected int categoryAt(int doc, int i) {
+            if (_counts[doc] == _width)
+                return i;
+            float[] row = _scores[doc];
+            for (int cat = 0; cat < _width; ++cat) {
+                if (!Float.isNaN(row[cat]) && i-- == 0)
+                    return cat;
+            }
+            throw new IndexOutOfBoundsException("No score at position " + i);
+        }
+
+        @Override
+        short getCategory(int doc, int i) {
+            return (short) categoryAt(doc, i);
+        }
+
+        @Override
+        double getScore(int doc, int i) {
+            return _scores[doc][categoryAt(doc, i)];
+        }
+
+        @Override
+        int indexOf(int doc, short cat) {
+            float[] row = _scores[doc];
+            if (row == null || cat < 0 || cat >= _width
+                    || Float.isNaN(row[cat]))
+                return -1;
+            if (_counts[doc] == _width)
+                return cat;
+            int pos = 0;
+            for (int i = 0; i < cat; ++i) {
+                if (!Float.isNaN(row[i]))
+                    ++pos;
+            }
+            return pos;
+        }
+
+        @Override
+        double get(int doc, short cat) {
+            float[] row = _scores[doc];
+            if (row == null || cat < 0 || cat >= _width)
+                return Double.NaN;
+            return row[cat];
+        }
+
+        @Override
+        short put(int doc, short cat, double score) {
+            checkCategory(cat);
+            if (cat >= _width)
+                throw new IllegalArgumentException("The category " + cat
+                        + " is out of the " + _width + " categories of the dense layout");
+            if (Double.isNaN(score)) {
+                remove(doc, cat);
+                return cat;
+            }
+            float[] row = _scores[doc];
+            if (row == null) {
+                row = _scores[doc] = new float[_width];
+                Arrays.fill(row, Float.NaN);
+            }
+            if (Float.isNaN(row[cat]))
+                ++_counts[doc];
+            row[cat] = (float) score;
+            return -1;
+        }
+
+        @Override
+        boolean remove(int doc, short cat) {
+            float[] row = _scores[doc];
+            if (row == null || cat < 0 || cat >= _width
+                    || Float.isNaN(row[cat]))
+                return false;
+            row[cat] = Float.NaN;
+            --_counts[doc];
+            return true;
+        }
+
+        @Override
+        void clear(int doc) {
+            if (_scores[doc] != null)
+                Arrays.fill(_scores[doc], Float.NaN);
+            _counts[doc] = 0;
+        }
+    }
+
+    /**
+     * At most a fixed number of float scores per document, sorted by
+     * decreasing score. When a row is full a new score replaces the lowest
+     * one only if it is strictly higher, so on ties the scores inserted first
+     * are kept.
+     */
+    static class TopN extends ClassificationScoreRows {
+
+        protected int _width;
+        protected short[][] _categories;
+        protected float[][] _scores;
+        protected int[] _counts;
+
+        TopN(int documentsCount, int width) {
+            super(documentsCount);
+            if (width <= 0)
+                throw new IllegalArgumentException(
+                        "The number of scores per document must be positive");
+            _width = width;
+            _categories = new short[documentsCount][];
+            _scores = new float[documentsCount][];
+            _counts = new int[documentsCount];
+        }
+
+        @Override
+        ClassificationScoreLayout getLayout() {
+            return ClassificationScoreLayout.TOP_N;
+        }
+
+        @Override
+        int getWidth() {
+            return _width;
+        }
+
+        @Override
+        int getCount(int doc) {
+            return _counts[doc];
+        }
+
+        @Override
+        short getCategory(int doc, int i) {
+            return _categories[doc][i];
+        }
+
+        @Override
+        double getScore(int doc, int i) {
+            return _scores[doc][i];
+        }
+
+        @Override
+        int indexOf(int doc, short cat) {
+            short[] categories = _categories[doc];
+            int count = _counts[doc];
+            for (int i = 0; i < count; ++i) {
+                if (categories[i] == cat)
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        short put(int doc, short cat, double score) {
+            checkCategory(cat);
+            remove(doc, cat);
+            float value = (float) score;
+            int count = _counts[doc];
+            short dropped = -1;
+            if (count == _width) {
+                if (Float.compare(value, _scores[doc][count - 1]) <= 0)
+                    return cat;
+                dropped = _categories[doc][--count];
+            }
+            if (_categories[doc] == null) {
+                _categories[doc] = new short[_width];
+                _scores[doc] = new float[_width];
+            }
+            short[] categories = _categories[doc];
+            float[] scores = _scores[doc];
+            int pos = count;
+            while (pos > 0 && Float.compare(scores[pos - 1], value) < 0) {
+                categories[pos] = categories[pos - 1];
+                scores[pos] = scores[pos - 1];
+                --pos;
+            }
+            categories[pos] = cat;
+            scores[pos] = value;
+            _counts[doc] = count + 1;
+            return dropped;
+        }
+
+        @Override
+        boolean remove(int doc, short cat) {
+            int pos = indexOf(doc, cat);
+            if (pos < 0)
+                return false;
+            int count = _counts[doc] - 1;
+            System.arraycopy(_categories[doc], pos + 1, _categories[doc], pos,
+                    count - pos);
+            System.arraycopy(_scores[doc], pos + 1, _scores[doc], pos, count
+                    - pos);
+            _counts[doc] = count;
+            return true;
+        }
+
+        @Override
+        void clear(int doc) {
+            _counts[doc] = 0;
+        }
+    }
+
+    /**
+     * Read-only rows served from a file written by
+     * {@link ClassificationScoreWriter}. The rows are mapped in blocks of
+     * consecutive documents, so files larger than a single mapping are
+     * supported.
+     */
+    static class Mapped extends ClassificationScoreRows {
+
+        static final long MAX_BLOCK_SIZE = 1 << 30;
+
+        protected ClassificationScoreLayout _layout;
+        protected int _width;
+        protected IntBuffer _counts;
+        protected LongBuffer _offsets;
+        protected ByteBuffer[] _blocks;
+        protected int[] _blocksFirstRows;
+        protected long[] _blocksStarts;
+
+        /**
+         * @param counts  the number of scores of each document
+         * @param offsets the position in the file of each sparse row and of
+         *                the end of the rows, null for the other layouts
+         * @param channel the channel of the file, which can be closed once
+         *                the rows are mapped
+         */
+        Mapped(ClassificationScoreLayout layout, int documentsCount, int width,
+               IntBuffer counts, LongBuffer offsets, FileChannel channel)
+                throws IOException {
+            super(documentsCount);
+            _layout = layout;
+            _width = width;
+            _counts = counts;
+            _offsets = offsets;
+
+            ArrayList<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+            ArrayList<Integer> firstRows = new ArrayList<Integer>();
+            int first = 0;
+            while (first < documentsCount) {
+                long start = getRowPosition(first);
+                int last = first + 1;
+                while (last < documentsCount
+                        && getRowPosition(last + 1) - start <= MAX_BLOCK_SIZE)
+                    ++last;
+                // The mappings remain valid after the channel is closed.
+                blocks.add(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        getRowPosition(last) - start));
+                firstRows.add(first);
+                first = last;
+            }
+            _blocks = blocks.toArray(new ByteBuffer[blocks.size()]);
+            _blocksFirstRows = new int[_blocks.length];
+            _blocksStarts = new long[_blocks.length];
+            for (int i = 0; i < _blocks.length; ++i) {
+                _blocksFirstRows[i] = firstRows.get(i);
+                _blocksStarts[i] = getRowPosition(_blocksFirstRows[i]);
+            }
+        }
+
+        protected long getRowPosition(int doc) {
+            if (_layout == ClassificationScoreLayout.SPARSE)
+                return _offsets.get(doc);
+            return ClassificationScoreWriter.HEADER_SIZE + (long) doc
+                    * ClassificationScoreWriter.getRowSize(_layout, _width, _width);
+        }
+
+        protected ByteBuffer getBlock(int doc) {
+            if (_blocks.length == 1)
+                return _blocks[0];
+            int block = Arrays.binarySearch(_blocksFirstRows, doc);
+            return _blocks[block >= 0 ? block : -block - 2];
+        }
+
+        /**
+         * @return the position of the row of the document in its block
+         */
+        protected int getRowStart(int doc) {
+            if (_blocks.length == 1)
+                return (int) (getRowPosition(doc) - _blocksStarts[0]);
+            int block = Arrays.binarySearch(_blocksFirstRows, doc);
+            block = block >= 0 ? block : -block - 2;
+            return (int) (getRowPosition(doc) - _blocksStarts[block]);
+        }
+
+        @Override
+        ClassificationScoreLayout getLayout() {
+            return _layout;
+        }
+
+        @Override
+        int getWidth() {
+            return _width;
+        }
+
+        @Override
+        int getCount(int doc) {
+            return _counts.get(doc);
+        }
+
+        protected int categoryAt(int doc, int i) {
+            if (_counts.get(doc) == _width)
+                return i;
+            ByteBuffer block = getBlock(doc);
+            int start = getRowStart(doc);
+            for (int cat = 0; cat < _width; ++cat) {
+                if (!Float.isNaN(block.getFloat(start + 4 * cat)) && i-- == 0)
+                    return cat;
+            }
+            throw new IndexOutOfBoundsException("No score at position " + i);
+        }
+
+        @Override
+        short getCategory(int doc, int i) {
+            switch (_layout) {
+                case DENSE:
+                    return (short) categoryAt(doc, i);
+                default:
+                    return getBlock(doc).getShort(getRowStart(doc) + 2 * i);
+            }
+        }
+
+        @Override
+        double getScore(int doc, int i) {
+            ByteBuffer block = getBlock(doc);
+            int start = getRowStart(doc);
+            switch (_layout) {
+                case DENSE:
+                    return block.getFloat(start + 4 * categoryAt(doc, i));
+                case TOP_N:
+                    return block.getFloat(start
+                            + ClassificationScoreWriter.getCategoriesSize(_layout, _width)
+                            + 4 * i);
+                default:
+                    return block.getDouble(start
+                            + ClassificationScoreWriter.getCategoriesSize(_layout,
+                            _counts.get(doc)) + 8 * i);
+            }
+        }
+
+        @Override
+        int indexOf(int doc, short cat) {
+            int count = _counts.get(doc);
+            ByteBuffer block = getBlock(doc);
+            int start = getRowStart(doc);
+            switch (_layout) {
+                case DENSE:
+                    if (cat < 0 || cat >= _width
+                            || Float.isNaN(block.getFloat(start + 4 * cat)))
+                        return -1;
+                    if (count == _width)
+                        return cat;
+                    int pos = 0;
+                    for (int i = 0; i < cat; ++i) {
+                        if (!Float.isNaN(block.getFloat(start + 4 * i)))
+                            ++pos;
+                    }
+                    return pos;
+                case TOP_N:
+                    for (int i = 0; i < count; ++i) {
+                        if (block.getShort(start + 2 * i) == cat)
+                            return i;
+                    }
+                    return -1;
+                default:
+                    int low = 0;
+                    int high = count - 1;
+                    while (low <= high) {
+                        int mid = (low + high) >>> 1;
+                        short midCategory = block.getShort(start + 2 * mid);
+                        if (midCategory < cat)
+                            low = mid + 1;
+                        else if (midCategory > cat)
+                            high = mid - 1;
+                        else
+                            return mid;
+                    }
+                    return -1;
+            }
+        }
+
+        @Override
+        double get(int doc, short cat) {
+            if (_layout != ClassificationScoreLayout.DENSE)
+                return super.get(doc, cat);
+            if (cat < 0 || cat >= _width)
+                return Double.NaN;
+            return getBlock(doc).getFloat(getRowStart(doc) + 4 * cat);
+        }
+
+        @Override
+        short put(int doc, short cat, double score) {
+            throw new UnsupportedOperationException(
+                    "The mapped classification score DB is read-only, clone it to modify it");
+        }
+
+        @Override
+        boolean remove(int doc, short cat) {
+            throw new UnsupportedOperationException(
+                    "The mapped classification score DB is read-only, clone it to modify it");
+        }
+
+        @Override
+        void clear(int doc) {
+            throw new UnsupportedOperationException(
+                    "The mapped classification score DB is read-only, clone it to modify it");
+        }
+
+        @Override
+        boolean isReadOnly() {
+            return true;
+        }
+    }
+}
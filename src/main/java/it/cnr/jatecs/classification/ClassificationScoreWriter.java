@@ -0,0 +1,346 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Writes the scores of a classification to a file readable by
+ * {@link ClassificationScoreDB#readBinary(File, boolean)}, a document at a
+ * time, so that the scores never need to be all in memory. The scores must be
+ * inserted in increasing order of document, the documents skipped having no
+ * scores, and the file is complete only after {@link #close()}.
+ * <p>
+ * The file is made of a header, the rows of the documents, the number of
+ * scores of each document (followed, in the sparse layout, by the position
+ * of each row), the classifier range of each category and the ranges of the
+ * scores whose range differs from the one of their category. The rows are:
+ * <ul>
+ * <li>{@link ClassificationScoreLayout#SPARSE}: the categories, padded to a
+ * multiple of 8 bytes, followed by the double scores;</li>
+ * <li>{@link ClassificationScoreLayout#DENSE}: a float score for each
+ * category, NaN if missing;</li>
+ * <li>{@link ClassificationScoreLayout#TOP_N}: N categories, -1 if missing,
+ * padded to a multiple of 4 bytes, followed by N float scores.</li>
+ * </ul>
+ */
+public class ClassificationScoreWriter {
+
+    static final int MAGIC = 0x4a435344;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    protected File _file;
+    protected ClassificationScoreLayout _layout;
+    protected int _documentsCount;
+    protected int _width;
+    protected DataOutputStream _output;
+    protected long _position;
+    protected int[] _counts;
+    protected long[] _offsets;
+    protected ClassificationScoreRows _row;
+    protected int _docID;
+    protected ClassifierRange[] _ranges;
+    protected HashMap<Short, ClassifierRange> _rowExceptions;
+    protected TreeMap<Long, ClassifierRange> _exceptions;
+    protected boolean _closed;
+
+    /**
+     * Write the scores in the {@link ClassificationScoreLayout#SPARSE}
+     * layout.
+     *
+     * @param file           the destination file
+     * @param documentsCount the number of documents
+     * @throws IOException if an I/O error occurs
+     */
+    public ClassificationScoreWriter(File file, int documentsCount)
+            throws IOException {
+        this(file, ClassificationScoreLayout.SPARSE, documentsCount, 0);
+    }
+
+    /**
+     * @param file           the destination file
+     * @param layout         the layout of the rows
+     * @param documentsCount the number of documents
+     * @param width          the number of categories in the
+     *                       {@link ClassificationScoreLayout#DENSE} layout, the
+     *                       number of scores kept for each document in the
+     *                       {@link ClassificationScoreLayout#TOP_N} layout,
+     *                       ignored in the sparse layout
+     * @throws IOException if an I/O error occurs
+     */
+    public ClassificationScoreWriter(File file,
+                                     ClassificationScoreLayout layout, int documentsCount, int width)
+            throws IOException {
+        if (file == null)
+            throw new NullPointerException("The specified file is 'null'");
+        _row = ClassificationScoreRows.create(layout, 1,
+                layout == ClassificationScoreLayout.SPARSE ? 0 : width);
+        _file = file;
+        _layout = layout;
+        _documentsCount = documentsCount;
+        _width = _row.getWidth();
+        _counts = new int[documentsCount];
+        if (layout == ClassificationScoreLayout.SPARSE)
+            _offsets = new long[documentsCount + 1];
+        _docID = 0;
+        _ranges = new ClassifierRange[0];
+        _rowExceptions = new HashMap<Short, ClassifierRange>();
+        _exceptions = new TreeMap<Long, ClassifierRange>();
+        _closed = false;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        _output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16));
+        _output.write(new byte[HEADER_SIZE]);
+        _position = HEADER_SIZE;
+    }
+
+    public ClassificationScoreLayout getLayout() {
+        return _layout;
+    }
+
+    public int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    /**
+     * Add a score to the file.
+     *
+     * @param docID the document, not lower than the one of the previous score
+     * @param catID the category
+     * @param score the score of the category for the document
+     * @param range the range of the classifier of the category
+     * @throws IOException if an I/O error occurs
+     */
+    public void insertScore(int docID, short catID, double score,
+                            ClassifierRange range) throws IOException {
+        if (_closed)
+            throw new IllegalStateException("The writer is closed");
+        if (range == null)
+            throw new NullPointerException("The specified range is 'null'");
+        if (docID < _docID || docID >= _documentsCount)
+            throw new IllegalArgumentException("The document " + docID
+                    + " is not valid, the next document is " + _docID
+                    + " of " + _documentsCount);
+        while (_docID < docID)
+            writeRow();
+
+        short dropped = _row.put(0, catID, score);
+        if (dropped == catID) {
+            _rowExceptions.remove(catID);
+            return;
+        }
+        if (dropped >= 0)
+            _rowExceptions.remove(dropped);
+        if (catID >= _ranges.length) {
+            ClassifierRange[] ranges = new ClassifierRange[Math.max(catID + 1,
+                    _ranges.length * 2)];
+            System.arraycopy(_ranges, 0, ranges, 0, _ranges.length);
+            _ranges = ranges;
+        }
+        if (_ranges[catID] == null)
+            _ranges[catID] = ClassificationScoreDB.copyRange(range);
+        else if (!ClassificationScoreDB.sameRange(_ranges[catID], range))
+            _rowExceptions.put(catID, ClassificationScoreDB.copyRange(range));
+        else if (!_rowExceptions.isEmpty())
+            _rowExceptions.remove(catID);
+    }
+
+    /**
+     * Write the row of the current document and move to the next one.
+     */
+    protected void writeRow() throws IOException {
+        ClassificationScoreRows row = _row;
+        int count = row.getCount(0);
+        _counts[_docID] = count;
+        if (_offsets != null)
+            _offsets[_docID] = _position;
+        DataOutputStream output = _output;
+        switch (_layout) {
+            case DENSE:
+                for (short cat = 0; cat < _width; ++cat)
+                    output.writeFloat((float) row.get(0, cat));
+                break;
+            case TOP_N:
+                for (int i = 0; i < _width; ++i)
+                    output.writeShort(i < count ? row.getCategory(0, i) : -1);
+                writePadding(getCategoriesSize(_layout, _width) - 2 * _width);
+                for (int i = 0; i < _width; ++i)
+                    output.writeFloat(i < count ? (float) row.getScore(0, i)
+                            : Float.NaN);
+                break;
+            default:
+                for (int i = 0; i < count; ++i)
+                    output.writeShort(row.getCategory(0, i));
+                writePadding(getCategoriesSize(_layout, count) - 2 * count);
+                for (int i = 0; i < count; ++i)
+                    output.writeDouble(row.getScore(0, i));
+                break;
+        }
+        _position += getRowSize(_layout, _width, count);
+
+        if (!_rowExceptions.isEmpty()) {
+            for (Entry<Short, ClassifierRange> entry : _rowExceptions.entrySet())
+                _exceptions.put(ClassificationScoreDB.rangeKey(_docID,
+                        entry.getKey()), entry.getValue());
+            _rowExceptions.clear();
+        }
+        row.clear(0);
+        ++_docID;
+    }
+
+    protected void writePadding(int bytes) throws IOException {
+        for (int i = 0; i < bytes; ++i)
+            _output.writeByte(0);
+    }
+
+    /**
+     * Write the rows of the remaining documents and the tail of the file.
+     * Closing a writer more than once has no effect.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+        long indexPosition;
+        int rangesCount;
+        long rangesPosition;
+        long exceptionsPosition;
+        try {
+            while (_docID < _documentsCount)
+                writeRow();
+
+            DataOutputStream output = _output;
+            indexPosition = _position;
+            for (int i = 0; i < _documentsCount; ++i)
+                output.writeInt(_counts[i]);
+            _position += 4L * _documentsCount;
+            if (_offsets != null) {
+                writePadding((int) (-_position & 7));
+                _position += -_position & 7;
+                _offsets[_documentsCount] = indexPosition;
+                for (int i = 0; i <= _documentsCount; ++i)
+                    output.writeLong(_offsets[i]);
+                _position += 8L * (_documentsCount + 1);
+            }
+
+            rangesCount = _ranges.length;
+            while (rangesCount > 0 && _ranges[rangesCount - 1] == null)
+                --rangesCount;
+            rangesPosition = _position;
+            for (int i = 0; i < rangesCount; ++i)
+                writeRange(_ranges[i]);
+            _position += 24L * rangesCount;
+
+            exceptionsPosition = _position;
+            for (Map.Entry<Long, ClassifierRange> entry : _exceptions.entrySet()) {
+                long key = entry.getKey();
+                output.writeInt((int) (key >>> 16));
+                output.writeShort((short) key);
+                output.writeShort(0);
+                writeRange(entry.getValue());
+            }
+            _position += 32L * _exceptions.size();
+        } finally {
+            _output.close();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(_layout.ordinal());
+        header.putInt(_documentsCount);
+        header.putInt(_width);
+        header.putInt(rangesCount);
+        header.putInt(_exceptions.size());
+        header.putInt(0);
+        header.putLong(indexPosition);
+        header.putLong(rangesPosition);
+        header.putLong(exceptionsPosition);
+        header.putLong(_position);
+        header.flip();
+        RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long pos = 0;
+            while (header.hasRemaining())
+                pos += channel.write(header, pos);
+        } finally {
+            raf.close();
+        }
+    }
+
+    protected void writeRange(ClassifierRange range) throws IOException {
+        _output.writeDouble(range == null ? Double.NaN : range.border);
+        _output.writeDouble(range == null ? Double.NaN : range.minimum);
+        _output.writeDouble(range == null ? Double.NaN : range.maximum);
+    }
+
+    /**
+     * @return the size in bytes of the categories of a row, including the
+     * padding
+     */
+    static int getCategoriesSize(ClassificationScoreLayout layout, int count) {
+        switch (layout) {
+            case DENSE:
+                return 0;
+            case TOP_N:
+                return ((count + 1) & ~1) * 2;
+            default:
+                return ((count + 3) & ~3) * 2;
+        }
+    }
+
+    /**
+     * @return the size in bytes of a row with the given number of scores
+     */
+    static long getRowSize(ClassificationScoreLayout layout, int width,
+                           int count) {
+        switch (layout) {
+            case DENSE:
+                return 4L * width;
+            case TOP_N:
+                return getCategoriesSize(layout, width) + 4L * width;
+            default:
+                return getCategoriesSize(layout, count) + 8L * count;
+        }
+    }
+}
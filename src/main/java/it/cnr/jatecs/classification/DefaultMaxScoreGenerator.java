@@ -24,9 +24,6 @@
 
 package it.cnr.jatecs.classification;
 
-import java.util.Hashtable;
-
-
 /**
  * This is a max score generator which:<br/>
  * - computes the maximum positive score by
@@ -48,13 +45,13 @@ public class DefaultMaxScoreGenerator implements IMaxScoreGenerator {
         int numDocs = cl.getDocumentCount();
         double maxValue = 0;
         for (int docID = 0; docID < numDocs; docID++) {
-            Hashtable<Short, ClassifierRangeWithScore> res = cl.getDocumentScoresAsHashtable(docID);
-            ClassifierRangeWithScore clRes = res.get(catID);
-            if (clRes == null)
+            if (!cl.hasScore(docID, catID))
                 continue;
             atLeastOneCategory = true;
-            if (clRes.score > clRes.border) {
-                double val = clRes.score - clRes.border;
+            double score = cl.getScore(docID, catID);
+            double border = cl.getBorder(docID, catID);
+            if (score > border) {
+                double val = score - border;
                 maxValue = Math.max(val, maxValue);
             }
         }
@@ -74,13 +71,13 @@ public class DefaultMaxScoreGenerator implements IMaxScoreGenerator {
         int numDocs = cl.getDocumentCount();
         double maxValue = 0;
         for (int docID = 0; docID < numDocs; docID++) {
-            Hashtable<Short, ClassifierRangeWithScore> res = cl.getDocumentScoresAsHashtable(docID);
-            ClassifierRangeWithScore clRes = res.get(catID);
-            if (clRes == null)
+            if (!cl.hasScore(docID, catID))
                 continue;
             atLeastOneCategory = true;
-            if (clRes.score <= clRes.border) {
-                double val = clRes.score - clRes.border;
+            double score = cl.getScore(docID, catID);
+            double border = cl.getBorder(docID, catID);
+            if (score <= border) {
+                double val = score - border;
                 maxValue = Math.max(-val, maxValue);
             }
         }
@@ -24,20 +24,19 @@
 
 package it.cnr.jatecs.classification;
 
+import gnu.trove.TDoubleArrayList;
 import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.classification.interfaces.*;
-import it.cnr.jatecs.evaluation.ClassificationComparer;
 import it.cnr.jatecs.evaluation.ContingencyTable;
-import it.cnr.jatecs.evaluation.ContingencyTableSet;
-import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
-import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDBBuilder;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.Os;
 import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class ThresholdClassifierOptimizer implements IClassifierOptimizer {
 
@@ -47,12 +46,18 @@ public class ThresholdClassifierOptimizer implements IClassifierOptimizer {
 
     protected int _decimalPrecision;
 
+    protected int _threads;
+
+    protected boolean _sweepAllScores;
+
     public ThresholdClassifierOptimizer() {
         _minimum = -1;
         _maximum = 1;
         _step = 0.05;
         _optimizerType = ThresholdOptimizerType.F1;
         _decimalPrecision = 3;
+        _threads = 1;
+        _sweepAllScores = false;
     }
 
     public void setThresholds(double minimum, double maximum, double step) {
@@ -65,6 +70,35 @@ public class ThresholdClassifierOptimizer implements IClassifierOptimizer {
         _optimizerType = t;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * @param threads the number of categories optimized at the same time. The
+     *                validation documents are classified concurrently only if
+     *                the classifier is an {@link IConcurrentClassifier}
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public boolean isSweepAllScores() {
+        return _sweepAllScores;
+    }
+
+    /**
+     * @param sweepAllScores true to try as threshold every distinct validation
+     *                       score, false to try only the thresholds from the
+     *                       minimum to the maximum with the given step
+     */
+    public void setSweepAllScores(boolean sweepAllScores) {
+        _sweepAllScores = sweepAllScores;
+    }
+
     public OptimalConfiguration optimizeFor(ILearner learner, IIndex training,
                                             IIndex validation, TShortArrayList catsValid) {
         // Construct classification model.
@@ -76,89 +110,49 @@ public class ThresholdClassifierOptimizer implements IClassifierOptimizer {
 
         IThresholdClassifier c = (IThresholdClassifier) cust;
 
-        // For each category in index, perform validation.
-        IShortIterator cats = new TShortArrayListIterator(catsValid);
-        while (cats.hasNext()) {
-            short catID = cats.next();
-
-            JatecsLogger.status().println("Optimizing category...");
-
-            TShortArrayList categories = new TShortArrayList();
-            categories.add(catID);
-            TShortArrayListIterator validCategories = new TShortArrayListIterator(
-                    categories);
-
-            double bestThreshold = _minimum;
-            double bestEffectiveness = Double.MIN_VALUE;
-
-            // Classify validation documents using current configuration.
-            ClassificationResult[] results = classifier.classify(validation,
-                    catID);
-
+        // The thresholds of the grid are the same for all the categories.
+        TDoubleArrayList grid = new TDoubleArrayList();
+        if (!_sweepAllScores) {
             JatecsLogger.status().println(
                     "Testing classifier using minimum=" + _minimum
                             + ", maximum=" + _maximum + ", step=" + _step);
-
             double threshold = Os.generateDouble(_minimum, _decimalPrecision);
             while (threshold <= _maximum) {
-
-                ClassifierRange cr = new ClassifierRange();
-                cr.border = threshold;
-                cr.minimum = _minimum;
-                cr.maximum = _maximum;
-
-                IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
-                        validation.getDocumentDB(), validation
-                        .getCategoryDB());
-
-                for (int j = 0; j < results.length; j++) {
-                    ClassificationResult res = results[j];
-
-                    if (res.score.get(0) >= cr.border)
-                        builder.setDocumentCategory(res.documentID, catID);
-                }
-
-                validCategories.begin();
-                ClassificationComparer cc = new ClassificationComparer(builder
-                        .getClassificationDB(), validation
-                        .getClassificationDB(), validCategories);
-                ContingencyTableSet tableSet = cc.evaluate();
-                ContingencyTable ct = tableSet
-                        .getCategoryContingencyTable(catID);
-
-                double effectiveness = 0;
-
-                if (_optimizerType == ThresholdOptimizerType.ACCURACY)
-                    effectiveness = ct.accuracy();
-                else if (_optimizerType == ThresholdOptimizerType.ERROR)
-                    effectiveness = ct.error();
-                else if (_optimizerType == ThresholdOptimizerType.F1)
-                    effectiveness = ct.f1();
-                else if (_optimizerType == ThresholdOptimizerType.PRECISION)
-                    effectiveness = ct.precision();
-                else if (_optimizerType == ThresholdOptimizerType.RECALL)
-                    effectiveness = ct.recall();
-
-                if (effectiveness > bestEffectiveness) {
-                    bestThreshold = threshold;
-                    bestEffectiveness = effectiveness;
-                }
-
+                grid.add(threshold);
                 threshold = Os.generateDouble(threshold + _step,
                         _decimalPrecision);
             }
+        } else
+            JatecsLogger.status().println(
+                    "Testing classifier using all the validation scores");
+
+        // Optimize each category, then set the thresholds in order.
+        short[] categories = catsValid.toNativeArray();
+        double[] bestThresholds = new double[categories.length];
+        double[] bestEffectiveness = new double[categories.length];
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1,
+                Math.min(_threads, categories.length)));
+        try {
+            pool.invoke(new CategoriesTask(this, classifier,
+                    new WorkerClassifiers(classifier), validation, categories,
+                    grid.toNativeArray(), bestThresholds, bestEffectiveness, 0,
+                    categories.length));
+        } finally {
+            pool.shutdown();
+        }
 
+        for (int i = 0; i < categories.length; i++) {
             // DEBUG
             JatecsLogger.execution().info(
-                    "Selected threshold " + bestThreshold
-                            + " for effectiveness " + bestEffectiveness);
+                    "Selected threshold " + bestThresholds[i]
+                            + " for effectiveness " + bestEffectiveness[i]);
 
             ClassifierRange cr = new ClassifierRange();
-            cr.border = bestThreshold;
+            cr.border = bestThresholds[i];
             cr.minimum = _minimum;
             cr.maximum = _maximum;
 
-            c.setClassifierRange(catID, cr);
+            c.setClassifierRange(categories[i], cr);
         }
 
         classifier.setRuntimeCustomizer(cust);
@@ -170,6 +164,124 @@ public class ThresholdClassifierOptimizer implements IClassifierOptimizer {
         return conf;
     }
 
+    /**
+     * Select the best threshold of a category. The candidate thresholds are
+     * tried in increasing order and the first one reaching the best
+     * effectiveness is kept.
+     *
+     * @param sweep      the validation scores of the category
+     * @param thresholds the candidate thresholds, in increasing order
+     * @return the best threshold and its effectiveness
+     */
+    protected double[] selectThreshold(ThresholdSweep sweep,
+                                       double[] thresholds) {
+        double bestThreshold = _minimum;
+        double bestEffectiveness = Double.MIN_VALUE;
+        ContingencyTable[] tables = sweep.evaluate(thresholds);
+        for (int i = 0; i < tables.length; i++) {
+            double effectiveness = ThresholdSweep.getEffectiveness(tables[i],
+                    _optimizerType);
+            if (effectiveness > bestEffectiveness) {
+                bestThreshold = thresholds[i];
+                bestEffectiveness = effectiveness;
+            }
+        }
+        return new double[]{bestThreshold, bestEffectiveness};
+    }
+
+    /**
+     * The classifiers used by the worker threads: a private one for each
+     * thread if the classifier supports it, otherwise the shared one.
+     */
+    protected static class WorkerClassifiers extends ThreadLocal<IClassifier> {
+
+        private final IClassifier _classifier;
+
+        public WorkerClassifiers(IClassifier classifier) {
+            _classifier = classifier;
+        }
+
+        public boolean isShared() {
+            return !(_classifier instanceof IConcurrentClassifier);
+        }
+
+        @Override
+        protected IClassifier initialValue() {
+            if (_classifier instanceof IConcurrentClassifier)
+                return ((IConcurrentClassifier) _classifier)
+                        .getWorkerClassifier();
+            return _classifier;
+        }
+    }
+
+    protected static class CategoriesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ThresholdClassifierOptimizer _optimizer;
+        private final IClassifier _classifier;
+        private final WorkerClassifiers _workers;
+        private final IIndex _validation;
+        private final short[] _categories;
+        private final double[] _grid;
+        private final double[] _thresholds;
+        private final double[] _effectiveness;
+        private final int _from;
+        private final int _to;
+
+        public CategoriesTask(ThresholdClassifierOptimizer optimizer,
+                              IClassifier classifier, WorkerClassifiers workers,
+                              IIndex validation, short[] categories, double[] grid,
+                              double[] thresholds, double[] effectiveness, int from,
+                              int to) {
+            _optimizer = optimizer;
+            _classifier = classifier;
+            _workers = workers;
+            _validation = validation;
+            _categories = categories;
+            _grid = grid;
+            _thresholds = thresholds;
+            _effectiveness = effectiveness;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new CategoriesTask(_optimizer, _classifier, _workers,
+                                _validation, _categories, _grid, _thresholds,
+                                _effectiveness, _from, middle),
+                        new CategoriesTask(_optimizer, _classifier, _workers,
+                                _validation, _categories, _grid, _thresholds,
+                                _effectiveness, middle, _to));
+                return;
+            }
+            if (_from == _to)
+                return;
+            short catID = _categories[_from];
+            JatecsLogger.status().println("Optimizing category...");
+
+            // Classify validation documents using current configuration.
+            ClassificationResult[] results;
+            if (_workers.isShared()) {
+                synchronized (_classifier) {
+                    results = _classifier.classify(_validation, catID);
+                }
+            } else
+                results = _workers.get().classify(_validation, catID);
+
+            ThresholdSweep sweep = ThresholdSweep.fromResults(results,
+                    _validation, catID);
+            double[] best = _optimizer.selectThreshold(sweep,
+                    _optimizer._sweepAllScores ? sweep.getDistinctScores()
+                            : _grid);
+            _thresholds[_from] = best[0];
+            _effectiveness[_from] = best[1];
+        }
+    }
+
     public void assignBestClassifierConfiguration(
             IClassifierRuntimeCustomizer target,
             TShortArrayList externalCategories,
@@ -0,0 +1,246 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import it.cnr.jatecs.evaluation.ContingencyTable;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import java.util.Arrays;
+
+/**
+ * The validation scores of a category, sorted once so that the contingency
+ * tables obtained by any number of thresholds can be computed with a single
+ * sweep. A document is assigned to the category when its score is greater or
+ * equal to the threshold.
+ */
+public class ThresholdSweep {
+
+    /**
+     * The sorted scores of the relevant documents.
+     */
+    protected double[] _relevant;
+
+    /**
+     * The sorted scores of the non relevant documents.
+     */
+    protected double[] _nonRelevant;
+
+    /**
+     * The number of relevant documents never assigned to the category.
+     */
+    protected int _relevantUnassigned;
+
+    /**
+     * The number of non relevant documents never assigned to the category.
+     */
+    protected int _nonRelevantUnassigned;
+
+    /**
+     * Whether the relevant documents never assigned to the category are
+     * counted as true negatives instead of false negatives.
+     */
+    protected boolean _unassignedAsNegatives;
+
+    /**
+     * @param scores   the scores of the documents, NaN for a document never
+     *                 assigned to the category
+     * @param relevant whether each document belongs to the category
+     */
+    public ThresholdSweep(double[] scores, boolean[] relevant) {
+        this(scores, relevant, false);
+    }
+
+    /**
+     * @param scores                the scores of the documents, NaN for a
+     *                              document never assigned to the category
+     * @param relevant              whether each document belongs to the
+     *                              category
+     * @param unassignedAsNegatives true to count all the documents with a NaN
+     *                              score as true negatives, whatever their
+     *                              relevance, as a NaN score is neither above
+     *                              nor below any threshold; false to count
+     *                              the relevant ones as false negatives
+     */
+    public ThresholdSweep(double[] scores, boolean[] relevant,
+                          boolean unassignedAsNegatives) {
+        if (scores == null)
+            throw new NullPointerException("The specified scores are 'null'");
+        if (relevant == null)
+            throw new NullPointerException("The specified relevance is 'null'");
+        if (scores.length != relevant.length)
+            throw new IllegalArgumentException(
+                    "The scores and the relevance must have the same length");
+        _unassignedAsNegatives = unassignedAsNegatives;
+        int relevantCount = 0;
+        int nonRelevantCount = 0;
+        for (int i = 0; i < scores.length; ++i) {
+            if (Double.isNaN(scores[i])) {
+                if (relevant[i])
+                    ++_relevantUnassigned;
+                else
+                    ++_nonRelevantUnassigned;
+            } else if (relevant[i])
+                ++relevantCount;
+            else
+                ++nonRelevantCount;
+        }
+        _relevant = new double[relevantCount];
+        _nonRelevant = new double[nonRelevantCount];
+        int r = 0;
+        int n = 0;
+        for (int i = 0; i < scores.length; ++i) {
+            if (Double.isNaN(scores[i]))
+                continue;
+            if (relevant[i])
+                _relevant[r++] = scores[i];
+            else
+                _nonRelevant[n++] = scores[i];
+        }
+        Arrays.sort(_relevant);
+        Arrays.sort(_nonRelevant);
+    }
+
+    /**
+     * Build the sweep of a category from the results of a classifier. The
+     * documents of the validation index without a result are never assigned
+     * to the category, as when the results are stored in a classification DB
+     * and compared with the validation one.
+     *
+     * @param results    the results of the classification of the category
+     * @param validation the validation index
+     * @param catID      the category
+     * @return the sweep of the category
+     */
+    public static ThresholdSweep fromResults(ClassificationResult[] results,
+                                             IIndex validation, short catID) {
+        int documents = validation.getDocumentDB().getDocumentsCount();
+        double[] scores = new double[documents];
+        Arrays.fill(scores, Double.NaN);
+        for (int i = 0; i < results.length; ++i) {
+            ClassificationResult res = results[i];
+            double score = res.score.get(0);
+            if (res.documentID < 0 || res.documentID >= documents
+                    || Double.isNaN(score))
+                continue;
+            // A document is assigned if any of its results is above the
+            // threshold.
+            if (Double.isNaN(scores[res.documentID])
+                    || score > scores[res.documentID])
+                scores[res.documentID] = score;
+        }
+        IClassificationDB classification = validation.getClassificationDB();
+        boolean[] relevant = new boolean[documents];
+        for (int doc = 0; doc < documents; ++doc)
+            relevant[doc] = classification.hasDocumentCategory(doc, catID);
+        return new ThresholdSweep(scores, relevant);
+    }
+
+    public int getRelevantCount() {
+        return _relevant.length + _relevantUnassigned;
+    }
+
+    public int getNonRelevantCount() {
+        return _nonRelevant.length + _nonRelevantUnassigned;
+    }
+
+    /**
+     * @return the distinct scores, in increasing order
+     */
+    public double[] getDistinctScores() {
+        double[] distinct = new double[_relevant.length + _nonRelevant.length];
+        int count = 0;
+        int r = 0;
+        int n = 0;
+        while (r < _relevant.length || n < _nonRelevant.length) {
+            double score;
+            if (n == _nonRelevant.length
+                    || (r < _relevant.length && _relevant[r] <= _nonRelevant[n]))
+                score = _relevant[r++];
+            else
+                score = _nonRelevant[n++];
+            // Compared as Arrays.binarySearch does, so each score is found.
+            if (count == 0 || Double.compare(distinct[count - 1], score) != 0)
+                distinct[count++] = score;
+        }
+        return Arrays.copyOf(distinct, count);
+    }
+
+    /**
+     * Compute the contingency tables obtained by a sequence of thresholds,
+     * updating the counts incrementally from one threshold to the next.
+     *
+     * @param thresholds the thresholds, in increasing order
+     * @return the contingency table of each threshold
+     */
+    public ContingencyTable[] evaluate(double[] thresholds) {
+        ContingencyTable[] tables = new ContingencyTable[thresholds.length];
+        // The number of relevant and non relevant scores below the threshold.
+        int r = 0;
+        int n = 0;
+        for (int i = 0; i < thresholds.length; ++i) {
+            double threshold = thresholds[i];
+            if (i > 0 && threshold < thresholds[i - 1])
+                throw new IllegalArgumentException(
+                        "The thresholds must be in increasing order");
+            while (r < _relevant.length && _relevant[r] < threshold)
+                ++r;
+            while (n < _nonRelevant.length && _nonRelevant[n] < threshold)
+                ++n;
+            ContingencyTable table = new ContingencyTable();
+            table.setTP(_relevant.length - r);
+            table.setFP(_nonRelevant.length - n);
+            if (_unassignedAsNegatives) {
+                table.setFN(r);
+                table.setTN(n + _nonRelevantUnassigned + _relevantUnassigned);
+            } else {
+                table.setFN(r + _relevantUnassigned);
+                table.setTN(n + _nonRelevantUnassigned);
+            }
+            tables[i] = table;
+        }
+        return tables;
+    }
+
+    /**
+     * @param table the contingency table
+     * @param type  the measure to compute
+     * @return the value of the measure on the table
+     */
+    public static double getEffectiveness(ContingencyTable table,
+                                          ThresholdOptimizerType type) {
+        if (type == ThresholdOptimizerType.ACCURACY)
+            return table.accuracy();
+        else if (type == ThresholdOptimizerType.ERROR)
+            return table.error();
+        else if (type == ThresholdOptimizerType.F1)
+            return table.f1();
+        else if (type == ThresholdOptimizerType.PRECISION)
+            return table.precision();
+        else if (type == ThresholdOptimizerType.RECALL)
+            return table.recall();
+        return 0;
+    }
+}
@@ -24,9 +24,6 @@
 
 package it.cnr.jatecs.classification;
 
-import java.util.Hashtable;
-
-
 /**
  * This is a max score generator specific to use when the adopted classifier is
  * TreeBoost.
@@ -45,13 +42,13 @@ public class TreeBoostMaxScoreGenerator extends DefaultMaxScoreGenerator {
         int numDocs = cl.getDocumentCount();
         double maxValue = 0;
         for (int docID = 0; docID < numDocs; docID++) {
-            Hashtable<Short, ClassifierRangeWithScore> res = cl.getDocumentScoresAsHashtable(docID);
-            ClassifierRangeWithScore clRes = res.get(catID);
-            if (clRes == null)
+            if (!cl.hasScore(docID, catID))
                 continue;
             atLeastOneCategory = true;
-            if (clRes.score <= clRes.border && !(clRes.score == clRes.minimum)) {
-                double val = clRes.score - clRes.border;
+            double score = cl.getScore(docID, catID);
+            ClassifierRange range = cl.getClassifierRange(docID, catID);
+            if (score <= range.border && !(score == range.minimum)) {
+                double val = score - range.border;
                 maxValue = Math.max(-val, maxValue);
             }
         }
@@ -28,6 +28,8 @@ import gnu.trove.*;
 import it.cnr.jatecs.classification.BaseClassifier;
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
@@ -42,7 +44,8 @@ import java.util.Vector;
  *
  * @author Andrea Esuli
  */
-public class AdaBoostClassifier extends BaseClassifier {
+public class AdaBoostClassifier extends BaseClassifier implements
+        IConcurrentClassifier {
 
     /**
      * The set of weak hypothesis computed by the boosting algorithm.
@@ -63,6 +66,11 @@ public class AdaBoostClassifier extends BaseClassifier {
     String _distributionMatrixFilename;
     private Vector<TIntObjectHashMap<HypothesisData>> _grouped;
     private boolean _hypothesisGrouped;
+    /**
+     * The grouped hypotheses used to classify, compiled at the first
+     * classification or read with the model.
+     */
+    protected volatile CompiledBoostingModel _compiled;
 
     public AdaBoostClassifier() {
         _maxNumIterations = 0;
@@ -100,6 +108,27 @@ public class AdaBoostClassifier extends BaseClassifier {
         }
     }
 
+    /**
+     * @return the model grouping the hypotheses of the current number of
+     * iterations, compiled again if the number of iterations has changed.
+     */
+    public CompiledBoostingModel getCompiledModel() {
+        int iterations = Math.min(_hypothesis.length,
+                ((AdaBoostClassifierCustomizer) _customizer)._numIterations);
+        CompiledBoostingModel compiled = _compiled;
+        if (compiled == null || compiled.getIterations() != iterations) {
+            synchronized (this) {
+                compiled = _compiled;
+                if (compiled == null || compiled.getIterations() != iterations) {
+                    compiled = CompiledBoostingModel.compile(_hypothesis,
+                            _validCategories, iterations);
+                    _compiled = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
     public ClassificationResult computeVariance(IIndex testIndex, int docID) {
         if (_customizer == null) {
             _customizer = new AdaBoostClassifierCustomizer();
@@ -182,54 +211,30 @@ public class AdaBoostClassifier extends BaseClassifier {
             _customizer = new AdaBoostClassifierCustomizer();
         }
         boolean groupHypothesis = ((AdaBoostClassifierCustomizer) _customizer)._groupHypothesis;
-        if (groupHypothesis && !_hypothesisGrouped) {
-            mergeHypothesis(testIndex);
-            _hypothesisGrouped = true;
-        }
+        if (groupHypothesis)
+            return getCompiledModel().classify(testIndex, docID);
 
         ClassificationResult res = new ClassificationResult();
         res.documentID = docID;
 
-        if (!groupHypothesis) {
-            for (short catID = 0; catID < _validCategories; catID++) {
-                double w = 0;
-                int numIterations = Math
-                        .min(_hypothesis.length,
-                                ((AdaBoostClassifierCustomizer) _customizer)._numIterations);
-                for (int i = 0; i < numIterations; i++) {
-                    HypothesisData hd = _hypothesis[i].value(catID);
-                    int pivot = hd.pivot;
-                    if (pivot >= 0) {
-                        if (testIndex.getContentDB().hasDocumentFeature(docID,
-                                pivot))
-                            w += hd.c1;
-                        else
-                            w += hd.c0;
-                    }
-                }
-                res.categoryID.add(catID);
-                res.score.add(w);
-            }
-        } else {
-            for (short catID = 0; catID < _validCategories; catID++) {
-                double w = 0;
-                TIntObjectHashMap<HypothesisData> values = _grouped.get(catID);
-                TIntObjectIterator<HypothesisData> it = values.iterator();
-                while (it.hasNext()) {
-                    it.advance();
-                    HypothesisData hd = (HypothesisData) it.value();
-                    int pivot = hd.pivot;
-                    if (pivot >= 0) {
-                        if (testIndex.getContentDB().hasDocumentFeature(docID,
-                                pivot))
-                            w += hd.c1;
-                        else
-                            w += hd.c0;
-                    }
+        for (short catID = 0; catID < _validCategories; catID++) {
+            double w = 0;
+            int numIterations = Math
+                    .min(_hypothesis.length,
+                            ((AdaBoostClassifierCustomizer) _customizer)._numIterations);
+            for (int i = 0; i < numIterations; i++) {
+                HypothesisData hd = _hypothesis[i].value(catID);
+                int pivot = hd.pivot;
+                if (pivot >= 0) {
+                    if (testIndex.getContentDB().hasDocumentFeature(docID,
+                            pivot))
+                        w += hd.c1;
+                    else
+                        w += hd.c0;
                 }
-                res.categoryID.add(catID);
-                res.score.add(w);
             }
+            res.categoryID.add(catID);
+            res.score.add(w);
         }
 
         return res;
@@ -278,4 +283,10 @@ public class AdaBoostClassifier extends BaseClassifier {
 
         return pivots;
     }
+
+    public IClassifier getWorkerClassifier() {
+        // The compiled model is built under synchronization, the rest is read-only.
+        return this;
+    }
+
 }
@@ -42,6 +42,8 @@ public class AdaBoostDataManager implements IDataManager {
 
     static final String WEAK_HYPOTHESIS_COUNTER = "whc.db";
 
+    static final String COMPILED_MODEL = "compiled.db";
+
 
     public AdaBoostDataManager() {
     }
@@ -266,6 +268,13 @@ public class AdaBoostDataManager implements IDataManager {
         writeAllWeakHypothesis(storageManager, modelName, ld);
         JatecsLogger.status().fine("done.\n");
 
+        JatecsLogger.status().fine("Writing to disk the compiled model...");
+        // The hypotheses grouped by pivot, ready to be mapped at read time.
+        CompiledBoostingModel.compile(ld._hypothesis, ld._validCategories,
+                ld._hypothesis.length).write(storageManager,
+                modelName + storageManager.getPathSeparator() + COMPILED_MODEL);
+        JatecsLogger.status().fine("done.\n");
+
         if (ld._distributionMatrixFilename != null) {
             JatecsLogger.status().fine(
                     "Writing to disk the computed distribution matrix...");
@@ -310,6 +319,14 @@ public class AdaBoostDataManager implements IDataManager {
                 .getRuntimeCustomizer();
         abcust._numIterations = c._hypothesis.length;
 
+        // Models written before the compiled format are compiled at the first
+        // classification.
+        String compiledName = modelName + storageManager.getPathSeparator()
+                + COMPILED_MODEL;
+        if (storageManager.isResourceAvailable(compiledName))
+            c._compiled = CompiledBoostingModel.read(storageManager,
+                    compiledName);
+
         JatecsLogger.status().println(
                 "The model has stored " + c._maxNumIterations
                         + " iteration(s). Use it as default.");
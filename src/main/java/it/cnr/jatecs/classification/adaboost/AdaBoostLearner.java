@@ -24,13 +24,18 @@
 
 package it.cnr.jatecs.classification.adaboost;
 
+import gnu.trove.TIntObjectHashMap;
 import it.cnr.jatecs.classification.BaseLearner;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
 import it.cnr.jatecs.classification.interfaces.ILearnerRuntimeCustomizer;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.Os;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+import it.cnr.jatecs.weighting.dense.ArrayWeighting2D;
+import it.cnr.jatecs.weighting.dense.BufferWeighting2D;
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
 import it.cnr.jatecs.weighting.interfaces.IWeighting3DManager;
 import it.cnr.jatecs.weighting.mmap.MemoryMappedWeighting3DBuilder;
 
@@ -46,6 +51,12 @@ import java.util.Vector;
  */
 public class AdaBoostLearner extends BaseLearner {
 
+    /**
+     * The documents of each category, computed on the first update of a
+     * single precision distribution matrix.
+     */
+    private long[][] _positives;
+
     public AdaBoostLearner() {
         _customizer = new AdaBoostLearnerCustomizer();
     }
@@ -54,10 +65,8 @@ public class AdaBoostLearner extends BaseLearner {
 
         AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) _customizer;
 
-        // Declare the distribution matrix used in boosting algorithm.
-        MemoryMappedWeighting3DBuilder matrix = new MemoryMappedWeighting3DBuilder(
-                trainingIndex.getCategoryDB().getCategoriesCount(),
-                trainingIndex.getDocumentDB().getDocumentsCount(), 1);
+        int numCategories = trainingIndex.getCategoryDB().getCategoriesCount();
+        int numDocuments = trainingIndex.getDocumentDB().getDocumentsCount();
         String path = Os.getTemporaryDirectory() + Os.pathSeparator()
                 + "matrixes" + Os.pathSeparator();
         File dir = new File(path);
@@ -75,11 +84,30 @@ public class AdaBoostLearner extends BaseLearner {
         String fname = "matrix_" + new UID().toString().replace(':', '_')
                 + ".db";
 
+        // Declare the distribution matrix used in boosting algorithm.
+        IWeighting3DManager matrix;
+        File floatFile = null;
         try {
-            matrix.open(path, fname, true);
+            if (customizer._matrixType == DistributionMatrixType.HEAP)
+                matrix = new ArrayWeighting2D(numCategories, numDocuments,
+                        customizer._categoryMajorMatrix);
+            else if (customizer._matrixType == DistributionMatrixType.DIRECT)
+                matrix = BufferWeighting2D.allocateDirect(numCategories,
+                        numDocuments, customizer._categoryMajorMatrix);
+            else if (customizer._matrixType == DistributionMatrixType.MEMORY_MAPPED_FLOAT) {
+                floatFile = new File(path + fname + ".float");
+                matrix = BufferWeighting2D.map(floatFile, numCategories,
+                        numDocuments, customizer._categoryMajorMatrix);
+            } else {
+                MemoryMappedWeighting3DBuilder mmap = new MemoryMappedWeighting3DBuilder(
+                        numCategories, numDocuments, 1);
+                mmap.open(path, fname, true);
+                matrix = mmap;
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        _positives = null;
 
         // Get the initial distribution matrix.
         JatecsLogger.status().print("Getting initial distribution matrix...");
@@ -101,39 +129,53 @@ public class AdaBoostLearner extends BaseLearner {
 
         JatecsLogger.status().println("Computing the iterations...");
 
-        // For each iteration, generate a weak hypothesis.
-        for (int i = 0; i < customizer._maxNumIterations; i++) {
-            // Get the i-th weak hypothesis.
-            IWeakHypothesis wh = null;
-            wh = customizer._wl.getNewWeakHypothesis(matrix, trainingIndex);
-            classifier._hypothesis[i] = wh;
-
-            // Compute the distribution matrix to use in step (i+1).
-            updateDistributionMatrix(matrix, wh, trainingIndex);
-
-            if (((i + 1) % 5) == 0)
-                JatecsLogger.status().print("" + (i + 1));
-            else
-                JatecsLogger.status().print(".");
-
-            if (((i + 1) % 50) == 0)
-                JatecsLogger.status().println("");
-
-            numComputed++;
-            double percentage = ((double) (numComputed * 100))
-                    / ((double) (toCompute));
-            if (customizer.getStatusListener() != null)
-                customizer.getStatusListener().operationStatus(percentage);
+        // The threads of the weak learner are released at the end, also on
+        // failures; they are created again if the learner is reused.
+        try {
+            // For each iteration, generate a weak hypothesis.
+            for (int i = 0; i < customizer._maxNumIterations; i++) {
+                // Get the i-th weak hypothesis.
+                IWeakHypothesis wh = null;
+                wh = customizer._wl.getNewWeakHypothesis(matrix, trainingIndex);
+                classifier._hypothesis[i] = wh;
+
+                // Compute the distribution matrix to use in step (i+1).
+                updateDistributionMatrix(matrix, wh, trainingIndex);
+
+                if (((i + 1) % 5) == 0)
+                    JatecsLogger.status().print("" + (i + 1));
+                else
+                    JatecsLogger.status().print(".");
+
+                if (((i + 1) % 50) == 0)
+                    JatecsLogger.status().println("");
+
+                numComputed++;
+                double percentage = ((double) (numComputed * 100))
+                        / ((double) (toCompute));
+                if (customizer.getStatusListener() != null)
+                    customizer.getStatusListener().operationStatus(percentage);
+            }
+        } finally {
+            customizer._wl.shutdown();
         }
 
         JatecsLogger.status().println("done.");
 
         // If necessary, save the distribution matrix.
         try {
-            matrix.close();
+            if (matrix instanceof MemoryMappedWeighting3DBuilder)
+                ((MemoryMappedWeighting3DBuilder) matrix).close();
+            else if (customizer._keepMatrix)
+                saveDistributionMatrix(matrix, path, fname);
+            if (matrix instanceof BufferWeighting2D)
+                ((BufferWeighting2D) matrix).close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        if (floatFile != null)
+            Os.delete(floatFile);
+        _positives = null;
         if (!customizer._keepMatrix) {
             File f = new File(path + fname);
             Os.delete(f);
@@ -145,6 +187,25 @@ public class AdaBoostLearner extends BaseLearner {
         return classifier;
     }
 
+    /**
+     * Save a single precision distribution matrix in the format of
+     * {@link MemoryMappedWeighting3DBuilder}.
+     */
+    protected void saveDistributionMatrix(IWeighting3DManager matrix,
+                                          String path, String fname) throws IOException {
+        IWeighting2DManager dist = (IWeighting2DManager) matrix;
+        MemoryMappedWeighting3DBuilder mmap = new MemoryMappedWeighting3DBuilder(
+                dist.getFirstDimensionSize(), dist.getSecondDimensionSize(), 1);
+        mmap.open(path, fname, true);
+        double[] weights = new double[dist.getFirstDimensionSize()];
+        for (int docID = 0; docID < dist.getSecondDimensionSize(); docID++) {
+            dist.getSecondRow(docID, weights);
+            for (int catID = 0; catID < weights.length; catID++)
+                mmap.setWeight(weights[catID], catID, docID, 0);
+        }
+        mmap.close();
+    }
+
     protected void obtainInitialDistributionMatrix(IWeighting3DManager matrix,
                                                    IIndex index) {
         if (((AdaBoostLearnerCustomizer) _customizer)._matrixFileLoad != null) {
@@ -278,6 +339,11 @@ public class AdaBoostLearner extends BaseLearner {
 
     protected void updateDistributionMatrix(IWeighting3DManager matrix,
                                             IWeakHypothesis wh, IIndex index) {
+        if (matrix instanceof IWeighting2DManager) {
+            updateDistributionMatrix((IWeighting2DManager) matrix, wh, index);
+            return;
+        }
+
         AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) _customizer;
 
         float normalization = 0;
@@ -353,6 +419,135 @@ public class AdaBoostLearner extends BaseLearner {
         }
     }
 
+    /**
+     * Update a single precision distribution matrix by rows. The update
+     * factor of a weight depends only on the category, on the label of the
+     * document and on the presence of the pivot, so the 4 possible factors of
+     * each category are computed once.
+     */
+    protected void updateDistributionMatrix(IWeighting2DManager matrix,
+                                            IWeakHypothesis wh, IIndex index) {
+        AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) _customizer;
+        int numCategories = matrix.getFirstDimensionSize();
+        int numDocuments = matrix.getSecondDimensionSize();
+        int words = (numDocuments + 63) >>> 6;
+
+        if (_positives == null || _positives.length != numCategories
+                || (numCategories > 0 && _positives[0].length != words))
+            _positives = categoriesDocuments(index, numCategories, words);
+
+        // The factors, indexed by category, label (positive = 2) and
+        // presence of the pivot (1).
+        double[] factors = new double[numCategories * 4];
+        // The documents containing the pivot of each category, shared by the
+        // categories with the same pivot.
+        long[][] pivots = new long[numCategories][];
+        TIntObjectHashMap<long[]> pivotDocuments = new TIntObjectHashMap<long[]>();
+        for (short catID = 0; catID < numCategories; catID++) {
+            HypothesisData v = wh.value(catID);
+            for (int i = 0; i < 4; i++) {
+                // The same labels used in the single weight update.
+                float catValue = (i & 2) != 0 ? -1 : 1;
+                double value = 0;
+                if (v.pivot >= 0)
+                    value = (i & 1) != 0 ? v.c1 : v.c0;
+                double correction;
+                if (catValue < 0 && value > 0)
+                    correction = customizer._TPcorrection;
+                else if (catValue > 0 && value < 0)
+                    correction = customizer._TNcorrection;
+                else if (catValue < 0 && value < 0)
+                    correction = customizer._FNcorrection;
+                else if (catValue > 0 && value > 0)
+                    correction = customizer._FPcorrection;
+                else {
+                    factors[catID * 4 + i] = 1;
+                    continue;
+                }
+                factors[catID * 4 + i] = customizer._lossFunction
+                        .getLoss(catValue * value * correction);
+            }
+            if (v.pivot >= 0) {
+                long[] docs = pivotDocuments.get(v.pivot);
+                if (docs == null) {
+                    docs = new long[words];
+                    IIntIterator it = index.getContentDB().getFeatureDocuments(
+                            v.pivot);
+                    while (it.hasNext()) {
+                        int docID = it.next();
+                        docs[docID >>> 6] |= 1L << docID;
+                    }
+                    pivotDocuments.put(v.pivot, docs);
+                }
+                pivots[catID] = docs;
+            }
+        }
+
+        double normalization = 0;
+        if (matrix.isFirstMajor()) {
+            double[] weights = new double[numDocuments];
+            for (short catID = 0; catID < numCategories; catID++) {
+                matrix.getFirstRow(catID, weights);
+                long[] positives = _positives[catID];
+                long[] pivot = pivots[catID];
+                int base = catID * 4;
+                for (int docID = 0; docID < numDocuments; docID++) {
+                    int i = base;
+                    if ((positives[docID >>> 6] & (1L << docID)) != 0)
+                        i += 2;
+                    if (pivot != null
+                            && (pivot[docID >>> 6] & (1L << docID)) != 0)
+                        i += 1;
+                    weights[docID] *= factors[i];
+                    normalization += weights[docID];
+                }
+                matrix.setFirstRow(catID, weights);
+            }
+        } else {
+            double[] weights = new double[numCategories];
+            for (int docID = 0; docID < numDocuments; docID++) {
+                matrix.getSecondRow(docID, weights);
+                int word = docID >>> 6;
+                long bit = 1L << docID;
+                for (int catID = 0; catID < numCategories; catID++) {
+                    int i = catID * 4;
+                    if ((_positives[catID][word] & bit) != 0)
+                        i += 2;
+                    long[] pivot = pivots[catID];
+                    if (pivot != null && (pivot[word] & bit) != 0)
+                        i += 1;
+                    weights[catID] *= factors[i];
+                    normalization += weights[catID];
+                }
+                matrix.setSecondRow(docID, weights);
+            }
+        }
+
+        if (customizer._perCategoryNormalization) {
+            for (int catID = 0; catID < numCategories; catID++)
+                matrix.divideFirstRow(catID, matrix.sumFirstRow(catID)
+                        * numCategories);
+        } else
+            matrix.divide(normalization);
+    }
+
+    /**
+     * @return for each category, the bit set of its documents
+     */
+    private static long[][] categoriesDocuments(IIndex index,
+                                                int numCategories, int words) {
+        long[][] positives = new long[numCategories][words];
+        for (short catID = 0; catID < numCategories; catID++) {
+            IIntIterator it = index.getClassificationDB().getCategoryDocuments(
+                    catID);
+            while (it.hasNext()) {
+                int docID = it.next();
+                positives[catID][docID >>> 6] |= 1L << docID;
+            }
+        }
+        return positives;
+    }
+
     @Override
     public IClassifier mergeClassifiers(Vector<IClassifier> classifiers) {
         int maxIterations = -1;
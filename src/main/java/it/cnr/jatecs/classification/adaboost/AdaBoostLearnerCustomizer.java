@@ -104,6 +104,17 @@ public class AdaBoostLearnerCustomizer implements ILearnerRuntimeCustomizer {
      */
     protected IOperationStatusListener _status;
 
+    /**
+     * The storage used for the distribution matrix.
+     */
+    protected DistributionMatrixType _matrixType;
+
+    /**
+     * Indicate if the distribution matrix stores contiguously the weights of
+     * a category (true) or of a document (false).
+     */
+    protected boolean _categoryMajorMatrix;
+
 
     public AdaBoostLearnerCustomizer() {
         super();
@@ -119,6 +130,8 @@ public class AdaBoostLearnerCustomizer implements ILearnerRuntimeCustomizer {
         _TNcorrection = 1;
         _FNcorrection = 1;
         _status = null;
+        _matrixType = DistributionMatrixType.MEMORY_MAPPED;
+        _categoryMajorMatrix = false;
     }
 
     public IWeakLearner getWeakLearner() {
@@ -181,6 +194,8 @@ public class AdaBoostLearnerCustomizer implements ILearnerRuntimeCustomizer {
         cust._TNcorrection = _TNcorrection;
         cust._TPcorrection = _TPcorrection;
         cust._wl = _wl;
+        cust._matrixType = _matrixType;
+        cust._categoryMajorMatrix = _categoryMajorMatrix;
         return cust;
     }
 
@@ -188,6 +203,37 @@ public class AdaBoostLearnerCustomizer implements ILearnerRuntimeCustomizer {
         _keepMatrix = keepMatrix;
     }
 
+    public DistributionMatrixType getDistributionMatrixType() {
+        return _matrixType;
+    }
+
+    /**
+     * Set the storage used for the distribution matrix. The single precision
+     * types avoid a file access for each weight and are updated by rows, but
+     * give slightly different results.
+     *
+     * @param type The storage used for the distribution matrix.
+     */
+    public void setDistributionMatrixType(DistributionMatrixType type) {
+        if (type != null)
+            _matrixType = type;
+    }
+
+    public boolean isCategoryMajorDistributionMatrix() {
+        return _categoryMajorMatrix;
+    }
+
+    /**
+     * Set the layout of the single precision distribution matrices. The
+     * default document major layout is the fastest for the weak learners.
+     *
+     * @param categoryMajor true to store contiguously the weights of a
+     *                      category, false to store contiguously the weights of a document
+     */
+    public void setCategoryMajorDistributionMatrix(boolean categoryMajor) {
+        _categoryMajorMatrix = categoryMajor;
+    }
+
     public IOperationStatusListener getStatusListener() {
         return _status;
     }
@@ -0,0 +1,357 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.adaboost;
+
+import gnu.trove.TDoubleArrayList;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.classification.ClassificationResult;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.io.FileSystemStorageManager;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.utils.Os;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Boosting model with the decision stumps already grouped by pivot: for every
+ * feature it stores the (category, c0, c1) triples of the stumps using that
+ * feature, summed over the iterations, in primitive buffers. A document is
+ * classified for all the categories with a single pass over its features.
+ * <p>
+ * The model is persisted as a single resource (a header followed by the
+ * arrays, 8-bytes aligned) that is memory mapped when read from a
+ * {@link FileSystemStorageManager}.
+ */
+public class CompiledBoostingModel {
+
+    public static final int MAGIC = 0x4A424D43;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The number of categories.
+     */
+    protected int _categoriesCount;
+    /**
+     * The number of iterations grouped in the model.
+     */
+    protected int _iterations;
+    /**
+     * The number of features, i.e. the maximum pivot plus one.
+     */
+    protected int _featuresCount;
+    /**
+     * The score of every category for a document with none of the pivots.
+     */
+    protected DoubleBuffer _bias;
+    /**
+     * The start of the entries of every feature, plus the end of the last
+     * one.
+     */
+    protected IntBuffer _featuresOffsets;
+    protected ShortBuffer _categories;
+    protected DoubleBuffer _c0;
+    protected DoubleBuffer _c1;
+
+    protected CompiledBoostingModel(int categoriesCount, int iterations,
+                                    DoubleBuffer bias, IntBuffer featuresOffsets,
+                                    ShortBuffer categories, DoubleBuffer c0, DoubleBuffer c1) {
+        _categoriesCount = categoriesCount;
+        _iterations = iterations;
+        _featuresCount = featuresOffsets.capacity() - 1;
+        _bias = bias;
+        _featuresOffsets = featuresOffsets;
+        _categories = categories;
+        _c0 = c0;
+        _c1 = c1;
+    }
+
+    /**
+     * Group the first iterations of the given weak hypotheses, with the same
+     * semantic of the hypotheses grouping of {@link AdaBoostClassifier}.
+     *
+     * @param hypothesis      the weak hypotheses
+     * @param categoriesCount the number of categories
+     * @param iterations      the number of iterations to group
+     * @return the compiled model
+     */
+    public static CompiledBoostingModel compile(IWeakHypothesis[] hypothesis,
+                                                int categoriesCount, int iterations) {
+        if (hypothesis == null)
+            throw new NullPointerException("The specified hypothesis is 'null'");
+        iterations = Math.min(iterations, hypothesis.length);
+
+        TIntArrayList pivots = new TIntArrayList();
+        TShortArrayList categories = new TShortArrayList();
+        TDoubleArrayList c0 = new TDoubleArrayList();
+        TDoubleArrayList c1 = new TDoubleArrayList();
+        int featuresCount = 0;
+        for (short catID = 0; catID < categoriesCount; catID++) {
+            TIntIntHashMap slots = new TIntIntHashMap();
+            for (int i = 0; i < iterations; i++) {
+                HypothesisData hd = hypothesis[i].value(catID);
+                if (hd.pivot < 0)
+                    continue;
+                if (slots.containsKey(hd.pivot)) {
+                    int slot = slots.get(hd.pivot);
+                    c0.setQuick(slot, c0.getQuick(slot) + hd.c0);
+                    c1.setQuick(slot, c1.getQuick(slot) + hd.c1);
+                } else {
+                    slots.put(hd.pivot, pivots.size());
+                    pivots.add(hd.pivot);
+                    categories.add(catID);
+                    c0.add(hd.c0);
+                    c1.add(hd.c1);
+                    featuresCount = Math.max(featuresCount, hd.pivot + 1);
+                }
+            }
+        }
+
+        int entries = pivots.size();
+        int[] offsets = new int[featuresCount + 1];
+        for (int i = 0; i < entries; i++)
+            offsets[pivots.getQuick(i) + 1]++;
+        for (int f = 0; f < featuresCount; f++)
+            offsets[f + 1] += offsets[f];
+        int[] next = new int[featuresCount];
+        System.arraycopy(offsets, 0, next, 0, featuresCount);
+
+        double[] bias = new double[categoriesCount];
+        short[] sortedCategories = new short[entries];
+        double[] sortedC0 = new double[entries];
+        double[] sortedC1 = new double[entries];
+        for (int i = 0; i < entries; i++) {
+            int pos = next[pivots.getQuick(i)]++;
+            short catID = categories.getQuick(i);
+            sortedCategories[pos] = catID;
+            sortedC0[pos] = c0.getQuick(i);
+            sortedC1[pos] = c1.getQuick(i);
+            bias[catID] += c0.getQuick(i);
+        }
+
+        return new CompiledBoostingModel(categoriesCount, iterations,
+                DoubleBuffer.wrap(bias), IntBuffer.wrap(offsets),
+                ShortBuffer.wrap(sortedCategories), DoubleBuffer.wrap(sortedC0),
+                DoubleBuffer.wrap(sortedC1));
+    }
+
+    public int getCategoriesCount() {
+        return _categoriesCount;
+    }
+
+    public int getIterations() {
+        return _iterations;
+    }
+
+    public int getFeaturesCount() {
+        return _featuresCount;
+    }
+
+    /**
+     * @return the number of (feature, category) entries of the model
+     */
+    public int getEntriesCount() {
+        return _categories.capacity();
+    }
+
+    /**
+     * Compute the scores of the document for all the categories.
+     *
+     * @param testIndex the index containing the document
+     * @param docID     the document ID
+     * @param scores    the array receiving the scores, indexed by category
+     */
+    public void score(IIndex testIndex, int docID, double[] scores) {
+        for (int catID = 0; catID < _categoriesCount; catID++)
+            scores[catID] = _bias.get(catID);
+        IIntIterator feats = testIndex.getContentDB().getDocumentFeatures(docID);
+        while (feats.hasNext()) {
+            int feat = feats.next();
+            if (feat < 0 || feat >= _featuresCount)
+                continue;
+            int end = _featuresOffsets.get(feat + 1);
+            for (int i = _featuresOffsets.get(feat); i < end; i++)
+                scores[_categories.get(i)] += _c1.get(i) - _c0.get(i);
+        }
+    }
+
+    public ClassificationResult classify(IIndex testIndex, int docID) {
+        double[] scores = new double[_categoriesCount];
+        score(testIndex, docID, scores);
+        ClassificationResult res = new ClassificationResult(_categoriesCount);
+        res.documentID = docID;
+        for (short catID = 0; catID < _categoriesCount; catID++) {
+            res.categoryID.add(catID);
+            res.score.add(scores[catID]);
+        }
+        return res;
+    }
+
+    /**
+     * Write the model in the given resource of the storage manager.
+     *
+     * @param storageManager the storage manager
+     * @param resourceName   the resource name
+     */
+    public void write(IStorageManager storageManager, String resourceName) {
+        if (storageManager == null)
+            throw new NullPointerException("The storage manager is 'null'");
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open");
+
+        int entries = getEntriesCount();
+        try {
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+                    storageManager.getOutputStreamForResource(resourceName)));
+            try {
+                os.writeInt(MAGIC);
+                os.writeInt(VERSION);
+                os.writeInt(_categoriesCount);
+                os.writeInt(_iterations);
+                os.writeInt(_featuresCount);
+                os.writeInt(entries);
+                for (int i = 0; i < _categoriesCount; i++)
+                    os.writeDouble(_bias.get(i));
+                for (int i = 0; i < entries; i++)
+                    os.writeDouble(_c0.get(i));
+                for (int i = 0; i < entries; i++)
+                    os.writeDouble(_c1.get(i));
+                for (int i = 0; i <= _featuresCount; i++)
+                    os.writeInt(_featuresOffsets.get(i));
+                for (int i = 0; i < entries; i++)
+                    os.writeShort(_categories.get(i));
+            } finally {
+                os.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Writing compiled boosting model", e);
+        }
+    }
+
+    /**
+     * Read a model from the given resource of the storage manager. If the
+     * storage manager is a {@link FileSystemStorageManager} the model is
+     * memory mapped, otherwise it is copied in a heap buffer.
+     *
+     * @param storageManager the storage manager
+     * @param resourceName   the resource name
+     * @return the read model
+     */
+    public static CompiledBoostingModel read(IStorageManager storageManager,
+                                             String resourceName) {
+        if (storageManager == null)
+            throw new NullPointerException("The storage manager is 'null'");
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open");
+        if (!storageManager.isResourceAvailable(resourceName))
+            throw new IllegalArgumentException("The resource <" + resourceName
+                    + "> is not available on this storage manager");
+
+        try {
+            ByteBuffer data;
+            if (storageManager instanceof FileSystemStorageManager) {
+                File file = new File(
+                        ((FileSystemStorageManager) storageManager).getBaseDir()
+                                + Os.pathSeparator() + resourceName);
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    FileChannel channel = raf.getChannel();
+                    data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            channel.size());
+                } finally {
+                    // The mapping remains valid after the channel is closed.
+                    raf.close();
+                }
+            } else {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                InputStream is = storageManager
+                        .getInputStreamForResource(resourceName);
+                try {
+                    Os.copy(is, bos);
+                } finally {
+                    is.close();
+                }
+                data = ByteBuffer.wrap(bos.toByteArray());
+            }
+            return fromBuffer(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Reading compiled boosting model", e);
+        }
+    }
+
+    protected static CompiledBoostingModel fromBuffer(ByteBuffer data) {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+            throw new IllegalStateException(
+                    "The resource is not a compiled boosting model");
+        if (data.getInt(4) != VERSION)
+            throw new IllegalStateException(
+                    "Unsupported compiled boosting model version "
+                            + data.getInt(4));
+        int categoriesCount = data.getInt(8);
+        int iterations = data.getInt(12);
+        int featuresCount = data.getInt(16);
+        int entries = data.getInt(20);
+
+        int pos = HEADER_SIZE;
+        DoubleBuffer bias = slice(data, pos, categoriesCount * 8)
+                .asDoubleBuffer();
+        pos += categoriesCount * 8;
+        DoubleBuffer c0 = slice(data, pos, entries * 8).asDoubleBuffer();
+        pos += entries * 8;
+        DoubleBuffer c1 = slice(data, pos, entries * 8).asDoubleBuffer();
+        pos += entries * 8;
+        IntBuffer offsets = slice(data, pos, (featuresCount + 1) * 4)
+                .asIntBuffer();
+        pos += (featuresCount + 1) * 4;
+        ShortBuffer categories = slice(data, pos, entries * 2).asShortBuffer();
+        return new CompiledBoostingModel(categoriesCount, iterations, bias,
+                offsets, categories, c0, c1);
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int pos, int length) {
+        if (pos + length > data.capacity())
+            throw new IllegalStateException(
+                    "Truncated compiled boosting model");
+        ByteBuffer block = data.duplicate();
+        block.position(pos);
+        block.limit(pos + length);
+        return block.slice();
+    }
+}
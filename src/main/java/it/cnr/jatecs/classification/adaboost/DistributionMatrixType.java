@@ -0,0 +1,54 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.adaboost;
+
+/**
+ * The storage used for the distribution matrix during boosting.
+ */
+public enum DistributionMatrixType {
+
+    /**
+     * Double precision weights in a memory mapped file in the temporary
+     * directory, accessed one by one.
+     */
+    MEMORY_MAPPED,
+
+    /**
+     * Single precision weights in a heap array.
+     */
+    HEAP,
+
+    /**
+     * Single precision weights in a direct buffer, out of the heap.
+     */
+    DIRECT,
+
+    /**
+     * Single precision weights in a memory mapped file in the temporary
+     * directory.
+     */
+    MEMORY_MAPPED_FLOAT;
+
+}
@@ -38,4 +38,12 @@ public interface IWeakLearner {
      */
     public IWeakHypothesis getNewWeakHypothesis(IWeighting3DManager matrix, IIndex index);
 
+    /**
+     * Release the threads or other resources kept between the calls to
+     * {@link #getNewWeakHypothesis(IWeighting3DManager, IIndex)}. The learner
+     * can still be used afterwards. Called at the end of each AdaBoost
+     * learning.
+     */
+    public void shutdown();
+
 }
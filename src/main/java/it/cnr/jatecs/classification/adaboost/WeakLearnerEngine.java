@@ -0,0 +1,410 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.adaboost;
+
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+import it.cnr.jatecs.weighting.dense.Weighting2DAdapter;
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
+import it.cnr.jatecs.weighting.interfaces.IWeighting3DManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search of the best decision stumps on a distribution matrix, shared by the
+ * AdaBoost.MH weak learner (a single pivot for all the categories) and the
+ * MP-Boost weak learners (a pivot for each category).
+ * <p>
+ * The features are split in chunks which are taken in order by the workers
+ * as soon as they are free. Each worker keeps its own accumulators and best
+ * stumps, which are merged at the end by the calling thread. The threads of
+ * the pool are created once and reused by all the iterations until
+ * {@link #shutdown()} is called. Among the features with the same score the
+ * first one returned by the feature DB is chosen, so the result does not
+ * depend on the number of threads and is the same of the sequential weak
+ * learners.
+ */
+public class WeakLearnerEngine {
+
+    protected int _threadCount;
+    protected boolean _perCategory;
+    protected ExecutorService _executor;
+    protected Worker[] _workers;
+
+    /**
+     * @param threadCount the number of threads evaluating the features, with 1
+     *                    the features are evaluated by the calling thread
+     * @param perCategory true to choose a pivot for each category (MP-Boost),
+     *                    false to choose a single pivot (AdaBoost.MH)
+     */
+    public WeakLearnerEngine(int threadCount, boolean perCategory) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException(
+                    "The specified number of threads must be greater equals to 1");
+        _threadCount = threadCount;
+        _perCategory = perCategory;
+        _executor = null;
+        _workers = new Worker[threadCount];
+    }
+
+    public int getThreadCount() {
+        return _threadCount;
+    }
+
+    public boolean isPerCategory() {
+        return _perCategory;
+    }
+
+    public synchronized IWeakHypothesis getNewWeakHypothesis(
+            IWeighting3DManager matrix, IIndex index) {
+        int catsSize = matrix.getFirstDimensionSize();
+        int docsSize = matrix.getSecondDimensionSize();
+        IWeighting2DManager dist = Weighting2DAdapter.adapt(matrix);
+
+        double epsilon = 1.0 / (double) (catsSize * docsSize);
+
+        double[] weight_b1 = new double[catsSize];
+        double[] weight_bminus_1 = new double[catsSize];
+
+        // Compute positive weight for categories.
+        for (short catID = 0; catID < catsSize; catID++) {
+            IIntIterator it = index.getClassificationDB().getCategoryDocuments(
+                    catID);
+            while (it.hasNext()) {
+                int docID = it.next();
+                double distValue = dist.getWeight(catID, docID);
+                assert (distValue >= 0);
+                weight_b1[catID] += distValue;
+            }
+        }
+
+        // Compute global weight for categories.
+        for (int catID = 0; catID < catsSize; catID++) {
+            double global = 0;
+            for (int docID = 0; docID < docsSize; docID++) {
+                double distValue = dist.getWeight(catID, docID);
+                assert (distValue >= 0);
+                global += distValue;
+            }
+
+            weight_bminus_1[catID] = global - weight_b1[catID];
+            assert (weight_bminus_1[catID] >= 0);
+        }
+
+        TIntArrayList featuresList = new TIntArrayList();
+        IIntIterator featsID = index.getFeatureDB().getFeatures();
+        while (featsID.hasNext())
+            featuresList.add(featsID.next());
+        int[] features = featuresList.toNativeArray();
+
+        Job job = new Job(index, dist, catsSize, weight_b1, weight_bminus_1,
+                epsilon, features, Math.max(16,
+                Math.min(1024, features.length / (_threadCount * 8) + 1)));
+
+        for (int i = 0; i < _threadCount; ++i) {
+            if (_workers[i] == null || _workers[i]._catsSize != catsSize)
+                _workers[i] = new Worker(catsSize, _perCategory);
+            _workers[i].reset();
+        }
+
+        if (_threadCount == 1)
+            _workers[0].run(job);
+        else {
+            if (_executor == null)
+                _executor = Executors.newFixedThreadPool(_threadCount,
+                        new DaemonThreadFactory());
+            Future<?>[] futures = new Future<?>[_threadCount];
+            for (int i = 0; i < _threadCount; ++i)
+                futures[i] = _executor.submit(new WorkerTask(_workers[i], job));
+            try {
+                for (int i = 0; i < _threadCount; ++i)
+                    futures[i].get();
+            } catch (Exception e) {
+                throw new RuntimeException("Evaluating the features", e);
+            }
+        }
+
+        // Merge the best stumps of the workers.
+        Worker best = _workers[0];
+        int slots = best._bestScores.length;
+        for (int i = 1; i < _threadCount; ++i) {
+            Worker other = _workers[i];
+            for (int s = 0; s < slots; ++s) {
+                if (other.isBetter(s, best)) {
+                    best._bestScores[s] = other._bestScores[s];
+                    best._bestPositions[s] = other._bestPositions[s];
+                    if (_perCategory) {
+                        best._bestC0[s] = other._bestC0[s];
+                        best._bestC1[s] = other._bestC1[s];
+                    } else {
+                        System.arraycopy(other._bestC0, 0, best._bestC0, 0,
+                                catsSize);
+                        System.arraycopy(other._bestC1, 0, best._bestC1, 0,
+                                catsSize);
+                    }
+                }
+            }
+        }
+
+        InMemoryWeakHypothesis wh = new InMemoryWeakHypothesis(catsSize);
+        for (short i = 0; i < catsSize; i++) {
+            int position = best._bestPositions[_perCategory ? i : 0];
+            HypothesisData hd = new HypothesisData();
+            hd.c0 = best._bestC0[i];
+            hd.c1 = best._bestC1[i];
+            hd.pivot = position >= 0 ? features[position] : -1;
+            wh.setValue(i, hd);
+        }
+        return wh;
+    }
+
+    /**
+     * Stop the threads of the pool. They are created again if needed.
+     */
+    public synchronized void shutdown() {
+        if (_executor != null) {
+            _executor.shutdown();
+            _executor = null;
+        }
+    }
+
+    /**
+     * The data of a single iteration, shared by the workers.
+     */
+    protected static class Job {
+
+        final IIndex index;
+        final IWeighting2DManager dist;
+        final int catsSize;
+        final double[] weight_b1;
+        final double[] weight_bminus_1;
+        final double epsilon;
+        final int[] features;
+        final int chunkSize;
+        final AtomicInteger nextChunk;
+
+        Job(IIndex index, IWeighting2DManager dist, int catsSize,
+            double[] weight_b1, double[] weight_bminus_1, double epsilon,
+            int[] features, int chunkSize) {
+            this.index = index;
+            this.dist = dist;
+            this.catsSize = catsSize;
+            this.weight_b1 = weight_b1;
+            this.weight_bminus_1 = weight_bminus_1;
+            this.epsilon = epsilon;
+            this.features = features;
+            this.chunkSize = chunkSize;
+            this.nextChunk = new AtomicInteger(0);
+        }
+    }
+
+    /**
+     * The accumulators and the best stumps found by a thread. In the single
+     * pivot mode the scores and the positions have only one slot.
+     */
+    protected static class Worker {
+
+        final int _catsSize;
+        final boolean _perCategory;
+        final double[] _docWeights;
+        final double[] _weight_b1_x0;
+        final double[] _weight_b1_x1;
+        final double[] _weight_bminus_1_x0;
+        final double[] _weight_bminus_1_x1;
+        final double[] _bestScores;
+        final int[] _bestPositions;
+        final double[] _bestC0;
+        final double[] _bestC1;
+
+        Worker(int catsSize, boolean perCategory) {
+            _catsSize = catsSize;
+            _perCategory = perCategory;
+            _docWeights = new double[catsSize];
+            _weight_b1_x0 = new double[catsSize];
+            _weight_b1_x1 = new double[catsSize];
+            _weight_bminus_1_x0 = new double[catsSize];
+            _weight_bminus_1_x1 = new double[catsSize];
+            int slots = perCategory ? catsSize : 1;
+            _bestScores = new double[slots];
+            _bestPositions = new int[slots];
+            _bestC0 = new double[catsSize];
+            _bestC1 = new double[catsSize];
+        }
+
+        void reset() {
+            for (int s = 0; s < _bestScores.length; s++) {
+                _bestScores[s] = Double.MAX_VALUE;
+                _bestPositions[s] = -1;
+            }
+            for (int i = 0; i < _catsSize; i++) {
+                _bestC0[i] = 0;
+                _bestC1[i] = 0;
+            }
+        }
+
+        /**
+         * @return true if the stump of this worker in the given slot is better
+         * than the one of the other worker, or equal and found on an earlier
+         * feature
+         */
+        boolean isBetter(int slot, Worker other) {
+            if (_bestPositions[slot] < 0)
+                return false;
+            if (other._bestPositions[slot] < 0)
+                return true;
+            if (_bestScores[slot] != other._bestScores[slot])
+                return _bestScores[slot] < other._bestScores[slot];
+            return _bestPositions[slot] < other._bestPositions[slot];
+        }
+
+        void run(Job job) {
+            int chunks = (job.features.length + job.chunkSize - 1)
+                    / job.chunkSize;
+            int chunk;
+            while ((chunk = job.nextChunk.getAndIncrement()) < chunks) {
+                int end = Math.min(job.features.length, (chunk + 1)
+                        * job.chunkSize);
+                for (int position = chunk * job.chunkSize; position < end; position++)
+                    evaluate(job, position);
+            }
+        }
+
+        void evaluate(Job job, int position) {
+            int catsSize = _catsSize;
+            double[] weight_b1_x0 = _weight_b1_x0;
+            double[] weight_b1_x1 = _weight_b1_x1;
+            double[] weight_bminus_1_x0 = _weight_bminus_1_x0;
+            double[] weight_bminus_1_x1 = _weight_bminus_1_x1;
+            double[] docWeights = _docWeights;
+            for (int pos = 0; pos < catsSize; pos++) {
+                weight_b1_x1[pos] = 0;
+                weight_bminus_1_x1[pos] = 0;
+            }
+
+            IIntIterator itFeatDocs = job.index.getContentDB()
+                    .getFeatureDocuments(job.features[position]);
+            while (itFeatDocs.hasNext()) {
+                int docID = itFeatDocs.next();
+                job.dist.getSecondRow(docID, docWeights);
+                IShortIterator itDocCats = job.index.getClassificationDB()
+                        .getDocumentCategories(docID);
+                short nextCatID = 0;
+                while (itDocCats.hasNext()) {
+                    short currentCatID = itDocCats.next();
+                    // Feature compare on document and category not.
+                    for (short i = nextCatID; i < currentCatID; i++)
+                        weight_bminus_1_x1[i] += docWeights[i];
+                    // Feature and category compare together.
+                    weight_b1_x1[currentCatID] += docWeights[currentCatID];
+                    nextCatID = (short) (currentCatID + 1);
+                }
+                for (short i = nextCatID; i < catsSize; ++i)
+                    weight_bminus_1_x1[i] += docWeights[i];
+            }
+
+            // Compute the remaining values, adjusting round errors.
+            for (int catID = 0; catID < catsSize; catID++) {
+                double v = job.weight_b1[catID] - weight_b1_x1[catID];
+                weight_b1_x0[catID] = v < 0 ? 0 : v;
+                v = job.weight_bminus_1[catID] - weight_bminus_1_x1[catID];
+                weight_bminus_1_x0[catID] = v < 0 ? 0 : v;
+            }
+
+            if (_perCategory) {
+                for (int catID = 0; catID < catsSize; catID++) {
+                    double Z_s = Math.sqrt(weight_b1_x0[catID]
+                            * weight_bminus_1_x0[catID])
+                            + Math.sqrt(weight_b1_x1[catID]
+                            * weight_bminus_1_x1[catID]);
+                    Z_s = 2 * Z_s;
+                    if (Z_s < _bestScores[catID]) {
+                        _bestScores[catID] = Z_s;
+                        _bestPositions[catID] = position;
+                        setBest(job, catID);
+                    }
+                }
+            } else {
+                double Z_s = 0;
+                for (int catID = 0; catID < catsSize; catID++) {
+                    double first = Math.sqrt(weight_b1_x0[catID]
+                            * weight_bminus_1_x0[catID]);
+                    double second = Math.sqrt(weight_b1_x1[catID]
+                            * weight_bminus_1_x1[catID]);
+                    Z_s += (first + second);
+                }
+                Z_s = 2 * Z_s;
+                if (Z_s < _bestScores[0]) {
+                    _bestScores[0] = Z_s;
+                    _bestPositions[0] = position;
+                    for (int catID = 0; catID < catsSize; catID++)
+                        setBest(job, catID);
+                }
+            }
+        }
+
+        private void setBest(Job job, int catID) {
+            _bestC0[catID] = Math.log((_weight_b1_x0[catID] + job.epsilon)
+                    / (_weight_bminus_1_x0[catID] + job.epsilon)) / 2.0;
+            _bestC1[catID] = Math.log((_weight_b1_x1[catID] + job.epsilon)
+                    / (_weight_bminus_1_x1[catID] + job.epsilon)) / 2.0;
+        }
+    }
+
+    protected static class WorkerTask implements Runnable {
+
+        private final Worker _worker;
+        private final Job _job;
+
+        WorkerTask(Worker worker, Job job) {
+            _worker = worker;
+            _job = job;
+        }
+
+        public void run() {
+            _worker.run(_job);
+        }
+    }
+
+    /**
+     * Daemon threads, so that a pool never shut down does not keep the
+     * application alive.
+     */
+    protected static class DaemonThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory _factory = Executors.defaultThreadFactory();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = _factory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.interfaces;
+
+/**
+ * A classifier that can classify documents from several threads at the same
+ * time. Each worker thread asks for its own classifier with
+ * {@link #getWorkerClassifier()}: a stateless classifier returns itself,
+ * while a classifier keeping per-call state returns a private copy sharing
+ * the model, e.g. built on a clone of its runtime customizer.
+ */
+public interface IConcurrentClassifier extends IClassifier {
+
+    /**
+     * Get a classifier to be used by a single worker thread. The returned
+     * classifier must produce the same results of this one.
+     *
+     * @return This classifier if it is stateless, otherwise a private copy of
+     * it.
+     */
+    public IClassifier getWorkerClassifier();
+}
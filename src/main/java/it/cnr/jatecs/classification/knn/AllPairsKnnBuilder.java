@@ -0,0 +1,406 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.indexing.similarity.DocumentVectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the k nearest neighbours of every document of an index with the
+ * cosine similarity, without building the full similarity matrix. The
+ * documents are split in blocks which are processed in parallel; the row of
+ * similarities of each document of a block is obtained by multiplying it by
+ * the transposed index through a feature to (document, weight) table, so
+ * only the documents sharing some feature are touched. Only the best
+ * neighbours of each document are kept, so the memory used is proportional
+ * to the number of documents times the number of neighbours, and the table
+ * can be spilled to a file block by block instead of being kept in memory.
+ * <p>
+ * The similarities are exactly the ones of {@link CosineSimilarityFunction},
+ * stored as floats. When fewer than k documents have a positive similarity,
+ * the row is completed with the other documents, as an exhaustive search
+ * would do.
+ */
+public class AllPairsKnnBuilder {
+
+    protected int _threads;
+    protected int _blockSize;
+
+    public AllPairsKnnBuilder() {
+        _threads = 1;
+        _blockSize = 256;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * @param threads the number of threads used to compute the neighbours
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    /**
+     * @param blockSize the number of documents processed by a task, and
+     *                  written at once when the table is spilled to a file
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException(
+                    "The block size must be positive");
+        _blockSize = blockSize;
+    }
+
+    /**
+     * Compute the neighbours of all the documents of an index, keeping the
+     * table in memory.
+     *
+     * @param index      the index
+     * @param neighbours the number of neighbours of each document, reduced to
+     *                   the number of documents minus one if greater
+     * @return the table of the neighbours
+     */
+    public KnnNeighboursTable build(IIndex index, int neighbours) {
+        Postings postings = prepare(index, neighbours);
+        int k = postings.neighbours;
+        int documents = postings.vectors.getDocumentsCount();
+        int[] docs = new int[documents * k];
+        float[] scores = new float[documents * k];
+        run(postings, new RowsSink(docs, scores, null));
+        return new KnnNeighboursTable(documents, k, IntBuffer.wrap(docs),
+                FloatBuffer.wrap(scores));
+    }
+
+    /**
+     * Compute the neighbours of all the documents of an index, writing them
+     * to a file as they are computed. The file has the format of
+     * {@link KnnNeighboursTable#write(File)}.
+     *
+     * @param index      the index
+     * @param neighbours the number of neighbours of each document, reduced to
+     *                   the number of documents minus one if greater
+     * @param file       the destination file
+     * @return the table of the neighbours, memory mapped from the file
+     * @throws IOException if an I/O error occurs
+     */
+    public KnnNeighboursTable build(IIndex index, int neighbours, File file)
+            throws IOException {
+        if (file == null)
+            throw new NullPointerException("The specified file is 'null'");
+        Postings postings = prepare(index, neighbours);
+        int k = postings.neighbours;
+        int documents = postings.vectors.getDocumentsCount();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            // Fix the size first, so the blocks can be written concurrently.
+            raf.setLength(KnnNeighboursTable.getFileSize(documents, k));
+            KnnNeighboursTable.writeHeader(channel, documents, k);
+            try {
+                run(postings, new RowsSink(null, null, channel));
+            } catch (RuntimeException e) {
+                for (Throwable t = e; t != null; t = t.getCause()) {
+                    if (t instanceof IOException)
+                        throw (IOException) t;
+                }
+                throw e;
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        return KnnNeighboursTable.read(file, true);
+    }
+
+    protected Postings prepare(IIndex index, int neighbours) {
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+        if (neighbours <= 0)
+            throw new IllegalArgumentException(
+                    "The number of neighbours must be positive");
+        DocumentVectors vectors = DocumentVectors.get(index);
+        int documents = vectors.getDocumentsCount();
+        int[] features = vectors.getFeatures();
+        double[] weights = vectors.getWeights();
+
+        int featuresCount = index.getFeatureDB().getFeaturesCount();
+        for (int i = 0; i < features.length; ++i)
+            featuresCount = Math.max(featuresCount, features[i] + 1);
+        Postings postings = new Postings();
+        postings.vectors = vectors;
+        postings.neighbours = Math.min(neighbours, Math.max(0, documents - 1));
+        postings.offsets = new int[featuresCount + 1];
+        for (int i = 0; i < features.length; ++i)
+            ++postings.offsets[features[i] + 1];
+        for (int f = 0; f < featuresCount; ++f)
+            postings.offsets[f + 1] += postings.offsets[f];
+        postings.documents = new int[features.length];
+        postings.weights = new double[features.length];
+        int[] next = postings.offsets.clone();
+        for (int doc = 0; doc < documents; ++doc) {
+            int end = vectors.getEnd(doc);
+            for (int i = vectors.getStart(doc); i < end; ++i) {
+                int pos = next[features[i]]++;
+                postings.documents[pos] = doc;
+                postings.weights[pos] = weights[i];
+            }
+        }
+        return postings;
+    }
+
+    protected void run(final Postings postings, RowsSink sink) {
+        int documents = postings.vectors.getDocumentsCount();
+        if (documents == 0 || postings.neighbours == 0)
+            return;
+        int blocks = (documents + _blockSize - 1) / _blockSize;
+        ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(postings);
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(Math.min(_threads, blocks));
+        try {
+            pool.invoke(new BlocksTask(workers, sink, _blockSize, documents, 0,
+                    blocks));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The table of the features of an index, with the vectors it is built
+     * from.
+     */
+    protected static class Postings {
+        DocumentVectors vectors;
+        int neighbours;
+        int[] offsets;
+        int[] documents;
+        double[] weights;
+    }
+
+    /**
+     * The destination of the computed rows, either arrays or a file.
+     */
+    protected static class RowsSink {
+        private final int[] _docs;
+        private final float[] _scores;
+        private final FileChannel _channel;
+
+        RowsSink(int[] docs, float[] scores, FileChannel channel) {
+            _docs = docs;
+            _scores = scores;
+            _channel = channel;
+        }
+
+        void write(int from, int rows, int k, int documents, int[] docs,
+                   float[] scores) {
+            int size = rows * k;
+            if (_channel == null) {
+                System.arraycopy(docs, 0, _docs, from * k, size);
+                System.arraycopy(scores, 0, _scores, from * k, size);
+                return;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(size * 4);
+                buffer.asIntBuffer().put(docs, 0, size);
+                KnnNeighboursTable.writeFully(_channel, buffer,
+                        KnnNeighboursTable.getNeighboursPosition(documents, k,
+                                from));
+                buffer.clear();
+                buffer.asFloatBuffer().put(scores, 0, size);
+                KnnNeighboursTable.writeFully(_channel, buffer,
+                        KnnNeighboursTable.getScoresPosition(documents, k, from));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The buffers used by a thread.
+     */
+    protected static class Worker {
+        private final Postings _postings;
+        private final double[] _accumulators;
+        private final int[] _stamps;
+        private int _stamp;
+        private final int[] _touched;
+        private final KnnTopKHeap _heap;
+        private final int[] _heapDocs;
+        private final double[] _heapScores;
+        private int[] _docs;
+        private float[] _scores;
+
+        Worker(Postings postings) {
+            _postings = postings;
+            int documents = postings.vectors.getDocumentsCount();
+            _accumulators = new double[documents];
+            _stamps = new int[documents];
+            _touched = new int[documents];
+            _heap = new KnnTopKHeap(postings.neighbours);
+            _heapDocs = new int[postings.neighbours];
+            _heapScores = new double[postings.neighbours];
+            _docs = new int[0];
+            _scores = new float[0];
+        }
+
+        void computeBlock(RowsSink sink, int from, int to) {
+            int k = _postings.neighbours;
+            int size = (to - from) * k;
+            if (_docs.length < size) {
+                _docs = new int[size];
+                _scores = new float[size];
+            }
+            for (int doc = from; doc < to; ++doc)
+                computeRow(doc, (doc - from) * k);
+            sink.write(from, to - from, k,
+                    _postings.vectors.getDocumentsCount(), _docs, _scores);
+        }
+
+        private void computeRow(int query, int offset) {
+            DocumentVectors vectors = _postings.vectors;
+            int[] features = vectors.getFeatures();
+            double[] weights = vectors.getWeights();
+            int[] offsets = _postings.offsets;
+            int[] postingsDocs = _postings.documents;
+            double[] postingsWeights = _postings.weights;
+            double[] accumulators = _accumulators;
+            int[] stamps = _stamps;
+            int documents = vectors.getDocumentsCount();
+
+            if (++_stamp == 0) {
+                Arrays.fill(stamps, 0);
+                _stamp = 1;
+            }
+            int stamp = _stamp;
+            int touched = 0;
+
+            // Sum the products in increasing feature order, as the cosine
+            // function does.
+            int end = vectors.getEnd(query);
+            for (int i = vectors.getStart(query); i < end; ++i) {
+                double weight = weights[i];
+                int postingsEnd = offsets[features[i] + 1];
+                for (int p = offsets[features[i]]; p < postingsEnd; ++p) {
+                    int doc = postingsDocs[p];
+                    if (stamps[doc] != stamp) {
+                        stamps[doc] = stamp;
+                        accumulators[doc] = 0;
+                        _touched[touched++] = doc;
+                    }
+                    accumulators[doc] += weight * postingsWeights[p];
+                }
+            }
+
+            KnnTopKHeap heap = _heap;
+            heap.clear(_postings.neighbours);
+            double queryNorm = vectors.getNorm(query);
+            for (int i = 0; i < touched; ++i) {
+                int doc = _touched[i];
+                if (doc == query)
+                    continue;
+                double similarity = accumulators[doc]
+                        / (queryNorm * vectors.getNorm(doc));
+                // Correct round problems.
+                if (similarity > 1)
+                    similarity = 1;
+                heap.offer(doc, similarity);
+            }
+            // The other documents have a null similarity.
+            for (int doc = 0; doc < documents; ++doc) {
+                if (heap.isFull() && heap.minScore() > 0)
+                    break;
+                if (doc != query && stamps[doc] != stamp)
+                    heap.offer(doc, 0);
+            }
+
+            int count = heap.drainAscending(_heapDocs, _heapScores);
+            for (int i = 0; i < count; ++i) {
+                _docs[offset + i] = _heapDocs[count - 1 - i];
+                _scores[offset + i] = (float) _heapScores[count - 1 - i];
+            }
+        }
+    }
+
+    protected static class BlocksTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ThreadLocal<Worker> _workers;
+        private final RowsSink _sink;
+        private final int _blockSize;
+        private final int _documents;
+        private final int _from;
+        private final int _to;
+
+        public BlocksTask(ThreadLocal<Worker> workers, RowsSink sink,
+                          int blockSize, int documents, int from, int to) {
+            _workers = workers;
+            _sink = sink;
+            _blockSize = blockSize;
+            _documents = documents;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new BlocksTask(_workers, _sink, _blockSize,
+                                _documents, _from, middle),
+                        new BlocksTask(_workers, _sink, _blockSize, _documents,
+                                middle, _to));
+                return;
+            }
+            int from = _from * _blockSize;
+            int to = Math.min(_documents, from + _blockSize);
+            _workers.get().computeBlock(_sink, from, to);
+        }
+    }
+}
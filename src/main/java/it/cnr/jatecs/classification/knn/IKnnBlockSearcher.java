@@ -0,0 +1,52 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * A KNN searcher able to search the similar documents of a block of test
+ * documents at once, reading the training data only once for the whole
+ * block.
+ */
+public interface IKnnBlockSearcher extends IKnnSearcher {
+
+    /**
+     * Compute the most "numSimilar" documents for each of the documents in
+     * "docIDs". The results are the same of calling
+     * {@link #search(IIndex, int, IIndex, int)} for each document.
+     *
+     * @param testIndex     The index of the documents to be matched.
+     * @param docIDs        The IDs of the documents to be matched.
+     * @param trainingIndex The index containing documents to be searched.
+     * @param numSimilar    The number of similar documents to retrieve.
+     * @return The similar documents of each document in "docIDs", in the same
+     * order.
+     */
+    public List<Vector<SimilarDocument>> search(IIndex testIndex, int[] docIDs, IIndex trainingIndex, int numSimilar);
+}
@@ -43,6 +43,19 @@ public interface IKnnSearcher {
      */
     public Vector<SimilarDocument> search(IIndex testIndex, int docID, IIndex trainingIndex, int numSimilar);
 
+    /**
+     * Compute the most "numSimilar" documents to document "docID", as
+     * {@link #search(IIndex, int, IIndex, int)} does, storing them in the
+     * given results instead of allocating new objects.
+     *
+     * @param testIndex     The index of the document to be matched.
+     * @param docID         The ID of the document to be matched.
+     * @param trainingIndex The index containing documents to be searched to match "docID".
+     * @param numSimilar    The number of similar documents to retrieve.
+     * @param results       The results to fill, their previous content is discarded.
+     */
+    public void search(IIndex testIndex, int docID, IIndex trainingIndex, int numSimilar, KnnResults results);
+
 
     /**
      * Get the similarity function used by this searcher.
@@ -70,4 +83,13 @@ public interface IKnnSearcher {
      *                        same data, false otherwise.
      */
     public void setUseSameIndexesData(boolean sameIndexesData);
+
+
+    /**
+     * Create a new searcher with the same configuration of this one, which
+     * can be used concurrently with this one by another thread.
+     *
+     * @return A new searcher configured as this one.
+     */
+    public IKnnSearcher cloneSearcher();
 }
@@ -0,0 +1,677 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.indexing.similarity.IBaseSimilarityFunction;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * KNN searcher computing the cosine similarity through the postings of the
+ * training index, so that only the training documents sharing at least a
+ * feature with the searched document are scored. The first search on a
+ * training index builds a feature to (document, normalized weight) table,
+ * which is rebuilt if the training index changes size; call {@link #clear()}
+ * if the training index is modified otherwise.
+ * <p>
+ * The features of the searched document are processed in decreasing order
+ * of their maximum contribution to the score. As soon as the k-th best
+ * partial score is not lower than the maximum score still obtainable by a
+ * document not yet seen (MaxScore), no new candidates are created, and the
+ * candidates which can not reach the k-th best score are discarded. The
+ * scores of the remaining candidates are then summed again in increasing
+ * feature order, so the pruning is safe and the scores are exactly the same
+ * of an exhaustive search. The pruning is disabled if some weight is
+ * negative.
+ * <p>
+ * The returned documents and their order are the same of
+ * {@link TextualKnnSearcher} with a {@link CosineSimilarityFunction}, up to
+ * rounding errors, with ties broken in favour of the lower document IDs. The
+ * instances are not thread-safe, use {@link #cloneSearcher()} to get a
+ * searcher for another thread sharing the same postings table.
+ */
+public class InvertedIndexKnnSearcher implements IKnnBlockSearcher {
+
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The maximum number of test documents searched together by
+     * {@link #search(IIndex, int[], IIndex, int)}, larger blocks are split.
+     */
+    protected static final int MAX_BLOCK_SIZE = 64;
+
+    protected CosineSimilarityFunction _similarity;
+    protected boolean _sameIndexes;
+    protected boolean _pruning;
+
+    protected IIndex _training;
+    protected Table _table;
+
+    protected double[] _accumulators;
+    protected int[] _stamps;
+    protected int _stamp;
+    protected int[] _candidates;
+    protected KnnTopKHeap _heap;
+    protected KnnTopKHeap _threshold;
+
+    protected int[] _queryFeatures;
+    protected double[] _queryWeights;
+    protected long[] _queryKeys;
+    protected double[] _queryBuffer;
+    protected boolean _queryNegative;
+    protected double[] _bounds;
+    protected long[] _boundsOrder;
+    protected double[] _remaining;
+
+    protected double[][] _blockAccumulators;
+    protected int[][] _blockStamps;
+    protected int[][] _blockCandidates;
+    protected int[] _blockCandidatesCount;
+    protected int _blockStamp;
+    protected int[] _blockFeatures;
+    protected int[] _blockQueries;
+    protected double[] _blockWeights;
+    protected long[] _blockKeys;
+
+    public InvertedIndexKnnSearcher() {
+        _similarity = new CosineSimilarityFunction();
+        _sameIndexes = false;
+        _pruning = true;
+        _heap = new KnnTopKHeap(30);
+        _threshold = new KnnTopKHeap(30);
+        _queryFeatures = new int[16];
+        _queryWeights = new double[16];
+        _queryKeys = new long[16];
+        _queryBuffer = new double[16];
+        _bounds = new double[16];
+        _boundsOrder = new long[16];
+        _remaining = new double[17];
+        _blockFeatures = new int[16];
+        _blockQueries = new int[16];
+        _blockWeights = new double[16];
+        _blockKeys = new long[16];
+    }
+
+    /**
+     * Enable or disable the MaxScore pruning, enabled by default.
+     *
+     * @param pruning true to enable the pruning
+     */
+    public void setPruning(boolean pruning) {
+        _pruning = pruning;
+    }
+
+    public boolean isPruning() {
+        return _pruning;
+    }
+
+    /**
+     * Drop the data computed on the last training index.
+     */
+    public void clear() {
+        _training = null;
+        _table = null;
+        _accumulators = null;
+        _stamps = null;
+        _candidates = null;
+        clearBlock();
+    }
+
+    public IKnnSearcher cloneSearcher() {
+        InvertedIndexKnnSearcher searcher = new InvertedIndexKnnSearcher();
+        searcher._sameIndexes = _sameIndexes;
+        searcher._pruning = _pruning;
+        // The table is never modified once built.
+        searcher._training = _training;
+        searcher._table = _table;
+        if (_table != null)
+            searcher.allocate(_table.documentsCount);
+        return searcher;
+    }
+
+    public Vector<SimilarDocument> search(IIndex testIndex, int docID,
+                                          IIndex trainingIndex, int numSimilar) {
+        Vector<SimilarDocument> docs = new Vector<SimilarDocument>();
+        if (searchHeap(testIndex, docID, trainingIndex, numSimilar))
+            _heap.drainAscending(docs);
+        return docs;
+    }
+
+    public void search(IIndex testIndex, int docID, IIndex trainingIndex,
+                       int numSimilar, KnnResults results) {
+        if (searchHeap(testIndex, docID, trainingIndex, numSimilar))
+            _heap.drainAscending(results);
+        else
+            results.clear();
+    }
+
+    /**
+     * Search the most similar documents, leaving them in {@link #_heap}.
+     *
+     * @return false if no document has to be returned
+     */
+    protected boolean searchHeap(IIndex testIndex, int docID,
+                                 IIndex trainingIndex, int numSimilar) {
+        prepare(trainingIndex);
+        Table table = _table;
+
+        int k = Math.min(numSimilar, table.documentsCount);
+        if (k <= 0)
+            return false;
+        _heap.clear(k);
+
+        int terms = loadQuery(testIndex, docID);
+        nextStamp();
+        int candidates;
+        if (terms == 0)
+            candidates = 0;
+        else if (_pruning && !_queryNegative && !table.negativeWeights) {
+            candidates = accumulatePruned(terms, k);
+            rescore(terms, candidates);
+        } else
+            candidates = accumulate(terms);
+
+        collect(_accumulators, _stamps, _stamp, _candidates, candidates);
+        return true;
+    }
+
+    /**
+     * Search the most similar training documents of a block of test
+     * documents, scanning the postings of each feature only once for the
+     * whole block. The results are the same of
+     * {@link #search(IIndex, int, IIndex, int)}. The blocks larger than
+     * {@link #MAX_BLOCK_SIZE} are split; the buffers of a block, about 16
+     * bytes for each training document and each document in the block, are
+     * kept and reused by the following searches.
+     */
+    public List<Vector<SimilarDocument>> search(IIndex testIndex,
+                                                int[] docIDs, IIndex trainingIndex, int numSimilar) {
+        List<Vector<SimilarDocument>> results = new ArrayList<Vector<SimilarDocument>>(
+                docIDs.length);
+        prepare(trainingIndex);
+        int k = Math.min(numSimilar, _table.documentsCount);
+        if (k <= 0) {
+            for (int i = 0; i < docIDs.length; ++i)
+                results.add(new Vector<SimilarDocument>());
+            return results;
+        }
+        for (int from = 0; from < docIDs.length; from += MAX_BLOCK_SIZE)
+            searchBlock(testIndex, docIDs, from,
+                    Math.min(docIDs.length, from + MAX_BLOCK_SIZE), k, results);
+        return results;
+    }
+
+    protected void searchBlock(IIndex testIndex, int[] docIDs, int from,
+                               int to, int k, List<Vector<SimilarDocument>> results) {
+        Table table = _table;
+        int blockSize = to - from;
+
+        // All the (feature, query, weight) entries of the block, sorted by
+        // feature and query.
+        int entries = 0;
+        for (int q = 0; q < blockSize; ++q) {
+            int terms = loadQuery(testIndex, docIDs[from + q]);
+            if (entries + terms > _blockFeatures.length) {
+                int size = Math.max(entries + terms, _blockFeatures.length * 2);
+                _blockFeatures = Arrays.copyOf(_blockFeatures, size);
+                _blockQueries = Arrays.copyOf(_blockQueries, size);
+                _blockWeights = Arrays.copyOf(_blockWeights, size);
+                _blockKeys = new long[size];
+            }
+            for (int t = 0; t < terms; ++t) {
+                _blockFeatures[entries] = _queryFeatures[t];
+                _blockQueries[entries] = q;
+                _blockWeights[entries] = _queryWeights[t];
+                ++entries;
+            }
+        }
+        long[] keys = _blockKeys;
+        for (int i = 0; i < entries; ++i)
+            keys[i] = (((long) _blockFeatures[i]) << 32) | i;
+        Arrays.sort(keys, 0, entries);
+
+        allocateBlock(blockSize, table.documentsCount);
+        double[][] accumulators = _blockAccumulators;
+        int[][] stamps = _blockStamps;
+        int[][] candidates = _blockCandidates;
+        int[] candidatesCount = _blockCandidatesCount;
+        Arrays.fill(candidatesCount, 0, blockSize, 0);
+        int stamp = _blockStamp;
+        int[] queries = _blockQueries;
+        double[] queryWeights = _blockWeights;
+
+        int i = 0;
+        while (i < entries) {
+            int feature = (int) (keys[i] >>> 32);
+            int end = i + 1;
+            while (end < entries && (int) (keys[end] >>> 32) == feature)
+                ++end;
+            int start = table.offsets[feature];
+            int stop = table.offsets[feature + 1];
+            for (int p = start; p < stop; ++p) {
+                int doc = table.documents[p];
+                double weight = table.weights[p];
+                for (int e = i; e < end; ++e) {
+                    int entry = (int) keys[e];
+                    int q = queries[entry];
+                    if (stamps[q][doc] != stamp) {
+                        stamps[q][doc] = stamp;
+                        accumulators[q][doc] = 0;
+                        candidates[q][candidatesCount[q]++] = doc;
+                    }
+                    accumulators[q][doc] += queryWeights[entry] * weight;
+                }
+            }
+            i = end;
+        }
+
+        for (int q = 0; q < blockSize; ++q) {
+            Vector<SimilarDocument> docs = new Vector<SimilarDocument>();
+            _heap.clear(k);
+            collect(accumulators[q], stamps[q], stamp, candidates[q],
+                    candidatesCount[q]);
+            _heap.drainAscending(docs);
+            results.add(docs);
+        }
+    }
+
+    /**
+     * Make the buffers of a block of queries available, growing them if
+     * needed, and move to the next stamp.
+     */
+    private void allocateBlock(int blockSize, int documents) {
+        if (_blockAccumulators == null || _blockAccumulators.length < blockSize) {
+            int old = _blockAccumulators == null ? 0 : _blockAccumulators.length;
+            _blockAccumulators = old == 0 ? new double[blockSize][]
+                    : Arrays.copyOf(_blockAccumulators, blockSize);
+            _blockStamps = old == 0 ? new int[blockSize][] : Arrays.copyOf(
+                    _blockStamps, blockSize);
+            _blockCandidates = old == 0 ? new int[blockSize][]
+                    : Arrays.copyOf(_blockCandidates, blockSize);
+            _blockCandidatesCount = new int[blockSize];
+            for (int q = old; q < blockSize; ++q) {
+                _blockAccumulators[q] = new double[documents];
+                _blockStamps[q] = new int[documents];
+                _blockCandidates[q] = new int[documents];
+            }
+        }
+        ++_blockStamp;
+        if (_blockStamp == Integer.MAX_VALUE) {
+            for (int[] stamps : _blockStamps)
+                Arrays.fill(stamps, 0);
+            _blockStamp = 1;
+        }
+    }
+
+    private void clearBlock() {
+        _blockAccumulators = null;
+        _blockStamps = null;
+        _blockCandidates = null;
+        _blockCandidatesCount = null;
+        _blockStamp = 0;
+    }
+
+    /**
+     * Load the features of the query with positive postings in the training
+     * table, sorted by feature, with the weights normalized by the norm of
+     * the document.
+     *
+     * @return the number of loaded features
+     */
+    protected int loadQuery(IIndex testIndex, int docID) {
+        Table table = _table;
+        IContentDB testContent = testIndex.getContentDB();
+        IWeightingDB testWeighting = testIndex.getWeightingDB();
+        int size = testContent.getDocumentFeaturesCount(docID);
+        if (_queryFeatures.length < size) {
+            _queryFeatures = new int[size];
+            _queryWeights = new double[size];
+            _queryKeys = new long[size];
+            _queryBuffer = new double[size];
+        }
+        double norm = 0;
+        int terms = 0;
+        _queryNegative = false;
+        IIntIterator it = testContent.getDocumentFeatures(docID);
+        while (it.hasNext()) {
+            int feature = it.next();
+            double weight = testWeighting.getDocumentFeatureWeight(docID,
+                    feature);
+            norm += weight * weight;
+            if (weight < 0)
+                _queryNegative = true;
+            if (feature < table.featuresCount
+                    && table.offsets[feature + 1] > table.offsets[feature]
+                    && weight != 0) {
+                _queryKeys[terms] = (((long) feature) << 32) | terms;
+                _queryWeights[terms] = weight;
+                ++terms;
+            }
+        }
+        if (terms == 0 || norm == 0)
+            return 0;
+        norm = Math.sqrt(norm);
+
+        Arrays.sort(_queryKeys, 0, terms);
+        double[] weights = _queryBuffer;
+        for (int t = 0; t < terms; ++t) {
+            _queryFeatures[t] = (int) (_queryKeys[t] >>> 32);
+            weights[t] = _queryWeights[(int) _queryKeys[t]] / norm;
+        }
+        System.arraycopy(weights, 0, _queryWeights, 0, terms);
+        return terms;
+    }
+
+    /**
+     * Exhaustive accumulation, in increasing feature order.
+     *
+     * @return the number of candidates in {@link #_candidates}
+     */
+    protected int accumulate(int terms) {
+        Table table = _table;
+        int candidates = 0;
+        for (int t = 0; t < terms; ++t) {
+            double weight = _queryWeights[t];
+            int end = table.offsets[_queryFeatures[t] + 1];
+            for (int i = table.offsets[_queryFeatures[t]]; i < end; ++i) {
+                int doc = table.documents[i];
+                if (_stamps[doc] != _stamp) {
+                    _stamps[doc] = _stamp;
+                    _accumulators[doc] = 0;
+                    _candidates[candidates++] = doc;
+                }
+                _accumulators[doc] += weight * table.weights[i];
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Accumulation in decreasing order of the score upper bounds, with
+     * MaxScore pruning.
+     *
+     * @return the number of candidates left in {@link #_candidates}
+     */
+    protected int accumulatePruned(int terms, int k) {
+        Table table = _table;
+        if (_bounds.length < terms) {
+            _bounds = new double[terms];
+            _boundsOrder = new long[terms];
+            _remaining = new double[terms + 1];
+        }
+        // Sort the terms by decreasing upper bound. Non negative floats sort
+        // as their bits, the order only affects the efficiency of the
+        // pruning, not its results.
+        double[] bounds = _bounds;
+        long[] keys = _boundsOrder;
+        for (int t = 0; t < terms; ++t) {
+            bounds[t] = _queryWeights[t] * table.maxWeights[_queryFeatures[t]];
+            keys[t] = (((long) (Integer.MAX_VALUE - Float
+                    .floatToIntBits((float) bounds[t]))) << 32) | t;
+        }
+        Arrays.sort(keys, 0, terms);
+        double[] remaining = _remaining;
+        remaining[terms] = 0;
+        for (int i = terms - 1; i >= 0; --i)
+            remaining[i] = remaining[i + 1] + bounds[(int) keys[i]];
+
+        int candidates = 0;
+        boolean open = true;
+        for (int s = 0; s < terms; ++s) {
+            int t = (int) keys[s];
+            double weight = _queryWeights[t];
+            int start = table.offsets[_queryFeatures[t]];
+            int end = table.offsets[_queryFeatures[t] + 1];
+
+            if (open) {
+                for (int i = start; i < end; ++i) {
+                    int doc = table.documents[i];
+                    if (_stamps[doc] != _stamp) {
+                        _stamps[doc] = _stamp;
+                        _accumulators[doc] = 0;
+                        _candidates[candidates++] = doc;
+                    }
+                    _accumulators[doc] += weight * table.weights[i];
+                }
+            } else
+                candidates = update(weight, start, end, candidates);
+
+            if (candidates < k)
+                continue;
+            double rest = remaining[s + 1];
+            _threshold.clear(k);
+            for (int c = 0; c < candidates; ++c) {
+                int doc = _candidates[c];
+                _threshold.offer(doc, _accumulators[doc]);
+            }
+            double kth = _threshold.minScore();
+            // The margin protects from rounding errors in the bounds.
+            if (open && kth > rest + EPSILON)
+                open = false;
+            if (!open) {
+                // Drop the candidates which can not reach the k-th score.
+                int kept = 0;
+                for (int c = 0; c < candidates; ++c) {
+                    int doc = _candidates[c];
+                    if (_accumulators[doc] + rest + EPSILON >= kth)
+                        _candidates[kept++] = doc;
+                    else
+                        _stamps[doc] = 0;
+                }
+                candidates = kept;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Sum again the scores of the candidates in increasing feature order, so
+     * that they do not depend on the order used by the pruning.
+     */
+    protected void rescore(int terms, int candidates) {
+        for (int c = 0; c < candidates; ++c)
+            _accumulators[_candidates[c]] = 0;
+        for (int t = 0; t < terms; ++t)
+            update(_queryWeights[t], _table.offsets[_queryFeatures[t]],
+                    _table.offsets[_queryFeatures[t] + 1], candidates);
+    }
+
+    /**
+     * Add the contribution of a posting list to the current candidates only.
+     */
+    private int update(double weight, int start, int end, int candidates) {
+        Table table = _table;
+        if ((long) candidates * 16 < end - start) {
+            // Few candidates, look them up in the postings.
+            for (int c = 0; c < candidates; ++c) {
+                int doc = _candidates[c];
+                int pos = Arrays.binarySearch(table.documents, start, end, doc);
+                if (pos >= 0)
+                    _accumulators[doc] += weight * table.weights[pos];
+            }
+        } else {
+            for (int i = start; i < end; ++i) {
+                int doc = table.documents[i];
+                if (_stamps[doc] == _stamp)
+                    _accumulators[doc] += weight * table.weights[i];
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Select the best candidates, filling with documents with no common
+     * features if they are not enough, leaving them in {@link #_heap}. The
+     * heap must be already cleared.
+     */
+    protected void collect(double[] accumulators, int[] stamps, int stamp,
+                           int[] candidates, int candidatesCount) {
+        for (int i = 0; i < candidatesCount; ++i) {
+            int doc = candidates[i];
+            double score = accumulators[doc];
+            // Correct round problems, as CosineSimilarityFunction does.
+            if (score > 1)
+                score = 1;
+            _heap.offer(doc, score);
+        }
+        // Documents not sharing any feature have similarity 0.
+        for (int doc = 0; doc < _table.documentsCount && !_heap.isFull(); ++doc) {
+            if (stamps[doc] != stamp)
+                _heap.offer(doc, 0);
+        }
+    }
+
+    private void nextStamp() {
+        ++_stamp;
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_stamps, 0);
+            _stamp = 1;
+        }
+    }
+
+    /**
+     * Build the postings table for the given training index, if not already
+     * done.
+     */
+    protected void prepare(IIndex trainingIndex) {
+        int documents = trainingIndex.getDocumentDB().getDocumentsCount();
+        int features = trainingIndex.getFeatureDB().getFeaturesCount();
+        if (_training == trainingIndex && _table != null
+                && _table.documentsCount == documents
+                && _table.featuresCount == features) {
+            if (_accumulators == null)
+                allocate(documents);
+            return;
+        }
+
+        _table = new Table(trainingIndex, documents, features);
+        _training = trainingIndex;
+        allocate(documents);
+    }
+
+    private void allocate(int documents) {
+        _accumulators = new double[documents];
+        _stamps = new int[documents];
+        _stamp = 0;
+        _candidates = new int[documents];
+        // The buffers of the blocks are created on demand, with the new size.
+        clearBlock();
+    }
+
+    public IBaseSimilarityFunction getSimilarityFunction() {
+        return _similarity;
+    }
+
+    public boolean useSameIndexesData() {
+        return _sameIndexes;
+    }
+
+    public void setUseSameIndexesData(boolean sameIndexesData) {
+        _sameIndexes = sameIndexesData;
+    }
+
+    /**
+     * The feature to (document, normalized weight) postings of a training
+     * index. It is never modified after construction.
+     */
+    protected static class Table {
+
+        final int documentsCount;
+        final int featuresCount;
+        final int[] offsets;
+        final int[] documents;
+        final double[] weights;
+        final double[] maxWeights;
+        final boolean negativeWeights;
+
+        Table(IIndex trainingIndex, int documentsCount, int featuresCount) {
+            this.documentsCount = documentsCount;
+            this.featuresCount = featuresCount;
+            IContentDB content = trainingIndex.getContentDB();
+            IWeightingDB weighting = trainingIndex.getWeightingDB();
+            offsets = new int[featuresCount + 1];
+            int entries = 0;
+            for (int doc = 0; doc < documentsCount; ++doc)
+                entries += content.getDocumentFeaturesCount(doc);
+
+            // Read the documents once, keeping features and weights.
+            int[] docFeatures = new int[entries];
+            double[] docWeights = new double[entries];
+            int[] docOffsets = new int[documentsCount + 1];
+            double[] norms = new double[documentsCount];
+            boolean negative = false;
+            int pos = 0;
+            for (int doc = 0; doc < documentsCount; ++doc) {
+                IIntIterator it = content.getDocumentFeatures(doc);
+                double norm = 0;
+                while (it.hasNext()) {
+                    int feature = it.next();
+                    double weight = weighting.getDocumentFeatureWeight(doc,
+                            feature);
+                    if (weight < 0)
+                        negative = true;
+                    norm += weight * weight;
+                    if (feature < featuresCount) {
+                        docFeatures[pos] = feature;
+                        docWeights[pos] = weight;
+                        ++offsets[feature + 1];
+                        ++pos;
+                    }
+                }
+                docOffsets[doc + 1] = pos;
+                norms[doc] = Math.sqrt(norm);
+            }
+            for (int f = 0; f < featuresCount; ++f)
+                offsets[f + 1] += offsets[f];
+
+            int[] fill = new int[featuresCount];
+            documents = new int[pos];
+            weights = new double[pos];
+            maxWeights = new double[featuresCount];
+            for (int doc = 0; doc < documentsCount; ++doc) {
+                double norm = norms[doc];
+                for (int i = docOffsets[doc]; i < docOffsets[doc + 1]; ++i) {
+                    int feature = docFeatures[i];
+                    int p = offsets[feature] + fill[feature];
+                    ++fill[feature];
+                    documents[p] = doc;
+                    double weight = norm > 0 ? docWeights[i] / norm : 0;
+                    weights[p] = weight;
+                    if (Math.abs(weight) > maxWeights[feature])
+                        maxWeights[feature] = Math.abs(weight);
+                }
+            }
+            negativeWeights = negative;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import it.cnr.jatecs.classification.ClassificationResult;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.IBaseSimilarityFunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Classify all the documents of a test index with a {@link KnnClassifier}, a
+ * {@link SingleLabelKnnClassifier} or a {@link KnnCommitteeClassifier},
+ * distributing the documents over a pool of threads. Each thread works on a
+ * private copy of the classifier with its own searchers (see
+ * {@link IKnnSearcher#cloneSearcher()}), so the results are exactly the same
+ * of classifying the documents one by one with the original classifier.
+ * <p>
+ * If the block size is greater than 1 and the searchers implement
+ * {@link IKnnBlockSearcher}, the similar documents are searched for a block
+ * of test documents at once, scanning the training data only once per block.
+ */
+public class KnnBatchClassifier {
+
+    protected IClassifier _classifier;
+    protected int _threads;
+    protected int _blockSize;
+
+    public KnnBatchClassifier(IClassifier classifier) {
+        if (classifier == null)
+            throw new NullPointerException("The specified classifier is 'null'");
+        if (!(classifier instanceof KnnClassifier
+                || classifier instanceof SingleLabelKnnClassifier || classifier instanceof KnnCommitteeClassifier))
+            throw new IllegalArgumentException("The classifier "
+                    + classifier.getClass().getName()
+                    + " is not supported");
+        _classifier = classifier;
+        _threads = Runtime.getRuntime().availableProcessors();
+        _blockSize = 1;
+    }
+
+    public IClassifier getClassifier() {
+        return _classifier;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used, by default the number of available
+     * processors.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    /**
+     * Set the number of test documents searched at once, 1 by default.
+     *
+     * @param blockSize the number of documents in a block
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("The block size must be positive");
+        _blockSize = blockSize;
+    }
+
+    /**
+     * Classify all the documents of the test index.
+     *
+     * @param testIndex the test index
+     * @return the classification results, indexed by document ID
+     */
+    public ClassificationResult[] classify(final IIndex testIndex) {
+        int documents = testIndex.getDocumentDB().getDocumentsCount();
+        ClassificationResult[] results = new ClassificationResult[documents];
+        if (documents == 0)
+            return results;
+
+        Workers workers = new Workers(_classifier, _threads);
+
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            int grain = Math.max(_blockSize,
+                    Math.min(64, documents / (_threads * 8) + 1));
+            pool.invoke(new ClassifyTask(testIndex, results, workers, 0,
+                    documents, grain, _blockSize));
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Copy a classifier, giving it new searchers wrapped by
+     * {@link PrefetchingSearcher}.
+     */
+    protected static IClassifier copy(IClassifier classifier,
+                                      List<PrefetchingSearcher> searchers) {
+        if (classifier instanceof KnnClassifier) {
+            KnnClassifier original = (KnnClassifier) classifier;
+            KnnClassifierCustomizer cust = (KnnClassifierCustomizer) original
+                    .getRuntimeCustomizer().cloneObject();
+            PrefetchingSearcher searcher = new PrefetchingSearcher(cust
+                    .getSearcher().cloneSearcher(),
+                    original.getTrainingIndex(), cust.getMaxKValue());
+            cust.setSearcher(searcher);
+            searchers.add(searcher);
+            KnnClassifier cl = new KnnClassifier(original.getTrainingIndex());
+            cl.setRuntimeCustomizer(cust);
+            return cl;
+        } else if (classifier instanceof SingleLabelKnnClassifier) {
+            SingleLabelKnnClassifier original = (SingleLabelKnnClassifier) classifier;
+            SingleLabelKnnClassifierCustomizer cust = (SingleLabelKnnClassifierCustomizer) original
+                    .getRuntimeCustomizer().cloneObject();
+            PrefetchingSearcher searcher = new PrefetchingSearcher(cust
+                    .getSearcher().cloneSearcher(), original._training,
+                    cust.getK());
+            cust.setSearcher(searcher);
+            searchers.add(searcher);
+            SingleLabelKnnClassifier cl = new SingleLabelKnnClassifier(
+                    original._training);
+            cl.setRuntimeCustomizer(cust);
+            return cl;
+        } else if (classifier instanceof KnnCommitteeClassifier) {
+            KnnCommitteeClassifier original = (KnnCommitteeClassifier) classifier;
+            KnnCommitteeClassifier cl = new KnnCommitteeClassifier(
+                    original._catsDB);
+            cl.setRuntimeCustomizer(original.getRuntimeCustomizer());
+            for (int i = 0; i < original.getClassifiers().size(); ++i)
+                cl.getClassifiers().add(
+                        (KnnBaseClassifier) copy(original.getClassifiers()
+                                .get(i), searchers));
+            return cl;
+        } else
+            throw new IllegalArgumentException("The classifier "
+                    + classifier.getClass().getName() + " is not supported");
+    }
+
+    /**
+     * A private copy of the classifier, used by one thread at a time.
+     */
+    protected static class Worker {
+
+        protected IClassifier _classifier;
+        protected List<PrefetchingSearcher> _searchers;
+
+        public Worker(IClassifier classifier) {
+            _searchers = new ArrayList<PrefetchingSearcher>();
+            _classifier = copy(classifier, _searchers);
+        }
+    }
+
+    /**
+     * The copies of the classifier not in use. A new copy is made if all
+     * the copies are in use, which happens only if the pool runs more
+     * threads than requested.
+     */
+    protected static class Workers {
+
+        protected IClassifier _classifier;
+        protected ArrayList<Worker> _free;
+
+        public Workers(IClassifier classifier, int count) {
+            _classifier = classifier;
+            _free = new ArrayList<Worker>(count);
+            for (int i = 0; i < count; ++i)
+                _free.add(new Worker(classifier));
+        }
+
+        public synchronized Worker acquire() {
+            if (_free.isEmpty())
+                return new Worker(_classifier);
+            return _free.remove(_free.size() - 1);
+        }
+
+        public synchronized void release(Worker worker) {
+            _free.add(worker);
+        }
+    }
+
+    protected static class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IIndex _testIndex;
+        private final ClassificationResult[] _results;
+        private final Workers _workers;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+        private final int _blockSize;
+
+        public ClassifyTask(IIndex testIndex, ClassificationResult[] results,
+                            Workers workers, int from, int to, int grain, int blockSize) {
+            _testIndex = testIndex;
+            _results = results;
+            _workers = workers;
+            _from = from;
+            _to = to;
+            _grain = grain;
+            _blockSize = blockSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _grain) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new ClassifyTask(_testIndex, _results, _workers,
+                                _from, middle, _grain, _blockSize),
+                        new ClassifyTask(_testIndex, _results, _workers,
+                                middle, _to, _grain, _blockSize));
+                return;
+            }
+
+            Worker worker = _workers.acquire();
+            try {
+                for (int start = _from; start < _to; start += _blockSize) {
+                    int end = Math.min(_to, start + _blockSize);
+                    int[] docIDs = new int[end - start];
+                    for (int i = 0; i < docIDs.length; ++i)
+                        docIDs[i] = start + i;
+                    for (int i = 0; i < worker._searchers.size(); ++i)
+                        worker._searchers.get(i).prefetch(_testIndex, docIDs);
+                    for (int i = 0; i < docIDs.length; ++i)
+                        _results[docIDs[i]] = worker._classifier.classify(
+                                _testIndex, docIDs[i]);
+                    for (int i = 0; i < worker._searchers.size(); ++i)
+                        worker._searchers.get(i).clearPrefetched();
+                }
+            } finally {
+                _workers.release(worker);
+            }
+        }
+    }
+
+    /**
+     * Searcher returning the similar documents computed in advance for a
+     * block of test documents, delegating any other search.
+     */
+    protected static class PrefetchingSearcher implements IKnnSearcher {
+
+        protected IKnnSearcher _searcher;
+        protected IIndex _training;
+        protected int _k;
+        protected IIndex _prefetchedIndex;
+        protected HashMap<Integer, Vector<SimilarDocument>> _prefetched;
+
+        public PrefetchingSearcher(IKnnSearcher searcher, IIndex training,
+                                   int k) {
+            _searcher = searcher;
+            _training = training;
+            _k = k;
+            _prefetched = new HashMap<Integer, Vector<SimilarDocument>>();
+        }
+
+        public void prefetch(IIndex testIndex, int[] docIDs) {
+            if (docIDs.length < 2 || !(_searcher instanceof IKnnBlockSearcher))
+                return;
+            List<Vector<SimilarDocument>> results = ((IKnnBlockSearcher) _searcher)
+                    .search(testIndex, docIDs, _training, _k);
+            _prefetchedIndex = testIndex;
+            for (int i = 0; i < docIDs.length; ++i)
+                _prefetched.put(docIDs[i], results.get(i));
+        }
+
+        public void clearPrefetched() {
+            _prefetched.clear();
+            _prefetchedIndex = null;
+        }
+
+        public Vector<SimilarDocument> search(IIndex testIndex, int docID,
+                                              IIndex trainingIndex, int numSimilar) {
+            if (testIndex == _prefetchedIndex && trainingIndex == _training
+                    && numSimilar == _k) {
+                Vector<SimilarDocument> docs = _prefetched.remove(docID);
+                if (docs != null)
+                    return docs;
+            }
+            return _searcher.search(testIndex, docID, trainingIndex,
+                    numSimilar);
+        }
+
+        public void search(IIndex testIndex, int docID, IIndex trainingIndex,
+                           int numSimilar, KnnResults results) {
+            if (testIndex == _prefetchedIndex && trainingIndex == _training
+                    && numSimilar == _k) {
+                Vector<SimilarDocument> docs = _prefetched.remove(docID);
+                if (docs != null) {
+                    results.set(docs);
+                    return;
+                }
+            }
+            _searcher.search(testIndex, docID, trainingIndex, numSimilar,
+                    results);
+        }
+
+        public IBaseSimilarityFunction getSimilarityFunction() {
+            return _searcher.getSimilarityFunction();
+        }
+
+        public boolean useSameIndexesData() {
+            return _searcher.useSameIndexesData();
+        }
+
+        public void setUseSameIndexesData(boolean sameIndexesData) {
+            _searcher.setUseSameIndexesData(sameIndexesData);
+        }
+
+        public IKnnSearcher cloneSearcher() {
+            return new PrefetchingSearcher(_searcher.cloneSearcher(),
+                    _training, _k);
+        }
+    }
+}
@@ -26,17 +26,26 @@ package it.cnr.jatecs.classification.knn;
 
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.classification.knn.KnnClassifierCustomizer.KnnType;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.util.Vector;
 
-public class KnnClassifier extends KnnBaseClassifier {
+public class KnnClassifier extends KnnBaseClassifier implements
+        IConcurrentClassifier {
+
+    /**
+     * The similar documents of the last search, reused by every search.
+     */
+    protected KnnResults _results;
 
     public KnnClassifier(IIndex training) {
         _training = training;
         _customizer = new KnnClassifierCustomizer();
+        _results = new KnnResults();
     }
 
     public ClassificationResult classify(IIndex testIndex, int docID) {
@@ -55,28 +64,27 @@ public class KnnClassifier extends KnnBaseClassifier {
         KnnClassifierCustomizer cust = (KnnClassifierCustomizer) _customizer;
 
         int maxKValue = cust.getMaxKValue();
-        Vector<SimilarDocument> allSimilar = cust._searcher.search(testIndex, docID, _training, maxKValue);
+        KnnResults allSimilar = _results;
+        cust._searcher.search(testIndex, docID, _training, maxKValue, allSimilar);
 
         // Find the k most similar documents to the wanted docID.
         IShortIterator cats = _training.getCategoryDB().getCategories();
         while (cats.hasNext()) {
             short catID = cats.next();
 
-            Vector<SimilarDocument> similar = selectSimilar(allSimilar, cust.getK(catID));
+            int similar = Math.min(cust.getK(catID), allSimilar.size());
 
             res.categoryID.add(catID);
             double score = 0;
-            for (int i = 0; i < similar.size(); i++) {
-                SimilarDocument doc = similar.get(i);
-
-                if (_training.getClassificationDB().hasDocumentCategory(doc.docID, catID)) {
-                    score += doc.score;
+            for (int i = 0; i < similar; i++) {
+                if (_training.getClassificationDB().hasDocumentCategory(allSimilar.getDocument(i), catID)) {
+                    score += allSimilar.getScore(i);
                 } else {
-                    score -= doc.score;
+                    score -= allSimilar.getScore(i);
                 }
             }
 
-            score /= similar.size();
+            score /= similar;
 
             res.score.add(score);
         }
@@ -101,7 +109,8 @@ public class KnnClassifier extends KnnBaseClassifier {
         KnnClassifierCustomizer cust = (KnnClassifierCustomizer) _customizer;
 
         int maxKValue = cust.getMaxKValue();
-        Vector<SimilarDocument> allSimilar = cust._searcher.search(testIndex, docID, _training, maxKValue);
+        KnnResults allSimilar = _results;
+        cust._searcher.search(testIndex, docID, _training, maxKValue, allSimilar);
 
 
         // Find the k most similar documents to the wanted docID.
@@ -109,16 +118,16 @@ public class KnnClassifier extends KnnBaseClassifier {
         while (cats.hasNext()) {
             short catID = cats.next();
 
-            Vector<SimilarDocument> similar = selectSimilar(allSimilar, cust.getK(catID));
+            int similar = Math.min(cust.getK(catID), allSimilar.size());
 
             res.categoryID.add(catID);
             double score = 0;
-            for (int i = 0; i < similar.size(); i++) {
-                SimilarDocument doc = similar.get(i);
-                if (!(doc.score >= 0 && doc.score <= 1))
-                    System.out.println("Score: " + doc.score);
-                if (_training.getClassificationDB().hasDocumentCategory(doc.docID, catID)) {
-                    score += doc.score;
+            for (int i = 0; i < similar; i++) {
+                double docScore = allSimilar.getScore(i);
+                if (!(docScore >= 0 && docScore <= 1))
+                    System.out.println("Score: " + docScore);
+                if (_training.getClassificationDB().hasDocumentCategory(allSimilar.getDocument(i), catID)) {
+                    score += docScore;
                 }
             }
 
@@ -145,5 +154,17 @@ public class KnnClassifier extends KnnBaseClassifier {
         return _training.getCategoryDB().getCategories();
     }
 
+    /**
+     * @return a copy of the classifier with a clone of the searcher, which
+     * may keep per-query buffers.
+     */
+    public IClassifier getWorkerClassifier() {
+        KnnClassifierCustomizer cust = (KnnClassifierCustomizer) _customizer
+                .cloneObject();
+        cust.setSearcher(cust.getSearcher().cloneSearcher());
+        KnnClassifier cl = new KnnClassifier(_training);
+        cl.setRuntimeCustomizer(cust);
+        return cl;
+    }
 
 }
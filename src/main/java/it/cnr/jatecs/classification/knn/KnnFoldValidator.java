@@ -33,6 +33,7 @@ import it.cnr.jatecs.classification.interfaces.ILearnerRuntimeCustomizer;
 import it.cnr.jatecs.classification.validator.KFoldRuntimeCustomizer;
 import it.cnr.jatecs.classification.validator.KFoldValidator;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.Pair;
 import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
@@ -46,11 +47,66 @@ import java.util.Vector;
 public class KnnFoldValidator extends KFoldValidator {
 
     protected float[][] _globalSimMatrix;
+    protected KnnNeighboursTable _neighboursTable;
+    protected int _neighboursCount;
+    protected int _threads;
 
     public KnnFoldValidator(KnnFakeLearner learner,
                             KnnClassifierOptimizer optimizer) {
         super(learner, optimizer);
         _globalSimMatrix = null;
+        _neighboursTable = null;
+        _neighboursCount = 100;
+        _threads = 1;
+    }
+
+    public int getNeighboursCount() {
+        return _neighboursCount;
+    }
+
+    /**
+     * Set the number of neighbours of each document kept by the table used
+     * with the cosine similarity in place of the full similarity matrix. The
+     * validation documents whose neighbours contain fewer training documents
+     * than the searched ones are compared with all the training documents.
+     *
+     * @param neighboursCount the number of neighbours, 0 to always use the
+     *                        full similarity matrix
+     */
+    public void setNeighboursCount(int neighboursCount) {
+        if (neighboursCount < 0)
+            throw new IllegalArgumentException(
+                    "The number of neighbours must be positive");
+        _neighboursCount = neighboursCount;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * @param threads the number of threads used to compute the table of
+     *                neighbours
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
+
+    protected boolean useNeighboursTable(TextualKnnSearcher searcher) {
+        return _neighboursCount > 0
+                && searcher._similarity.getClass() == CosineSimilarityFunction.class;
+    }
+
+    protected KnnNeighboursTable buildNeighboursTable(IIndex trainingIndex) {
+        JatecsLogger.status().print("Computing global neighbours table...");
+        AllPairsKnnBuilder builder = new AllPairsKnnBuilder();
+        builder.setThreads(_threads);
+        KnnNeighboursTable table = builder.build(trainingIndex, _neighboursCount);
+        JatecsLogger.status().println("done.");
+        return table;
     }
 
     protected float[][] buildSimilarityMatrix(IIndex trainingIndex) {
@@ -95,19 +151,25 @@ public class KnnFoldValidator extends KFoldValidator {
     protected IClassifier buildTextual(IIndex trainingIndex) {
         KFoldRuntimeCustomizer cust = (KFoldRuntimeCustomizer) getRuntimeCustomizer();
 
-        // First build similarity matrix among all documents.
-        if (_globalSimMatrix == null)
+        KnnFakeLearner learn = (KnnFakeLearner) _usedLearner;
+        KnnClassifierCustomizer customizer = (KnnClassifierCustomizer) learn._cl
+                .getRuntimeCustomizer();
+        TextualKnnSearcher knnSearcher = (TextualKnnSearcher) customizer._searcher;
+
+        // First build the similarities among all documents.
+        boolean useNeighbours = useNeighboursTable(knnSearcher);
+        if (useNeighbours) {
+            if (_neighboursTable == null)
+                _neighboursTable = buildNeighboursTable(trainingIndex);
+        } else if (_globalSimMatrix == null)
             _globalSimMatrix = buildSimilarityMatrix(trainingIndex);
 
         Hashtable<Short, Vector<OptimalConfiguration>> results = new Hashtable<Short, Vector<OptimalConfiguration>>();
 
-        KnnFakeLearner learn = (KnnFakeLearner) _usedLearner;
-        KnnClassifierCustomizer customizer = (KnnClassifierCustomizer) learn._cl
-                .getRuntimeCustomizer();
         boolean sameIndexesOld = customizer._searcher.useSameIndexesData();
         customizer._searcher.setUseSameIndexesData(true);
-        TextualKnnSearcher knnSearcher = (TextualKnnSearcher) customizer._searcher;
         knnSearcher.setSimilarityMatrix(null);
+        knnSearcher.setNeighboursTable(null);
 
         ILearnerRuntimeCustomizer c = _usedLearner.getRuntimeCustomizer();
         if (c != null) {
@@ -142,12 +204,17 @@ public class KnnFoldValidator extends KFoldValidator {
                 // Split the index in two parts: a training and a valiudation
                 // set.
                 SplitOperation indexes = splitTextualIndex(i, trainingIndex,
-                        catID, cust.getKFoldValidationSteps(), _globalSimMatrix);
+                        catID, cust.getKFoldValidationSteps(),
+                        useNeighbours ? null : _globalSimMatrix);
                 if (indexes == null)
                     // All possible steps was done.
                     break;
 
-                knnSearcher.setSimilarityMatrix(indexes.similarityMatrix);
+                if (useNeighbours)
+                    knnSearcher.setNeighboursTable(_neighboursTable,
+                            indexes.trainingDocuments, indexes.testDocuments);
+                else
+                    knnSearcher.setSimilarityMatrix(indexes.similarityMatrix);
 
                 // Optimize classifier.
                 OptimalConfiguration res = _optimizer.optimizeFor(_usedLearner,
@@ -219,6 +286,7 @@ public class KnnFoldValidator extends KFoldValidator {
         }
 
         knnSearcher.setSimilarityMatrix(null);
+        knnSearcher.setNeighboursTable(null);
 
         return clas;
 
@@ -473,33 +541,37 @@ public class KnnFoldValidator extends KFoldValidator {
         vaIndex.removeCategories(new TShortArrayListIterator(catsToRemove));
         vaIndex.removeDocuments(new TIntArrayListIterator(tr), false);
 
-        // Compute current similarity matrix.
-        JatecsLogger.status().print(
-                "Computing similarity matrix for current indexes...");
-        float[][] matrix = new float[trIndex.getDocumentDB()
-                .getDocumentsCount()][vaIndex.getDocumentDB()
-                .getDocumentsCount()];
-        IIntIterator trainingDocs = trIndex.getDocumentDB().getDocuments();
-        IIntIterator testDocs = vaIndex.getDocumentDB().getDocuments();
-        while (trainingDocs.hasNext()) {
-            int curTrainingID = trainingDocs.next();
-            String docTrainingName = trIndex.getDocumentDB().getDocumentName(
-                    curTrainingID);
-            int realTrainingID = index.getDocumentDB().getDocument(
-                    docTrainingName);
-            testDocs.begin();
-            while (testDocs.hasNext()) {
-                int curTestID = testDocs.next();
-                String docTestName = vaIndex.getDocumentDB().getDocumentName(
-                        curTestID);
-                int realTestID = index.getDocumentDB()
-                        .getDocument(docTestName);
-
-                double score = globalMatrix[realTrainingID][realTestID];
-                matrix[curTrainingID][curTestID] = (float) score;
+        // Compute current similarity matrix, not needed with the table of
+        // neighbours.
+        float[][] matrix = null;
+        if (globalMatrix != null) {
+            JatecsLogger.status().print(
+                    "Computing similarity matrix for current indexes...");
+            matrix = new float[trIndex.getDocumentDB()
+                    .getDocumentsCount()][vaIndex.getDocumentDB()
+                    .getDocumentsCount()];
+            IIntIterator trainingDocs = trIndex.getDocumentDB().getDocuments();
+            IIntIterator testDocs = vaIndex.getDocumentDB().getDocuments();
+            while (trainingDocs.hasNext()) {
+                int curTrainingID = trainingDocs.next();
+                String docTrainingName = trIndex.getDocumentDB().getDocumentName(
+                        curTrainingID);
+                int realTrainingID = index.getDocumentDB().getDocument(
+                        docTrainingName);
+                testDocs.begin();
+                while (testDocs.hasNext()) {
+                    int curTestID = testDocs.next();
+                    String docTestName = vaIndex.getDocumentDB().getDocumentName(
+                            curTestID);
+                    int realTestID = index.getDocumentDB()
+                            .getDocument(docTestName);
+
+                    double score = globalMatrix[realTrainingID][realTestID];
+                    matrix[curTrainingID][curTestID] = (float) score;
+                }
             }
+            JatecsLogger.status().println("done.");
         }
-        JatecsLogger.status().println("done.");
 
         assert (trIndex.getClassificationDB().getCategoryDocumentsCount(
                 (short) 0) == numPositivesInTraining);
@@ -515,6 +587,8 @@ public class KnnFoldValidator extends KFoldValidator {
         op.training = trIndex;
         op.test = vaIndex;
         op.similarityMatrix = matrix;
+        op.trainingDocuments = tr.toNativeArray();
+        op.testDocuments = va.toNativeArray();
         return op;
     }
 
@@ -522,5 +596,7 @@ public class KnnFoldValidator extends KFoldValidator {
         IIndex training;
         IIndex test;
         float[][] similarityMatrix;
+        int[] trainingDocuments;
+        int[] testDocuments;
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The k nearest neighbours of each document of an index, as computed by
+ * {@link AllPairsKnnBuilder}. Every document has the same number of
+ * neighbours, sorted by decreasing similarity with ties broken in favour of
+ * the lower document IDs; a document is never a neighbour of itself.
+ * <p>
+ * The table can be written to a file, made of a header followed by the
+ * neighbour IDs and then by their similarities as floats, row by row, and read
+ * back either in memory or memory mapped.
+ */
+public class KnnNeighboursTable {
+
+    static final int MAGIC = 0x4a4b4e4e;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    protected int _documentsCount;
+    protected int _neighboursCount;
+    protected IntBuffer _neighbours;
+    protected FloatBuffer _scores;
+
+    /**
+     * @param documentsCount  the number of documents
+     * @param neighboursCount the number of neighbours of each document
+     * @param neighbours      the neighbour IDs, row by row
+     * @param scores          the similarities of the neighbours, row by row
+     */
+    public KnnNeighboursTable(int documentsCount, int neighboursCount,
+                              IntBuffer neighbours, FloatBuffer scores) {
+        super();
+        if (neighbours == null)
+            throw new NullPointerException("The specified neighbours are 'null'");
+        if (scores == null)
+            throw new NullPointerException("The specified scores are 'null'");
+        long size = (long) documentsCount * neighboursCount;
+        if (neighbours.capacity() != size || scores.capacity() != size)
+            throw new IllegalArgumentException(
+                    "The buffers do not match the number of documents and neighbours");
+        _documentsCount = documentsCount;
+        _neighboursCount = neighboursCount;
+        _neighbours = neighbours;
+        _scores = scores;
+    }
+
+    public int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    /**
+     * @return the number of neighbours of each document
+     */
+    public int getNeighboursCount() {
+        return _neighboursCount;
+    }
+
+    /**
+     * @return true if each document has all the other documents as
+     * neighbours, so a search restricted to a subset of the documents never
+     * misses a document
+     */
+    public boolean isComplete() {
+        return _neighboursCount >= _documentsCount - 1;
+    }
+
+    /**
+     * @param doc the document ID
+     * @param i   the rank of the neighbour, 0 for the most similar
+     * @return the ID of the neighbour
+     */
+    public int getNeighbour(int doc, int i) {
+        return _neighbours.get(doc * _neighboursCount + i);
+    }
+
+    /**
+     * @param doc the document ID
+     * @param i   the rank of the neighbour, 0 for the most similar
+     * @return the similarity of the neighbour
+     */
+    public float getScore(int doc, int i) {
+        return _scores.get(doc * _neighboursCount + i);
+    }
+
+    /**
+     * Write the table to the given file.
+     *
+     * @param file the destination file
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            raf.setLength(getFileSize(_documentsCount, _neighboursCount));
+            writeHeader(channel, _documentsCount, _neighboursCount);
+            int rows = Math.max(1, (1 << 20) / Math.max(1, _neighboursCount));
+            ByteBuffer buffer = ByteBuffer.allocate(rows * _neighboursCount * 4);
+            for (int doc = 0; doc < _documentsCount; doc += rows) {
+                int count = Math.min(rows, _documentsCount - doc);
+                int from = doc * _neighboursCount;
+                int to = from + count * _neighboursCount;
+                buffer.clear();
+                for (int i = from; i < to; ++i)
+                    buffer.putInt(_neighbours.get(i));
+                buffer.flip();
+                writeFully(channel, buffer, getNeighboursPosition(
+                        _documentsCount, _neighboursCount, doc));
+                buffer.clear();
+                for (int i = from; i < to; ++i)
+                    buffer.putFloat(_scores.get(i));
+                buffer.flip();
+                writeFully(channel, buffer, getScoresPosition(_documentsCount,
+                        _neighboursCount, doc));
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a table written by {@link #write(File)} or by
+     * {@link AllPairsKnnBuilder}.
+     *
+     * @param file the file to read
+     * @param map  true to memory map the file, false to copy it in memory
+     * @return the table
+     * @throws IOException if an I/O error occurs or the file is not valid
+     */
+    public static KnnNeighboursTable read(File file, boolean map)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("The file is not a KNN neighbours table");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported KNN neighbours table version "
+                        + version);
+            int documents = header.getInt();
+            int neighbours = header.getInt();
+            long size = (long) documents * neighbours * 4;
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalStateException(
+                        "The KNN neighbours table is too large to be read");
+            if (channel.size() < getFileSize(documents, neighbours))
+                throw new EOFException("Truncated KNN neighbours table");
+
+            long neighboursPosition = getNeighboursPosition(documents,
+                    neighbours, 0);
+            long scoresPosition = getScoresPosition(documents, neighbours, 0);
+            ByteBuffer neighboursBuffer;
+            ByteBuffer scoresBuffer;
+            if (map) {
+                // The mappings remain valid after the channel is closed.
+                neighboursBuffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        neighboursPosition, size);
+                scoresBuffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        scoresPosition, size);
+            } else {
+                neighboursBuffer = ByteBuffer.allocate((int) size);
+                readFully(channel, neighboursBuffer, neighboursPosition);
+                neighboursBuffer.flip();
+                scoresBuffer = ByteBuffer.allocate((int) size);
+                readFully(channel, scoresBuffer, scoresPosition);
+                scoresBuffer.flip();
+            }
+            return new KnnNeighboursTable(documents, neighbours,
+                    neighboursBuffer.asIntBuffer(), scoresBuffer.asFloatBuffer());
+        } finally {
+            raf.close();
+        }
+    }
+
+    static long getFileSize(int documents, int neighbours) {
+        return HEADER_SIZE + (long) documents * neighbours * 8;
+    }
+
+    static long getNeighboursPosition(int documents, int neighbours, int doc) {
+        return HEADER_SIZE + (long) doc * neighbours * 4;
+    }
+
+    static long getScoresPosition(int documents, int neighbours, int doc) {
+        return HEADER_SIZE + ((long) documents + doc) * neighbours * 4;
+    }
+
+    static void writeHeader(FileChannel channel, int documents, int neighbours)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(documents);
+        header.putInt(neighbours);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long pos)
+            throws IOException {
+        while (buffer.hasRemaining())
+            pos += channel.write(buffer, pos);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0)
+                throw new EOFException("Truncated KNN neighbours table");
+            pos += read;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import java.util.Vector;
+
+/**
+ * The similar documents found by a KNN search, stored in primitive arrays in
+ * increasing order of similarity, the same order of the vectors returned by
+ * the searchers. An instance can be reused by any number of searches, its
+ * arrays are reallocated only when a search returns more documents than ever
+ * before.
+ */
+public class KnnResults {
+
+    protected int[] _docs;
+    protected double[] _scores;
+    protected int _size;
+
+    public KnnResults() {
+        this(16);
+    }
+
+    public KnnResults(int capacity) {
+        _docs = new int[Math.max(1, capacity)];
+        _scores = new double[_docs.length];
+        _size = 0;
+    }
+
+    /**
+     * @return the number of similar documents
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @param i the position, between 0 and {@link #size()}
+     * @return the ID of the i-th least similar document
+     */
+    public int getDocument(int i) {
+        return _docs[i];
+    }
+
+    /**
+     * @param i the position, between 0 and {@link #size()}
+     * @return the score of the i-th least similar document
+     */
+    public double getScore(int i) {
+        return _scores[i];
+    }
+
+    public void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Empty the results and make room for the given number of documents.
+     *
+     * @param capacity the number of documents which will be added
+     */
+    public void reset(int capacity) {
+        if (_docs.length < capacity) {
+            _docs = new int[capacity];
+            _scores = new double[capacity];
+        }
+        _size = 0;
+    }
+
+    /**
+     * Add a document after the ones already stored, which must be less
+     * similar. The capacity must have been reserved with {@link #reset(int)}.
+     *
+     * @param doc   the document ID
+     * @param score the document score
+     */
+    public void add(int doc, double score) {
+        _docs[_size] = doc;
+        _scores[_size] = score;
+        ++_size;
+    }
+
+    /**
+     * Replace the content with the given similar documents.
+     *
+     * @param docs the documents in increasing order of similarity
+     */
+    public void set(Vector<SimilarDocument> docs) {
+        reset(docs.size());
+        for (int i = 0; i < docs.size(); ++i) {
+            SimilarDocument doc = docs.get(i);
+            add(doc.docID, doc.score);
+        }
+    }
+
+    /**
+     * @return the similar documents as objects, in the same order
+     */
+    public Vector<SimilarDocument> toVector() {
+        Vector<SimilarDocument> docs = new Vector<SimilarDocument>(_size);
+        for (int i = 0; i < _size; ++i)
+            docs.add(new SimilarDocument(_docs[i], _scores[i]));
+        return docs;
+    }
+}
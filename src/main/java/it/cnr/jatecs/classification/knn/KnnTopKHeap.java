@@ -0,0 +1,192 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import java.util.Vector;
+
+/**
+ * Bounded min-heap keeping the k documents with the highest scores, stored in
+ * primitive arrays. Ties on the score are broken in favour of the lower
+ * document ID, so the content of the heap does not depend on the order in
+ * which the documents are offered. The heap can be reused for several
+ * searches by calling {@link #clear(int)}.
+ */
+public class KnnTopKHeap {
+
+    protected int[] _docs;
+    protected double[] _scores;
+    protected int _size;
+    protected int _capacity;
+
+    public KnnTopKHeap(int capacity) {
+        _docs = new int[Math.max(1, capacity)];
+        _scores = new double[_docs.length];
+        clear(capacity);
+    }
+
+    /**
+     * Empty the heap and set its capacity, growing the arrays if needed.
+     *
+     * @param capacity the maximum number of documents kept
+     */
+    public void clear(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("The capacity must be positive");
+        if (_docs.length < capacity) {
+            _docs = new int[capacity];
+            _scores = new double[capacity];
+        }
+        _capacity = capacity;
+        _size = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public int capacity() {
+        return _capacity;
+    }
+
+    public boolean isFull() {
+        return _size == _capacity;
+    }
+
+    /**
+     * @return the lowest score in the heap, the one a document must beat to
+     * enter a full heap
+     */
+    public double minScore() {
+        return _scores[0];
+    }
+
+    /**
+     * Offer a document to the heap.
+     *
+     * @param doc   the document ID
+     * @param score the document score
+     * @return true if the document has been added
+     */
+    public boolean offer(int doc, double score) {
+        if (_size < _capacity) {
+            int pos = _size++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!worse(doc, score, _docs[parent], _scores[parent]))
+                    break;
+                _docs[pos] = _docs[parent];
+                _scores[pos] = _scores[parent];
+                pos = parent;
+            }
+            _docs[pos] = doc;
+            _scores[pos] = score;
+            return true;
+        }
+        if (_capacity == 0 || !worse(_docs[0], _scores[0], doc, score))
+            return false;
+        siftDown(doc, score, _size);
+        return true;
+    }
+
+    /**
+     * Empty the heap, writing its content in increasing order of relevance,
+     * i.e. the best document last.
+     *
+     * @param docs   the destination of the document IDs, at least
+     *               {@link #size()} long
+     * @param scores the destination of the scores, at least {@link #size()}
+     *               long
+     * @return the number of documents written
+     */
+    public int drainAscending(int[] docs, double[] scores) {
+        int count = _size;
+        for (int i = 0; i < count; ++i) {
+            docs[i] = _docs[0];
+            scores[i] = _scores[0];
+            --_size;
+            if (_size > 0)
+                siftDown(_docs[_size], _scores[_size], _size);
+        }
+        return count;
+    }
+
+    /**
+     * Empty the heap, adding its content to the given vector in increasing
+     * order of relevance, the same order used by {@link TextualKnnSearcher}.
+     *
+     * @param result the vector to fill
+     */
+    public void drainAscending(Vector<SimilarDocument> result) {
+        while (_size > 0) {
+            result.add(new SimilarDocument(_docs[0], _scores[0]));
+            --_size;
+            if (_size > 0)
+                siftDown(_docs[_size], _scores[_size], _size);
+        }
+    }
+
+    /**
+     * Empty the heap, replacing the content of the given results with the
+     * documents in increasing order of relevance.
+     *
+     * @param results the results to fill
+     */
+    public void drainAscending(KnnResults results) {
+        results.reset(_size);
+        while (_size > 0) {
+            results.add(_docs[0], _scores[0]);
+            --_size;
+            if (_size > 0)
+                siftDown(_docs[_size], _scores[_size], _size);
+        }
+    }
+
+    private void siftDown(int doc, double score, int size) {
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size
+                    && worse(_docs[child + 1], _scores[child + 1], _docs[child],
+                    _scores[child]))
+                ++child;
+            if (!worse(_docs[child], _scores[child], doc, score))
+                break;
+            _docs[pos] = _docs[child];
+            _scores[pos] = _scores[child];
+            pos = child;
+        }
+        _docs[pos] = doc;
+        _scores[pos] = score;
+    }
+
+    private static boolean worse(int doc1, double score1, int doc2,
+                                 double score2) {
+        if (score1 != score2)
+            return score1 < score2;
+        return doc1 > doc2;
+    }
+}
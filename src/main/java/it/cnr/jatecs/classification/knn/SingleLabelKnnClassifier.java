@@ -28,6 +28,7 @@ import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
 import it.cnr.jatecs.classification.interfaces.IClassifierRuntimeCustomizer;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
@@ -36,12 +37,18 @@ import java.util.Iterator;
 import java.util.TreeSet;
 import java.util.Vector;
 
-public class SingleLabelKnnClassifier implements IClassifier {
+public class SingleLabelKnnClassifier implements IConcurrentClassifier {
     protected IIndex _training;
     private SingleLabelKnnClassifierCustomizer _customizer;
+    /**
+     * The similar documents of the last search, reused by every search.
+     */
+    protected KnnResults _results;
+
     public SingleLabelKnnClassifier(IIndex training) {
         _training = training;
         _customizer = new SingleLabelKnnClassifierCustomizer();
+        _results = new KnnResults();
     }
 
     public ClassificationResult classify(IIndex testIndex, int docID) {
@@ -50,7 +57,8 @@ public class SingleLabelKnnClassifier implements IClassifier {
 
         SingleLabelKnnClassifierCustomizer cust = (SingleLabelKnnClassifierCustomizer) getRuntimeCustomizer();
         int maxKValue = cust.getK();
-        Vector<SimilarDocument> allSimilar = cust._searcher.search(testIndex, docID, _training, maxKValue);
+        KnnResults allSimilar = _results;
+        cust._searcher.search(testIndex, docID, _training, maxKValue, allSimilar);
 
         double scores[] = new double[_training.getCategoryDB().getCategoriesCount()];
         double avgs[] = new double[_training.getCategoryDB().getCategoriesCount()];
@@ -61,11 +69,10 @@ public class SingleLabelKnnClassifier implements IClassifier {
 
         //double norm = 0;
         for (int i = 0; i < allSimilar.size(); i++) {
-            SimilarDocument doc = allSimilar.get(i);
-            IShortIterator cats = _training.getClassificationDB().getDocumentCategories(doc.docID);
+            IShortIterator cats = _training.getClassificationDB().getDocumentCategories(allSimilar.getDocument(i));
             while (cats.hasNext()) {
                 short catID = cats.next();
-                scores[catID] += doc.score;
+                scores[catID] += allSimilar.getScore(i);
                 //norm += doc.score;
             }
         }
@@ -222,4 +229,17 @@ public class SingleLabelKnnClassifier implements IClassifier {
 
     }
 
+    /**
+     * @return a copy of the classifier with a clone of the searcher, which
+     * may keep per-query buffers.
+     */
+    public IClassifier getWorkerClassifier() {
+        SingleLabelKnnClassifierCustomizer cust = (SingleLabelKnnClassifierCustomizer) _customizer
+                .cloneObject();
+        cust.setSearcher(cust.getSearcher().cloneSearcher());
+        SingleLabelKnnClassifier cl = new SingleLabelKnnClassifier(_training);
+        cl.setRuntimeCustomizer(cust);
+        return cl;
+    }
+
 }
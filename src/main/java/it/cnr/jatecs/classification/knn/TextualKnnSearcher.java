@@ -24,55 +24,186 @@
 
 package it.cnr.jatecs.classification.knn;
 
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.indexing.similarity.DocumentVectors;
 import it.cnr.jatecs.indexing.similarity.EuclideanDistance;
 import it.cnr.jatecs.indexing.similarity.IBaseSimilarityFunction;
 import it.cnr.jatecs.indexing.similarity.ISimilarityFunction;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.Arrays;
 import java.util.Vector;
 
+/**
+ * KNN searcher scoring every training document with a similarity function.
+ * The best documents are kept in a {@link KnnTopKHeap}, with ties broken in
+ * favour of the lower document IDs, and the buffers used by a search are
+ * reused by the following ones. With a {@link CosineSimilarityFunction} the
+ * searched document is loaded once in a dense weight vector, and each
+ * training document is scored by a single scan of its packed features (see
+ * {@link DocumentVectors}), giving the same scores of the function.
+ * <p>
+ * Instead of a similarity function the searcher can use a precomputed
+ * {@link KnnNeighboursTable} of cosine similarities, see
+ * {@link #setNeighboursTable(KnnNeighboursTable, int[], int[])}. The
+ * instances are not thread-safe, use {@link #cloneSearcher()} to get a
+ * searcher for another thread.
+ */
 public class TextualKnnSearcher implements IKnnSearcher {
 
     protected boolean _sameIndexes;
     protected ISimilarityFunction _similarity;
     protected float[][] _matrixSimilarity;
+    protected KnnNeighboursTable _neighbours;
+    protected int[] _neighboursTraining;
+    protected int[] _neighboursTest;
+
+    protected KnnTopKHeap _heap;
+    protected KnnResults _results;
+    protected double[] _query;
+    protected int[] _queryFeatures;
 
     public TextualKnnSearcher() {
         _similarity = new EuclideanDistance();
         _sameIndexes = false;
         _matrixSimilarity = null;
+        _neighbours = null;
+        _heap = new KnnTopKHeap(30);
+        _results = new KnnResults();
+        _query = new double[0];
+        _queryFeatures = new int[16];
     }
 
     public Vector<SimilarDocument> search(IIndex testIndex, int docID, IIndex trainingIndex, int numSimilar) {
-        Vector<SimilarDocument> docs = new Vector<SimilarDocument>();
+        search(testIndex, docID, trainingIndex, numSimilar, _results);
+        return _results.toVector();
+    }
+
+    public void search(IIndex testIndex, int docID, IIndex trainingIndex,
+                       int numSimilar, KnnResults results) {
+        int documents = trainingIndex.getDocumentDB().getDocumentsCount();
+        _heap.clear(Math.max(0, Math.min(numSimilar, documents)));
+        if (_heap.capacity() == 0) {
+            results.clear();
+            return;
+        }
+        // The heap keeps the highest values, negate the distances.
+        double sign = _similarity.compareSimilarity(1, 0) >= 0 ? 1 : -1;
 
-        TreeSet<SimilarDocument> sorted = new TreeSet<SimilarDocument>(new SimilarDocumentComparator(_similarity));
+        if (_matrixSimilarity != null) {
+            for (int d = 0; d < documents; ++d)
+                _heap.offer(d, sign * _matrixSimilarity[d][docID]);
+        } else if (_neighbours != null) {
+            // The table contains cosine similarities.
+            sign = 1;
+            if (!searchNeighbours(docID, documents)) {
+                _heap.clear(_heap.capacity());
+                searchCosine(testIndex, docID, trainingIndex, documents);
+            }
+        } else if (_similarity.getClass() == CosineSimilarityFunction.class) {
+            searchCosine(testIndex, docID, trainingIndex, documents);
+        } else {
+            IIntIterator it = trainingIndex.getDocumentDB().getDocuments();
+            while (it.hasNext()) {
+                int d = it.next();
+                _heap.offer(d, sign
+                        * _similarity.compute(docID, testIndex, d, trainingIndex));
+            }
+        }
+
+        _heap.drainAscending(results);
+        if (sign < 0) {
+            for (int i = 0; i < results._size; ++i)
+                results._scores[i] = -results._scores[i];
+        }
+    }
 
-        IIntIterator it = trainingIndex.getDocumentDB().getDocuments();
-        while (it.hasNext()) {
-            int d = it.next();
-            double score = 0;
+    /**
+     * Add to the heap the neighbours of the searched document found in the
+     * table, if they are training documents.
+     *
+     * @return false if the table does not contain enough training documents
+     * to fill the heap
+     */
+    protected boolean searchNeighbours(int docID, int documents) {
+        KnnNeighboursTable table = _neighbours;
+        int query = _neighboursTest == null ? docID : _neighboursTest[docID];
+        int count = table.getNeighboursCount();
+        for (int i = 0; i < count; ++i) {
+            int neighbour = table.getNeighbour(query, i);
+            int d = _neighboursTraining == null ? neighbour : Arrays
+                    .binarySearch(_neighboursTraining, neighbour);
+            if (d < 0 || d >= documents)
+                continue;
+            _heap.offer(d, table.getScore(query, i));
+            // The following neighbours can not enter a full heap.
+            if (_heap.isFull())
+                return true;
+        }
+        return table.isComplete();
+    }
 
-            if (_matrixSimilarity != null)
-                score = _matrixSimilarity[d][docID];
-            else
-                score = _similarity.compute(docID, testIndex, d, trainingIndex);
+    /**
+     * Score the training documents with the cosine similarity, adding them
+     * to the heap. The sums are done in the same order of
+     * {@link CosineSimilarityFunction}.
+     */
+    protected void searchCosine(IIndex testIndex, int docID,
+                                IIndex trainingIndex, int documents) {
+        int features = trainingIndex.getFeatureDB().getFeaturesCount();
+        if (_query.length < features)
+            _query = new double[features];
+        double[] query = _query;
 
-            sorted.add(new SimilarDocument(d, score));
-            if (sorted.size() > numSimilar)
-                sorted.remove(sorted.first());
+        // Load the searched document.
+        IContentDB testContent = testIndex.getContentDB();
+        IWeightingDB testWeighting = testIndex.getWeightingDB();
+        int size = testContent.getDocumentFeaturesCount(docID);
+        if (_queryFeatures.length < size)
+            _queryFeatures = new int[size];
+        int loaded = 0;
+        double queryNorm = 0;
+        IIntIterator feats = testContent.getDocumentFeatures(docID);
+        while (feats.hasNext()) {
+            int feat = feats.next();
+            double weight = testWeighting.getDocumentFeatureWeight(docID, feat);
+            queryNorm += weight * weight;
+            if (feat < features) {
+                query[feat] = weight;
+                _queryFeatures[loaded++] = feat;
+            }
         }
+        boolean empty = size == 0;
+        queryNorm = Math.sqrt(queryNorm);
 
-        Iterator<SimilarDocument> itSim = sorted.iterator();
-        while (itSim.hasNext()) {
-            SimilarDocument sd = itSim.next();
-            docs.add(sd);
+        DocumentVectors vectors = DocumentVectors.get(trainingIndex);
+        int[] trainingFeatures = vectors.getFeatures();
+        double[] trainingWeights = vectors.getWeights();
+        for (int d = 0; d < documents; ++d) {
+            int start = vectors.getStart(d);
+            int end = vectors.getEnd(d);
+            if (empty || start == end) {
+                _heap.offer(d, 0);
+                continue;
+            }
+            double numerator = 0;
+            for (int i = start; i < end; ++i) {
+                double queryWeight = query[trainingFeatures[i]];
+                if (queryWeight != 0)
+                    numerator += queryWeight * trainingWeights[i];
+            }
+            double similarity = numerator / (queryNorm * vectors.getNorm(d));
+            // Correct round problems.
+            if (similarity > 1)
+                similarity = 1;
+            _heap.offer(d, similarity);
         }
 
-        return docs;
+        for (int i = 0; i < loaded; ++i)
+            query[_queryFeatures[i]] = 0;
     }
 
     public void setUseSameIndexesData(boolean sameIndexesData) {
@@ -87,6 +218,38 @@ public class TextualKnnSearcher implements IKnnSearcher {
         _matrixSimilarity = matrix;
     }
 
+    /**
+     * Use a table of neighbours computed on the same index used for the
+     * searches, as both training and test index.
+     *
+     * @param table the table of neighbours, null to stop using it
+     */
+    public void setNeighboursTable(KnnNeighboursTable table) {
+        setNeighboursTable(table, null, null);
+    }
+
+    /**
+     * Use a table of neighbours computed on an index whose documents are
+     * split in the training and the test indexes used for the searches. The
+     * similarity function is used only if a searched document has not
+     * enough training documents among its neighbours, and must be a
+     * {@link CosineSimilarityFunction} to get consistent scores.
+     *
+     * @param table             the table of neighbours, null to stop using it
+     * @param trainingDocuments the document of the table corresponding to
+     *                          each document of the training index, in
+     *                          increasing order; null if they are the same
+     * @param testDocuments     the document of the table corresponding to
+     *                          each document of the test index; null if they
+     *                          are the same
+     */
+    public void setNeighboursTable(KnnNeighboursTable table,
+                                   int[] trainingDocuments, int[] testDocuments) {
+        _neighbours = table;
+        _neighboursTraining = trainingDocuments;
+        _neighboursTest = testDocuments;
+    }
+
     public IBaseSimilarityFunction getSimilarityFunction() {
         return _similarity;
     }
@@ -95,4 +258,21 @@ public class TextualKnnSearcher implements IKnnSearcher {
         _similarity = func;
     }
 
+    public IKnnSearcher cloneSearcher() {
+        TextualKnnSearcher searcher = new TextualKnnSearcher();
+        searcher._sameIndexes = _sameIndexes;
+        searcher._matrixSimilarity = _matrixSimilarity;
+        searcher._neighbours = _neighbours;
+        searcher._neighboursTraining = _neighboursTraining;
+        searcher._neighboursTest = _neighboursTest;
+        // Some similarity functions keep a cache, use a new instance when
+        // possible.
+        try {
+            searcher._similarity = _similarity.getClass().newInstance();
+        } catch (Exception e) {
+            searcher._similarity = _similarity;
+        }
+        return searcher;
+    }
+
 }
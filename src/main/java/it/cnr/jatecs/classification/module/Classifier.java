@@ -28,8 +28,11 @@ import gnu.trove.TShortDoubleHashMap;
 import it.cnr.jatecs.classification.ClassificationMode;
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
+import it.cnr.jatecs.classification.ClassificationScoreLayout;
+import it.cnr.jatecs.classification.ClassificationScoreWriter;
 import it.cnr.jatecs.classification.ClassifierRange;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
 import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
@@ -40,6 +43,11 @@ import it.cnr.jatecs.utils.TextualProgressBar;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class Classifier extends JatecsModule {
 
     private IClassifier _classifier;
@@ -51,8 +59,17 @@ public class Classifier extends JatecsModule {
     private boolean _saveConfidences;
     private ClassificationScoreDB _classification;
 
+    private ClassificationScoreLayout _confidencesLayout;
+    private int _confidencesWidth;
+    private File _confidencesFile;
+    private ClassificationScoreWriter _confidencesWriter;
+
     private TShortDoubleHashMap _thresholds;
 
+    private int _threads;
+
+    private int _blockSize;
+
     public Classifier(IIndex testIndex, IClassifier classifier) {
         this(testIndex, classifier, false);
     }
@@ -65,13 +82,91 @@ public class Classifier extends JatecsModule {
         _classificationDB = null;
         _classification = null;
         _saveConfidences = saveConfidences;
+        _confidencesLayout = ClassificationScoreLayout.SPARSE;
+        _confidencesWidth = 0;
+        _confidencesFile = null;
+        _confidencesWriter = null;
         _thresholds = null;
+        _threads = Runtime.getRuntime().availableProcessors();
+        _blockSize = 10000;
     }
 
     public void setClassificationMode(ClassificationMode mode) {
         _mode = mode;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used in the
+     * {@link ClassificationMode#PARALLEL_PER_DOCUMENT} mode, by default the
+     * number of available processors.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    /**
+     * Set the number of documents classified in parallel before their results
+     * are stored, which bounds the number of results kept in memory.
+     *
+     * @param blockSize the number of documents of a block
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("The block size must be positive");
+        _blockSize = blockSize;
+    }
+
+    public ClassificationScoreLayout getConfidencesLayout() {
+        return _confidencesLayout;
+    }
+
+    /**
+     * Set the layout of the saved confidences, by default
+     * {@link ClassificationScoreLayout#SPARSE}.
+     *
+     * @param layout the layout
+     * @param width  the number of categories in the
+     *               {@link ClassificationScoreLayout#DENSE} layout, the number
+     *               of scores kept for each document in the
+     *               {@link ClassificationScoreLayout#TOP_N} layout, ignored in
+     *               the sparse layout
+     */
+    public void setConfidencesLayout(ClassificationScoreLayout layout, int width) {
+        if (layout == null)
+            throw new NullPointerException("The specified layout is 'null'");
+        _confidencesLayout = layout;
+        _confidencesWidth = width;
+    }
+
+    public File getConfidencesFile() {
+        return _confidencesFile;
+    }
+
+    /**
+     * Save the confidences in the given binary file, see
+     * {@link ClassificationScoreWriter}. When the documents are classified
+     * one at a time the confidences are written while they are computed,
+     * without keeping them in memory, and {@link #getConfidences()} returns
+     * the file memory mapped.
+     *
+     * @param file the destination file, null to not save the confidences
+     */
+    public void setConfidencesFile(File file) {
+        _confidencesFile = file;
+    }
+
     public IClassificationDB getClassificationDB() {
         return _classificationDB;
     }
@@ -91,44 +186,195 @@ public class Classifier extends JatecsModule {
         IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
                 index().getDocumentDB(), index().getCategoryDB());
 
-        if (_saveConfidences)
-            _classification = new ClassificationScoreDB(index().getDocumentDB()
-                    .getDocumentsCount());
+        openConfidences(true);
 
         docs.begin();
         while (docs.hasNext()) {
             int docID = docs.next();
             ClassificationResult res = _classifier.classify(index(), docID);
 
-            for (int i = 0; i < res.categoryID.size(); i++) {
-                short catID = res.categoryID.get(i);
-                ClassifierRange cr = _classifier.getClassifierRange(catID);
+            storeResult(builder, res);
 
-                double threshold = cr.border;
-                if (_thresholds != null && _thresholds.containsKey(catID)) {
-                    threshold = _thresholds.get(catID);
-                }
+            numComputed++;
 
-                if (res.score.get(i) >= threshold) {
-                    builder.setDocumentCategory(docID, catID);
-                }
-                if (_saveConfidences) {
-                    _classification.insertScore(docID,
+            // Signal the status of actual operation.
+            bar.signal((numComputed * 100) / numToCompute);
+        }
+
+        bar.signal(100);
+
+        closeConfidences();
+        _classificationDB = builder.getClassificationDB();
+    }
+
+    /**
+     * Prepare the storage of the confidences, if they have to be saved.
+     *
+     * @param streaming true if the documents are classified in order, so the
+     *                  confidences can be written directly to the
+     *                  confidences file
+     */
+    protected void openConfidences(boolean streaming) {
+        int documents = index().getDocumentDB().getDocumentsCount();
+        _classification = null;
+        _confidencesWriter = null;
+        if (streaming && _confidencesFile != null) {
+            try {
+                _confidencesWriter = new ClassificationScoreWriter(
+                        _confidencesFile, _confidencesLayout, documents,
+                        _confidencesWidth);
+            } catch (IOException e) {
+                throw new RuntimeException("Writing the confidences to "
+                        + _confidencesFile, e);
+            }
+        } else if (_saveConfidences || _confidencesFile != null) {
+            _classification = new ClassificationScoreDB(documents,
+                    _confidencesLayout, _confidencesWidth);
+        }
+    }
+
+    /**
+     * Complete the confidences file, if any, mapping it as the confidences
+     * when they have been written while classifying.
+     */
+    protected void closeConfidences() {
+        try {
+            if (_confidencesWriter != null) {
+                _confidencesWriter.close();
+                _confidencesWriter = null;
+                _classification = ClassificationScoreDB.readBinary(
+                        _confidencesFile, true);
+            } else if (_confidencesFile != null) {
+                _classification.writeBinary(_confidencesFile);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Writing the confidences to "
+                    + _confidencesFile, e);
+        }
+    }
+
+    protected void storeResult(IClassificationDBBuilder builder,
+                               ClassificationResult res) {
+        int docID = res.documentID;
+        for (int i = 0; i < res.categoryID.size(); i++) {
+            short catID = res.categoryID.get(i);
+            ClassifierRange cr = _classifier.getClassifierRange(catID);
+
+            double threshold = cr.border;
+            if (_thresholds != null && _thresholds.containsKey(catID)) {
+                threshold = _thresholds.get(catID);
+            }
+
+            if (res.score.get(i) >= threshold) {
+                builder.setDocumentCategory(docID, catID);
+            }
+            if (_confidencesWriter != null) {
+                try {
+                    _confidencesWriter.insertScore(docID,
                             res.categoryID.get(i), res.score.get(i), cr);
+                } catch (IOException e) {
+                    throw new RuntimeException("Writing the confidences to "
+                            + _confidencesFile, e);
                 }
+            } else if (_classification != null) {
+                _classification.insertScore(docID,
+                        res.categoryID.get(i), res.score.get(i), cr);
             }
+        }
+    }
 
-            numComputed++;
+    /**
+     * Classify the documents a block at a time: the documents of a block are
+     * classified by the worker threads, each one writing the results in its
+     * own slots of the block, then the results are stored in document order
+     * by this thread, so the output is the same of
+     * {@link #classifyPerDocument()}.
+     */
+    protected void classifyParallelPerDocument() {
+        TextualProgressBar bar = new TextualProgressBar("Classify documents");
+        bar.signal(0);
+        int numToCompute = index().getDocumentDB().getDocumentsCount();
 
-            // Signal the status of actual operation.
-            bar.signal((numComputed * 100) / numToCompute);
+        IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
+                index().getDocumentDB(), index().getCategoryDB());
+
+        openConfidences(true);
+
+        final IConcurrentClassifier classifier = (IConcurrentClassifier) _classifier;
+        ThreadLocal<IClassifier> workers = new ThreadLocal<IClassifier>() {
+            @Override
+            protected IClassifier initialValue() {
+                return classifier.getWorkerClassifier();
+            }
+        };
+        ClassificationResult[] results = new ClassificationResult[Math.min(
+                _blockSize, Math.max(1, numToCompute))];
+        int grain = Math.max(1, Math.min(256, results.length / (_threads * 8)));
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            for (int start = 0; start < numToCompute; start += results.length) {
+                int end = Math.min(numToCompute, start + results.length);
+                pool.invoke(new ClassifyTask(index(), workers, results, start,
+                        start, end, grain));
+                for (int docID = start; docID < end; docID++) {
+                    storeResult(builder, results[docID - start]);
+                    results[docID - start] = null;
+                }
+
+                // Signal the status of actual operation.
+                bar.signal((int) ((end * 100L) / numToCompute));
+            }
+        } finally {
+            pool.shutdown();
         }
 
         bar.signal(100);
 
+        closeConfidences();
         _classificationDB = builder.getClassificationDB();
     }
 
+    protected static class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IIndex _index;
+        private final ThreadLocal<IClassifier> _workers;
+        private final ClassificationResult[] _results;
+        private final int _offset;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+
+        public ClassifyTask(IIndex index, ThreadLocal<IClassifier> workers,
+                            ClassificationResult[] results, int offset, int from, int to,
+                            int grain) {
+            _index = index;
+            _workers = workers;
+            _results = results;
+            _offset = offset;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _grain) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new ClassifyTask(_index, _workers, _results,
+                                _offset, _from, middle, _grain),
+                        new ClassifyTask(_index, _workers, _results, _offset,
+                                middle, _to, _grain));
+                return;
+            }
+
+            IClassifier classifier = _workers.get();
+            for (int docID = _from; docID < _to; docID++)
+                _results[docID - _offset] = classifier.classify(_index, docID);
+        }
+    }
+
     protected void classifyPerCategory() {
         IShortIterator cats = index().getCategoryDB().getCategories();
 
@@ -140,9 +386,7 @@ public class Classifier extends JatecsModule {
         IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
                 index().getDocumentDB(), index().getCategoryDB());
 
-        if (_saveConfidences)
-            _classification = new ClassificationScoreDB(index().getDocumentDB()
-                    .getDocumentsCount());
+        openConfidences(false);
 
         cats.begin();
         while (cats.hasNext()) {
@@ -162,7 +406,7 @@ public class Classifier extends JatecsModule {
                 if (res.score.get(0) >= threshold) {
                     builder.setDocumentCategory(res.documentID, catID);
                 }
-                if (_saveConfidences) {
+                if (_classification != null) {
                     _classification.insertScore(res.documentID, catID,
                             res.score.get(0), cr);
                 }
@@ -176,6 +420,7 @@ public class Classifier extends JatecsModule {
 
         bar.signal(100);
 
+        closeConfidences();
         _classificationDB = builder.getClassificationDB();
     }
 
@@ -183,7 +428,16 @@ public class Classifier extends JatecsModule {
     protected void processModule() {
         long start = System.currentTimeMillis();
 
-        if (_mode == ClassificationMode.PER_DOCUMENT) {
+        if (_mode == ClassificationMode.PARALLEL_PER_DOCUMENT
+                && _classifier instanceof IConcurrentClassifier) {
+            JatecsLogger.status().info(
+                    "Classifying documents with " + _threads + " threads.");
+            classifyParallelPerDocument();
+        } else if (_mode == ClassificationMode.PER_DOCUMENT
+                || _mode == ClassificationMode.PARALLEL_PER_DOCUMENT) {
+            if (_mode == ClassificationMode.PARALLEL_PER_DOCUMENT)
+                JatecsLogger.execution().warning(
+                        "The classifier does not support concurrent classification.");
             JatecsLogger.status().info("Classifying a document at a time.");
             classifyPerDocument();
         } else {
@@ -31,6 +31,8 @@ import it.cnr.jatecs.classification.adaboost.InMemoryWeakHypothesis;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+import it.cnr.jatecs.weighting.dense.Weighting2DAdapter;
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
 import it.cnr.jatecs.weighting.interfaces.IWeighting3DManager;
 
 public class MPWeakLearner implements IWeakLearner {
@@ -41,6 +43,9 @@ public class MPWeakLearner implements IWeakLearner {
     {
         int catsSize = matrix.getFirstDimensionSize();
         int docsSize = matrix.getSecondDimensionSize();
+        IWeighting2DManager dist = Weighting2DAdapter.adapt(matrix);
+        // The distribution values of the current document.
+        double[] docWeights = new double[catsSize];
 
         double _epsilon = 1.0 / (double) (catsSize * docsSize);
 
@@ -83,7 +88,7 @@ public class MPWeakLearner implements IWeakLearner {
                     catID);
             while (it.hasNext()) {
                 int docID = it.next();
-                double distValue = matrix.getWeight(catID, docID, 0);
+                double distValue = dist.getWeight(catID, docID);
                 assert (distValue >= 0);
                 weight_b1[catID] += distValue;
             }
@@ -96,7 +101,7 @@ public class MPWeakLearner implements IWeakLearner {
 
             // Iterate over all distribution matrix.
             for (int docID = 0; docID < docsSize; docID++) {
-                double distValue = matrix.getWeight(catID, docID, 0);
+                double distValue = dist.getWeight(catID, docID);
                 assert (distValue >= 0);
                 global += distValue;
             }
@@ -124,6 +129,7 @@ public class MPWeakLearner implements IWeakLearner {
 
             while (itFeatDocs.hasNext()) {
                 int docID = itFeatDocs.next();
+                dist.getSecondRow(docID, docWeights);
                 IShortIterator itDocCats = index.getClassificationDB()
                         .getDocumentCategories(docID);
                 short nextCatID = 0;
@@ -131,13 +137,13 @@ public class MPWeakLearner implements IWeakLearner {
                     short currentCatID = itDocCats.next();
 
                     for (short i = nextCatID; i < currentCatID; i++) {
-                        double distValue = matrix.getWeight(i, docID, 0);
+                        double distValue = docWeights[i];
                         assert (distValue >= 0);
                         // Feature compare on document and category not.
                         weight_bminus_1_x1[i] += distValue;
                     }
 
-                    double distValue = matrix.getWeight(currentCatID, docID, 0);
+                    double distValue = docWeights[currentCatID];
                     assert (distValue >= 0);
                     // Feature and category compare together.
                     weight_b1_x1[currentCatID] += distValue;
@@ -145,7 +151,7 @@ public class MPWeakLearner implements IWeakLearner {
                     nextCatID = (short) (currentCatID + 1);
                 }
                 for (short i = nextCatID; i < catsSize; ++i) {
-                    double distValue = matrix.getWeight(i, docID, 0);
+                    double distValue = docWeights[i];
                     assert (distValue >= 0);
                     // Feature compare on document and category not.
                     weight_bminus_1_x1[i] += distValue;
@@ -217,4 +223,6 @@ public class MPWeakLearner implements IWeakLearner {
 
     }
 
+    public void shutdown() {
+    }
 }
@@ -26,105 +26,41 @@ package it.cnr.jatecs.classification.mpboost;
 
 import it.cnr.jatecs.classification.adaboost.IWeakHypothesis;
 import it.cnr.jatecs.classification.adaboost.IWeakLearner;
-import it.cnr.jatecs.classification.adaboost.InMemoryWeakHypothesis;
+import it.cnr.jatecs.classification.adaboost.WeakLearnerEngine;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
-import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.weighting.interfaces.IWeighting3DManager;
 
+/**
+ * Multi-thread version of {@link MPWeakLearner}, giving the same results. The
+ * threads are kept alive between the iterations, until {@link #shutdown()}
+ * is called at the end of the learning.
+ */
 public class MPWeakLearnerMultiThread implements IWeakLearner {
 
-    int threadCount;
-    private int completedThreads;
+    protected WeakLearnerEngine _engine;
 
     public MPWeakLearnerMultiThread() {
-        threadCount = 2;
+        this(2);
     }
 
     public MPWeakLearnerMultiThread(int threadCount) {
-        if (threadCount < 1)
-            throw new IllegalArgumentException(
-                    "The specified number of threads must be greater equals to 1");
-        this.threadCount = threadCount;
+        _engine = new WeakLearnerEngine(threadCount, true);
     }
 
-    public synchronized IWeakHypothesis getNewWeakHypothesis(
-            IWeighting3DManager matrix, IIndex index) {
-        int catsSize = matrix.getFirstDimensionSize();
-        int docsSize = matrix.getSecondDimensionSize();
-
-        double _epsilon = 1.0 / (double) (catsSize * docsSize);
-
-        double[] weight_b1 = new double[catsSize];
-        double[] weight_bminus_1 = new double[catsSize];
-
-        for (int pos = 0; pos < catsSize; pos++) {
-            weight_b1[pos] = 0;
-            weight_bminus_1[pos] = 0;
-        }
-
-        // Compute positive weight for categories.
-        for (short catID = 0; catID < catsSize; catID++) {
-            IIntIterator it = index.getClassificationDB().getCategoryDocuments(
-                    catID);
-            while (it.hasNext()) {
-                int docID = it.next();
-                double distValue = matrix.getWeight(catID, docID, 0);
-                assert (distValue >= 0);
-                weight_b1[catID] += distValue;
-            }
-
-        }
-
-        // Compute global weight for categories.
-        for (int catID = 0; catID < catsSize; catID++) {
-            double global = 0;
-
-            // Iterate over all distribution matrix.
-            for (int docID = 0; docID < docsSize; docID++) {
-                double distValue = matrix.getWeight(catID, docID, 0);
-                assert (distValue >= 0);
-                global += distValue;
-            }
-
-            weight_bminus_1[catID] = global - weight_b1[catID];
-            assert (weight_bminus_1[catID] >= 0);
-        }
-
-        completedThreads = 0;
-        FeatureEvaluationThread[] threads = new FeatureEvaluationThread[threadCount];
-        for (int t = 0; t < threadCount; ++t) {
-            threads[t] = new FeatureEvaluationThread(t, threadCount, this,
-                    weight_b1, weight_bminus_1, index, matrix, _epsilon);
-            Thread th = new Thread(threads[t]);
-            th.start();
-        }
-
-        try {
-            this.wait();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        InMemoryWeakHypothesis bestWh = threads[0].GetBestHypothesis();
-        double[] bestScores = threads[0].GetBestHypothesisScores();
-        for (int i = 1; i < threadCount; ++i) {
-            InMemoryWeakHypothesis otherHyp = threads[i].GetBestHypothesis();
-            double[] otherScores = threads[i].GetBestHypothesisScores();
-            for (int j = 0; j < catsSize; ++j) {
-                if (otherScores[j] < bestScores[j]) {
-                    bestWh.setValue((short) j, otherHyp.value((short) j));
-                    bestScores[j] = otherScores[j];
-                }
-            }
-        }
-        return bestWh;
+    public int getThreadCount() {
+        return _engine.getThreadCount();
+    }
 
+    public IWeakHypothesis getNewWeakHypothesis(IWeighting3DManager matrix,
+                                                IIndex index) {
+        return _engine.getNewWeakHypothesis(matrix, index);
     }
 
-    protected synchronized void signalThreadEnd(int id) {
-        ++completedThreads;
-        if (completedThreads == threadCount)
-            this.notify();
+    /**
+     * Stop the threads used by the learner.
+     */
+    public void shutdown() {
+        _engine.shutdown();
     }
 
 }
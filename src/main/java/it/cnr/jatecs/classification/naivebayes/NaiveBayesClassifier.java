@@ -27,6 +27,8 @@ package it.cnr.jatecs.classification.naivebayes;
 import it.cnr.jatecs.classification.BaseClassifier;
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.Os;
 import it.cnr.jatecs.utils.iterators.RangeShortIterator;
@@ -36,16 +38,24 @@ import it.cnr.jatecs.weighting.mmap.MemomyMappedWeighting3D;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-public class NaiveBayesClassifier extends BaseClassifier {
+public class NaiveBayesClassifier extends BaseClassifier implements
+        IConcurrentClassifier {
 
     MemomyMappedWeighting3D _weights;
     private String _modelDir;
+    protected volatile double[] _logWeights;
+    protected int _featuresCount;
+    protected int _categoriesCount;
+
     public NaiveBayesClassifier() {
         super();
         _customizer = new NaiveBayesClassifierCustomizer();
         _modelDir = null;
         _weights = null;
+        _logWeights = null;
     }
 
     protected void read(String modelDir) throws IOException {
@@ -54,6 +64,7 @@ public class NaiveBayesClassifier extends BaseClassifier {
         _weights = new MemomyMappedWeighting3D();
         _weights.open(modelDir, "naivebayes", false);
         _modelDir = modelDir;
+        _logWeights = null;
     }
 
     public void write(String modelDir) throws IOException {
@@ -63,53 +74,187 @@ public class NaiveBayesClassifier extends BaseClassifier {
                 new File(modelDir + Os.pathSeparator() + "naivebayes"));
     }
 
-    public ClassificationResult classify(IIndex testIndex, int docID) {
-        ClassificationResult cr = new ClassificationResult();
-        cr.documentID = docID;
-        IShortIterator cats = new RangeShortIterator((short) 0,
-                (short) _weights.getSecondDimensionSize());
-        if (((NaiveBayesClassifierCustomizer) _customizer)._trueProbabilities) {
-            while (cats.hasNext()) {
-                short cat = cats.next();
-                double score = 1.0;
-                IIntIterator feats = testIndex.getContentDB()
-                        .getDocumentFeatures(docID);
-                while (feats.hasNext()) {
-                    int feat = feats.next();
-                    score *= _weights.getWeight(feat, cat, 0);
-                }
-                double catRatio = _weights.getWeight(_weights
-                        .getFirstDimensionSize() - 1, cat, 0);
-                score *= catRatio;
-                score = score / (score + catRatio);
-                cr.score.add(score);
-                cr.categoryID.add(cat);
-            }
-        } else {
-            while (cats.hasNext()) {
-                short cat = cats.next();
-                double score = 1.0;
-                IIntIterator feats = testIndex.getContentDB()
-                        .getDocumentFeatures(docID);
-                while (feats.hasNext()) {
-                    int feat = feats.next();
-                    score *= _weights.getWeight(feat, cat, 0);
+    /**
+     * @return the natural logarithms of the model weights in a feature-major
+     * array: the weights of feature f for all the categories start at
+     * f * categories, the ones of the a-priori ratios at features *
+     * categories. They are loaded from the model on the first call.
+     */
+    protected double[] getLogWeights() {
+        double[] logWeights = _logWeights;
+        if (logWeights == null) {
+            synchronized (this) {
+                if (_logWeights == null) {
+                    int features = _weights.getFirstDimensionSize();
+                    int categories = _weights.getSecondDimensionSize();
+                    logWeights = new double[getLogWeightsSize(features,
+                            categories)];
+                    int pos = 0;
+                    for (int feat = 0; feat < features; feat++)
+                        for (short cat = 0; cat < categories; cat++)
+                            logWeights[pos++] = Math.log(_weights.getWeight(
+                                    feat, cat, 0));
+                    _featuresCount = features - 1;
+                    _categoriesCount = categories;
+                    _logWeights = logWeights;
                 }
-                score *= _weights.getWeight(
-                        _weights.getFirstDimensionSize() - 1, cat, 0);
-                cr.score.add(score);
-                cr.categoryID.add(cat);
+                logWeights = _logWeights;
             }
         }
+        return logWeights;
+    }
+
+    /**
+     * @return the size of the array of the log weights of a model
+     * @throws IllegalStateException if the model has too many weights to be
+     *                               kept in a single array
+     */
+    protected static int getLogWeightsSize(int features, int categories) {
+        long size = (long) features * categories;
+        // Some virtual machines reserve a few words of the largest arrays.
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("The model is too big to load its "
+                    + "log weights in memory: " + features + " features x "
+                    + categories + " categories");
+        return (int) size;
+    }
+
+    /**
+     * Compute the logarithm of the (not normalized) score of the document
+     * for all the categories, in a single pass over its features. The
+     * features unknown to the model are ignored.
+     */
+    protected void computeLogScores(IIndex testIndex, int docID,
+                                    double[] logWeights, double[] scores) {
+        int categories = _categoriesCount;
+        System.arraycopy(logWeights, _featuresCount * categories, scores, 0,
+                categories);
+        IIntIterator feats = testIndex.getContentDB().getDocumentFeatures(
+                docID);
+        while (feats.hasNext()) {
+            int feat = feats.next();
+            if (feat < 0 || feat >= _featuresCount)
+                continue;
+            int offset = feat * categories;
+            for (int cat = 0; cat < categories; cat++)
+                scores[cat] += logWeights[offset + cat];
+        }
+    }
+
+    protected ClassificationResult classify(IIndex testIndex, int docID,
+                                            double[] logWeights, double[] scores) {
+        computeLogScores(testIndex, docID, logWeights, scores);
+        NaiveBayesClassifierCustomizer customizer = (NaiveBayesClassifierCustomizer) _customizer;
+        int categories = _categoriesCount;
+        int priors = _featuresCount * categories;
+        ClassificationResult cr = new ClassificationResult(categories);
+        cr.documentID = docID;
+        for (int cat = 0; cat < categories; cat++) {
+            double score;
+            if (customizer._trueProbabilities)
+                // P / (P + catRatio), computed without leaving the log space.
+                score = 1.0 / (1.0 + Math.exp(logWeights[priors + cat]
+                        - scores[cat]));
+            else if (customizer._logScores)
+                score = scores[cat];
+            else
+                score = Math.exp(scores[cat]);
+            cr.score.add(score);
+            cr.categoryID.add((short) cat);
+        }
         return cr;
     }
 
+    public ClassificationResult classify(IIndex testIndex, int docID) {
+        double[] logWeights = getLogWeights();
+        return classify(testIndex, docID, logWeights,
+                new double[_categoriesCount]);
+    }
+
+    /**
+     * Classify all the documents of the test index, splitting them over the
+     * number of threads set in the customizer.
+     *
+     * @param testIndex the test index
+     * @return the classification results, indexed by document ID
+     */
+    public ClassificationResult[] classify(IIndex testIndex) {
+        double[] logWeights = getLogWeights();
+        int documents = testIndex.getDocumentDB().getDocumentsCount();
+        ClassificationResult[] results = new ClassificationResult[documents];
+        if (documents == 0)
+            return results;
+
+        int threads = ((NaiveBayesClassifierCustomizer) _customizer)._threads;
+        ClassifyTask task = new ClassifyTask(this, testIndex, logWeights,
+                results, 0, documents, Math.max(1, documents / (threads * 8)));
+        if (threads > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        } else
+            task.classify(0, documents);
+        return results;
+    }
+
+    protected static class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final NaiveBayesClassifier _classifier;
+        private final IIndex _testIndex;
+        private final double[] _logWeights;
+        private final ClassificationResult[] _results;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+
+        public ClassifyTask(NaiveBayesClassifier classifier, IIndex testIndex,
+                            double[] logWeights, ClassificationResult[] results, int from,
+                            int to, int grain) {
+            _classifier = classifier;
+            _testIndex = testIndex;
+            _logWeights = logWeights;
+            _results = results;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _grain) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new ClassifyTask(_classifier, _testIndex,
+                                _logWeights, _results, _from, middle, _grain),
+                        new ClassifyTask(_classifier, _testIndex, _logWeights,
+                                _results, middle, _to, _grain));
+                return;
+            }
+            classify(_from, _to);
+        }
+
+        protected void classify(int from, int to) {
+            double[] scores = new double[_classifier._categoriesCount];
+            for (int docID = from; docID < to; docID++)
+                _results[docID] = _classifier.classify(_testIndex, docID,
+                        _logWeights, scores);
+        }
+    }
+
     public ClassifierRange getClassifierRange(short catID) {
         ClassifierRange cr = new ClassifierRange();
         if (((NaiveBayesClassifierCustomizer) _customizer)._trueProbabilities) {
             cr.minimum = 0.0;
             cr.maximum = 1.0;
             cr.border = 0.5;
+        } else if (((NaiveBayesClassifierCustomizer) _customizer)._logScores) {
+            cr.minimum = -Double.MAX_VALUE;
+            cr.maximum = Double.MAX_VALUE;
+            cr.border = 0.0;
         } else {
             cr.minimum = 0.0;
             cr.maximum = Double.MAX_VALUE;
@@ -140,10 +285,16 @@ public class NaiveBayesClassifier extends BaseClassifier {
                 }
             }
             _weights = null;
+            _logWeights = null;
             Os.delete(new File(_modelDir + Os.pathSeparator() + "naivebayes"));
             Os.deleteDirectory(new File(_modelDir));
             _modelDir = null;
         }
     }
 
+    public IClassifier getWorkerClassifier() {
+        // The log weights are loaded under synchronization, the rest is read-only.
+        return this;
+    }
+
 }
@@ -31,17 +31,52 @@ public class NaiveBayesClassifierCustomizer implements
 
     protected boolean _trueProbabilities;
 
+    protected boolean _logScores;
+
+    protected int _threads;
+
     public NaiveBayesClassifierCustomizer() {
         _trueProbabilities = true;
+        _logScores = false;
+        _threads = Runtime.getRuntime().availableProcessors();
     }
 
     public void computeTrueProbabilities(boolean enable) {
         _trueProbabilities = enable;
     }
 
+    /**
+     * When the true probabilities are not computed, return the logarithm of
+     * the score instead of the score, which can underflow for long
+     * documents.
+     *
+     * @param enable true to return the logarithm of the scores
+     */
+    public void computeLogScores(boolean enable) {
+        _logScores = enable;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used to classify a whole test index, by
+     * default the number of available processors.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
     public IClassifierRuntimeCustomizer cloneObject() {
         NaiveBayesClassifierCustomizer c = new NaiveBayesClassifierCustomizer();
         c._trueProbabilities = _trueProbabilities;
+        c._logScores = _logScores;
+        c._threads = _threads;
 
         return c;
     }
@@ -36,12 +36,19 @@ import it.cnr.jatecs.weighting.mmap.MemoryMappedWeighting3DBuilder;
 
 import java.io.IOException;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * http://en.wikipedia.org/wiki/Naive_Bayesian_classification
  */
 public class NaiveBayesLearner extends BaseLearner {
 
+    /**
+     * Distinguishes the weights directories of classifiers built in the same
+     * millisecond, e.g. by the concurrent folds of a k-fold evaluation.
+     */
+    private static final AtomicLong _builds = new AtomicLong();
+
     public NaiveBayesLearner() {
         super();
         _customizer = new NaiveBayesLearnerCustomizer();
@@ -50,7 +57,7 @@ public class NaiveBayesLearner extends BaseLearner {
     public IClassifier build(IIndex trainingIndex) {
         String path = Os.getTemporaryDirectory() + Os.pathSeparator()
                 + "naivebayes" + Os.pathSeparator()
-                + System.currentTimeMillis();
+                + System.currentTimeMillis() + "_" + _builds.incrementAndGet();
         String name = "naivebayes";
 
         NaiveBayesLearnerCustomizer customizer = (NaiveBayesLearnerCustomizer) _customizer;
@@ -192,7 +199,7 @@ public class NaiveBayesLearner extends BaseLearner {
     public IClassifier mergeClassifiers(Vector<IClassifier> classifiers) {
         String path = Os.getTemporaryDirectory() + Os.pathSeparator()
                 + "naivebayes" + Os.pathSeparator()
-                + System.currentTimeMillis();
+                + System.currentTimeMillis() + "_" + _builds.incrementAndGet();
         String name = "naivebayes";
         NaiveBayesClassifier cl = (NaiveBayesClassifier) classifiers.get(0);
         int numFeatures = cl._weights.getFirstDimensionSize();
@@ -29,12 +29,15 @@ import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.classification.BaseClassifier;
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-public class RocchioClassifier extends BaseClassifier {
+public class RocchioClassifier extends BaseClassifier implements
+        IConcurrentClassifier {
 
     TIntDoubleHashMap[] vectors;
 
@@ -88,4 +91,9 @@ public class RocchioClassifier extends BaseClassifier {
         return new TShortArrayListIterator(ar);
     }
 
+    public IClassifier getWorkerClassifier() {
+        // The profiles are only read while classifying.
+        return this;
+    }
+
 }
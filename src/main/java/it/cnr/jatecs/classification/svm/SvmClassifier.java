@@ -28,6 +28,8 @@ import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.classification.BaseClassifier;
 import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.interfaces.IConcurrentClassifier;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
@@ -36,7 +38,8 @@ import libsvm.svm;
 import libsvm.svm_model;
 import libsvm.svm_node;
 
-public class SvmClassifier extends BaseClassifier {
+public class SvmClassifier extends BaseClassifier implements
+        IConcurrentClassifier {
 
     svm_model[] _models;
 
@@ -102,4 +105,9 @@ public class SvmClassifier extends BaseClassifier {
         return new TShortArrayListIterator(l);
     }
 
+    public IClassifier getWorkerClassifier() {
+        // svm_predict_values does not modify the models.
+        return this;
+    }
+
 }
@@ -29,6 +29,7 @@ import it.cnr.jatecs.classification.ClassificationResult;
 import it.cnr.jatecs.classification.ClassifierRange;
 import it.cnr.jatecs.classification.OptimalConfiguration;
 import it.cnr.jatecs.classification.ThresholdOptimizerType;
+import it.cnr.jatecs.classification.ThresholdSweep;
 import it.cnr.jatecs.classification.interfaces.*;
 import it.cnr.jatecs.evaluation.ContingencyTable;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
@@ -42,18 +43,22 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.TreeSet;
+import java.util.Arrays;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class ThresholdBoostClassifierOptimizer implements IClassifierOptimizer {
 
     protected ThresholdOptimizerType _optimizerType;
     protected int _decimalPrecision;
     private String _dirname;
+    protected int _threads;
 
     public ThresholdBoostClassifierOptimizer() {
         _optimizerType = ThresholdOptimizerType.F1;
         _decimalPrecision = 20;
+        _threads = 1;
     }
 
     public void writeDistributionsOnDirectory(String dirname) {
@@ -177,107 +182,63 @@ public class ThresholdBoostClassifierOptimizer implements IClassifierOptimizer {
             TShortArrayList externalCategories,
             Vector<IClassifierRuntimeCustomizer> customizers,
             TShortArrayList internalCategories) {
-        IShortIterator cats = new TShortArrayListIterator(internalCategories);
-
-        IClassifierRuntimeCustomizer customizer = target;
-
-        IThresholdClassifier cValid = (IThresholdClassifier) customizer;
-        int count = 0;
-        while (cats.hasNext()) {
-            short catID = cats.next();
-            short externalCatID = externalCategories.get(count++);
-
-            double bestThreshold = Math.abs(Double.MAX_VALUE);
-            double bestEffectiveness = -Double.MAX_VALUE;
-
-            // Merge all together is a single vector.
-            Vector<Pair<Double, Boolean>> all = new Vector<Pair<Double, Boolean>>();
-            for (int i = 0; i < customizers.size(); i++) {
-                IClassifierRuntimeCustomizer c = customizers.get(i);
-
-                ThresholdBoostCustomizerOptimizer cust = (ThresholdBoostCustomizerOptimizer) c;
-                Vector<Pair<Double, Boolean>> el = cust._scores.get(catID);
-
-                for (int j = 0; j < el.size(); j++) {
-                    Pair<Double, Boolean> p = el.get(j);
-                    all.add(p);
-                }
-            }
-
-            Pair<Double, Boolean> zero = new Pair<Double, Boolean>(0.0, true);
-            all.add(zero);
-
-            Vector<Effectiveness> effec = new Vector<Effectiveness>();
-            TreeSet<ThresholdStructure> ts = new TreeSet<ThresholdStructure>();
-            for (int i = 0; i < all.size(); i++) {
-                Pair<Double, Boolean> ref = all.get(i);
-
-                // Build a contingency table for this configuration.
-                ContingencyTable ct = new ContingencyTable();
-                for (int j = 0; j < all.size(); j++) {
-                    Pair<Double, Boolean> p = all.get(j);
-                    if (p.getFirst() >= ref.getFirst() && p.getSecond())
-                        ct.setTP(ct.tp() + 1);
-                    else if (p.getFirst() >= ref.getFirst() && !p.getSecond())
-                        ct.setFP(ct.fp() + 1);
-                    else if (p.getFirst() < ref.getFirst() && p.getSecond())
-                        ct.setFN(ct.fn() + 1);
-                    else
-                        ct.setTN(ct.tn() + 1);
-                }
+        assignBestThresholds(target, externalCategories, customizers,
+                internalCategories, false);
+    }
 
-                // Evaluate this configuration.
-                double effectiveness = 0;
-
-                if (_optimizerType == ThresholdOptimizerType.ACCURACY)
-                    effectiveness = ct.accuracy();
-                else if (_optimizerType == ThresholdOptimizerType.ERROR)
-                    effectiveness = ct.error();
-                else if (_optimizerType == ThresholdOptimizerType.F1)
-                    effectiveness = ct.f1();
-                else if (_optimizerType == ThresholdOptimizerType.PRECISION)
-                    effectiveness = ct.precision();
-                else if (_optimizerType == ThresholdOptimizerType.RECALL)
-                    effectiveness = ct.recall();
-
-                ThresholdStructure st = new ThresholdStructure(i);
-                st.efficiency = effectiveness;
-                st.threshold = ref.getFirst();
-                st.table = ct;
-                assert (ts.add(st));
-
-                if (effectiveness > bestEffectiveness) {
-                    bestThreshold = ref.getFirst();
-                    bestEffectiveness = effectiveness;
-                } else if (effectiveness == bestEffectiveness
-                        && Math.abs(ref.getFirst()) < bestThreshold) {
-                    bestThreshold = Math.abs(ref.getFirst());
-                    bestEffectiveness = effectiveness;
-                }
+    public void assignBestClassifierConfiguration(
+            IClassifierRuntimeCustomizer target,
+            TShortArrayList externalCategories,
+            Vector<IClassifierRuntimeCustomizer> customizers,
+            TShortArrayList internalCategories) {
+        assignBestThresholds(target, externalCategories, customizers,
+                internalCategories, true);
+    }
 
-                Effectiveness e = new Effectiveness();
-                e.f1 = ct.f1();
-                e.accuracy = ct.accuracy();
-                e.precision = ct.precision();
-                e.recall = ct.recall();
-                effec.add(e);
-            }
+    public int getThreads() {
+        return _threads;
+    }
 
-            if (_dirname != null) {
-                writeDistributionForCategory(externalCatID, all, effec);
-            }
+    /**
+     * @param threads the number of categories optimized at the same time
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
 
-			/*
-			 * Iterator<ThresholdStructure> it = ts.iterator(); int counter = 0;
-			 * while(it.hasNext()) { ThresholdStructure s = it.next();
-			 * System.out.println("Actual effectiveness: "+s.efficiency+"
-			 * Threshold: "+s.threshold+" tp="+s.table.tp()+ ",
-			 * fp="+s.table.fp()+", tn="+s.table.tn()+", fn="+s.table.fn());
-			 * counter++; if (counter == 30000) break; }
-			 */
+    /**
+     * Select the threshold of each category among the validation scores of
+     * all the customizers, and set it on the target.
+     *
+     * @param posNeg true to maximize the average of the F1 of the positive
+     *               and negative class, false to maximize the measure of the
+     *               optimization type
+     */
+    protected void assignBestThresholds(IClassifierRuntimeCustomizer target,
+                                        TShortArrayList externalCategories,
+                                        Vector<IClassifierRuntimeCustomizer> customizers,
+                                        TShortArrayList internalCategories, boolean posNeg) {
+        IThresholdClassifier cValid = (IThresholdClassifier) target;
+        short[] categories = internalCategories.toNativeArray();
+        double[] thresholds = new double[categories.length];
+        double[] effectiveness = new double[categories.length];
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1,
+                Math.min(_threads, categories.length)));
+        try {
+            pool.invoke(new CategoriesTask(this, customizers, categories,
+                    externalCategories, posNeg, thresholds, effectiveness, 0,
+                    categories.length));
+        } finally {
+            pool.shutdown();
+        }
 
+        for (int i = 0; i < categories.length; i++) {
+            short externalCatID = externalCategories.get(i);
             ClassifierRange range = new ClassifierRange();
-            range.border = bestThreshold;
+            range.border = thresholds[i];
             range.minimum = -Double.MAX_VALUE;
             range.maximum = Double.MAX_VALUE;
             cValid.setClassifierRange(externalCatID, range);
@@ -285,114 +246,141 @@ public class ThresholdBoostClassifierOptimizer implements IClassifierOptimizer {
             JatecsLogger.status().println(
                     "For category " + externalCatID + " the border is "
                             + range.border + ". The best effectiveness is "
-                            + bestEffectiveness);
+                            + effectiveness[i]);
         }
-
     }
 
-    public void assignBestClassifierConfiguration(
-            IClassifierRuntimeCustomizer target,
-            TShortArrayList externalCategories,
-            Vector<IClassifierRuntimeCustomizer> customizers,
-            TShortArrayList internalCategories) {
-        IShortIterator cats = new TShortArrayListIterator(internalCategories);
-
-        IClassifierRuntimeCustomizer customizer = target;
-
-        IThresholdClassifier cValid = (IThresholdClassifier) customizer;
-        int count = 0;
-        while (cats.hasNext()) {
-            short catID = cats.next();
-            short externalCatID = externalCategories.get(count++);
-
-            double bestThreshold = Math.abs(Double.MAX_VALUE);
-            double bestEffectiveness = -Double.MAX_VALUE;
-
-            // Merge all together is a single vector.
-            Vector<Pair<Double, Boolean>> all = new Vector<Pair<Double, Boolean>>();
-            for (int i = 0; i < customizers.size(); i++) {
-                IClassifierRuntimeCustomizer c = customizers.get(i);
-
-                ThresholdBoostCustomizerOptimizer cust = (ThresholdBoostCustomizerOptimizer) c;
-                Vector<Pair<Double, Boolean>> el = cust._scores.get(catID);
-
-                for (int j = 0; j < el.size(); j++) {
-                    Pair<Double, Boolean> p = el.get(j);
-                    all.add(p);
-                }
-            }
-
-            Pair<Double, Boolean> zero = new Pair<Double, Boolean>(0.0, true);
-            all.add(zero);
-
-            Vector<Effectiveness> effec = new Vector<Effectiveness>();
-            for (int i = 0; i < all.size(); i++) {
-                Pair<Double, Boolean> ref = all.get(i);
-
-                // Build a contingency table for this configuration.
-                ContingencyTable ct = new ContingencyTable();
-                for (int j = 0; j < all.size(); j++) {
-                    Pair<Double, Boolean> p = all.get(j);
-                    if (p.getFirst() >= ref.getFirst() && p.getSecond())
-                        ct.setTP(ct.tp() + 1);
-                    else if (p.getFirst() >= ref.getFirst() && !p.getSecond())
-                        ct.setFP(ct.fp() + 1);
-                    else if (p.getFirst() < ref.getFirst() && p.getSecond())
-                        ct.setFN(ct.fn() + 1);
-                    else
-                        ct.setTN(ct.tn() + 1);
-                }
-
-                // Evaluate this configuration.
-                double effectiveness = 0;
+    /**
+     * Select the threshold of a category. Every validation score, and 0, is
+     * a candidate; the scores are sorted once and the contingency table of
+     * each distinct score is computed in a single sweep. The candidates are
+     * then visited in their original order, so ties are resolved as by the
+     * exhaustive comparison of all the pairs of scores.
+     *
+     * @return the best threshold and its effectiveness
+     */
+    protected double[] selectThreshold(Vector<IClassifierRuntimeCustomizer> customizers,
+                                       short catID, short externalCatID, boolean posNeg) {
+        // Merge all together is a single vector.
+        Vector<Pair<Double, Boolean>> all = new Vector<Pair<Double, Boolean>>();
+        for (int i = 0; i < customizers.size(); i++) {
+            ThresholdBoostCustomizerOptimizer cust = (ThresholdBoostCustomizerOptimizer) customizers
+                    .get(i);
+            all.addAll(cust._scores.get(catID));
+        }
+        all.add(new Pair<Double, Boolean>(0.0, true));
 
-                // effectiveness = Math.abs(ct.precision()-ct.recall());
+        double[] scores = new double[all.size()];
+        boolean[] relevant = new boolean[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            scores[i] = all.get(i).getFirst();
+            relevant[i] = all.get(i).getSecond();
+        }
+        // A NaN score is neither above nor below the threshold, so it is a
+        // true negative also for a relevant document.
+        ThresholdSweep sweep = new ThresholdSweep(scores, relevant, true);
+        double[] distinct = sweep.getDistinctScores();
+        ContingencyTable[] tables = sweep.evaluate(distinct);
+
+        double bestThreshold = Math.abs(Double.MAX_VALUE);
+        double bestEffectiveness = -Double.MAX_VALUE;
+        Vector<Effectiveness> effec = new Vector<Effectiveness>();
+        for (int i = 0; i < scores.length; i++) {
+            double ref = scores[i];
+            ContingencyTable ct;
+            if (Double.isNaN(ref)) {
+                // No score is compared as above or below a NaN threshold.
+                ct = new ContingencyTable();
+                ct.setTN(scores.length);
+            } else
+                ct = tables[Arrays.binarySearch(distinct, ref)];
+
+            // Evaluate this configuration.
+            double effectiveness;
+            if (posNeg)
                 effectiveness = (ct.f1Pos() + ct.f1Neg()) / 2;
+            else
+                effectiveness = ThresholdSweep.getEffectiveness(ct,
+                        _optimizerType);
+
+            if (effectiveness > bestEffectiveness) {
+                bestThreshold = ref;
+                bestEffectiveness = effectiveness;
+            } else if (effectiveness == bestEffectiveness
+                    && Math.abs(ref) < bestThreshold) {
+                bestThreshold = Math.abs(ref);
+                bestEffectiveness = effectiveness;
+            }
 
-                // if (effectiveness < bestEffectiveness)
-                if (effectiveness > bestEffectiveness) {
-                    bestThreshold = ref.getFirst();
-                    bestEffectiveness = effectiveness;
-                } else if (effectiveness == bestEffectiveness
-                        && Math.abs(ref.getFirst()) < bestThreshold) {
-                    bestThreshold = Math.abs(ref.getFirst());
-                    bestEffectiveness = effectiveness;
-                }
-
+            if (_dirname != null) {
                 Effectiveness e = new Effectiveness();
                 e.f1 = ct.f1();
                 e.accuracy = ct.accuracy();
                 e.precision = ct.precision();
                 e.recall = ct.recall();
-                e.f1PosNeg = (ct.f1Pos() + ct.f1Neg()) / 2;
+                if (posNeg)
+                    e.f1PosNeg = (ct.f1Pos() + ct.f1Neg()) / 2;
                 effec.add(e);
             }
+        }
 
-            if (_dirname != null) {
-                writeDistributionForCategory(externalCatID, all, effec);
-            }
-
-			/*
-			 * Iterator<ThresholdStructure> it = ts.iterator(); int counter = 0;
-			 * while(it.hasNext()) { ThresholdStructure s = it.next();
-			 * System.out.println("Actual effectiveness: "+s.efficiency+"
-			 * Threshold: "+s.threshold+" tp="+s.table.tp()+ ",
-			 * fp="+s.table.fp()+", tn="+s.table.tn()+", fn="+s.table.fn());
-			 * counter++; if (counter == 30000) break; }
-			 */
+        if (_dirname != null) {
+            writeDistributionForCategory(externalCatID, all, effec);
+        }
 
-            ClassifierRange range = new ClassifierRange();
-            range.border = bestThreshold;
-            range.minimum = -Double.MAX_VALUE;
-            range.maximum = Double.MAX_VALUE;
-            cValid.setClassifierRange(externalCatID, range);
+        return new double[]{bestThreshold, bestEffectiveness};
+    }
 
-            JatecsLogger.status().println(
-                    "For category " + externalCatID + " the border is "
-                            + range.border + ". The best effectiveness is "
-                            + bestEffectiveness);
+    protected static class CategoriesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ThresholdBoostClassifierOptimizer _optimizer;
+        private final Vector<IClassifierRuntimeCustomizer> _customizers;
+        private final short[] _categories;
+        private final TShortArrayList _externalCategories;
+        private final boolean _posNeg;
+        private final double[] _thresholds;
+        private final double[] _effectiveness;
+        private final int _from;
+        private final int _to;
+
+        public CategoriesTask(ThresholdBoostClassifierOptimizer optimizer,
+                              Vector<IClassifierRuntimeCustomizer> customizers,
+                              short[] categories, TShortArrayList externalCategories,
+                              boolean posNeg, double[] thresholds, double[] effectiveness,
+                              int from, int to) {
+            _optimizer = optimizer;
+            _customizers = customizers;
+            _categories = categories;
+            _externalCategories = externalCategories;
+            _posNeg = posNeg;
+            _thresholds = thresholds;
+            _effectiveness = effectiveness;
+            _from = from;
+            _to = to;
         }
 
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new CategoriesTask(_optimizer, _customizers,
+                                _categories, _externalCategories, _posNeg,
+                                _thresholds, _effectiveness, _from, middle),
+                        new CategoriesTask(_optimizer, _customizers,
+                                _categories, _externalCategories, _posNeg,
+                                _thresholds, _effectiveness, middle, _to));
+                return;
+            }
+            if (_from == _to)
+                return;
+            double[] best = _optimizer.selectThreshold(_customizers,
+                    _categories[_from], _externalCategories.get(_from),
+                    _posNeg);
+            _thresholds[_from] = best[0];
+            _effectiveness[_from] = best[1];
+        }
     }
 
     public void assignBestLearnerConfiguration(
@@ -27,6 +27,7 @@ package it.cnr.jatecs.classification.treeboost;
 import gnu.trove.TIntArrayList;
 import gnu.trove.TShortArrayList;
 import gnu.trove.TShortIntHashMap;
+import it.cnr.jatecs.classification.knn.KnnNeighboursTable;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexing.similarity.EuclideanDistance;
 import it.cnr.jatecs.indexing.similarity.ISimilarityFunction;
@@ -64,6 +65,10 @@ public class BestKNNNegativesChooser implements INegativesChooser {
      */
     protected int _maxNumNearest;
     protected int _numGrouped;
+    /**
+     * The precomputed neighbours of the documents, if any.
+     */
+    protected KnnNeighboursTable _neighbours;
 
     public BestKNNNegativesChooser() {
         _similarity = new EuclideanDistance();
@@ -74,6 +79,22 @@ public class BestKNNNegativesChooser implements INegativesChooser {
         _storingDir = "KNNNegativesChooser";
         _maxNumNearest = 20;
         _numGrouped = 10;
+        _neighbours = null;
+    }
+
+    /**
+     * Use a table of the neighbours of the documents of the index, computed
+     * with the cosine similarity, in place of the comparison of all the
+     * pairs of documents with the similarity function. The distance between
+     * two documents is one minus their similarity, and only the positives
+     * among the neighbours of a negative, or having the negative among their
+     * neighbours, are considered.
+     *
+     * @param neighbours the table of neighbours, null to compare all the
+     *                   pairs of documents
+     */
+    public void setNeighboursTable(KnnNeighboursTable neighbours) {
+        _neighbours = neighbours;
     }
 
     public void setNumGroupedCategories(int numGrouped) {
@@ -258,6 +279,46 @@ public class BestKNNNegativesChooser implements INegativesChooser {
         }
     }
 
+    /**
+     * Fill the nearest positives of the negatives of the given categories
+     * with the pairs of documents found in the table of neighbours.
+     */
+    protected void computeNeighbours(TreeSet<Item>[][] struct,
+                                     IShortIterator cats) {
+        int documents = _neighbours.getDocumentsCount();
+        int neighbours = _neighbours.getNeighboursCount();
+        for (int docID1 = 0; docID1 < documents; docID1++) {
+            for (int i = 0; i < neighbours; i++) {
+                int docID2 = _neighbours.getNeighbour(docID1, i);
+                double distance = 1 - _neighbours.getScore(docID1, i);
+
+                cats.begin();
+                while (cats.hasNext()) {
+                    short catID = cats.next();
+
+                    boolean doc1B = _index.getClassificationDB()
+                            .hasDocumentCategory(docID1, catID);
+                    boolean doc2B = _index.getClassificationDB()
+                            .hasDocumentCategory(docID2, catID);
+                    if (doc1B == doc2B)
+                        continue;
+
+                    int posDocID = (doc1B == true) ? docID1 : docID2;
+                    int negDocID = (doc1B == true) ? docID2 : docID1;
+
+                    Item item = new Item();
+                    item.docID = posDocID;
+                    item.score = distance;
+
+                    struct[catID][negDocID].add(item);
+                    if (struct[catID][negDocID].size() > _maxNumNearest)
+                        struct[catID][negDocID].remove(struct[catID][negDocID]
+                                .last());
+                }
+            }
+        }
+    }
+
     protected void computeAllNegatives(IIndex _index, LRUMap<Double> cache,
                                        TShortIntHashMap numNegatives, TreeSet<Item>[][] struct) {
         IIntIterator it1 = _index.getDocumentDB().getDocuments();
@@ -298,32 +359,36 @@ public class BestKNNNegativesChooser implements INegativesChooser {
                 categories.begin();
                 int count = 0;
                 it1.begin();
-                while (it1.hasNext()) {
-                    int docID1 = it1.next();
-
-                    it2.begin();
-                    while (it2.hasNext()) {
-                        int docID2 = it2.next();
-                        if (docID2 > docID1)
-                            break;
-
-                        categories.begin();
-                        computeDistances(docID1, docID2, _index, cache,
-                                numNegatives, struct, categories);
+                if (_neighbours != null)
+                    computeNeighbours(struct, categories);
+                else {
+                    while (it1.hasNext()) {
+                        int docID1 = it1.next();
+
+                        it2.begin();
+                        while (it2.hasNext()) {
+                            int docID2 = it2.next();
+                            if (docID2 > docID1)
+                                break;
+
+                            categories.begin();
+                            computeDistances(docID1, docID2, _index, cache,
+                                    numNegatives, struct, categories);
+                        }
+
+                        if ((count % 25) != 0)
+                            JatecsLogger.status().print(".");
+                        else
+                            JatecsLogger.status().print("" + count);
+
+                        count++;
+                        if ((count % 50) == 0)
+                            JatecsLogger.status().println("");
+
+                        // DEBUG
+                        // if (count == 50)
+                        // break;
                     }
-
-                    if ((count % 25) != 0)
-                        JatecsLogger.status().print(".");
-                    else
-                        JatecsLogger.status().print("" + count);
-
-                    count++;
-                    if ((count % 50) == 0)
-                        JatecsLogger.status().println("");
-
-                    // DEBUG
-                    // if (count == 50)
-                    // break;
                 }
 
                 JatecsLogger.status()
@@ -26,7 +26,6 @@ package it.cnr.jatecs.classification.validator;
 
 import gnu.trove.TIntArrayList;
 import gnu.trove.TIntHashSet;
-import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
 import it.cnr.jatecs.classification.interfaces.IClassifierRuntimeCustomizer;
 import it.cnr.jatecs.classification.interfaces.ILearner;
@@ -35,18 +34,20 @@ import it.cnr.jatecs.classification.module.Classifier;
 import it.cnr.jatecs.evaluation.ClassificationComparer;
 import it.cnr.jatecs.evaluation.ContingencyTable;
 import it.cnr.jatecs.evaluation.ContingencyTableSet;
+import it.cnr.jatecs.indexes.DB.generic.IndexView;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
 import it.cnr.jatecs.utils.IOperationStatusListener;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.Pair;
 import it.cnr.jatecs.utils.iterators.FilteredIntIterator;
-import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
-import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class KFoldEvaluator {
 
@@ -61,6 +62,8 @@ public class KFoldEvaluator {
      */
     protected int _k;
 
+    protected int _threads;
+
 
     public KFoldEvaluator(ILearner learner, ILearnerRuntimeCustomizer learnerCustomizer,
                           IClassifierRuntimeCustomizer classifierCustomizer) {
@@ -69,6 +72,7 @@ public class KFoldEvaluator {
         _classifierCustomizer = classifierCustomizer;
         _k = 5;
         _percentageToUse = 100;
+        _threads = 1;
     }
 
     public static Pair<IIndex, IIndex> splitIndex(int step, IIndex index, short catID, int validationSteps) {
@@ -169,24 +173,12 @@ public class KFoldEvaluator {
 
         JatecsLogger.status().print("Computing the training and validation sets for category " + index.getCategoryDB().getCategoryName(catID) + "...");
 
-        TShortArrayList catsToRemove = new TShortArrayList();
-        IShortIterator itCats = index.getCategoryDB().getCategories();
-        while (itCats.hasNext()) {
-            short cat = itCats.next();
-            if (cat == catID)
-                continue;
-
-            catsToRemove.add(cat);
-        }
-
-        IIndex trIndex = index.cloneIndex();
-        trIndex.removeCategories(new TShortArrayListIterator(catsToRemove));
-        trIndex.removeDocuments(new TIntArrayListIterator(va), false);
+        // Read-only views of the index restricted to the category, they share
+        // the data of the index instead of copying it.
+        short[] categories = new short[]{catID};
+        IIndex trIndex = new IndexView(index, tr.toNativeArray(), categories);
 
-
-        IIndex vaIndex = index.cloneIndex();
-        vaIndex.removeCategories(new TShortArrayListIterator(catsToRemove));
-        vaIndex.removeDocuments(new TIntArrayListIterator(tr), false);
+        IIndex vaIndex = new IndexView(index, va.toNativeArray(), categories);
 
         assert (trIndex.getClassificationDB().getCategoryDocumentsCount((short) 0) == numPositivesInTraining);
         assert (vaIndex.getClassificationDB().getCategoryDocumentsCount((short) 0) == numPositivesInValidation);
@@ -264,71 +256,112 @@ public class KFoldEvaluator {
         int numComputed = 0;
         int toCompute = trainingIndex.getCategoryDB().getCategoriesCount();
 
+        _usedLearner.setRuntimeCustomizer(_learnerCustomizer);
+        ForkJoinPool pool = null;
+        if (_threads > 1 && _k > 1)
+            pool = new ForkJoinPool(Math.min(_threads, _k));
 
-        int count = 1;
-        cats.begin();
-        while (cats.hasNext()) {
-            short catID = cats.next();
+        try {
+            int count = 1;
+            cats.begin();
+            while (cats.hasNext()) {
+                short catID = cats.next();
 
-            TShortArrayList internalCategories = new TShortArrayList();
-            internalCategories.add((short) 0);
-            TShortArrayList externalCategories = new TShortArrayList();
-            externalCategories.add(catID);
+                JatecsLogger.status().println("" + count + ". Begin optimization of category " + trainingIndex.getCategoryDB().getCategoryName(catID));
+                count++;
 
-            JatecsLogger.status().println("" + count + ". Begin optimization of category " + trainingIndex.getCategoryDB().getCategoryName(catID));
-            count++;
+                ContingencyTable curCT = new ContingencyTable(trainingIndex.getCategoryDB().getCategoryName(catID));
 
-            ContingencyTable curCT = new ContingencyTable(trainingIndex.getCategoryDB().getCategoryName(catID));
+                ContingencyTable[] tables = new ContingencyTable[_k];
+                if (pool != null)
+                    pool.invoke(new FoldsTask(this, trainingIndex, index, pair.getSecond(), catID, tables, 0, _k));
 
+                for (int i = 0; i < _k; i++) {
+                    ContingencyTable ct = pool != null ? tables[i] : evaluateFold(i, trainingIndex, index, pair.getSecond(), catID);
+                    if (ct == null)
+                        // All possible steps was done.
+                        break;
 
-            for (int i = 0; i < _k; i++) {
-                JatecsLogger.status().println("Doing validation " + (i + 1) + "/" + _k + "...");
+                    curCT.setFN(curCT.fn() + ct.fn());
+                    curCT.setFP(curCT.fp() + ct.fp());
+                    curCT.setTN(curCT.tn() + ct.tn());
+                    curCT.setTP(curCT.tp() + ct.tp());
+                }
 
-                // Split the index in two parts: a training and a validation set.
-                Pair<IIndex, IIndex> indexes = splitIndex(i, trainingIndex, catID, _k);
-                if (indexes == null)
-                    // All possible steps was done.
-                    break;
+                globalCT.addContingenyTable(catID, curCT);
 
-                // In the case of computing accuracy over a subset of the original index,
-                // we make train over the subset of documents but we test all documents
-                // available on the original index.
-                integrateTestIndex(i, indexes.getSecond(), index, pair.getSecond(), _k);
+                numComputed++;
+                double percentage = ((double) (numComputed * 100)) / ((double) (toCompute));
+                if (status != null)
+                    status.operationStatus(percentage);
 
-                // Build learner with training.
-                _usedLearner.setRuntimeCustomizer(_learnerCustomizer);
-                IClassifier cl = _usedLearner.build(indexes.getFirst());
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
 
-                // Set the wanted classifier runtime customizer.
-                cl.setRuntimeCustomizer(_classifierCustomizer);
+        if (status != null)
+            status.operationStatus(100);
 
-                // Test learner with testing.
-                Classifier classifier = new Classifier(indexes.getSecond(), cl);
-                classifier.exec();
-                ClassificationComparer cc = new ClassificationComparer(classifier.getClassificationDB(), indexes.getSecond().getClassificationDB());
-                ContingencyTableSet tableSet = cc.evaluate();
-                ContingencyTable ct = tableSet.getCategoryContingencyTable((short) 0);
 
-                curCT.setFN(curCT.fn() + ct.fn());
-                curCT.setFP(curCT.fp() + ct.fp());
-                curCT.setTN(curCT.tn() + ct.tn());
-                curCT.setTP(curCT.tp() + ct.tp());
-            }
+        return globalCT;
+    }
 
-            globalCT.addContingenyTable(catID, curCT);
+    /**
+     * Evaluate a validation step for a category. The training and validation
+     * sets are read-only views of the index, so the learner must not modify
+     * the index it receives (or clone it before doing so).
+     *
+     * @return the contingency table of the step, or 'null' if all the possible
+     * steps for the category have been done
+     */
+    protected ContingencyTable evaluateFold(int i, IIndex trainingIndex, IIndex index, TIntArrayList otherDocs, short catID) {
+        JatecsLogger.status().println("Doing validation " + (i + 1) + "/" + _k + "...");
+
+        // Split the index in two parts: a training and a validation set.
+        Pair<IIndex, IIndex> indexes = splitIndex(i, trainingIndex, catID, _k);
+        if (indexes == null)
+            return null;
+
+        IIndex validationIndex = indexes.getSecond();
+        if (otherDocs.size() > 0) {
+            // In the case of computing accuracy over a subset of the original index,
+            // we make train over the subset of documents but we test all documents
+            // available on the original index.
+            validationIndex = validationIndex.cloneIndex();
+            integrateTestIndex(i, validationIndex, index, otherDocs, _k);
+        }
 
-            numComputed++;
-            double percentage = ((double) (numComputed * 100)) / ((double) (toCompute));
-            if (status != null)
-                status.operationStatus(percentage);
+        // Build learner with training.
+        IClassifier cl = _usedLearner.build(indexes.getFirst());
 
-        }
+        // Set the wanted classifier runtime customizer.
+        cl.setRuntimeCustomizer(_classifierCustomizer);
 
-        if (status != null)
-            status.operationStatus(100);
+        // Test learner with testing.
+        Classifier classifier = new Classifier(validationIndex, cl);
+        classifier.exec();
+        ClassificationComparer cc = new ClassificationComparer(classifier.getClassificationDB(), validationIndex.getClassificationDB());
+        ContingencyTableSet tableSet = cc.evaluate();
+        return tableSet.getCategoryContingencyTable((short) 0);
+    }
 
+    public int getThreads() {
+        return _threads;
+    }
 
-        return globalCT;
+    /**
+     * Set the number of validation steps evaluated concurrently, by default 1.
+     * With more than one thread the learner must support concurrent calls to
+     * {@link ILearner#build(IIndex)}.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
     }
 
     public void setPercentageToUse(int percentage) {
@@ -379,9 +412,10 @@ public class KFoldEvaluator {
         }
 
 
-        IIndex idx = index.cloneIndex();
-        FilteredIntIterator removedDocuments = new FilteredIntIterator(idx.getDocumentDB().getDocuments(), map, true);
-        idx.removeDocuments(removedDocuments, false);
+        int[] selectedDocuments = map.toArray();
+        Arrays.sort(selectedDocuments);
+        IIndex idx = new IndexView(index, selectedDocuments, null);
+        FilteredIntIterator removedDocuments = new FilteredIntIterator(index.getDocumentDB().getDocuments(), map, true);
 
         JatecsLogger.status().info("Original document(s) in index: " + index.getDocumentDB().getDocumentsCount() + " Selected " +
                 "a subview containing " + idx.getDocumentDB().getDocumentsCount() + " document(s).");
@@ -397,5 +431,44 @@ public class KFoldEvaluator {
         return pair;
     }
 
+    protected static class FoldsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final KFoldEvaluator _evaluator;
+        private final IIndex _trainingIndex;
+        private final IIndex _index;
+        private final TIntArrayList _otherDocs;
+        private final short _catID;
+        private final ContingencyTable[] _tables;
+        private final int _from;
+        private final int _to;
+
+        public FoldsTask(KFoldEvaluator evaluator, IIndex trainingIndex,
+                         IIndex index, TIntArrayList otherDocs, short catID,
+                         ContingencyTable[] tables, int from, int to) {
+            _evaluator = evaluator;
+            _trainingIndex = trainingIndex;
+            _index = index;
+            _otherDocs = otherDocs;
+            _catID = catID;
+            _tables = tables;
+            _from = from;
+            _to = to;
+        }
 
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new FoldsTask(_evaluator, _trainingIndex, _index,
+                                _otherDocs, _catID, _tables, _from, middle),
+                        new FoldsTask(_evaluator, _trainingIndex, _index,
+                                _otherDocs, _catID, _tables, middle, _to));
+                return;
+            }
+            _tables[_from] = _evaluator.evaluateFold(_from, _trainingIndex,
+                    _index, _otherDocs, _catID);
+        }
+    }
 }
@@ -29,11 +29,10 @@ import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.classification.BaseLearner;
 import it.cnr.jatecs.classification.OptimalConfiguration;
 import it.cnr.jatecs.classification.interfaces.*;
+import it.cnr.jatecs.indexes.DB.generic.IndexView;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.Pair;
-import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
-import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
@@ -164,23 +163,12 @@ public class KFoldValidator extends BaseLearner {
                         + index.getCategoryDB().getCategoryName(catID)
                         + "...");
 
-        TShortArrayList catsToRemove = new TShortArrayList();
-        IShortIterator itCats = index.getCategoryDB().getCategories();
-        while (itCats.hasNext()) {
-            short cat = itCats.next();
-            if (cat == catID)
-                continue;
-
-            catsToRemove.add(cat);
-        }
-
-        IIndex trIndex = index.cloneIndex();
-        trIndex.removeCategories(new TShortArrayListIterator(catsToRemove));
-        trIndex.removeDocuments(new TIntArrayListIterator(va), false);
+        // Read-only views of the index restricted to the category, they share
+        // the data of the index instead of copying it.
+        short[] categories = new short[]{catID};
+        IIndex trIndex = new IndexView(index, tr.toNativeArray(), categories);
 
-        IIndex vaIndex = index.cloneIndex();
-        vaIndex.removeCategories(new TShortArrayListIterator(catsToRemove));
-        vaIndex.removeDocuments(new TIntArrayListIterator(tr), false);
+        IIndex vaIndex = new IndexView(index, va.toNativeArray(), categories);
 
         assert (trIndex.getClassificationDB().getCategoryDocumentsCount(
                 (short) 0) == numPositivesInTraining);
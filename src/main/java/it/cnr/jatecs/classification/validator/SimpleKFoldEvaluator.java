@@ -37,20 +37,21 @@ import it.cnr.jatecs.classification.module.Classifier;
 import it.cnr.jatecs.evaluation.ClassificationComparer;
 import it.cnr.jatecs.evaluation.ContingencyTableSet;
 import it.cnr.jatecs.evaluation.HierarchicalClassificationComparer;
+import it.cnr.jatecs.indexes.DB.generic.IndexView;
 import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
 import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDBBuilder;
 import it.cnr.jatecs.utils.IOperationStatusListener;
 import it.cnr.jatecs.utils.JatecsLogger;
-import it.cnr.jatecs.utils.iterators.FilteredIntIterator;
-import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class SimpleKFoldEvaluator {
 
@@ -73,6 +74,8 @@ public class SimpleKFoldEvaluator {
     protected boolean _saveConfidences;
     protected ClassificationScoreDB _confidences;
 
+    protected int _threads;
+
     public SimpleKFoldEvaluator(ILearner learner,
                                 ILearnerRuntimeCustomizer learnerCustomizer,
                                 IClassifierRuntimeCustomizer classifierCustomizer) {
@@ -94,6 +97,7 @@ public class SimpleKFoldEvaluator {
         classificationMode = ClassificationMode.PER_DOCUMENT;
         _saveConfidences = false;
         _confidences = null;
+        _threads = 1;
     }
 
     public void setSaveConfidences(boolean saveConfidences) {
@@ -120,6 +124,23 @@ public class SimpleKFoldEvaluator {
         _percentageToUse = percentage;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of folds evaluated concurrently, by default 1. With more
+     * than one thread the learner must support concurrent calls to
+     * {@link ILearner#build(IIndex)}.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
     public IClassificationDB getClassification() {
         if (_classificationBuilder != null)
             return _classificationBuilder.getClassificationDB();
@@ -160,117 +181,35 @@ public class SimpleKFoldEvaluator {
             _confidences = new ClassificationScoreDB(index.getDocumentDB()
                     .getDocumentsCount());
 
-        for (int i = 0; i < realFolds; ++i) {
-            JatecsLogger.status().println(
-                    "Doing validation " + (i + 1) + "/" + realFolds + "...");
-
-            TIntArrayList trainingDocs = new TIntArrayList();
-            TIntArrayList testDocs = folds[i];
-            for (int j = 0; j < realFolds; ++j) {
-                if (j != i) {
-                    TIntArrayList fold = folds[j];
-                    int partSize = Math.min(fold.size(),
-                            (fold.size() * _percentageToUse) / 100);
-                    for (int k = 0; k < partSize; ++k)
-                        trainingDocs.add(fold.get(k));
-                }
-            }
+        _usedLearner.setRuntimeCustomizer(_learnerCustomizer);
 
+        FoldResult[] results = new FoldResult[realFolds];
+        if (_threads > 1 && realFolds > 1) {
             JatecsLogger.status().println(
-                    "Building training set with " + trainingDocs.size()
-                            + " documents.");
-
-            // IDocumentsDB trainingDocumentsDB =
-            // index.getDocumentsDB().cloneDB();
-            // IClassificationDB trainingClassificationDB =
-            // index.getClassificationDB().cloneDB(index.getCategoriesDB(),
-            // trainingDocumentsDB);
-            // IContentDB trainingContentDB =
-            // index.getContentDB().cloneDB(trainingDocumentsDB,
-            // index.getFeaturesDB());
-            // IWeightingDB trainingWeightingDB = index
-            // .getWeightingDB().cloneDB(trainingContentDB);
-            // IIndex trainingIndex = new
-            // GenericIndex(index.getFeaturesDB(),trainingDocumentsDB,index.getCategoriesDB(),index.getDomainDB(),
-            // trainingContentDB,trainingWeightingDB,trainingClassificationDB);
-            IIndex trainingIndex = index.cloneIndex();
-
-            docs.begin();
-            FilteredIntIterator trainingRemovedDocuments = new FilteredIntIterator(
-                    docs, new TIntArrayListIterator(trainingDocs), true);
-            trainingIndex.removeDocuments(trainingRemovedDocuments, false);
-            assert (trainingIndex.getDocumentDB().getDocumentsCount() == trainingDocs
-                    .size());
-
-            IClassifier cl = null;
-            if (trainingIndex.getDocumentDB().getDocumentsCount() > 0) {
-                JatecsLogger.status().println("Building learner.");
-                _usedLearner.setRuntimeCustomizer(_learnerCustomizer);
-                cl = _usedLearner.build(trainingIndex);
-            }
-            JatecsLogger.status()
-                    .println(
-                            "Building test set with " + testDocs.size()
-                                    + " documents.");
-
-            // IDocumentsDB testDocumentsDB =
-            // index.getDocumentsDB().cloneDB();
-            // IClassificationDB testClassificationDB =
-            // index.getClassificationDB().cloneDB(index.getCategoriesDB(),
-            // testDocumentsDB);
-            // IContentDB testContentDB =
-            // index.getContentDB().cloneDB(testDocumentsDB,
-            // index.getFeaturesDB());
-            // IWeightingDB testWeightingDB = index
-            // .getWeightingDB().cloneDB(testContentDB);
-            // IIndex testIndex = new
-            // GenericIndex(index.getFeaturesDB(),testDocumentsDB,index.getCategoriesDB(),index.getDomainDB(),
-            // testContentDB,testWeightingDB,testClassificationDB);
-            IIndex testIndex = index.cloneIndex();
-
-            docs.begin();
-            FilteredIntIterator testRemovedDocuments = new FilteredIntIterator(
-                    docs, new TIntArrayListIterator(testDocs), true);
-            testIndex.removeDocuments(testRemovedDocuments, false);
-            assert (testIndex.getDocumentDB().getDocumentsCount() == testDocs
-                    .size());
-
-            IClassificationDB predictions = null;
-            Classifier classifier = null;
-            if (cl != null) {
-                JatecsLogger.status().println("Testing.");
-                cl.setRuntimeCustomizer(_classifierCustomizer);
-
-                classifier = new Classifier(testIndex, cl,
-                        isSavingConfidences());
-                classifier.setClassificationMode(classificationMode);
-
-                // ClassifierXofM classifier = new ClassifierXofM(testIndex,
-                // cl);
-                // classifier.setX(1);
-                // classifier.setBoundCondition(BoundCondition.ExactlyX);
-
-                classifier.exec();
-
-                cl.destroy();
-
-                predictions = classifier.getClassificationDB();
-            } else {
-                // We have not build a classifier. Simulate a trivial rejector.
-                ICategoryDB catsDB = testIndex.getCategoryDB();
-                TroveClassificationDBBuilder classificationBuilder = new TroveClassificationDBBuilder(
-                        testIndex.getDocumentDB(), catsDB);
-                predictions = classificationBuilder.getClassificationDB();
+                    "Doing " + realFolds + " validations with " + _threads
+                            + " threads...");
+            ForkJoinPool pool = new ForkJoinPool(Math.min(_threads, realFolds));
+            try {
+                pool.invoke(new FoldsTask(this, index, folds, results, 0,
+                        realFolds));
+            } finally {
+                pool.shutdown();
             }
+        }
+
+        for (int i = 0; i < realFolds; ++i) {
+            if (results[i] == null)
+                results[i] = evaluateFold(index, folds, i);
+            FoldResult result = results[i];
+            TIntArrayList testDocs = folds[i];
 
             if (_saveClassification) {
-                IIntIterator testDocIt = predictions.getDocumentDB()
+                IIntIterator testDocIt = result.predictions.getDocumentDB()
                         .getDocuments();
                 while (testDocIt.hasNext()) {
                     int doc = testDocIt.next();
-                    int trueDoc = index.getDocumentDB().getDocument(
-                            testIndex.getDocumentDB().getDocumentName(doc));
-                    IShortIterator docCat = predictions
+                    int trueDoc = testDocs.get(doc);
+                    IShortIterator docCat = result.predictions
                             .getDocumentCategories(doc);
                     while (docCat.hasNext()) {
                         short cat = docCat.next();
@@ -280,15 +219,13 @@ public class SimpleKFoldEvaluator {
                 }
             }
 
-            if (isSavingConfidences() && cl != null) {
-                ClassificationScoreDB confidences = classifier.getConfidences();
-                IIntIterator testDocIt = predictions.getDocumentDB()
+            if (isSavingConfidences() && result.confidences != null) {
+                IIntIterator testDocIt = result.predictions.getDocumentDB()
                         .getDocuments();
                 while (testDocIt.hasNext()) {
                     int doc = testDocIt.next();
-                    int trueDoc = index.getDocumentDB().getDocument(
-                            testIndex.getDocumentDB().getDocumentName(doc));
-                    Set<Entry<Short, ClassifierRangeWithScore>> res = confidences
+                    int trueDoc = testDocs.get(doc);
+                    Set<Entry<Short, ClassifierRangeWithScore>> res = result.confidences
                             .getDocumentScoresAsSet(doc);
                     Iterator<Entry<Short, ClassifierRangeWithScore>> it = res
                             .iterator();
@@ -306,22 +243,11 @@ public class SimpleKFoldEvaluator {
                 }
             }
 
-            ContingencyTableSet tableSet;
-            if (_evaluateAllNodes) {
-                ClassificationComparer cc = new ClassificationComparer(
-                        predictions, testIndex.getClassificationDB());
-                tableSet = cc.evaluate();
-            } else {
-                HierarchicalClassificationComparer cc = new HierarchicalClassificationComparer(
-                        predictions, testIndex.getClassificationDB());
-                tableSet = cc.evaluate();
-            }
-
-            IShortIterator evalCats = tableSet.getEvaluatedCategories();
+            IShortIterator evalCats = result.tableSet.getEvaluatedCategories();
             while (evalCats.hasNext()) {
                 short category = evalCats.next();
                 globalCT.addContingenyTable(category,
-                        tableSet.getCategoryContingencyTable(category));
+                        result.tableSet.getCategoryContingencyTable(category));
             }
             double percentage = (i * 100) / (double) realFolds;
             if (status != null)
@@ -335,4 +261,126 @@ public class SimpleKFoldEvaluator {
 
         return globalCT;
     }
+
+    /**
+     * Train on all the folds but the given one and test on it. The training
+     * and test sets are read-only views of the index, so the learner must not
+     * modify the index it receives (or clone it before doing so).
+     *
+     * @param index the evaluated index
+     * @param folds the documents of every fold
+     * @param i     the test fold
+     * @return the results on the test fold
+     */
+    protected FoldResult evaluateFold(IIndex index, TIntArrayList[] folds,
+                                      int i) {
+        int realFolds = folds.length;
+        JatecsLogger.status().println(
+                "Doing validation " + (i + 1) + "/" + realFolds + "...");
+
+        TIntArrayList trainingDocs = new TIntArrayList();
+        TIntArrayList testDocs = folds[i];
+        for (int j = 0; j < realFolds; ++j) {
+            if (j != i) {
+                TIntArrayList fold = folds[j];
+                int partSize = Math.min(fold.size(),
+                        (fold.size() * _percentageToUse) / 100);
+                for (int k = 0; k < partSize; ++k)
+                    trainingDocs.add(fold.get(k));
+            }
+        }
+        trainingDocs.sort();
+
+        JatecsLogger.status().println(
+                "Building training set with " + trainingDocs.size()
+                        + " documents.");
+        IIndex trainingIndex = new IndexView(index,
+                trainingDocs.toNativeArray(), null);
+
+        IClassifier cl = null;
+        if (trainingIndex.getDocumentDB().getDocumentsCount() > 0) {
+            JatecsLogger.status().println("Building learner.");
+            cl = _usedLearner.build(trainingIndex);
+        }
+        JatecsLogger.status()
+                .println(
+                        "Building test set with " + testDocs.size()
+                                + " documents.");
+        IIndex testIndex = new IndexView(index, testDocs.toNativeArray(),
+                null);
+
+        FoldResult result = new FoldResult();
+        if (cl != null) {
+            JatecsLogger.status().println("Testing.");
+            cl.setRuntimeCustomizer(_classifierCustomizer);
+
+            Classifier classifier = new Classifier(testIndex, cl,
+                    isSavingConfidences());
+            classifier.setClassificationMode(classificationMode);
+            classifier.exec();
+
+            cl.destroy();
+
+            result.predictions = classifier.getClassificationDB();
+            result.confidences = classifier.getConfidences();
+        } else {
+            // We have not build a classifier. Simulate a trivial rejector.
+            ICategoryDB catsDB = testIndex.getCategoryDB();
+            TroveClassificationDBBuilder classificationBuilder = new TroveClassificationDBBuilder(
+                    testIndex.getDocumentDB(), catsDB);
+            result.predictions = classificationBuilder.getClassificationDB();
+        }
+
+        if (_evaluateAllNodes) {
+            ClassificationComparer cc = new ClassificationComparer(
+                    result.predictions, testIndex.getClassificationDB());
+            result.tableSet = cc.evaluate();
+        } else {
+            HierarchicalClassificationComparer cc = new HierarchicalClassificationComparer(
+                    result.predictions, testIndex.getClassificationDB());
+            result.tableSet = cc.evaluate();
+        }
+        return result;
+    }
+
+    protected static class FoldResult {
+        public IClassificationDB predictions;
+        public ClassificationScoreDB confidences;
+        public ContingencyTableSet tableSet;
+    }
+
+    protected static class FoldsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SimpleKFoldEvaluator _evaluator;
+        private final IIndex _index;
+        private final TIntArrayList[] _folds;
+        private final FoldResult[] _results;
+        private final int _from;
+        private final int _to;
+
+        public FoldsTask(SimpleKFoldEvaluator evaluator, IIndex index,
+                         TIntArrayList[] folds, FoldResult[] results, int from, int to) {
+            _evaluator = evaluator;
+            _index = index;
+            _folds = folds;
+            _results = results;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new FoldsTask(_evaluator, _index, _folds, _results,
+                                _from, middle),
+                        new FoldsTask(_evaluator, _index, _folds, _results,
+                                middle, _to));
+                return;
+            }
+            _results[_from] = _evaluator.evaluateFold(_index, _folds, _from);
+        }
+    }
 }
@@ -30,9 +30,11 @@ import it.cnr.jatecs.clustering.Centroid;
 import it.cnr.jatecs.clustering.ClusterDescriptor;
 import it.cnr.jatecs.clustering.interfaces.IClusterizer;
 import it.cnr.jatecs.clustering.interfaces.IClusterizerRuntimeCustomizer;
+import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.weighting.interfaces.IWeighting3D;
 
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 public class BalancedKMeansClusterizer implements IClusterizer {
 
@@ -93,7 +95,8 @@ public class BalancedKMeansClusterizer implements IClusterizer {
 
             Double s = new Double(score);
             if (s.isNaN())
-                System.out.println("Centroid " + i + " Score: " + s);
+                JatecsLogger.execution().warning(
+                        "Centroid " + i + " Score: " + s);
 
             if (_customizer.getSimilarityFunction().compareSimilarity(score, best) > 0) {
                 best = score;
@@ -150,78 +153,86 @@ public class BalancedKMeansClusterizer implements IClusterizer {
         boolean toUpdate = true;
         int maxNumIterations = 50;
         int numIterations = 0;
-        while (toUpdate) {
-            for (int i = 0; i < centroids.length; i++) {
-                centroids[i].documents.clear();
-                centroids[i].distances.clear();
-            }
-
-            // Distribute the categories among clusters.
-            for (int doc = 0; doc < dists.getFirstDimensionSize(); doc++) {
-                double best = _customizer.getSimilarityFunction().compareSimilarity(0, Double.MAX_VALUE) > 0 ? Double.MAX_VALUE : 0;
-                int whichCluster = 0;
+        ForkJoinPool pool = new ForkJoinPool(_customizer.getThreads());
+        try {
+            while (toUpdate) {
                 for (int i = 0; i < centroids.length; i++) {
-                    double score = _customizer.getSimilarityFunction().computeSimilarity(centroids[i].features, dists, doc);
+                    centroids[i].documents.clear();
+                    centroids[i].distances.clear();
+                }
 
-                    if (_customizer.getSimilarityFunction().compareSimilarity(score, best) > 0) {
-                        best = score;
-                        whichCluster = i;
+                // Distribute the categories among clusters.
+                for (int doc = 0; doc < dists.getFirstDimensionSize(); doc++) {
+                    double best = _customizer.getSimilarityFunction().compareSimilarity(0, Double.MAX_VALUE) > 0 ? Double.MAX_VALUE : 0;
+                    int whichCluster = 0;
+                    for (int i = 0; i < centroids.length; i++) {
+                        double score = _customizer.getSimilarityFunction().computeSimilarity(centroids[i].features, dists, doc);
+
+                        if (_customizer.getSimilarityFunction().compareSimilarity(score, best) > 0) {
+                            best = score;
+                            whichCluster = i;
+                        }
                     }
-                }
 
-                centroids[whichCluster].documents.add(doc);
-                centroids[whichCluster].distances.add(best);
+                    centroids[whichCluster].documents.add(doc);
+                    centroids[whichCluster].distances.add(best);
 
-                boolean[] visitedClusters = new boolean[centroids.length];
+                    boolean[] visitedClusters = new boolean[centroids.length];
 
-                // If we have reached maximum capacity, we must swap the the most improper category (according
-                // to some function) from this cluster.
-                swapItems(centroids, whichCluster, maxNumberItems, visitedClusters, dists);
+                    // If we have reached maximum capacity, we must swap the the most improper category (according
+                    // to some function) from this cluster.
+                    swapItems(centroids, whichCluster, maxNumberItems, visitedClusters, dists);
 
-            }
+                }
 
 
-            // Compute if the algorithm had been converged.
-            int reassigned = 0;
-            for (int i = 0; i < clusters.size(); i++) {
-                Centroid cc = centroids[i];
-                for (int j = 0; j < cc.documents.size(); j++) {
-                    int catID = cc.documents.get(j);
-                    if (clustersAssigned.get(catID) != i) {
-                        clustersAssigned.put(catID, i);
-                        reassigned++;
+                // Compute if the algorithm had been converged.
+                int reassigned = 0;
+                for (int i = 0; i < clusters.size(); i++) {
+                    Centroid cc = centroids[i];
+                    for (int j = 0; j < cc.documents.size(); j++) {
+                        int catID = cc.documents.get(j);
+                        if (clustersAssigned.get(catID) != i) {
+                            clustersAssigned.put(catID, i);
+                            reassigned++;
+                        }
                     }
                 }
-            }
 
-            System.out.print(" " + reassigned);
+                numIterations++;
+                JatecsLogger.status().println(
+                        "K-means iteration " + numIterations + " done, "
+                                + reassigned + " document(s) reassigned");
 
-            numIterations++;
-
-            if (lastUpdated == reassigned)
-                sameUpdated++;
-            else {
-                lastUpdated = reassigned;
-                sameUpdated = 0;
-            }
+                if (lastUpdated == reassigned)
+                    sameUpdated++;
+                else {
+                    lastUpdated = reassigned;
+                    sameUpdated = 0;
+                }
 
-            if (sameUpdated == 5) {
-                // Reached fixed point. Exit!
-                toUpdate = false;
-                continue;
-            }
+                if (sameUpdated == 5) {
+                    // Reached fixed point. Exit!
+                    toUpdate = false;
+                    continue;
+                }
 
 
-            if (reassigned <= _customizer.getStopCriterion() || numIterations == maxNumIterations) {
-                toUpdate = false;
-                continue;
-            }
+                if (reassigned <= _customizer.getStopCriterion() || numIterations == maxNumIterations) {
+                    toUpdate = false;
+                    continue;
+                }
 
 
-            // Update the centroids.
-            for (int i = 0; i < centroids.length; i++)
-                centroids[i].computeCentroid(dists);
+                // Update the centroids. The distribution above is order
+                // dependent, only this step runs in parallel.
+                pool.invoke(new KMeansTask(KMeansTask.UPDATE, centroids, dists,
+                        _customizer.getSimilarityFunction(), null, null, 0,
+                        centroids.length));
 
+            }
+        } finally {
+            pool.shutdown();
         }
 
 
@@ -67,6 +67,12 @@ public class BalancedKMeansCustomizer implements IClusterizerRuntimeCustomizer {
     private IClusterizerInitializer _initializer;
 
 
+    /**
+     * The number of threads used by the clustering.
+     */
+    protected int _threads;
+
+
     public BalancedKMeansCustomizer() {
         _k = 10;
         _similarity = new KLSimilarity();
@@ -74,6 +80,7 @@ public class BalancedKMeansCustomizer implements IClusterizerRuntimeCustomizer {
         _reassignment = new FarGlobalReassignmentDistance(_similarity);
         _centroids = null;
         _initializer = new RandomClusterizerInitalizer();
+        _threads = 1;
     }
 
 
@@ -138,4 +145,15 @@ public class BalancedKMeansCustomizer implements IClusterizerRuntimeCustomizer {
     public void setClusterizerInitializer(IClusterizerInitializer initializer) {
         _initializer = initializer;
     }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
 }
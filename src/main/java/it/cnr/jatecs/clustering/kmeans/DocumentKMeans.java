@@ -0,0 +1,558 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.clustering.kmeans;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.DocumentVectors;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * K-means clustering of the documents of an index with the euclidean
+ * distance. The centroids are kept as dense arrays and the documents are read
+ * from the packed {@link DocumentVectors} of the index, so the distance of a
+ * document from a centroid costs only a scan of the features of the
+ * document. The assignment and the update steps are split on a fork-join
+ * pool, over the documents and over the centroids respectively.
+ * <p>
+ * In the default mode the algorithm iterates until no document changes
+ * cluster, and each document keeps an upper bound of the distance from its
+ * centroid and a lower bound of the distance from the others, updated with
+ * the movements of the centroids (Hamerly). The distances from the centroids
+ * are computed only for the documents whose bounds overlap, which gives the
+ * same clusters of the exhaustive algorithm. In mini-batch mode each
+ * iteration moves the centroids towards a random sample of the documents,
+ * with a per-centroid learning rate, and the documents are assigned to the
+ * nearest centroid only at the end.
+ * <p>
+ * A centroid left without documents keeps its previous position. The
+ * instances are not thread-safe.
+ */
+public class DocumentKMeans {
+
+    private static final int ASSIGN = 0;
+    private static final int UPDATE = 1;
+    private static final int BATCH_ASSIGN = 2;
+    private static final int BATCH_UPDATE = 3;
+
+    private static final int DOCUMENTS_GRAIN = 512;
+
+    protected int _clustersCount;
+    protected int _threads;
+    protected int _maxIterations;
+    protected int _miniBatchSize;
+    protected int _miniBatchIterations;
+    protected Random _random;
+
+    protected DocumentVectors _vectors;
+    protected int[] _documents;
+    protected int _featuresCount;
+    protected double[][] _centroids;
+    protected double[][] _nextCentroids;
+    protected double[] _centroidsNorms;
+    protected double[] _moves;
+    protected int[] _assignments;
+    protected double[] _upperBounds;
+    protected double[] _lowerBounds;
+    protected int[] _membersOffsets;
+    protected int[] _members;
+    protected int[] _batch;
+    protected int[] _batchAssignments;
+    protected int[] _batchCounts;
+    protected int _iterations;
+    protected final AtomicInteger _changed;
+    protected final AtomicLong _distances;
+
+    /**
+     * @param clustersCount the number of clusters
+     */
+    public DocumentKMeans(int clustersCount) {
+        if (clustersCount <= 0)
+            throw new IllegalArgumentException(
+                    "The number of clusters must be positive");
+        _clustersCount = clustersCount;
+        _threads = 1;
+        _maxIterations = Integer.MAX_VALUE;
+        _miniBatchSize = 0;
+        _miniBatchIterations = 100;
+        _random = new Random();
+        _changed = new AtomicInteger();
+        _distances = new AtomicLong();
+    }
+
+    public int getClustersCount() {
+        return _clustersCount;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public int getMaxIterations() {
+        return _maxIterations;
+    }
+
+    /**
+     * @param maxIterations the maximum number of iterations of the default
+     *                      mode
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations <= 0)
+            throw new IllegalArgumentException(
+                    "The number of iterations must be positive");
+        _maxIterations = maxIterations;
+    }
+
+    public int getMiniBatchSize() {
+        return _miniBatchSize;
+    }
+
+    /**
+     * @param miniBatchSize the number of documents sampled at each iteration
+     *                      of the mini-batch mode, 0 to use the default mode
+     */
+    public void setMiniBatchSize(int miniBatchSize) {
+        if (miniBatchSize < 0)
+            throw new IllegalArgumentException(
+                    "The mini-batch size must be positive");
+        _miniBatchSize = miniBatchSize;
+    }
+
+    public int getMiniBatchIterations() {
+        return _miniBatchIterations;
+    }
+
+    /**
+     * @param miniBatchIterations the number of iterations of the mini-batch
+     *                            mode
+     */
+    public void setMiniBatchIterations(int miniBatchIterations) {
+        if (miniBatchIterations <= 0)
+            throw new IllegalArgumentException(
+                    "The number of iterations must be positive");
+        _miniBatchIterations = miniBatchIterations;
+    }
+
+    /**
+     * @param random the random generator used to choose the initial
+     *               centroids and the mini-batches
+     */
+    public void setRandom(Random random) {
+        if (random == null)
+            throw new NullPointerException("The specified random generator is 'null'");
+        _random = random;
+    }
+
+    /**
+     * @return the number of iterations done by the last clustering
+     */
+    public int getIterations() {
+        return _iterations;
+    }
+
+    /**
+     * @return the number of distances between a document and a centroid
+     * computed by the last clustering
+     */
+    public long getDistancesCount() {
+        return _distances.get();
+    }
+
+    /**
+     * @return the centroids found by the last clustering, as dense feature
+     * arrays
+     */
+    public double[][] getCentroids() {
+        return _centroids;
+    }
+
+    /**
+     * Cluster the given documents of an index.
+     *
+     * @param index     the index
+     * @param documents the IDs of the documents to cluster
+     * @return the cluster of each document, in the same order of the given
+     * IDs
+     */
+    public int[] cluster(IIndex index, int[] documents) {
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+        if (documents == null)
+            throw new NullPointerException("The specified documents are 'null'");
+        _vectors = DocumentVectors.get(index);
+        _documents = documents;
+        _featuresCount = index.getFeatureDB().getFeaturesCount();
+        int[] features = _vectors.getFeatures();
+        for (int i = 0; i < features.length; ++i)
+            _featuresCount = Math.max(_featuresCount, features[i] + 1);
+        _assignments = new int[documents.length];
+        Arrays.fill(_assignments, -1);
+        _distances.set(0);
+        _iterations = 0;
+        if (documents.length == 0)
+            return _assignments;
+
+        initializeCentroids();
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            if (_miniBatchSize > 0)
+                runMiniBatch(pool);
+            else
+                runFull(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        int[] assignments = _assignments;
+        _nextCentroids = null;
+        _upperBounds = null;
+        _lowerBounds = null;
+        _members = null;
+        _membersOffsets = null;
+        _vectors = null;
+        _documents = null;
+        return assignments;
+    }
+
+    protected void initializeCentroids() {
+        int k = _clustersCount;
+        int n = _documents.length;
+        _centroids = new double[k][_featuresCount];
+        _centroidsNorms = new double[k];
+        _moves = new double[k];
+
+        // Choose distinct documents, as long as there are enough of them.
+        int[] positions = new int[n];
+        for (int i = 0; i < n; ++i)
+            positions[i] = i;
+        for (int c = 0; c < k; ++c) {
+            int pos;
+            if (c < n) {
+                int j = c + _random.nextInt(n - c);
+                pos = positions[j];
+                positions[j] = positions[c];
+                positions[c] = pos;
+            } else
+                pos = _random.nextInt(n);
+            int doc = _documents[pos];
+            int end = _vectors.getEnd(doc);
+            for (int i = _vectors.getStart(doc); i < end; ++i)
+                _centroids[c][_vectors.getFeatures()[i]] = _vectors
+                        .getWeights()[i];
+            _centroidsNorms[c] = _vectors.getSquaredNorm(doc);
+        }
+    }
+
+    protected void runFull(ForkJoinPool pool) {
+        int n = _documents.length;
+        int k = _clustersCount;
+        _nextCentroids = new double[k][];
+        _upperBounds = new double[n];
+        _lowerBounds = new double[n];
+        _membersOffsets = new int[k + 1];
+        _members = new int[n];
+        while (true) {
+            _changed.set(0);
+            pool.invoke(new StepTask(this, ASSIGN, 0, n, DOCUMENTS_GRAIN));
+            ++_iterations;
+            if (_changed.get() == 0 || _iterations >= _maxIterations)
+                break;
+
+            buildMembers(_assignments, n);
+            pool.invoke(new StepTask(this, UPDATE, 0, k, 1));
+            double[][] swap = _centroids;
+            _centroids = _nextCentroids;
+            _nextCentroids = swap;
+        }
+    }
+
+    protected void runMiniBatch(ForkJoinPool pool) {
+        int n = _documents.length;
+        int k = _clustersCount;
+        int size = _miniBatchSize;
+        int[] batch = new int[size];
+        int[] batchAssignments = new int[size];
+        _batchCounts = new int[k];
+        _membersOffsets = new int[k + 1];
+        _members = new int[size];
+        for (int it = 0; it < _miniBatchIterations; ++it) {
+            for (int i = 0; i < size; ++i)
+                batch[i] = _random.nextInt(n);
+            _batch = batch;
+            _batchAssignments = batchAssignments;
+            pool.invoke(new StepTask(this, BATCH_ASSIGN, 0, size,
+                    DOCUMENTS_GRAIN));
+            buildMembers(batchAssignments, size);
+            pool.invoke(new StepTask(this, BATCH_UPDATE, 0, k, 1));
+            ++_iterations;
+        }
+        _batch = null;
+        _batchAssignments = null;
+
+        // Final assignment of all the documents.
+        _upperBounds = new double[n];
+        _lowerBounds = new double[n];
+        pool.invoke(new StepTask(this, ASSIGN, 0, n, DOCUMENTS_GRAIN));
+    }
+
+    /**
+     * Group by cluster the positions of the given assignments.
+     */
+    protected void buildMembers(int[] assignments, int size) {
+        int k = _clustersCount;
+        Arrays.fill(_membersOffsets, 0);
+        for (int i = 0; i < size; ++i)
+            ++_membersOffsets[assignments[i] + 1];
+        for (int c = 0; c < k; ++c)
+            _membersOffsets[c + 1] += _membersOffsets[c];
+        int[] next = Arrays.copyOf(_membersOffsets, k);
+        for (int i = 0; i < size; ++i)
+            _members[next[assignments[i]]++] = i;
+    }
+
+    /**
+     * @return the euclidean distance between the document at the given
+     * position and a centroid
+     */
+    protected double distance(int pos, int centroid) {
+        int doc = _documents[pos];
+        int[] features = _vectors.getFeatures();
+        double[] weights = _vectors.getWeights();
+        double[] values = _centroids[centroid];
+        // The centroid norm plus the changes due to the document features.
+        double distance = _centroidsNorms[centroid];
+        int end = _vectors.getEnd(doc);
+        for (int i = _vectors.getStart(doc); i < end; ++i) {
+            double value = values[features[i]];
+            double dif = weights[i] - value;
+            distance += dif * dif - value * value;
+        }
+        return distance > 0 ? Math.sqrt(distance) : 0;
+    }
+
+    protected void assignRange(int from, int to) {
+        int k = _clustersCount;
+        double maxMove = 0;
+        double secondMove = 0;
+        int maxMoved = -1;
+        if (_iterations > 0) {
+            for (int c = 0; c < k; ++c) {
+                double move = _moves[c];
+                if (move > maxMove) {
+                    secondMove = maxMove;
+                    maxMove = move;
+                    maxMoved = c;
+                } else if (move > secondMove)
+                    secondMove = move;
+            }
+        }
+
+        int changed = 0;
+        long distances = 0;
+        for (int pos = from; pos < to; ++pos) {
+            int assigned = _assignments[pos];
+            if (assigned >= 0) {
+                double upper = _upperBounds[pos] + _moves[assigned];
+                double lower = _lowerBounds[pos]
+                        - (assigned == maxMoved ? secondMove : maxMove);
+                _lowerBounds[pos] = lower;
+                // Strict comparisons, a tie may change the nearest centroid.
+                if (upper < lower) {
+                    _upperBounds[pos] = upper;
+                    continue;
+                }
+                // Tighten the upper bound.
+                upper = distance(pos, assigned);
+                ++distances;
+                _upperBounds[pos] = upper;
+                if (upper < lower)
+                    continue;
+            }
+
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            double secondDistance = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; ++c) {
+                double distance = distance(pos, c);
+                if (distance < bestDistance) {
+                    secondDistance = bestDistance;
+                    bestDistance = distance;
+                    best = c;
+                } else if (distance < secondDistance)
+                    secondDistance = distance;
+            }
+            distances += k;
+            if (best != assigned)
+                ++changed;
+            _assignments[pos] = best;
+            _upperBounds[pos] = bestDistance;
+            _lowerBounds[pos] = secondDistance;
+        }
+        _changed.addAndGet(changed);
+        _distances.addAndGet(distances);
+    }
+
+    protected void updateRange(int from, int to) {
+        int[] features = _vectors.getFeatures();
+        double[] weights = _vectors.getWeights();
+        for (int c = from; c < to; ++c) {
+            int start = _membersOffsets[c];
+            int end = _membersOffsets[c + 1];
+            double[] old = _centroids[c];
+            if (start == end) {
+                _nextCentroids[c] = old.clone();
+                _moves[c] = 0;
+                continue;
+            }
+            double[] values = _nextCentroids[c];
+            if (values == null)
+                values = new double[_featuresCount];
+            else
+                Arrays.fill(values, 0);
+            for (int m = start; m < end; ++m) {
+                int doc = _documents[_members[m]];
+                int docEnd = _vectors.getEnd(doc);
+                for (int i = _vectors.getStart(doc); i < docEnd; ++i)
+                    values[features[i]] += weights[i];
+            }
+            double count = end - start;
+            double norm = 0;
+            double move = 0;
+            for (int f = 0; f < values.length; ++f) {
+                double value = values[f] / count;
+                values[f] = value;
+                norm += value * value;
+                double dif = value - old[f];
+                move += dif * dif;
+            }
+            _nextCentroids[c] = values;
+            _centroidsNorms[c] = norm;
+            _moves[c] = Math.sqrt(move);
+        }
+    }
+
+    protected void batchAssignRange(int from, int to) {
+        int k = _clustersCount;
+        for (int i = from; i < to; ++i) {
+            int pos = _batch[i];
+            int best = 0;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; ++c) {
+                double distance = distance(pos, c);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = c;
+                }
+            }
+            _batchAssignments[i] = best;
+        }
+        _distances.addAndGet((long) (to - from) * k);
+    }
+
+    protected void batchUpdateRange(int from, int to) {
+        int[] features = _vectors.getFeatures();
+        double[] weights = _vectors.getWeights();
+        for (int c = from; c < to; ++c) {
+            int start = _membersOffsets[c];
+            int end = _membersOffsets[c + 1];
+            if (start == end)
+                continue;
+            // Moving the centroid towards each document with rate 1 / count
+            // is the same as averaging all the documents seen so far.
+            _batchCounts[c] += end - start;
+            double rate = 1.0 / _batchCounts[c];
+            double[] values = _centroids[c];
+            double scale = 1 - (end - start) * rate;
+            for (int f = 0; f < values.length; ++f)
+                values[f] *= scale;
+            for (int m = start; m < end; ++m) {
+                int doc = _documents[_batch[_members[m]]];
+                int docEnd = _vectors.getEnd(doc);
+                for (int i = _vectors.getStart(doc); i < docEnd; ++i)
+                    values[features[i]] += weights[i] * rate;
+            }
+            double norm = 0;
+            for (int f = 0; f < values.length; ++f)
+                norm += values[f] * values[f];
+            _centroidsNorms[c] = norm;
+        }
+    }
+
+    protected static class StepTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DocumentKMeans _kmeans;
+        private final int _step;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+
+        public StepTask(DocumentKMeans kmeans, int step, int from, int to,
+                        int grain) {
+            _kmeans = kmeans;
+            _step = step;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _grain) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new StepTask(_kmeans, _step, _from, middle, _grain),
+                        new StepTask(_kmeans, _step, middle, _to, _grain));
+                return;
+            }
+            switch (_step) {
+                case ASSIGN:
+                    _kmeans.assignRange(_from, _to);
+                    break;
+                case UPDATE:
+                    _kmeans.updateRange(_from, _to);
+                    break;
+                case BATCH_ASSIGN:
+                    _kmeans.batchAssignRange(_from, _to);
+                    break;
+                default:
+                    _kmeans.batchUpdateRange(_from, _to);
+                    break;
+            }
+        }
+    }
+}
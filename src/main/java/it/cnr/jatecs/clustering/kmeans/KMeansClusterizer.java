@@ -30,9 +30,11 @@ import it.cnr.jatecs.clustering.Centroid;
 import it.cnr.jatecs.clustering.ClusterDescriptor;
 import it.cnr.jatecs.clustering.interfaces.IClusterizer;
 import it.cnr.jatecs.clustering.interfaces.IClusterizerRuntimeCustomizer;
+import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.weighting.interfaces.IWeighting3D;
 
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 public class KMeansClusterizer implements IClusterizer {
 
@@ -73,54 +75,54 @@ public class KMeansClusterizer implements IClusterizer {
         }
 
 
-        boolean toUpdate = true;
-        while (toUpdate) {
-            for (int i = 0; i < centroids.length; i++) {
-                centroids[i].documents.clear();
-            }
-
-            // Distribute items among clusters.
-            for (int docID = 0; docID < dists.getFirstDimensionSize(); docID++) {
-                double best = _customizer.getSimilarityFunction().compareSimilarity(0, Double.MAX_VALUE) == 1 ? Double.MAX_VALUE : 0;
-                int whichCluster = 0;
+        int numItems = dists.getFirstDimensionSize();
+        int[] bestClusters = new int[numItems];
+        double[] bestScores = new double[numItems];
+        ForkJoinPool pool = new ForkJoinPool(_customizer.getThreads());
+        try {
+            boolean toUpdate = true;
+            while (toUpdate) {
                 for (int i = 0; i < centroids.length; i++) {
-                    double score = _customizer.getSimilarityFunction().computeSimilarity(centroids[i].features, dists, (int) docID);
-
-                    if (_customizer.getSimilarityFunction().compareSimilarity(score, best) > 0) {
-                        best = score;
-                        whichCluster = i;
-                    }
+                    centroids[i].documents.clear();
                 }
 
-                centroids[whichCluster].documents.add(docID);
-                // Add centroid update to each add.
-                //centroids[whichCluster].computeCentroid(dists);
-            }
-
-
-            // Compute if the algorithm had been converged.
-            int reassigned = 0;
-            for (int i = 0; i < clusters.size(); i++) {
-                Centroid cc = centroids[i];
-                for (int j = 0; j < cc.documents.size(); j++) {
-                    int docID = cc.documents.get(j);
-                    if (clustersAssigned.get(docID) != i) {
-                        clustersAssigned.put(docID, i);
-                        reassigned++;
+                // Distribute items among clusters.
+                pool.invoke(new KMeansTask(KMeansTask.ASSIGN, centroids, dists,
+                        _customizer.getSimilarityFunction(), bestClusters,
+                        bestScores, 0, numItems));
+                for (int docID = 0; docID < numItems; docID++)
+                    centroids[bestClusters[docID]].documents.add(docID);
+
+
+                // Compute if the algorithm had been converged.
+                int reassigned = 0;
+                for (int i = 0; i < clusters.size(); i++) {
+                    Centroid cc = centroids[i];
+                    for (int j = 0; j < cc.documents.size(); j++) {
+                        int docID = cc.documents.get(j);
+                        if (clustersAssigned.get(docID) != i) {
+                            clustersAssigned.put(docID, i);
+                            reassigned++;
+                        }
                     }
                 }
-            }
 
-            System.out.print(" " + reassigned);
-            if (reassigned <= _customizer.getStopCriterion()) {
-                toUpdate = false;
-                continue;
-            }
+                JatecsLogger.status().println(
+                        "K-means iteration done, " + reassigned
+                                + " document(s) reassigned");
+                if (reassigned <= _customizer.getStopCriterion()) {
+                    toUpdate = false;
+                    continue;
+                }
 
 
-            // Update the centroids.
-            for (int i = 0; i < centroids.length; i++)
-                centroids[i].computeCentroid(dists);
+                // Update the centroids.
+                pool.invoke(new KMeansTask(KMeansTask.UPDATE, centroids, dists,
+                        _customizer.getSimilarityFunction(), bestClusters,
+                        bestScores, 0, centroids.length));
+            }
+        } finally {
+            pool.shutdown();
         }
 
 
@@ -71,6 +71,12 @@ public class KMeansCustomizer implements IClusterizerRuntimeCustomizer {
     private IClusterizerInitializer _initializer;
 
 
+    /**
+     * The number of threads used by the clustering.
+     */
+    protected int _threads;
+
+
     public KMeansCustomizer() {
         _k = 10;
         _similarity = new KLSimilarity();
@@ -78,6 +84,7 @@ public class KMeansCustomizer implements IClusterizerRuntimeCustomizer {
         _stopCriterion = 3;
         _centroids = null;
         _initializer = new RandomClusterizerInitalizer();
+        _threads = 1;
     }
 
     /**
@@ -151,4 +158,15 @@ public class KMeansCustomizer implements IClusterizerRuntimeCustomizer {
     public void setClusterizerInitializer(IClusterizerInitializer initializer) {
         _initializer = initializer;
     }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
 }
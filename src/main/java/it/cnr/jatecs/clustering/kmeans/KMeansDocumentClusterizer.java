@@ -31,12 +31,22 @@ import it.cnr.jatecs.clustering.DocumentCentroid;
 import it.cnr.jatecs.clustering.interfaces.IDocumentClusterizerRuntimeCustomizer;
 import it.cnr.jatecs.clustering.utils.Clustering;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.EuclideanDistance;
+import it.cnr.jatecs.indexing.similarity.EuclideanSquareDistance;
+import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
 import java.util.Random;
 import java.util.Vector;
 
+/**
+ * K-means clustering of the documents of an index. With an euclidean
+ * distance and the default convergence criterion the clustering is done by
+ * {@link DocumentKMeans}, which supports multiple threads and a mini-batch
+ * mode; with other similarity functions or criteria the centroids are kept
+ * as feature maps and compared with each document sequentially.
+ */
 public class KMeansDocumentClusterizer extends BaseDocumentClusterizer {
 
     /**
@@ -50,6 +60,8 @@ public class KMeansDocumentClusterizer extends BaseDocumentClusterizer {
 
     public Vector<ClusterDocumentDescriptor> clusterize(IIntIterator documents,
                                                         IIndex index) {
+        if (useDocumentKMeans())
+            return clusterizeDense(documents, index);
 
         // Create the clusters
         DocumentCentroid[] centroids = new DocumentCentroid[_customizer
@@ -70,6 +82,7 @@ public class KMeansDocumentClusterizer extends BaseDocumentClusterizer {
         // Start a new evaluation for algorithm convergence criterion.
         _customizer.getConvergenceCriterion().beginEvaluation(documents, index);
 
+        int iterations = 0;
         boolean stop = false;
         while (!stop) {
             documents.begin();
@@ -97,8 +110,9 @@ public class KMeansDocumentClusterizer extends BaseDocumentClusterizer {
 
             }
 
-            // DEBUG
-            System.out.println("Fatto passo");
+            iterations++;
+            JatecsLogger.status().println(
+                    "K-means iteration " + iterations + " done");
 
             // Check if the algorithm converged or need more iterations.
             documents.begin();
@@ -124,6 +138,47 @@ public class KMeansDocumentClusterizer extends BaseDocumentClusterizer {
         return clusters;
     }
 
+    /**
+     * @return true if the clustering can be done by {@link DocumentKMeans},
+     * i.e. with an euclidean distance and the default convergence criterion
+     */
+    protected boolean useDocumentKMeans() {
+        Class<?> similarity = _customizer.getSimilarityFunction().getClass();
+        return (similarity == EuclideanDistance.class || similarity == EuclideanSquareDistance.class)
+                && _customizer.getConvergenceCriterion().getClass() == NoReassignmentDocumentConvergeCriterion.class;
+    }
+
+    protected Vector<ClusterDocumentDescriptor> clusterizeDense(
+            IIntIterator documents, IIndex index) {
+        TIntArrayList docs = new TIntArrayList();
+        documents.begin();
+        while (documents.hasNext())
+            docs.add(documents.next());
+        int[] ids = docs.toNativeArray();
+
+        DocumentKMeans kmeans = new DocumentKMeans(
+                _customizer.getNumberOfClusters());
+        kmeans.setThreads(_customizer.getThreads());
+        kmeans.setMaxIterations(_customizer.getMaxIterations());
+        kmeans.setMiniBatchSize(_customizer.getMiniBatchSize());
+        kmeans.setMiniBatchIterations(_customizer.getMiniBatchIterations());
+        int[] assignments = kmeans.cluster(index, ids);
+        JatecsLogger.status().println(
+                "K-means converged after " + kmeans.getIterations()
+                        + " iteration(s)");
+
+        Vector<ClusterDocumentDescriptor> clusters = new Vector<ClusterDocumentDescriptor>();
+        for (int i = 0; i < _customizer.getNumberOfClusters(); i++) {
+            ClusterDocumentDescriptor d = new ClusterDocumentDescriptor();
+            d.description = "Cluster " + (i + 1);
+            d.documents = new TIntArrayList();
+            clusters.add(d);
+        }
+        for (int i = 0; i < ids.length; i++)
+            clusters.get(assignments[i]).documents.add(ids[i]);
+        return clusters;
+    }
+
     protected void computeInitialCentroids(DocumentCentroid[] centroids,
                                            IIntIterator documents, IIndex index) {
         TIntArrayList initial = new TIntArrayList();
@@ -48,10 +48,39 @@ public class KMeansDocumentCustomizer implements IDocumentClusterizerRuntimeCust
     IDocumentConvergeCriterion _convCriteria;
 
 
+    /**
+     * The number of threads used by the clustering.
+     */
+    protected int _threads;
+
+
+    /**
+     * The maximum number of iterations of the algorithm.
+     */
+    protected int _maxIterations;
+
+
+    /**
+     * The number of documents sampled at each iteration in mini-batch mode,
+     * 0 to consider all the documents at each iteration.
+     */
+    protected int _miniBatchSize;
+
+
+    /**
+     * The number of iterations in mini-batch mode.
+     */
+    protected int _miniBatchIterations;
+
+
     public KMeansDocumentCustomizer() {
         _k = 10;
         _similarity = new EuclideanDistance();
         _convCriteria = new NoReassignmentDocumentConvergeCriterion();
+        _threads = 1;
+        _maxIterations = Integer.MAX_VALUE;
+        _miniBatchSize = 0;
+        _miniBatchIterations = 100;
     }
 
     /**
@@ -91,5 +120,55 @@ public class KMeansDocumentCustomizer implements IDocumentClusterizerRuntimeCust
         _convCriteria = criterion;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public int getMaxIterations() {
+        return _maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations <= 0)
+            throw new IllegalArgumentException(
+                    "The number of iterations must be positive");
+        _maxIterations = maxIterations;
+    }
+
+    public int getMiniBatchSize() {
+        return _miniBatchSize;
+    }
+
+    /**
+     * Set the number of documents sampled at each iteration, enabling the
+     * mini-batch mode. It is supported only with the euclidean distances.
+     *
+     * @param miniBatchSize The number of documents, 0 to disable the
+     *                      mini-batch mode.
+     */
+    public void setMiniBatchSize(int miniBatchSize) {
+        if (miniBatchSize < 0)
+            throw new IllegalArgumentException(
+                    "The mini-batch size must be positive");
+        _miniBatchSize = miniBatchSize;
+    }
+
+    public int getMiniBatchIterations() {
+        return _miniBatchIterations;
+    }
+
+    public void setMiniBatchIterations(int miniBatchIterations) {
+        if (miniBatchIterations <= 0)
+            throw new IllegalArgumentException(
+                    "The number of iterations must be positive");
+        _miniBatchIterations = miniBatchIterations;
+    }
 
 }
@@ -0,0 +1,109 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.clustering.kmeans;
+
+import it.cnr.jatecs.clustering.Centroid;
+import it.cnr.jatecs.clustering.similarity.ISimilarityFunction;
+import it.cnr.jatecs.weighting.interfaces.IWeighting3D;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A step of the k-means clusterizers over an {@link IWeighting3D}, split on a
+ * range of items (assignment) or of centroids (update).
+ */
+class KMeansTask extends RecursiveAction {
+
+    static final int ASSIGN = 0;
+    static final int UPDATE = 1;
+
+    private static final long serialVersionUID = 1L;
+
+    private final int _step;
+    private final Centroid[] _centroids;
+    private final IWeighting3D _dists;
+    private final ISimilarityFunction _similarity;
+    private final int[] _clusters;
+    private final double[] _scores;
+    private final int _from;
+    private final int _to;
+
+    /**
+     * @param step       {@link #ASSIGN} to find the best centroid of the items
+     *                   in the range, {@link #UPDATE} to recompute the
+     *                   centroids in the range
+     * @param centroids  the centroids
+     * @param dists      the distributions of the items
+     * @param similarity the similarity function
+     * @param clusters   the destination of the best centroid of each item
+     * @param scores     the destination of the score of the best centroid
+     * @param from       the first item or centroid
+     * @param to         the end of the range
+     */
+    KMeansTask(int step, Centroid[] centroids, IWeighting3D dists,
+               ISimilarityFunction similarity, int[] clusters, double[] scores,
+               int from, int to) {
+        _step = step;
+        _centroids = centroids;
+        _dists = dists;
+        _similarity = similarity;
+        _clusters = clusters;
+        _scores = scores;
+        _from = from;
+        _to = to;
+    }
+
+    @Override
+    protected void compute() {
+        int grain = _step == ASSIGN ? 16 : 1;
+        if (_to - _from > grain) {
+            int middle = (_from + _to) >>> 1;
+            invokeAll(new KMeansTask(_step, _centroids, _dists, _similarity,
+                            _clusters, _scores, _from, middle),
+                    new KMeansTask(_step, _centroids, _dists, _similarity,
+                            _clusters, _scores, middle, _to));
+            return;
+        }
+        if (_step == UPDATE) {
+            for (int i = _from; i < _to; i++)
+                _centroids[i].computeCentroid(_dists);
+            return;
+        }
+        for (int docID = _from; docID < _to; docID++) {
+            double best = _similarity.compareSimilarity(0, Double.MAX_VALUE) == 1 ? Double.MAX_VALUE : 0;
+            int whichCluster = 0;
+            for (int i = 0; i < _centroids.length; i++) {
+                double score = _similarity.computeSimilarity(
+                        _centroids[i].features, _dists, docID);
+                if (_similarity.compareSimilarity(score, best) > 0) {
+                    best = score;
+                    whichCluster = i;
+                }
+            }
+            _clusters[docID] = whichCluster;
+            _scores[docID] = best;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.evaluation;
+
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDB;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The documents of a set of categories of a classification DB, as bitsets
+ * of the document IDs, or as sorted arrays of IDs for the categories with
+ * less than a document every 32, which take less memory that way. The
+ * contingency table of a category is computed from the sizes of the sets of
+ * the evaluated and target classifications and of their intersection,
+ * which is counted a word of 64 documents at a time on the bitsets. The
+ * DBs keeping only the categories of each document are read with a single
+ * pass over the documents.
+ */
+public class ClassificationBitsets {
+
+    protected int _documentsCount;
+    protected long[][] _bits;
+    protected int[][] _documents;
+    protected int[] _counts;
+
+    /**
+     * @param db             the classification DB
+     * @param documentsCount the number of documents, the documents with a
+     *                       greater ID are ignored
+     * @param categories     the categories to read, the other ones are empty
+     * @param threads        the number of threads reading the categories
+     */
+    public ClassificationBitsets(IClassificationDB db, int documentsCount,
+                                 short[] categories, int threads) {
+        this(documentsCount, categories);
+        if (db == null)
+            throw new NullPointerException("The specified classification DB is 'null'");
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        read(new ClassificationBitsets[]{this}, new IClassificationDB[]{db},
+                distinct(categories, _counts.length), threads);
+    }
+
+    protected ClassificationBitsets(int documentsCount, short[] categories) {
+        if (categories == null)
+            throw new NullPointerException("The specified categories are 'null'");
+        _documentsCount = documentsCount;
+        int size = 0;
+        for (short category : categories)
+            size = Math.max(size, category + 1);
+        _bits = new long[size][];
+        _documents = new int[size][];
+        _counts = new int[size];
+    }
+
+    /**
+     * Read the same categories from several classification DBs, e.g. the
+     * evaluated and the target one. The DBs storing only the categories of
+     * each document are all read in a single pass over the documents,
+     * instead of scanning all the documents for each category.
+     *
+     * @param dbs            the classification DBs
+     * @param documentsCount the number of documents, the documents with a
+     *                       greater ID are ignored
+     * @param categories     the categories to read, the other ones are empty
+     * @param threads        the number of threads reading the categories
+     * @return the sets of the DBs, in the same order
+     */
+    public static ClassificationBitsets[] read(IClassificationDB[] dbs,
+                                               int documentsCount, short[] categories, int threads) {
+        if (dbs == null)
+            throw new NullPointerException("The specified classification DBs are 'null'");
+        for (IClassificationDB db : dbs) {
+            if (db == null)
+                throw new NullPointerException("The specified classification DB is 'null'");
+        }
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        ClassificationBitsets[] sets = new ClassificationBitsets[dbs.length];
+        for (int i = 0; i < dbs.length; ++i)
+            sets[i] = new ClassificationBitsets(documentsCount, categories);
+        if (sets.length > 0)
+            read(sets, dbs, distinct(categories, sets[0]._counts.length),
+                    threads);
+        return sets;
+    }
+
+    /**
+     * @return the non negative categories, each one once
+     */
+    protected static short[] distinct(short[] categories, int size) {
+        boolean[] seen = new boolean[size];
+        int unique = 0;
+        short[] distinct = new short[categories.length];
+        for (short category : categories) {
+            if (category >= 0 && !seen[category]) {
+                seen[category] = true;
+                distinct[unique++] = category;
+            }
+        }
+        return Arrays.copyOf(distinct, unique);
+    }
+
+    /**
+     * @return true if the DB has no list of documents per category, so that
+     * reading a category scans all the documents
+     */
+    protected static boolean isDocumentMajor(IClassificationDB db) {
+        return db instanceof TroveClassificationDB;
+    }
+
+    protected static void read(ClassificationBitsets[] sets,
+                               IClassificationDB[] dbs, short[] categories, int threads) {
+        int documentMajor = 0;
+        for (IClassificationDB db : dbs) {
+            if (isDocumentMajor(db))
+                ++documentMajor;
+        }
+        if (documentMajor > 0) {
+            ClassificationBitsets[] documentSets = new ClassificationBitsets[documentMajor];
+            IClassificationDB[] documentDBs = new IClassificationDB[documentMajor];
+            documentMajor = 0;
+            for (int i = 0; i < dbs.length; ++i) {
+                if (isDocumentMajor(dbs[i])) {
+                    documentSets[documentMajor] = sets[i];
+                    documentDBs[documentMajor++] = dbs[i];
+                }
+            }
+            readDocuments(documentSets, documentDBs, categories);
+        }
+
+        // each category of the other DBs is read once, by a single thread
+        for (int i = 0; i < dbs.length; ++i) {
+            if (isDocumentMajor(dbs[i]))
+                continue;
+            if (threads == 1 || categories.length < 2) {
+                for (short category : categories)
+                    sets[i].read(dbs[i], category);
+                continue;
+            }
+            ForkJoinPool pool = new ForkJoinPool(Math.min(threads, categories.length));
+            try {
+                pool.invoke(new ReadTask(sets[i], dbs[i], categories, 0, categories.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Read the categories of the DBs with one pass over the documents, each
+     * document is read once from each DB. The documents of a category are
+     * collected in increasing order, no sorting is needed.
+     */
+    protected static void readDocuments(ClassificationBitsets[] sets,
+                                        IClassificationDB[] dbs, short[] categories) {
+        int size = sets[0]._counts.length;
+        boolean[] selected = new boolean[size];
+        for (short category : categories)
+            selected[category] = true;
+        TIntArrayList[][] buffers = new TIntArrayList[dbs.length][size];
+        for (int i = 0; i < dbs.length; ++i) {
+            for (short category : categories)
+                buffers[i][category] = new TIntArrayList();
+        }
+        int documentsCount = sets[0]._documentsCount;
+        for (int document = 0; document < documentsCount; ++document) {
+            for (int i = 0; i < dbs.length; ++i) {
+                IShortIterator it = dbs[i].getDocumentCategories(document);
+                while (it.hasNext()) {
+                    short category = it.next();
+                    if (category < 0 || category >= size || !selected[category])
+                        continue;
+                    TIntArrayList buffer = buffers[i][category];
+                    if (buffer.size() == 0
+                            || buffer.get(buffer.size() - 1) != document)
+                        buffer.add(document);
+                }
+            }
+        }
+        for (int i = 0; i < dbs.length; ++i) {
+            for (short category : categories) {
+                TIntArrayList buffer = buffers[i][category];
+                sets[i].store(category, buffer.toNativeArray(), buffer.size());
+                buffers[i][category] = null;
+            }
+        }
+    }
+
+    protected void read(IClassificationDB db, short category) {
+        int[] documents = new int[16];
+        int count = 0;
+        boolean sorted = true;
+        IIntIterator it = db.getCategoryDocuments(category);
+        while (it.hasNext()) {
+            int document = it.next();
+            if (document < 0 || document >= _documentsCount)
+                continue;
+            if (count == documents.length)
+                documents = Arrays.copyOf(documents, count * 2);
+            if (count > 0 && documents[count - 1] >= document)
+                sorted = false;
+            documents[count++] = document;
+        }
+        if (!sorted) {
+            Arrays.sort(documents, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; ++i) {
+                if (unique == 0 || documents[unique - 1] != documents[i])
+                    documents[unique++] = documents[i];
+            }
+            count = unique;
+        }
+        store(category, documents, count);
+    }
+
+    /**
+     * @param documents the sorted distinct documents of the category, in the
+     *                  first count positions
+     */
+    protected void store(short category, int[] documents, int count) {
+        _counts[category] = count;
+        if ((long) count * 32 > _documentsCount) {
+            long[] bits = new long[getWordsCount()];
+            for (int i = 0; i < count; ++i)
+                bits[documents[i] >>> 6] |= 1L << documents[i];
+            _bits[category] = bits;
+        } else {
+            _documents[category] = count == documents.length ? documents
+                    : Arrays.copyOf(documents, count);
+        }
+    }
+
+    public int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    /**
+     * @return the number of 64 bits words of a bitset of the documents
+     */
+    public int getWordsCount() {
+        return (_documentsCount + 63) >>> 6;
+    }
+
+    public int getCategoryDocumentsCount(short category) {
+        if (category < 0 || category >= _counts.length)
+            return 0;
+        return _counts[category];
+    }
+
+    public boolean hasDocumentCategory(int document, short category) {
+        if (category < 0 || category >= _counts.length || document < 0
+                || document >= _documentsCount)
+            return false;
+        if (_bits[category] != null)
+            return (_bits[category][document >>> 6] & (1L << document)) != 0;
+        if (_documents[category] != null)
+            return Arrays.binarySearch(_documents[category], document) >= 0;
+        return false;
+    }
+
+    /**
+     * @return the number of documents of the category both in this set and
+     * in the other one
+     */
+    public int getIntersectionCount(short category, ClassificationBitsets other) {
+        if (category < 0 || category >= _counts.length
+                || category >= other._counts.length)
+            return 0;
+        long[] bits = _bits[category];
+        long[] otherBits = other._bits[category];
+        int[] documents = _documents[category];
+        int[] otherDocuments = other._documents[category];
+        if (bits != null && otherBits != null)
+            return intersectionCount(bits, otherBits);
+        if (bits != null && otherDocuments != null)
+            return intersectionCount(otherDocuments, bits);
+        if (documents != null && otherBits != null)
+            return intersectionCount(documents, otherBits);
+        if (documents != null && otherDocuments != null)
+            return intersectionCount(documents, otherDocuments);
+        return 0;
+    }
+
+    /**
+     * Copy the documents of the category in a bitset.
+     *
+     * @param category the category
+     * @param bits     the destination bitset, with
+     *                 {@link #getWordsCount()} words, or null to create a
+     *                 new one
+     * @return the bitset
+     */
+    public long[] copyBits(short category, long[] bits) {
+        if (bits == null)
+            bits = new long[getWordsCount()];
+        else
+            Arrays.fill(bits, 0);
+        if (category < 0 || category >= _counts.length)
+            return bits;
+        if (_bits[category] != null)
+            System.arraycopy(_bits[category], 0, bits, 0, bits.length);
+        else if (_documents[category] != null) {
+            for (int document : _documents[category])
+                bits[document >>> 6] |= 1L << document;
+        }
+        return bits;
+    }
+
+    /**
+     * Remove the documents of the category from a bitset.
+     */
+    public void clearBits(short category, long[] bits) {
+        if (category < 0 || category >= _counts.length)
+            return;
+        long[] categoryBits = _bits[category];
+        if (categoryBits != null) {
+            for (int i = 0; i < bits.length; ++i)
+                bits[i] &= ~categoryBits[i];
+        } else if (_documents[category] != null) {
+            for (int document : _documents[category])
+                bits[document >>> 6] &= ~(1L << document);
+        }
+    }
+
+    /**
+     * Set the counts of the table comparing the documents of the category
+     * in this set, the evaluated one, with the ones in the target set.
+     */
+    public void fillTable(ContingencyTable table, short category,
+                          ClassificationBitsets target) {
+        fillTable(table, getCategoryDocumentsCount(category),
+                target.getCategoryDocumentsCount(category),
+                getIntersectionCount(category, target), _documentsCount);
+    }
+
+    /**
+     * Set the counts of the table comparing an evaluated and a target
+     * bitset.
+     */
+    public static void fillTable(ContingencyTable table, long[] evaluated,
+                                 long[] target, int documentsCount) {
+        fillTable(table, bitCount(evaluated), bitCount(target),
+                intersectionCount(evaluated, target), documentsCount);
+    }
+
+    protected static void fillTable(ContingencyTable table, int evaluated,
+                                    int target, int both, int documentsCount) {
+        table.setTP(both);
+        table.setFP(evaluated - both);
+        table.setFN(target - both);
+        table.setTN(documentsCount - evaluated - target + both);
+    }
+
+    public static int bitCount(long[] bits) {
+        int count = 0;
+        for (long word : bits)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    protected static int intersectionCount(long[] bits1, long[] bits2) {
+        int count = 0;
+        int words = Math.min(bits1.length, bits2.length);
+        for (int i = 0; i < words; ++i)
+            count += Long.bitCount(bits1[i] & bits2[i]);
+        return count;
+    }
+
+    protected static int intersectionCount(int[] documents, long[] bits) {
+        int count = 0;
+        for (int document : documents) {
+            if ((bits[document >>> 6] & (1L << document)) != 0)
+                ++count;
+        }
+        return count;
+    }
+
+    protected static int intersectionCount(int[] documents1, int[] documents2) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < documents1.length && j < documents2.length) {
+            if (documents1[i] < documents2[j])
+                ++i;
+            else if (documents1[i] > documents2[j])
+                ++j;
+            else {
+                ++count;
+                ++i;
+                ++j;
+            }
+        }
+        return count;
+    }
+
+    private static class ReadTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClassificationBitsets _sets;
+        private final IClassificationDB _db;
+        private final short[] _categories;
+        private final int _from;
+        private final int _to;
+
+        ReadTask(ClassificationBitsets sets, IClassificationDB db,
+                 short[] categories, int from, int to) {
+            _sets = sets;
+            _db = db;
+            _categories = categories;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new ReadTask(_sets, _db, _categories, _from, middle),
+                        new ReadTask(_sets, _db, _categories, middle, _to));
+                return;
+            }
+            _sets.read(_db, _categories[_from]);
+        }
+    }
+}
@@ -34,10 +34,16 @@ import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This comparer, differently from {@link HierarchicalClassificationComparer}, evaluates all the codes
  * in the taxonomy in the same way, giving to internal nodes no special behaviour.
+ * <p>
+ * The documents of each category are read once from the two classification DBs into
+ * {@link ClassificationBitsets}, and the contingency tables are computed from the sizes of the sets,
+ * in parallel among the categories if more than one thread is set.
  */
 public class ClassificationComparer {
 
@@ -48,6 +54,7 @@ public class ClassificationComparer {
     private ArrayList<TShortHashSet> _experimentArray;
     private HashMap<Short, String> _categoryNames;
     private ArrayList<TShortHashSet> _goldStandardArray;
+    protected int _threads;
 
     public ClassificationComparer(IClassificationDB experiment,
                                   IClassificationDB goldStandard) {
@@ -64,6 +71,7 @@ public class ClassificationComparer {
         validCategories.begin();
         _experiment = evaluated;
         _goldStandard = target;
+        _threads = 1;
     }
 
     /**
@@ -116,43 +124,104 @@ public class ClassificationComparer {
         return _goldStandard;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used by {@link #evaluate(boolean)}, by default 1.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
     public ContingencyTableSet evaluate() {
         return evaluate(false);
     }
 
     public ContingencyTableSet evaluate(boolean onlyLeaves) {
-        ContingencyTableSet tableSet = new ContingencyTableSet();
-        IIntIterator docIt = _experiment.getDocumentDB().getDocuments();
+        TShortArrayList evaluatedCategories = new TShortArrayList();
         IShortIterator catIt = new TShortArrayListIterator(_validCategories);
-
         while (catIt.hasNext()) {
             short category = catIt.next();
             if (onlyLeaves
                     && _experiment.getCategoryDB().hasChildCategories(
                     category))
                 continue;
-            ContingencyTable table = new ContingencyTable(_experiment
-                    .getCategoryDB().getCategoryName(category));
-            docIt.begin();
-            while (docIt.hasNext()) {
-                int document = docIt.next();
-                if (_experiment.hasDocumentCategory(document, category)) {
-                    if (_goldStandard.hasDocumentCategory(document, category))
-                        table.addTP();
-                    else
-                        table.addFP();
-                } else {
-                    if (_goldStandard.hasDocumentCategory(document, category))
-                        table.addFN();
-                    else
-                        table.addTN();
-                }
+            evaluatedCategories.add(category);
+        }
+        short[] categories = evaluatedCategories.toNativeArray();
+        ContingencyTable[] tables = new ContingencyTable[categories.length];
+        for (int i = 0; i < categories.length; i++)
+            tables[i] = new ContingencyTable(_experiment.getCategoryDB()
+                    .getCategoryName(categories[i]));
+
+        int documents = _experiment.getDocumentDB().getDocumentsCount();
+        ClassificationBitsets[] sets = ClassificationBitsets.read(
+                new IClassificationDB[]{_experiment, _goldStandard},
+                documents, categories, _threads);
+        ClassificationBitsets evaluated = sets[0];
+        ClassificationBitsets target = sets[1];
+        if (_threads == 1 || categories.length < 2) {
+            for (int i = 0; i < categories.length; i++)
+                evaluated.fillTable(tables[i], categories[i], target);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(_threads,
+                    categories.length));
+            try {
+                pool.invoke(new TablesTask(evaluated, target, categories,
+                        tables, 0, categories.length));
+            } finally {
+                pool.shutdown();
             }
-            tableSet.addContingenyTable(category, table);
         }
+
+        ContingencyTableSet tableSet = new ContingencyTableSet();
+        for (int i = 0; i < categories.length; i++)
+            tableSet.addContingenyTable(categories[i], tables[i]);
         return tableSet;
     }
 
+    private static class TablesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClassificationBitsets _evaluated;
+        private final ClassificationBitsets _target;
+        private final short[] _categories;
+        private final ContingencyTable[] _tables;
+        private final int _from;
+        private final int _to;
+
+        TablesTask(ClassificationBitsets evaluated,
+                   ClassificationBitsets target, short[] categories,
+                   ContingencyTable[] tables, int from, int to) {
+            _evaluated = evaluated;
+            _target = target;
+            _categories = categories;
+            _tables = tables;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new TablesTask(_evaluated, _target, _categories,
+                                _tables, _from, middle),
+                        new TablesTask(_evaluated, _target, _categories,
+                                _tables, middle, _to));
+                return;
+            }
+            _evaluated.fillTable(_tables[_from], _categories[_from], _target);
+        }
+    }
+
 
     public ContingencyTableSet evaluateFast() {
         throw new UnsupportedOperationException("Not yet implemented.");
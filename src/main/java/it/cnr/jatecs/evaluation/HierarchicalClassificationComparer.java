@@ -26,16 +26,24 @@ package it.cnr.jatecs.evaluation;
 
 import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
-import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * This comparer evaluates internal nodes in a special way, by giving an
  * evaluation to internal nodes only if they act as "other" nodes, i.e. a
  * document is assigned to internal node but it is not assigned to any child of
  * the node.
- *
+ * <p>
+ * The documents of each category are read once from the two classification
+ * DBs into {@link ClassificationBitsets}; the documents acting as "other" for
+ * an internal node are obtained removing from its bitset the bitsets of its
+ * children. The contingency tables are computed in parallel among the
+ * categories if more than one thread is set.
  */
 public class HierarchicalClassificationComparer {
 
@@ -44,6 +52,7 @@ public class HierarchicalClassificationComparer {
     protected IClassificationDB _goldStandard;
     protected TShortArrayList _validCategories;
     protected ContingencyTableSet _tableSet;
+    protected int _threads;
 
     public HierarchicalClassificationComparer(IClassificationDB experiment,
                                               IClassificationDB goldStandard) {
@@ -59,6 +68,7 @@ public class HierarchicalClassificationComparer {
             _validCategories.add(validCategories.next());
         _experiment = evaluated;
         _goldStandard = target;
+        _threads = 1;
     }
 
     public IClassificationDB getEvaluated() {
@@ -69,95 +79,155 @@ public class HierarchicalClassificationComparer {
         return _goldStandard;
     }
 
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used by {@link #evaluate(boolean)}, by
+     * default 1.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
     public ContingencyTableSet evaluate() {
         return evaluate(false);
     }
 
     public ContingencyTableSet evaluate(boolean onlyLeaves) {
-        ContingencyTableSet tableSet = new ContingencyTableSet();
-        IIntIterator docIt = _experiment.getDocumentDB().getDocuments();
-        IShortIterator catIt = new TShortArrayListIterator(_validCategories);
-
-        while (catIt.hasNext()) {
-            short category = catIt.next();
-            ContingencyTable table = new ContingencyTable(_experiment
-                    .getCategoryDB().getCategoryName(category));
-            if (!_goldStandard.getCategoryDB().hasChildCategories(category)) {
-                docIt.begin();
-                while (docIt.hasNext()) {
-                    int document = docIt.next();
-                    if (_experiment.hasDocumentCategory(document, category)) {
-                        if (_goldStandard.hasDocumentCategory(document,
-                                category))
-                            table.addTP();
-                        else
-                            table.addFP();
-                    } else {
-                        if (_goldStandard.hasDocumentCategory(document,
-                                category))
-                            table.addFN();
-                        else
-                            table.addTN();
-                    }
-                }
-                tableSet.addContingenyTable(category, table);
+        ICategoryDB categoryDB = _goldStandard.getCategoryDB();
+        short[] categories = _validCategories.toNativeArray();
+        // the children of the internal nodes, null for the leaves and for
+        // the internal nodes not evaluated
+        boolean[] leaves = new boolean[categories.length];
+        short[][] children = new short[categories.length][];
+        TShortArrayList read = new TShortArrayList();
+        for (int i = 0; i < categories.length; i++) {
+            short category = categories[i];
+            if (!categoryDB.hasChildCategories(category)) {
+                leaves[i] = true;
+                read.add(category);
             } else if (!onlyLeaves) {
-                boolean hasItsOwnDocuments = false;
-                IShortIterator childs = _goldStandard.getCategoryDB()
-                        .getChildCategories(category);
-                docIt.begin();
-                while (docIt.hasNext()) {
-                    int document = docIt.next();
-                    boolean goldStandardValue = true;
-                    if (_goldStandard.hasDocumentCategory(document, category)) {
-                        childs.begin();
-                        while (childs.hasNext()) {
-                            short child = childs.next();
-                            if (_goldStandard.hasDocumentCategory(document,
-                                    child)) {
-                                goldStandardValue = false;
-                                break;
-                            }
-                        }
-                    } else
-                        goldStandardValue = false;
-                    if (goldStandardValue)
-                        hasItsOwnDocuments = true;
-
-                    boolean experimentValue = true;
-                    if (_experiment.hasDocumentCategory(document, category)) {
-                        childs.begin();
-                        while (childs.hasNext()) {
-                            short child = childs.next();
-                            if (_experiment
-                                    .hasDocumentCategory(document, child)) {
-                                experimentValue = false;
-                                break;
-                            }
-                        }
-                    } else
-                        experimentValue = false;
-
-                    if (experimentValue) {
-                        if (goldStandardValue)
-                            table.addTP();
-                        else
-                            table.addFP();
-                    } else {
-                        if (goldStandardValue)
-                            table.addFN();
-                        else
-                            table.addTN();
-                    }
-                }
-                if (hasItsOwnDocuments)
-                    tableSet.addContingenyTable(category, table);
+                TShortArrayList childs = new TShortArrayList();
+                IShortIterator it = categoryDB.getChildCategories(category);
+                while (it.hasNext())
+                    childs.add(it.next());
+                children[i] = childs.toNativeArray();
+                read.add(category);
+                read.add(children[i]);
+            }
+        }
+        ContingencyTable[] tables = new ContingencyTable[categories.length];
+        for (int i = 0; i < categories.length; i++)
+            tables[i] = new ContingencyTable(_experiment.getCategoryDB()
+                    .getCategoryName(categories[i]));
+
+        int documents = _experiment.getDocumentDB().getDocumentsCount();
+        ClassificationBitsets[] sets = ClassificationBitsets.read(
+                new IClassificationDB[]{_experiment, _goldStandard},
+                documents, read.toNativeArray(), _threads);
+        ClassificationBitsets evaluated = sets[0];
+        ClassificationBitsets target = sets[1];
+        boolean[] valid = new boolean[categories.length];
+        if (_threads == 1 || categories.length < 2) {
+            for (int i = 0; i < categories.length; i++)
+                evaluate(evaluated, target, categories[i], leaves[i],
+                        children[i], tables[i], valid, i);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(_threads,
+                    categories.length));
+            try {
+                pool.invoke(new TablesTask(evaluated, target, categories,
+                        leaves, children, tables, valid, 0, categories.length));
+            } finally {
+                pool.shutdown();
             }
+        }
 
+        ContingencyTableSet tableSet = new ContingencyTableSet();
+        for (int i = 0; i < categories.length; i++) {
+            if (valid[i])
+                tableSet.addContingenyTable(categories[i], tables[i]);
         }
         return tableSet;
     }
 
+    /**
+     * Compute the table of the i-th category, marking it as valid if it has
+     * to be part of the evaluation: a leaf always is, an internal node only
+     * if it has its own documents in the target classification.
+     *
+     * @param children the children of the category, null if it is a leaf or
+     *                 an internal node which is not evaluated
+     */
+    protected static void evaluate(ClassificationBitsets evaluated,
+                                   ClassificationBitsets target, short category, boolean leaf,
+                                   short[] children, ContingencyTable table, boolean[] valid, int i) {
+        if (leaf) {
+            evaluated.fillTable(table, category, target);
+            valid[i] = true;
+        } else if (children != null) {
+            long[] evaluatedBits = evaluated.copyBits(category, null);
+            long[] targetBits = target.copyBits(category, null);
+            for (short child : children) {
+                evaluated.clearBits(child, evaluatedBits);
+                target.clearBits(child, targetBits);
+            }
+            ClassificationBitsets.fillTable(table, evaluatedBits, targetBits,
+                    evaluated.getDocumentsCount());
+            valid[i] = ClassificationBitsets.bitCount(targetBits) > 0;
+        }
+    }
+
+    private static class TablesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClassificationBitsets _evaluated;
+        private final ClassificationBitsets _target;
+        private final short[] _categories;
+        private final boolean[] _leaves;
+        private final short[][] _children;
+        private final ContingencyTable[] _tables;
+        private final boolean[] _valid;
+        private final int _from;
+        private final int _to;
+
+        TablesTask(ClassificationBitsets evaluated,
+                   ClassificationBitsets target, short[] categories,
+                   boolean[] leaves, short[][] children, ContingencyTable[] tables,
+                   boolean[] valid, int from, int to) {
+            _evaluated = evaluated;
+            _target = target;
+            _categories = categories;
+            _leaves = leaves;
+            _children = children;
+            _tables = tables;
+            _valid = valid;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > 1) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new TablesTask(_evaluated, _target, _categories,
+                                _leaves, _children, _tables, _valid, _from, middle),
+                        new TablesTask(_evaluated, _target, _categories,
+                                _leaves, _children, _tables, _valid, middle, _to));
+                return;
+            }
+            evaluate(_evaluated, _target, _categories[_from], _leaves[_from],
+                    _children[_from], _tables[_from], _valid, _from);
+        }
+    }
+
     /**
      * Compute the confusion matrix for a single-label experiment. You must be
      * sure that each document has assigned one and only one category.
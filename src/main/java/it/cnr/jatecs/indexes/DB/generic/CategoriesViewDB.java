@@ -0,0 +1,221 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.utils.iterators.RangeShortIterator;
+import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of a subset of the categories of a categories DB. The
+ * categories of the view keep the order of the underlying DB and are numbered
+ * from 0, the hierarchy is restricted to the categories of the view. The
+ * hierarchy is computed when the view is built, so the underlying DB is only
+ * read and can be shared among views used by different threads.
+ */
+public class CategoriesViewDB implements ICategoryDB {
+
+    protected String _name;
+    protected ICategoryDB _categoriesDB;
+    /**
+     * The underlying ID of every category of the view.
+     */
+    protected short[] _categories;
+    /**
+     * The view ID of every underlying category, -1 if not in the view.
+     */
+    protected short[] _viewCategories;
+    protected TShortArrayList[] _parents;
+    protected TShortArrayList[] _children;
+
+    /**
+     * @param categoriesDB the underlying categories DB
+     * @param categories   the underlying IDs of the categories of the view,
+     *                     sorted and distinct
+     */
+    public CategoriesViewDB(ICategoryDB categoriesDB, short[] categories) {
+        if (categoriesDB == null)
+            throw new NullPointerException("The specified categories DB is 'null'");
+        if (categories == null)
+            throw new NullPointerException("The specified categories are 'null'");
+        _categoriesDB = categoriesDB;
+        _categories = categories;
+        _viewCategories = new short[categoriesDB.getCategoriesCount()];
+        Arrays.fill(_viewCategories, (short) -1);
+        for (short i = 0; i < categories.length; ++i) {
+            if (!categoriesDB.isValidCategory(categories[i])
+                    || (i > 0 && categories[i] <= categories[i - 1]))
+                throw new IllegalArgumentException(
+                        "The categories of the view must be valid, sorted and distinct");
+            _viewCategories[categories[i]] = i;
+        }
+
+        _parents = new TShortArrayList[categories.length];
+        _children = new TShortArrayList[categories.length];
+        for (int i = 0; i < categories.length; ++i) {
+            _parents[i] = new TShortArrayList();
+            _children[i] = new TShortArrayList();
+        }
+        for (short i = 0; i < categories.length; ++i) {
+            IShortIterator parents = categoriesDB
+                    .getParentCategories(categories[i]);
+            while (parents.hasNext()) {
+                short parent = getViewCategory(parents.next());
+                if (parent >= 0) {
+                    _parents[i].add(parent);
+                    _children[parent].add(i);
+                }
+            }
+        }
+        for (int i = 0; i < categories.length; ++i) {
+            _parents[i].sort();
+            _children[i].sort();
+        }
+        _name = categoriesDB.getName();
+    }
+
+    /**
+     * @param category a category of the view
+     * @return the ID of the category in the underlying DB
+     */
+    public short getBaseCategory(short category) {
+        return _categories[category];
+    }
+
+    /**
+     * @param category a category of the underlying DB
+     * @return the ID of the category in the view, -1 if not in the view
+     */
+    public short getViewCategory(short category) {
+        if (category >= 0 && category < _viewCategories.length)
+            return _viewCategories[category];
+        else
+            return -1;
+    }
+
+    public String getCategoryName(short category) {
+        return _categoriesDB.getCategoryName(_categories[category]);
+    }
+
+    public short getCategory(String categoryName) {
+        return getViewCategory(_categoriesDB.getCategory(categoryName));
+    }
+
+    public int getCategoriesCount() {
+        return _categories.length;
+    }
+
+    public IShortIterator getCategories() {
+        return new RangeShortIterator((short) 0, (short) _categories.length);
+    }
+
+    public boolean isValidCategory(short category) {
+        return category >= 0 && category < _categories.length;
+    }
+
+    public IShortIterator getParentCategories(short category) {
+        if (isValidCategory(category))
+            return new TShortArrayListIterator(_parents[category]);
+        else
+            return new TShortArrayListIterator(new TShortArrayList());
+    }
+
+    public IShortIterator getChildCategories(short category) {
+        if (isValidCategory(category))
+            return new TShortArrayListIterator(_children[category]);
+        else
+            return new TShortArrayListIterator(new TShortArrayList());
+    }
+
+    public int getChildCategoriesCount(short category) {
+        if (isValidCategory(category))
+            return _children[category].size();
+        else
+            return 0;
+    }
+
+    public boolean hasChildCategories(short category) {
+        return getChildCategoriesCount(category) > 0;
+    }
+
+    public IShortIterator getSiblingCategories(short category) {
+        TShortArrayList siblings = new TShortArrayList();
+        if (_parents[category].size() > 0) {
+            for (int i = 0; i < _parents[category].size(); ++i)
+                siblings.add(_children[_parents[category].getQuick(i)]
+                        .toNativeArray());
+        } else {
+            IShortIterator roots = getRootCategories();
+            while (roots.hasNext())
+                siblings.add(roots.next());
+        }
+        siblings.sort();
+        siblings.remove(siblings.binarySearch(category));
+        return new TShortArrayListIterator(siblings);
+    }
+
+    public IShortIterator getRootCategories() {
+        TShortArrayList roots = new TShortArrayList();
+        for (short i = 0; i < _categories.length; ++i) {
+            if (_parents[i].size() == 0)
+                roots.add(i);
+        }
+        return new TShortArrayListIterator(roots);
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeCategories(IShortIterator removedCategories) {
+        throw new UnsupportedOperationException(
+                "The categories view is read-only, clone it to modify it");
+    }
+
+    public ICategoryDB cloneDB() {
+        TroveCategoryDBBuilder builder = new TroveCategoryDBBuilder();
+        String[] names = new String[_categories.length];
+        for (short i = 0; i < _categories.length; ++i)
+            names[i] = getCategoryName(i);
+        builder.setCategories(names);
+        for (int i = 0; i < _categories.length; ++i) {
+            for (int j = 0; j < _parents[i].size(); ++j)
+                builder.setParentCategory(names[i],
+                        names[_parents[i].getQuick(j)]);
+        }
+        ICategoryDB categoriesDB = builder.getCategoryDB();
+        categoriesDB.setName(new String(_name));
+        return categoriesDB;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDBBuilder;
+import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+/**
+ * Read-only view of the labels of the documents of a {@link DocumentsViewDB}
+ * restricted to the categories of a {@link CategoriesViewDB}.
+ */
+public class ClassificationViewDB implements IClassificationDB {
+
+    protected String _name;
+    protected IClassificationDB _classificationDB;
+    protected DocumentsViewDB _documentsDB;
+    protected CategoriesViewDB _categoriesDB;
+    /**
+     * The number of documents of the view labeled with every category,
+     * computed at the first request.
+     */
+    protected volatile int[] _categoriesDocumentsCount;
+
+    public ClassificationViewDB(IClassificationDB classificationDB,
+                                DocumentsViewDB documentsDB, CategoriesViewDB categoriesDB) {
+        if (classificationDB == null)
+            throw new NullPointerException(
+                    "The specified classification DB is 'null'");
+        if (documentsDB == null)
+            throw new NullPointerException("The specified documents DB is 'null'");
+        if (categoriesDB == null)
+            throw new NullPointerException("The specified categories DB is 'null'");
+        _classificationDB = classificationDB;
+        _documentsDB = documentsDB;
+        _categoriesDB = categoriesDB;
+        _name = classificationDB.getName();
+    }
+
+    public ICategoryDB getCategoryDB() {
+        return _categoriesDB;
+    }
+
+    public IDocumentDB getDocumentDB() {
+        return _documentsDB;
+    }
+
+    public int getDocumentCategoriesCount(int document) {
+        if (!_documentsDB.isValidDocument(document))
+            return 0;
+        int count = 0;
+        IShortIterator cats = _classificationDB
+                .getDocumentCategories(_documentsDB.getBaseDocument(document));
+        while (cats.hasNext()) {
+            if (_categoriesDB.getViewCategory(cats.next()) >= 0)
+                ++count;
+        }
+        return count;
+    }
+
+    public IShortIterator getDocumentCategories(int document) {
+        TShortArrayList categories = new TShortArrayList();
+        if (_documentsDB.isValidDocument(document)) {
+            IShortIterator cats = _classificationDB
+                    .getDocumentCategories(_documentsDB
+                            .getBaseDocument(document));
+            while (cats.hasNext()) {
+                short category = _categoriesDB.getViewCategory(cats.next());
+                if (category >= 0)
+                    categories.add(category);
+            }
+        }
+        return new TShortArrayListIterator(categories);
+    }
+
+    public boolean hasDocumentCategory(int document, short category) {
+        return _documentsDB.isValidDocument(document)
+                && _categoriesDB.isValidCategory(category)
+                && _classificationDB.hasDocumentCategory(
+                _documentsDB.getBaseDocument(document),
+                _categoriesDB.getBaseCategory(category));
+    }
+
+    public int getCategoryDocumentsCount(short category) {
+        int[] counts = _categoriesDocumentsCount;
+        if (counts == null) {
+            synchronized (this) {
+                counts = _categoriesDocumentsCount;
+                if (counts == null) {
+                    counts = new int[_categoriesDB.getCategoriesCount()];
+                    for (short cat = 0; cat < counts.length; ++cat) {
+                        IIntIterator docs = _classificationDB
+                                .getCategoryDocuments(_categoriesDB
+                                        .getBaseCategory(cat));
+                        while (docs.hasNext()) {
+                            if (_documentsDB.getViewDocument(docs.next()) >= 0)
+                                ++counts[cat];
+                        }
+                    }
+                    _categoriesDocumentsCount = counts;
+                }
+            }
+        }
+        if (category >= 0 && category < counts.length)
+            return counts[category];
+        else
+            return 0;
+    }
+
+    public IIntIterator getCategoryDocuments(short category) {
+        if (!_categoriesDB.isValidCategory(category))
+            return new EmptyIntIterator();
+        TIntArrayList documents = new TIntArrayList();
+        IIntIterator docs = _classificationDB
+                .getCategoryDocuments(_categoriesDB.getBaseCategory(category));
+        while (docs.hasNext()) {
+            int document = _documentsDB.getViewDocument(docs.next());
+            if (document >= 0)
+                documents.add(document);
+        }
+        return new TIntArrayListIterator(documents);
+    }
+
+    public boolean isPrimaryCategory(int document, short category) {
+        return hasDocumentCategory(document, category)
+                && _classificationDB.isPrimaryCategory(
+                _documentsDB.getBaseDocument(document),
+                _categoriesDB.getBaseCategory(category));
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeCategories(IShortIterator removedCategories) {
+        throw new UnsupportedOperationException(
+                "The classification view is read-only, clone it to modify it");
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The classification view is read-only, clone it to modify it");
+    }
+
+    public IClassificationDB cloneDB(ICategoryDB categoriesDB,
+                                     IDocumentDB documentsDB) {
+        IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
+                documentsDB, categoriesDB);
+        int documents = _documentsDB.getDocumentsCount();
+        for (int document = 0; document < documents; ++document) {
+            IShortIterator cats = getDocumentCategories(document);
+            while (cats.hasNext()) {
+                short category = cats.next();
+                builder.setDocumentCategory(document, category,
+                        isPrimaryCategory(document, category));
+            }
+        }
+        IClassificationDB classificationDB = builder.getClassificationDB();
+        classificationDB.setName(new String(_name));
+        return classificationDB;
+    }
+}
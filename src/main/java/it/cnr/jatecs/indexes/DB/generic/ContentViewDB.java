@@ -0,0 +1,198 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveContentDBBuilder;
+import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+/**
+ * Read-only view of the content of the documents of a
+ * {@link DocumentsViewDB}. The features are the ones of the underlying
+ * content DB, unused features included.
+ */
+public class ContentViewDB implements IContentDB {
+
+    protected String _name;
+    protected IContentDB _contentDB;
+    protected DocumentsViewDB _documentsDB;
+    /**
+     * The number of documents of the view containing every feature, computed
+     * at the first request.
+     */
+    protected volatile int[] _featuresDocumentsCount;
+
+    public ContentViewDB(IContentDB contentDB, DocumentsViewDB documentsDB) {
+        if (contentDB == null)
+            throw new NullPointerException("The specified content DB is 'null'");
+        if (documentsDB == null)
+            throw new NullPointerException("The specified documents DB is 'null'");
+        _contentDB = contentDB;
+        _documentsDB = documentsDB;
+        _name = contentDB.getName();
+    }
+
+    public IContentDB getBaseDB() {
+        return _contentDB;
+    }
+
+    public IFeatureDB getFeatureDB() {
+        return _contentDB.getFeatureDB();
+    }
+
+    public IDocumentDB getDocumentDB() {
+        return _documentsDB;
+    }
+
+    public int getDocumentLength(int document) {
+        if (_documentsDB.isValidDocument(document))
+            return _contentDB.getDocumentLength(_documentsDB
+                    .getBaseDocument(document));
+        else
+            return 0;
+    }
+
+    public int getDocumentFeaturesCount(int document) {
+        if (_documentsDB.isValidDocument(document))
+            return _contentDB.getDocumentFeaturesCount(_documentsDB
+                    .getBaseDocument(document));
+        else
+            return 0;
+    }
+
+    public IIntIterator getDocumentFeatures(int document) {
+        if (_documentsDB.isValidDocument(document))
+            return _contentDB.getDocumentFeatures(_documentsDB
+                    .getBaseDocument(document));
+        else
+            return new EmptyIntIterator();
+    }
+
+    protected int[] getFeaturesDocumentsCount() {
+        int[] counts = _featuresDocumentsCount;
+        if (counts == null) {
+            synchronized (this) {
+                counts = _featuresDocumentsCount;
+                if (counts == null) {
+                    counts = new int[getFeatureDB().getFeaturesCount()];
+                    int documents = _documentsDB.getDocumentsCount();
+                    for (int document = 0; document < documents; ++document) {
+                        IIntIterator feats = getDocumentFeatures(document);
+                        while (feats.hasNext()) {
+                            int feat = feats.next();
+                            if (feat < counts.length)
+                                ++counts[feat];
+                        }
+                    }
+                    _featuresDocumentsCount = counts;
+                }
+            }
+        }
+        return counts;
+    }
+
+    public int getFeatureDocumentsCount(int feature) {
+        int[] counts = getFeaturesDocumentsCount();
+        if (feature >= 0 && feature < counts.length)
+            return counts[feature];
+        else
+            return 0;
+    }
+
+    public IIntIterator getFeatureDocuments(int feature) {
+        TIntArrayList documents = new TIntArrayList();
+        IIntIterator it = _contentDB.getFeatureDocuments(feature);
+        while (it.hasNext()) {
+            int document = _documentsDB.getViewDocument(it.next());
+            if (document >= 0)
+                documents.add(document);
+        }
+        return new TIntArrayListIterator(documents);
+    }
+
+    public boolean hasDocumentFeature(int document, int feature) {
+        return _documentsDB.isValidDocument(document)
+                && _contentDB.hasDocumentFeature(
+                _documentsDB.getBaseDocument(document), feature);
+    }
+
+    public IIntIterator getUnusedFeatures() {
+        int[] counts = getFeaturesDocumentsCount();
+        TIntArrayList unused = new TIntArrayList();
+        for (int feature = 0; feature < counts.length; ++feature) {
+            if (counts[feature] == 0)
+                unused.add(feature);
+        }
+        return new TIntArrayListIterator(unused);
+    }
+
+    public int getDocumentFeatureFrequency(int document, int feature) {
+        if (_documentsDB.isValidDocument(document))
+            return _contentDB.getDocumentFeatureFrequency(
+                    _documentsDB.getBaseDocument(document), feature);
+        else
+            return 0;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The content view is read-only, clone it to modify it");
+    }
+
+    public void removeFeatures(IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The content view is read-only, clone it to modify it");
+    }
+
+    public IContentDB cloneDB(IDocumentDB docDB, IFeatureDB featDB) {
+        TroveContentDBBuilder builder = new TroveContentDBBuilder(docDB, featDB);
+        int documents = _documentsDB.getDocumentsCount();
+        for (int document = 0; document < documents; ++document) {
+            int base = _documentsDB.getBaseDocument(document);
+            IIntIterator feats = _contentDB.getDocumentFeatures(base);
+            while (feats.hasNext()) {
+                int feat = feats.next();
+                builder.setDocumentFeatureFrequency(document, feat,
+                        _contentDB.getDocumentFeatureFrequency(base, feat));
+            }
+        }
+        IContentDB contentDB = builder.getContentDB();
+        contentDB.setName(new String(_name));
+        return contentDB;
+    }
+}
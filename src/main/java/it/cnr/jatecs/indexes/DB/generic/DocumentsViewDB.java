@@ -0,0 +1,143 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveDocumentsDBBuilder;
+import it.cnr.jatecs.utils.iterators.RangeIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of a subset of the documents of a documents DB. The
+ * documents of the view keep the order of the underlying DB and are numbered
+ * from 0, as if the other documents had been removed.
+ */
+public class DocumentsViewDB implements IDocumentDB {
+
+    protected String _name;
+    protected IDocumentDB _documentsDB;
+    /**
+     * The underlying ID of every document of the view.
+     */
+    protected int[] _documents;
+    /**
+     * The view ID of every underlying document, -1 if not in the view.
+     */
+    protected int[] _viewDocuments;
+
+    /**
+     * @param documentsDB the underlying documents DB
+     * @param documents   the underlying IDs of the documents of the view,
+     *                    sorted and distinct
+     */
+    public DocumentsViewDB(IDocumentDB documentsDB, int[] documents) {
+        if (documentsDB == null)
+            throw new NullPointerException("The specified documents DB is 'null'");
+        if (documents == null)
+            throw new NullPointerException("The specified documents are 'null'");
+        _documentsDB = documentsDB;
+        _documents = documents;
+        _viewDocuments = new int[documentsDB.getDocumentsCount()];
+        Arrays.fill(_viewDocuments, -1);
+        for (int i = 0; i < documents.length; ++i) {
+            if (!documentsDB.isValidDocument(documents[i])
+                    || (i > 0 && documents[i] <= documents[i - 1]))
+                throw new IllegalArgumentException(
+                        "The documents of the view must be valid, sorted and distinct");
+            _viewDocuments[documents[i]] = i;
+        }
+        _name = documentsDB.getName();
+    }
+
+    /**
+     * @param document a document of the view
+     * @return the ID of the document in the underlying DB
+     */
+    public int getBaseDocument(int document) {
+        return _documents[document];
+    }
+
+    /**
+     * @param document a document of the underlying DB
+     * @return the ID of the document in the view, -1 if not in the view
+     */
+    public int getViewDocument(int document) {
+        if (document >= 0 && document < _viewDocuments.length)
+            return _viewDocuments[document];
+        else
+            return -1;
+    }
+
+    public IDocumentDB getBaseDB() {
+        return _documentsDB;
+    }
+
+    public String getDocumentName(int document) {
+        if (isValidDocument(document))
+            return _documentsDB.getDocumentName(_documents[document]);
+        else
+            return null;
+    }
+
+    public int getDocument(String documentName) {
+        return getViewDocument(_documentsDB.getDocument(documentName));
+    }
+
+    public int getDocumentsCount() {
+        return _documents.length;
+    }
+
+    public IIntIterator getDocuments() {
+        return new RangeIntIterator(0, _documents.length);
+    }
+
+    public boolean isValidDocument(int document) {
+        return document >= 0 && document < _documents.length;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The documents view is read-only, clone it to modify it");
+    }
+
+    public IDocumentDB cloneDB() {
+        TroveDocumentsDBBuilder builder = new TroveDocumentsDBBuilder();
+        for (int i = 0; i < _documents.length; ++i)
+            builder.addDocument(_documentsDB.getDocumentName(_documents[i]));
+        IDocumentDB documentsDB = builder.getDocumentDB();
+        documentsDB.setName(new String(_name));
+        return documentsDB;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDomainDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveDomainDB;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+/**
+ * Read-only view of a domain DB restricted to the categories of a
+ * {@link CategoriesViewDB}.
+ */
+public class DomainViewDB implements IDomainDB {
+
+    protected String _name;
+    protected IDomainDB _domainDB;
+    protected CategoriesViewDB _categoriesDB;
+
+    public DomainViewDB(IDomainDB domainDB, CategoriesViewDB categoriesDB) {
+        if (domainDB == null)
+            throw new NullPointerException("The specified domain DB is 'null'");
+        if (categoriesDB == null)
+            throw new NullPointerException("The specified categories DB is 'null'");
+        _domainDB = domainDB;
+        _categoriesDB = categoriesDB;
+        _name = domainDB.getName();
+    }
+
+    public ICategoryDB getCategoryDB() {
+        return _categoriesDB;
+    }
+
+    public IFeatureDB getFeatureDB() {
+        return _domainDB.getFeatureDB();
+    }
+
+    public boolean hasLocalRepresentation() {
+        return _domainDB.hasLocalRepresentation();
+    }
+
+    public int getCategoryFeaturesCount(short category) {
+        return _domainDB.getCategoryFeaturesCount(_categoriesDB
+                .getBaseCategory(category));
+    }
+
+    public IIntIterator getCategoryFeatures(short category) {
+        return _domainDB.getCategoryFeatures(_categoriesDB
+                .getBaseCategory(category));
+    }
+
+    public boolean hasCategoryFeature(short category, int feature) {
+        return _domainDB.hasCategoryFeature(
+                _categoriesDB.getBaseCategory(category), feature);
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeFeatures(IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The domain view is read-only, clone it to modify it");
+    }
+
+    public void removeCategoryFeatures(short category,
+                                       IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The domain view is read-only, clone it to modify it");
+    }
+
+    public void removeCategories(IShortIterator removedCategories) {
+        throw new UnsupportedOperationException(
+                "The domain view is read-only, clone it to modify it");
+    }
+
+    public IDomainDB cloneDB(ICategoryDB categoriesDB, IFeatureDB featuresDB) {
+        TroveDomainDB domainDB = new TroveDomainDB(categoriesDB, featuresDB);
+        domainDB.setName(new String(_name));
+        if (hasLocalRepresentation()) {
+            int features = getFeatureDB().getFeaturesCount();
+            for (short category = 0; category < _categoriesDB
+                    .getCategoriesCount(); ++category) {
+                TIntArrayList removed = new TIntArrayList();
+                for (int feature = 0; feature < features; ++feature) {
+                    if (!hasCategoryFeature(category, feature))
+                        removed.add(feature);
+                }
+                if (removed.size() > 0)
+                    domainDB.removeCategoryFeatures(category,
+                            new TIntArrayListIterator(removed));
+            }
+        }
+        return domainDB;
+    }
+}
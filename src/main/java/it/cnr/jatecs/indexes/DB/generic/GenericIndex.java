@@ -29,6 +29,7 @@ import gnu.trove.TShortArrayList;
 import gnu.trove.TShortHashSet;
 import gnu.trove.TShortIntHashMap;
 import it.cnr.jatecs.indexes.DB.interfaces.*;
+import it.cnr.jatecs.indexing.similarity.DocumentVectors;
 import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
 import it.cnr.jatecs.utils.iterators.FilteredIntIterator;
 import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
@@ -233,6 +234,7 @@ public class GenericIndex implements IIndex {
             return;
 
         _featCatDocCountMap.clear();
+        DocumentVectors.invalidate(this);
 
         removedFeatures.begin();
         _weightingDB.removeFeatures(removedFeatures);
@@ -264,6 +266,7 @@ public class GenericIndex implements IIndex {
             return;
 
         _featCatDocCountMap.clear();
+        DocumentVectors.invalidate(this);
 
         removedDocuments.begin();
         _weightingDB.removeDocuments(removedDocuments);
@@ -0,0 +1,117 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import gnu.trove.TShortHashSet;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+/**
+ * Read-only view of a subset of the documents and of the categories of an
+ * index. The view shares the DBs of the underlying index, which are only
+ * read, instead of copying them: it has the same content of a clone of the
+ * index from which the other documents and categories have been removed
+ * (keeping all the features), but its size is linear in the number of
+ * documents and categories of the underlying index. Several views of the
+ * same index can be used concurrently, as long as the index is not modified.
+ * <p>
+ * The remove methods are not supported, {@link #cloneIndex()} returns a
+ * modifiable in-memory copy of the view.
+ */
+public class IndexView extends GenericIndex {
+
+    protected IIndex _index;
+
+    /**
+     * @param index      the underlying index
+     * @param documents  the documents of the view, sorted and distinct
+     * @param categories the categories of the view, sorted and distinct, or
+     *                   'null' to keep all the categories
+     */
+    public IndexView(IIndex index, int[] documents, short[] categories) {
+        this(index, new DocumentsViewDB(index.getDocumentDB(), documents),
+                new CategoriesViewDB(index.getCategoryDB(),
+                        categories != null ? categories : allCategories(index)));
+    }
+
+    protected IndexView(IIndex index, DocumentsViewDB documentsDB,
+                        CategoriesViewDB categoriesDB) {
+        this(index, documentsDB, categoriesDB, new ContentViewDB(
+                index.getContentDB(), documentsDB));
+    }
+
+    protected IndexView(IIndex index, DocumentsViewDB documentsDB,
+                        CategoriesViewDB categoriesDB, ContentViewDB contentDB) {
+        super(index.getFeatureDB(), documentsDB, categoriesDB,
+                new DomainViewDB(index.getDomainDB(), categoriesDB), contentDB,
+                new WeightingViewDB(index.getWeightingDB(), contentDB),
+                new ClassificationViewDB(index.getClassificationDB(),
+                        documentsDB, categoriesDB));
+        _index = index;
+        if (index instanceof GenericIndex)
+            _name = ((GenericIndex) index).getName();
+    }
+
+    private static short[] allCategories(IIndex index) {
+        short[] categories = new short[index.getCategoryDB()
+                .getCategoriesCount()];
+        for (short i = 0; i < categories.length; ++i)
+            categories[i] = i;
+        return categories;
+    }
+
+    /**
+     * @return the underlying index
+     */
+    public IIndex getBaseIndex() {
+        return _index;
+    }
+
+    @Override
+    public void removeFeatures(IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The index view is read-only, clone it to modify it");
+    }
+
+    @Override
+    public void removeCategories(IShortIterator removedCategories) {
+        throw new UnsupportedOperationException(
+                "The index view is read-only, clone it to modify it");
+    }
+
+    @Override
+    public void removeDocuments(IIntIterator removedDocuments,
+                                boolean removedUnusedFeatures) {
+        throw new UnsupportedOperationException(
+                "The index view is read-only, clone it to modify it");
+    }
+
+    @Override
+    public TShortHashSet cleanCategories() {
+        throw new UnsupportedOperationException(
+                "The index view is read-only, clone it to modify it");
+    }
+}
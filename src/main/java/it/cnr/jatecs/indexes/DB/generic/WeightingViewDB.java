@@ -0,0 +1,104 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+/**
+ * Read-only view of the weights of the documents of a {@link ContentViewDB}.
+ */
+public class WeightingViewDB implements IWeightingDB {
+
+    protected String _name;
+    protected IWeightingDB _weightingDB;
+    protected ContentViewDB _contentDB;
+
+    public WeightingViewDB(IWeightingDB weightingDB, ContentViewDB contentDB) {
+        if (weightingDB == null)
+            throw new NullPointerException("The specified weighting DB is 'null'");
+        if (contentDB == null)
+            throw new NullPointerException("The specified content DB is 'null'");
+        _weightingDB = weightingDB;
+        _contentDB = contentDB;
+        _name = weightingDB.getName();
+    }
+
+    public IContentDB getContentDB() {
+        return _contentDB;
+    }
+
+    public double getDefaultWeight() {
+        return _weightingDB.getDefaultWeight();
+    }
+
+    public double getNoWeight() {
+        return _weightingDB.getNoWeight();
+    }
+
+    public double getDocumentFeatureWeight(int document, int feature) {
+        if (_contentDB._documentsDB.isValidDocument(document))
+            return _weightingDB.getDocumentFeatureWeight(
+                    _contentDB._documentsDB.getBaseDocument(document), feature);
+        else
+            return _weightingDB.getNoWeight();
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The weighting view is read-only, clone it to modify it");
+    }
+
+    public void removeFeatures(IIntIterator removedFeaturess) {
+        throw new UnsupportedOperationException(
+                "The weighting view is read-only, clone it to modify it");
+    }
+
+    public IWeightingDB cloneDB(IContentDB contentDB) {
+        TroveWeightingDBBuilder builder = new TroveWeightingDBBuilder(contentDB);
+        int documents = _contentDB.getDocumentDB().getDocumentsCount();
+        for (int document = 0; document < documents; ++document) {
+            IIntIterator feats = _contentDB.getDocumentFeatures(document);
+            while (feats.hasNext()) {
+                int feat = feats.next();
+                builder.setDocumentFeatureWeight(document, feat,
+                        getDocumentFeatureWeight(document, feat));
+            }
+        }
+        IWeightingDB weightingDB = builder.getWeightingDB();
+        weightingDB.setName(new String(_name));
+        return weightingDB;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Immutable compressed sparse rows: for each row a sorted list of ids with an
+ * associated frequency. Rows are stored one after the other in flat primitive
+ * arrays. Ids are split in blocks of {@link #BLOCK_SIZE} entries, the first id
+ * of every block is stored as is (and used as skip pointer for lookups), the
+ * remaining ones are delta encoded as variable length integers. Frequencies
+ * are stored uncompressed, aligned with the position of the entries, so that
+ * callers can use the position of an entry to access parallel arrays.
+ * <p>
+ * The arrays of an instance are never modified after construction, so an
+ * instance can be freely shared among threads and cloned DBs.
+ */
+class TroveCompactPostings {
+
+    static final int BLOCK_SIZE = 64;
+
+    /**
+     * Position of the first entry of each row, rows+1 values.
+     */
+    final int[] _offsets;
+
+    /**
+     * Index of the first block of each row, rows+1 values.
+     */
+    final int[] _blockOffsets;
+
+    /**
+     * First id of each block.
+     */
+    final int[] _blockFirst;
+
+    /**
+     * Position in {@link #_data} of the deltas of each block.
+     */
+    final int[] _blockPointers;
+
+    /**
+     * Varint encoded deltas.
+     */
+    final byte[] _data;
+
+    /**
+     * Frequencies, aligned with entry positions.
+     */
+    final int[] _frequencies;
+
+    /**
+     * @param rows        the number of rows
+     * @param offsets     the position of the first entry of each row (rows+1
+     *                    values)
+     * @param ids         the ids, sorted and without duplicates inside each row
+     * @param frequencies the frequencies aligned with the ids
+     */
+    TroveCompactPostings(int rows, int[] offsets, int[] ids, int[] frequencies) {
+        _offsets = offsets;
+        _frequencies = frequencies;
+        _blockOffsets = new int[rows + 1];
+        int blocks = 0;
+        for (int r = 0; r < rows; ++r) {
+            _blockOffsets[r] = blocks;
+            int size = offsets[r + 1] - offsets[r];
+            blocks += (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        }
+        _blockOffsets[rows] = blocks;
+        _blockFirst = new int[blocks];
+        _blockPointers = new int[blocks];
+
+        byte[] data = new byte[Math.max(16, ids.length)];
+        int dataSize = 0;
+        int block = 0;
+        for (int r = 0; r < rows; ++r) {
+            int start = offsets[r];
+            int end = offsets[r + 1];
+            int previous = 0;
+            for (int i = start; i < end; ++i) {
+                int id = ids[i];
+                if ((i - start) % BLOCK_SIZE == 0) {
+                    _blockFirst[block] = id;
+                    _blockPointers[block] = dataSize;
+                    ++block;
+                } else {
+                    if (dataSize + 5 > data.length) {
+                        byte[] newData = new byte[data.length * 2];
+                        System.arraycopy(data, 0, newData, 0, dataSize);
+                        data = newData;
+                    }
+                    dataSize = writeVarInt(data, dataSize, id - previous);
+                }
+                previous = id;
+            }
+        }
+        _data = new byte[dataSize];
+        System.arraycopy(data, 0, _data, 0, dataSize);
+    }
+
+    static TroveCompactPostings empty(int rows) {
+        return new TroveCompactPostings(rows, new int[rows + 1], new int[0],
+                new int[0]);
+    }
+
+    static int writeVarInt(byte[] data, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+
+    int getRowsCount() {
+        return _offsets.length - 1;
+    }
+
+    int getEntriesCount() {
+        return _frequencies.length;
+    }
+
+    int getRowStart(int row) {
+        return _offsets[row];
+    }
+
+    int getRowSize(int row) {
+        if (row < 0 || row >= getRowsCount())
+            return 0;
+        return _offsets[row + 1] - _offsets[row];
+    }
+
+    int getFrequency(int position) {
+        return _frequencies[position];
+    }
+
+    /**
+     * @param row the row
+     * @param id  the id to search for
+     * @return the position of the entry for the given id in the row, or -1 if
+     * the row does not contain the id
+     */
+    int getPosition(int row, int id) {
+        if (row < 0 || row >= getRowsCount())
+            return -1;
+        int low = _blockOffsets[row];
+        int high = _blockOffsets[row + 1] - 1;
+        if (high < low || id < _blockFirst[low])
+            return -1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (_blockFirst[mid] <= id)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        int current = _blockFirst[low];
+        int position = _offsets[row] + (low - _blockOffsets[row]) * BLOCK_SIZE;
+        if (current == id)
+            return position;
+        int end = Math.min(_offsets[row + 1], position + BLOCK_SIZE);
+        int pointer = _blockPointers[low];
+        for (++position; position < end; ++position) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = _data[pointer++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += delta;
+            if (current == id)
+                return position;
+            if (current > id)
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Decode a whole row in the given buffer.
+     *
+     * @param row    the row
+     * @param buffer the destination buffer, at least {@link #getRowSize(int)}
+     *               long
+     */
+    void decodeRow(int row, int[] buffer) {
+        PostingsIterator it = new PostingsIterator(this, row);
+        int i = 0;
+        while (it.hasNext())
+            buffer[i++] = it.nextInt();
+    }
+
+    IIntIterator iterator(int row) {
+        if (getRowSize(row) == 0)
+            return new EmptyIntIterator();
+        return new PostingsIterator(this, row);
+    }
+
+    /**
+     * Build the transposed postings, i.e. the columns become the rows.
+     *
+     * @param columns the number of columns, i.e. the number of rows of the
+     *                result
+     * @return the transposed postings
+     */
+    TroveCompactPostings transpose(int columns) {
+        int rows = getRowsCount();
+        int entries = getEntriesCount();
+        int[] offsets = new int[columns + 1];
+        int[] buffer = new int[entries];
+        for (int r = 0; r < rows; ++r) {
+            PostingsIterator it = new PostingsIterator(this, r);
+            while (it.hasNext()) {
+                int id = it.nextInt();
+                buffer[it.position()] = id;
+                ++offsets[id + 1];
+            }
+        }
+        for (int c = 0; c < columns; ++c)
+            offsets[c + 1] += offsets[c];
+        int[] fill = new int[columns];
+        int[] ids = new int[entries];
+        int[] frequencies = new int[entries];
+        for (int r = 0; r < rows; ++r) {
+            int end = _offsets[r + 1];
+            for (int i = _offsets[r]; i < end; ++i) {
+                int column = buffer[i];
+                int pos = offsets[column] + fill[column];
+                ids[pos] = r;
+                frequencies[pos] = _frequencies[i];
+                ++fill[column];
+            }
+        }
+        return new TroveCompactPostings(columns, offsets, ids, frequencies);
+    }
+
+    /**
+     * Build the postings without the given rows, the remaining rows are
+     * compacted keeping their order.
+     *
+     * @param removed      the rows to remove, getRowsCount() values
+     * @param removedCount the number of true values in removed
+     * @return the new postings
+     */
+    TroveCompactPostings removeRows(boolean[] removed, int removedCount) {
+        int rows = getRowsCount();
+        int newRows = rows - removedCount;
+        int[] offsets = new int[newRows + 1];
+        int entries = 0;
+        int newRow = 0;
+        for (int r = 0; r < rows; ++r) {
+            if (removed[r])
+                continue;
+            entries += getRowSize(r);
+            ++newRow;
+            offsets[newRow] = entries;
+        }
+        int[] ids = new int[entries];
+        int[] frequencies = new int[entries];
+        int[] row = new int[16];
+        newRow = 0;
+        for (int r = 0; r < rows; ++r) {
+            if (removed[r])
+                continue;
+            int size = getRowSize(r);
+            if (row.length < size)
+                row = new int[size];
+            decodeRow(r, row);
+            System.arraycopy(row, 0, ids, offsets[newRow], size);
+            System.arraycopy(_frequencies, _offsets[r], frequencies,
+                    offsets[newRow], size);
+            ++newRow;
+        }
+        return new TroveCompactPostings(newRows, offsets, ids, frequencies);
+    }
+
+    /**
+     * Build the postings with the ids renamed according to the given map.
+     * The map must preserve the order of the ids, entries whose id is mapped
+     * to a negative value are removed.
+     *
+     * @param map the new value of each id
+     * @return the new postings
+     */
+    TroveCompactPostings mapIds(int[] map) {
+        int rows = getRowsCount();
+        int[] offsets = new int[rows + 1];
+        int[] ids = new int[getEntriesCount()];
+        int[] frequencies = new int[ids.length];
+        int entries = 0;
+        for (int r = 0; r < rows; ++r) {
+            PostingsIterator it = new PostingsIterator(this, r);
+            while (it.hasNext()) {
+                int id = map[it.nextInt()];
+                if (id >= 0) {
+                    ids[entries] = id;
+                    frequencies[entries] = _frequencies[it.position()];
+                    ++entries;
+                }
+            }
+            offsets[r + 1] = entries;
+        }
+        if (entries < ids.length) {
+            ids = Arrays.copyOf(ids, entries);
+            frequencies = Arrays.copyOf(frequencies, entries);
+        }
+        return new TroveCompactPostings(rows, offsets, ids, frequencies);
+    }
+
+    /**
+     * Iterator which decodes the ids of a row sequentially.
+     */
+    static class PostingsIterator implements IIntIterator {
+
+        private final TroveCompactPostings _postings;
+        private final int _row;
+        private final int _start;
+        private final int _end;
+        private int _pos;
+        private int _block;
+        private int _pointer;
+        private int _current;
+
+        PostingsIterator(TroveCompactPostings postings, int row) {
+            _postings = postings;
+            _row = row;
+            _start = postings._offsets[row];
+            _end = postings._offsets[row + 1];
+            begin();
+        }
+
+        public void begin() {
+            _pos = _start;
+            _block = _postings._blockOffsets[_row];
+            _pointer = 0;
+            _current = 0;
+        }
+
+        public boolean hasNext() {
+            return _pos < _end;
+        }
+
+        /**
+         * @return the position of the last returned entry
+         */
+        int position() {
+            return _pos - 1;
+        }
+
+        int nextInt() {
+            if ((_pos - _start) % BLOCK_SIZE == 0) {
+                _current = _postings._blockFirst[_block];
+                _pointer = _postings._blockPointers[_block];
+                ++_block;
+            } else {
+                byte[] data = _postings._data;
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[_pointer++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                _current += delta;
+            }
+            ++_pos;
+            return _current;
+        }
+
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove not allowed for this IIntIterator implementation.");
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongIntHashMap;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Arrays;
+
+/**
+ * Content DB storing both the document-feature (CSR) and the feature-document
+ * (CSC) postings in flat primitive arrays, with delta+varint compressed ids
+ * (see {@link TroveCompactPostings}).
+ * <p>
+ * Writes done through {@link TroveContentCompactDBBuilder} are buffered and
+ * merged into the compressed postings at the first subsequent read, so bulk
+ * loading is cheap. The frequency of a single (document, feature) pair, which
+ * is what the index builders read between writes, is answered from the
+ * buffer without merging it. The
+ * postings arrays are never modified in place: removals and merges build new
+ * arrays, so clones share the data with the original DB until one of them is
+ * modified.
+ */
+public class TroveContentCompactDB implements IContentDB {
+
+    protected String _name;
+    protected IFeatureDB _featuresDB;
+    protected IDocumentDB _documentsDB;
+    protected TroveCompactPostings _documentsPostings;
+    protected TroveCompactPostings _featuresPostings;
+    protected int[] _documentLengths;
+
+    protected TIntArrayList _pendingDocuments;
+    protected TIntArrayList _pendingFeatures;
+    protected TIntArrayList _pendingFrequencies;
+    protected TLongIntHashMap _pendingValues;
+    protected int _documentsCount;
+    protected int _featuresCount;
+    protected volatile boolean _pending;
+
+    public TroveContentCompactDB(IDocumentDB documentsDB, IFeatureDB featuresDB) {
+        super();
+        _documentsDB = documentsDB;
+        _featuresDB = featuresDB;
+        _documentsCount = documentsDB.getDocumentsCount();
+        _featuresCount = featuresDB.getFeaturesCount();
+        _documentsPostings = TroveCompactPostings.empty(_documentsCount);
+        _featuresPostings = TroveCompactPostings.empty(_featuresCount);
+        _documentLengths = new int[_documentsCount];
+        _pendingDocuments = new TIntArrayList();
+        _pendingFeatures = new TIntArrayList();
+        _pendingFrequencies = new TIntArrayList();
+        _pendingValues = new TLongIntHashMap();
+        _pending = false;
+        _name = "generic";
+    }
+
+    public IFeatureDB getFeatureDB() {
+        return _featuresDB;
+    }
+
+    public IDocumentDB getDocumentDB() {
+        return _documentsDB;
+    }
+
+    public int getDocumentLength(int document) {
+        compact();
+        if (document >= 0 && document < _documentLengths.length)
+            return _documentLengths[document];
+        else
+            return 0;
+    }
+
+    public int getDocumentFeaturesCount(int document) {
+        compact();
+        return _documentsPostings.getRowSize(document);
+    }
+
+    public IIntIterator getDocumentFeatures(int document) {
+        compact();
+        return _documentsPostings.iterator(document);
+    }
+
+    public int getFeatureDocumentsCount(int feature) {
+        compact();
+        return _featuresPostings.getRowSize(feature);
+    }
+
+    public IIntIterator getFeatureDocuments(int feature) {
+        compact();
+        return _featuresPostings.iterator(feature);
+    }
+
+    public boolean hasDocumentFeature(int document, int feature) {
+        return getDocumentFeatureFrequency(document, feature) > 0;
+    }
+
+    public int getDocumentFeatureFrequency(int document, int feature) {
+        if (_pending) {
+            synchronized (this) {
+                if (_pending) {
+                    long key = pendingKey(document, feature);
+                    if (_pendingValues.containsKey(key))
+                        return Math.max(0, _pendingValues.get(key));
+                    return getMergedFrequency(document, feature);
+                }
+            }
+        }
+        return getMergedFrequency(document, feature);
+    }
+
+    /**
+     * @return the frequency of the pair in the postings, ignoring the
+     * buffered writes
+     */
+    protected int getMergedFrequency(int document, int feature) {
+        TroveCompactPostings postings = _documentsPostings;
+        int pos = postings.getPosition(document, feature);
+        if (pos >= 0)
+            return postings.getFrequency(pos);
+        else
+            return 0;
+    }
+
+    protected static long pendingKey(int document, int feature) {
+        return ((long) document << 32) | (feature & 0xffffffffL);
+    }
+
+    /**
+     * @param document the document id
+     * @param feature  the feature id
+     * @return the position of the pair in the document-feature postings, i.e.
+     * an index in [0, {@link #getDocumentFeaturesEntriesCount()}), or -1
+     * if the document does not contain the feature
+     */
+    public int getDocumentFeaturePosition(int document, int feature) {
+        compact();
+        return _documentsPostings.getPosition(document, feature);
+    }
+
+    /**
+     * @param document the document id
+     * @return the position of the first feature of the document in the
+     * document-feature postings. The features of the document occupy
+     * the following {@link #getDocumentFeaturesCount(int)} positions,
+     * in the same order returned by {@link #getDocumentFeatures(int)}.
+     */
+    public int getDocumentFeaturesStart(int document) {
+        compact();
+        if (document < 0 || document >= _documentsPostings.getRowsCount())
+            return _documentsPostings.getEntriesCount();
+        return _documentsPostings.getRowStart(document);
+    }
+
+    /**
+     * @return the total number of (document, feature) pairs stored
+     */
+    public int getDocumentFeaturesEntriesCount() {
+        compact();
+        return _documentsPostings.getEntriesCount();
+    }
+
+    /**
+     * @return the current document-feature postings, with all the buffered
+     * writes merged
+     */
+    TroveCompactPostings getDocumentsPostings() {
+        compact();
+        return _documentsPostings;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public IIntIterator getUnusedFeatures() {
+        compact();
+        TIntArrayList zeroFeatures = new TIntArrayList();
+        IIntIterator it = _featuresDB.getFeatures();
+        while (it.hasNext()) {
+            int feat = it.next();
+            if (getFeatureDocumentsCount(feat) == 0)
+                zeroFeatures.add(feat);
+        }
+
+        return new TIntArrayListIterator(zeroFeatures);
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        compact();
+        int documents = _documentsPostings.getRowsCount();
+        boolean[] removed = new boolean[documents];
+        int removedCount = 0;
+        while (removedDocuments.hasNext()) {
+            int document = removedDocuments.next();
+            if (document >= 0 && document < documents && !removed[document]) {
+                removed[document] = true;
+                ++removedCount;
+            }
+        }
+        if (removedCount == 0)
+            return;
+
+        _documentsCount = documents - removedCount;
+        setPostings(_documentsPostings.removeRows(removed, removedCount));
+    }
+
+    public void removeFeatures(IIntIterator removedFeatures) {
+        compact();
+        int features = _featuresPostings.getRowsCount();
+        int[] map = new int[features];
+        while (removedFeatures.hasNext()) {
+            int feature = removedFeatures.next();
+            if (feature >= 0 && feature < features)
+                map[feature] = -1;
+        }
+        int newFeatures = 0;
+        for (int f = 0; f < features; ++f) {
+            if (map[f] == 0)
+                map[f] = newFeatures++;
+        }
+        if (newFeatures == features)
+            return;
+
+        _featuresCount = newFeatures;
+        setPostings(_documentsPostings.mapIds(map));
+    }
+
+    public IContentDB cloneDB(IDocumentDB docDB, IFeatureDB featDB) {
+        compact();
+        TroveContentCompactDB contentDB = new TroveContentCompactDB(docDB,
+                featDB);
+        contentDB._name = new String(_name);
+        contentDB._documentsCount = _documentsCount;
+        contentDB._featuresCount = _featuresCount;
+        contentDB._documentsPostings = _documentsPostings;
+        contentDB._featuresPostings = _featuresPostings;
+        contentDB._documentLengths = _documentLengths;
+        return contentDB;
+    }
+
+    /**
+     * Buffer a write, it will be merged into the postings at the next read. A
+     * negative document or feature id just extends the other dimension.
+     */
+    synchronized void setDocumentFeatureFrequency(int document, int feature,
+                                                  int frequency) {
+        if (document >= _documentsCount)
+            _documentsCount = document + 1;
+        if (feature >= _featuresCount)
+            _featuresCount = feature + 1;
+        if (document >= 0 && feature >= 0) {
+            _pendingDocuments.add(document);
+            _pendingFeatures.add(feature);
+            _pendingFrequencies.add(frequency);
+            _pendingValues.put(pendingKey(document, feature), frequency);
+        }
+        _pending = true;
+    }
+
+    /**
+     * Merge the buffered writes into the postings.
+     */
+    protected void compact() {
+        if (!_pending)
+            return;
+        synchronized (this) {
+            if (!_pending)
+                return;
+
+            // Bucket the pending writes by document, keeping the order in
+            // which they have been done.
+            int documents = _documentsCount;
+            int pendingSize = _pendingDocuments.size();
+            int[] pendingOffsets = new int[documents + 1];
+            for (int i = 0; i < pendingSize; ++i)
+                ++pendingOffsets[_pendingDocuments.getQuick(i) + 1];
+            for (int d = 0; d < documents; ++d)
+                pendingOffsets[d + 1] += pendingOffsets[d];
+            int[] pendingOrder = new int[pendingSize];
+            int[] fill = new int[documents];
+            for (int i = 0; i < pendingSize; ++i) {
+                int document = _pendingDocuments.getQuick(i);
+                pendingOrder[pendingOffsets[document] + fill[document]] = i;
+                ++fill[document];
+            }
+
+            int oldDocuments = _documentsPostings.getRowsCount();
+            int capacity = _documentsPostings.getEntriesCount() + pendingSize;
+            int[] offsets = new int[documents + 1];
+            int[] ids = new int[capacity];
+            int[] frequencies = new int[capacity];
+            int entries = 0;
+            int[] row = new int[16];
+            long[] keys = new long[16];
+            for (int d = 0; d < documents; ++d) {
+                int oldSize = d < oldDocuments ? _documentsPostings
+                        .getRowSize(d) : 0;
+                int oldStart = d < oldDocuments ? _documentsPostings
+                        .getRowStart(d) : 0;
+                int newStart = pendingOffsets[d];
+                int newSize = pendingOffsets[d + 1] - newStart;
+                if (row.length < oldSize)
+                    row = new int[oldSize];
+                if (oldSize > 0)
+                    _documentsPostings.decodeRow(d, row);
+
+                if (newSize == 0) {
+                    System.arraycopy(row, 0, ids, entries, oldSize);
+                    System.arraycopy(_documentsPostings._frequencies,
+                            oldStart, frequencies, entries, oldSize);
+                    entries += oldSize;
+                } else {
+                    // Sort by feature, the most recent write on a feature
+                    // wins.
+                    int size = oldSize + newSize;
+                    if (keys.length < size)
+                        keys = new long[size];
+                    for (int i = 0; i < oldSize; ++i)
+                        keys[i] = (((long) row[i]) << 32) | i;
+                    for (int i = 0; i < newSize; ++i) {
+                        int feature = _pendingFeatures
+                                .getQuick(pendingOrder[newStart + i]);
+                        keys[oldSize + i] = (((long) feature) << 32)
+                                | (oldSize + i);
+                    }
+                    Arrays.sort(keys, 0, size);
+                    for (int i = 0; i < size; ++i) {
+                        int feature = (int) (keys[i] >>> 32);
+                        if (i + 1 < size
+                                && (int) (keys[i + 1] >>> 32) == feature)
+                            continue;
+                        int source = (int) keys[i];
+                        int frequency;
+                        if (source < oldSize)
+                            frequency = _documentsPostings
+                                    .getFrequency(oldStart + source);
+                        else
+                            frequency = _pendingFrequencies
+                                    .getQuick(pendingOrder[newStart + source
+                                            - oldSize]);
+                        if (frequency > 0) {
+                            ids[entries] = feature;
+                            frequencies[entries] = frequency;
+                            ++entries;
+                        }
+                    }
+                }
+                offsets[d + 1] = entries;
+            }
+
+            _pendingDocuments = new TIntArrayList();
+            _pendingFeatures = new TIntArrayList();
+            _pendingFrequencies = new TIntArrayList();
+            _pendingValues = new TLongIntHashMap();
+            setPostings(new TroveCompactPostings(documents, offsets,
+                    Arrays.copyOf(ids, entries),
+                    Arrays.copyOf(frequencies, entries)));
+            _pending = false;
+        }
+    }
+
+    /**
+     * Replace the document-feature postings, rebuilding the feature-document
+     * ones and the document lengths.
+     */
+    protected void setPostings(TroveCompactPostings documentsPostings) {
+        int documents = documentsPostings.getRowsCount();
+        int[] lengths = new int[documents];
+        for (int d = 0; d < documents; ++d) {
+            int end = documentsPostings._offsets[d + 1];
+            int length = 0;
+            for (int i = documentsPostings._offsets[d]; i < end; ++i)
+                length += documentsPostings._frequencies[i];
+            lengths[d] = length;
+        }
+        _featuresPostings = documentsPostings.transpose(_featuresCount);
+        _documentsPostings = documentsPostings;
+        _documentLengths = lengths;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDBBuilder;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+
+public class TroveContentCompactDBBuilder implements IContentDBBuilder {
+
+    protected TroveContentCompactDB _contentDB;
+
+    public TroveContentCompactDBBuilder(IDocumentDB documentsDB,
+                                        IFeatureDB featuresDB) {
+        super();
+        _contentDB = new TroveContentCompactDB(documentsDB, featuresDB);
+    }
+
+    public TroveContentCompactDBBuilder(TroveContentCompactDB contentDB) {
+        super();
+        _contentDB = contentDB;
+    }
+
+    public void setDocumentFeatureFrequency(int document, int feature,
+                                            int frequency) {
+        _contentDB.setDocumentFeatureFrequency(document, feature, frequency);
+    }
+
+    public IContentDB getContentDB() {
+        return _contentDB;
+    }
+}
@@ -42,8 +42,15 @@ public class TroveContentDB implements IContentDB {
     protected IDocumentDB _documentsDB;
     protected Vector<TIntArrayList> _documentsFeatures;
     protected Vector<TIntArrayList> _documentsFrequencies;
+    /**
+     * The caches of the document lengths and of the feature document counts,
+     * filled at the first request. They are accessed holding their own lock,
+     * since the DB may be read concurrently, e.g. by the folds of a parallel
+     * k-fold evaluation sharing it through views.
+     */
     protected TIntIntHashMap _documentLenghts;
     protected TIntIntHashMap _featureDocumentsCount;
+
     public TroveContentDB(IDocumentDB documentsDB, IFeatureDB featuresDB) {
         super();
         _documentsDB = documentsDB;
@@ -71,19 +78,21 @@ public class TroveContentDB implements IContentDB {
     }
 
     public int getDocumentLength(int document) {
-        if (_documentLenghts.containsKey(document))
-            return _documentLenghts.get(document);
-        else {
-            if (document < _documentsFrequencies.size()) {
-                TIntArrayList frequencies = _documentsFrequencies.get(document);
-                int length = 0;
-                for (int i = 0; i < frequencies.size(); ++i)
-                    length += frequencies.getQuick(i);
-                _documentLenghts.put(document, length);
-                return length;
-            } else
-                return 0;
+        synchronized (_documentLenghts) {
+            if (_documentLenghts.containsKey(document))
+                return _documentLenghts.get(document);
         }
+        if (document < _documentsFrequencies.size()) {
+            TIntArrayList frequencies = _documentsFrequencies.get(document);
+            int length = 0;
+            for (int i = 0; i < frequencies.size(); ++i)
+                length += frequencies.getQuick(i);
+            synchronized (_documentLenghts) {
+                _documentLenghts.put(document, length);
+            }
+            return length;
+        } else
+            return 0;
     }
 
     public int getDocumentFeaturesCount(int document) {
@@ -101,18 +110,20 @@ public class TroveContentDB implements IContentDB {
     }
 
     public int getFeatureDocumentsCount(int feature) {
-        if (_featureDocumentsCount.containsKey(feature))
-            return _featureDocumentsCount.get(feature);
-        else {
-            IIntIterator docIt = _documentsDB.getDocuments();
-            int count = 0;
-            while (docIt.hasNext()) {
-                if (hasDocumentFeature(docIt.next(), feature))
-                    ++count;
-            }
+        synchronized (_featureDocumentsCount) {
+            if (_featureDocumentsCount.containsKey(feature))
+                return _featureDocumentsCount.get(feature);
+        }
+        IIntIterator docIt = _documentsDB.getDocuments();
+        int count = 0;
+        while (docIt.hasNext()) {
+            if (hasDocumentFeature(docIt.next(), feature))
+                ++count;
+        }
+        synchronized (_featureDocumentsCount) {
             _featureDocumentsCount.put(feature, count);
-            return count;
         }
+        return count;
     }
 
     public IIntIterator getFeatureDocuments(int feature) {
@@ -161,10 +172,18 @@ public class TroveContentDB implements IContentDB {
             int document = removedDocuments.next() - shift;
             _documentsFeatures.remove(document);
             _documentsFrequencies.remove(document);
-            _documentLenghts.remove(document);
             ++shift;
         }
-        _featureDocumentsCount.clear();
+        clearCaches();
+    }
+
+    protected void clearCaches() {
+        synchronized (_documentLenghts) {
+            _documentLenghts.clear();
+        }
+        synchronized (_featureDocumentsCount) {
+            _featureDocumentsCount.clear();
+        }
     }
 
     public void removeFeatures(IIntIterator removedFeatures) {
@@ -213,8 +232,7 @@ public class TroveContentDB implements IContentDB {
             }
             removedFeatures.begin();
         }
-        _documentLenghts.clear();
-        _featureDocumentsCount.clear();
+        clearCaches();
     }
 
     public IContentDB cloneDB(IDocumentDB docDB, IFeatureDB featDB) {
@@ -233,9 +251,14 @@ public class TroveContentDB implements IContentDB {
             contentDB._documentsFrequencies
                     .add((TIntArrayList) _documentsFrequencies.get(i).clone());
 
-        contentDB._documentLenghts = (TIntIntHashMap) _documentLenghts.clone();
-        contentDB._featureDocumentsCount = (TIntIntHashMap) _featureDocumentsCount
-                .clone();
+        synchronized (_documentLenghts) {
+            contentDB._documentLenghts = (TIntIntHashMap) _documentLenghts
+                    .clone();
+        }
+        synchronized (_featureDocumentsCount) {
+            contentDB._featureDocumentsCount = (TIntIntHashMap) _featureDocumentsCount
+                    .clone();
+        }
 
         return contentDB;
     }
@@ -100,6 +100,9 @@ public class TroveContentDBRW {
         else if (DBType == TroveContentDBType.IL)
             contentDBBuilder = new TroveContentILDBBuilder(_documentsDB,
                     _featuresDB);
+        else if (DBType == TroveContentDBType.Compact)
+            contentDBBuilder = new TroveContentCompactDBBuilder(_documentsDB,
+                    _featuresDB);
         else
             contentDBBuilder = new TroveContentDBBuilder(_documentsDB,
                     _featuresDB);
@@ -27,5 +27,6 @@ package it.cnr.jatecs.indexes.DB.troveCompact;
 public enum TroveContentDBType {
     Default,
     IL,
-    Full;
+    Full,
+    Compact;
 }
@@ -81,19 +81,21 @@ public class TroveContentFullDB implements IContentDB {
     }
 
     public int getDocumentLength(int document) {
-        if (_documentLenghts.containsKey(document))
-            return _documentLenghts.get(document);
-        else {
-            if (document < _documentsFrequencies.size()) {
-                TIntArrayList frequencies = _documentsFrequencies.get(document);
-                int length = 0;
-                for (int i = 0; i < frequencies.size(); ++i)
-                    length += frequencies.getQuick(i);
-                _documentLenghts.put(document, length);
-                return length;
-            } else
-                return 0;
+        synchronized (_documentLenghts) {
+            if (_documentLenghts.containsKey(document))
+                return _documentLenghts.get(document);
         }
+        if (document < _documentsFrequencies.size()) {
+            TIntArrayList frequencies = _documentsFrequencies.get(document);
+            int length = 0;
+            for (int i = 0; i < frequencies.size(); ++i)
+                length += frequencies.getQuick(i);
+            synchronized (_documentLenghts) {
+                _documentLenghts.put(document, length);
+            }
+            return length;
+        } else
+            return 0;
     }
 
     public int getDocumentFeaturesCount(int document) {
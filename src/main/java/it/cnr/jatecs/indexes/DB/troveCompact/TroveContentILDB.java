@@ -71,21 +71,23 @@ public class TroveContentILDB implements IContentDB {
     }
 
     public int getDocumentLength(int document) {
-        if (_documentLenghts.containsKey(document))
-            return _documentLenghts.get(document);
-        else {
-            IIntIterator featIt = _featuresDB.getFeatures();
-            int length = 0;
-            while (featIt.hasNext()) {
-                int feature = featIt.next();
-                int pos = _featuresDocuments.get(feature)
-                        .binarySearch(document);
-                if (pos >= 0)
-                    length += _featuresFrequencies.get(feature).getQuick(pos);
-            }
+        synchronized (_documentLenghts) {
+            if (_documentLenghts.containsKey(document))
+                return _documentLenghts.get(document);
+        }
+        IIntIterator featIt = _featuresDB.getFeatures();
+        int length = 0;
+        while (featIt.hasNext()) {
+            int feature = featIt.next();
+            int pos = _featuresDocuments.get(feature)
+                    .binarySearch(document);
+            if (pos >= 0)
+                length += _featuresFrequencies.get(feature).getQuick(pos);
+        }
+        synchronized (_documentLenghts) {
             _documentLenghts.put(document, length);
-            return length;
         }
+        return length;
     }
 
     public int getFeatureDocumentsCount(int feature) {
@@ -103,18 +105,20 @@ public class TroveContentILDB implements IContentDB {
     }
 
     public int getDocumentFeaturesCount(int document) {
-        if (_documentFeaturesCount.containsKey(document))
-            return _documentFeaturesCount.get(document);
-        else {
-            IIntIterator featIt = _featuresDB.getFeatures();
-            int count = 0;
-            while (featIt.hasNext()) {
-                if (hasDocumentFeature(document, featIt.next()))
-                    ++count;
-            }
+        synchronized (_documentFeaturesCount) {
+            if (_documentFeaturesCount.containsKey(document))
+                return _documentFeaturesCount.get(document);
+        }
+        IIntIterator featIt = _featuresDB.getFeatures();
+        int count = 0;
+        while (featIt.hasNext()) {
+            if (hasDocumentFeature(document, featIt.next()))
+                ++count;
+        }
+        synchronized (_documentFeaturesCount) {
             _documentFeaturesCount.put(document, count);
-            return count;
         }
+        return count;
     }
 
     public IIntIterator getDocumentFeatures(int document) {
@@ -57,10 +57,15 @@ public class TroveDependentIndexBuilder extends GenericIndex implements IIndexBu
             _contentDBBuilder = new TroveContentDBBuilder((TroveContentDB) index.getContentDB());
         else if (index.getContentDB() instanceof TroveContentILDB)
             _contentDBBuilder = new TroveContentILDBBuilder((TroveContentILDB) index.getContentDB());
+        else if (index.getContentDB() instanceof TroveContentCompactDB)
+            _contentDBBuilder = new TroveContentCompactDBBuilder((TroveContentCompactDB) index.getContentDB());
         else
             _contentDBBuilder = new TroveContentFullDBBuilder((TroveContentFullDB) index.getContentDB());
         _contentDB = _contentDBBuilder.getContentDB();
-        _weightingDB = new TroveWeightingDB((TroveWeightingDB) index.getWeightingDB());
+        if (index.getWeightingDB() instanceof TroveWeightingCompactDB)
+            _weightingDB = index.getWeightingDB();
+        else
+            _weightingDB = new TroveWeightingDB((TroveWeightingDB) index.getWeightingDB());
         if (index.getClassificationDB() instanceof TroveClassificationDB)
             _classificationDBBuilder = new TroveClassificationDBBuilder((TroveClassificationDB) index.getClassificationDB());
         else if (index.getClassificationDB() instanceof TroveClassificationILDB)
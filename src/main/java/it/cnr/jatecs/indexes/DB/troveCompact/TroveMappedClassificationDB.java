@@ -0,0 +1,183 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
+import it.cnr.jatecs.utils.iterators.EmptyShortIterator;
+import it.cnr.jatecs.utils.iterators.IntBufferIterator;
+import it.cnr.jatecs.utils.iterators.ShortBufferIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Read-only classification DB served directly from the buffers of an index
+ * written by {@link TroveMappedIndexRW}. The removal methods are not
+ * supported, use {@link #cloneDB(ICategoryDB, IDocumentDB)} to obtain a
+ * modifiable in-memory copy.
+ */
+public class TroveMappedClassificationDB implements IClassificationDB {
+
+    protected String _name;
+    protected IDocumentDB _documentsDB;
+    protected ICategoryDB _categoriesDB;
+    protected IntBuffer _documentsOffsets;
+    protected ShortBuffer _documentsCategories;
+    protected ByteBuffer _documentsPrimary;
+    protected IntBuffer _categoriesOffsets;
+    protected IntBuffer _categoriesDocuments;
+    protected int _documentsCount;
+    protected int _categoriesCount;
+
+    public TroveMappedClassificationDB(IDocumentDB documentsDB,
+                                       ICategoryDB categoriesDB, IntBuffer documentsOffsets,
+                                       ShortBuffer documentsCategories, ByteBuffer documentsPrimary,
+                                       IntBuffer categoriesOffsets, IntBuffer categoriesDocuments) {
+        super();
+        _documentsDB = documentsDB;
+        _categoriesDB = categoriesDB;
+        _documentsOffsets = documentsOffsets;
+        _documentsCategories = documentsCategories;
+        _documentsPrimary = documentsPrimary;
+        _categoriesOffsets = categoriesOffsets;
+        _categoriesDocuments = categoriesDocuments;
+        _documentsCount = documentsOffsets.capacity() - 1;
+        _categoriesCount = categoriesOffsets.capacity() - 1;
+        _name = "generic";
+    }
+
+    public ICategoryDB getCategoryDB() {
+        return _categoriesDB;
+    }
+
+    public IDocumentDB getDocumentDB() {
+        return _documentsDB;
+    }
+
+    public int getDocumentCategoriesCount(int document) {
+        if (document >= 0 && document < _documentsCount)
+            return _documentsOffsets.get(document + 1)
+                    - _documentsOffsets.get(document);
+        else
+            return 0;
+    }
+
+    public IShortIterator getDocumentCategories(int document) {
+        if (document >= 0 && document < _documentsCount)
+            return new ShortBufferIterator(_documentsCategories,
+                    _documentsOffsets.get(document),
+                    _documentsOffsets.get(document + 1));
+        else
+            return new EmptyShortIterator();
+    }
+
+    public boolean hasDocumentCategory(int document, short category) {
+        return getDocumentCategoryPosition(document, category) >= 0;
+    }
+
+    public boolean isPrimaryCategory(int document, short category) {
+        int pos = getDocumentCategoryPosition(document, category);
+        if (pos >= 0)
+            return _documentsPrimary.get(pos) != 0;
+        else
+            return false;
+    }
+
+    protected int getDocumentCategoryPosition(int document, short category) {
+        if (document < 0 || document >= _documentsCount)
+            return -1;
+        int low = _documentsOffsets.get(document);
+        int high = _documentsOffsets.get(document + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            short midCategory = _documentsCategories.get(mid);
+            if (midCategory < category)
+                low = mid + 1;
+            else if (midCategory > category)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public int getCategoryDocumentsCount(short category) {
+        if (category >= 0 && category < _categoriesCount)
+            return _categoriesOffsets.get(category + 1)
+                    - _categoriesOffsets.get(category);
+        else
+            return 0;
+    }
+
+    public IIntIterator getCategoryDocuments(short category) {
+        if (category >= 0 && category < _categoriesCount)
+            return new IntBufferIterator(_categoriesDocuments,
+                    _categoriesOffsets.get(category),
+                    _categoriesOffsets.get(category + 1));
+        else
+            return new EmptyIntIterator();
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public void removeCategories(IShortIterator removedCategories) {
+        throw new UnsupportedOperationException(
+                "The mapped classification DB is read-only, clone it to modify it");
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The mapped classification DB is read-only, clone it to modify it");
+    }
+
+    public IClassificationDB cloneDB(ICategoryDB categoriesDB,
+                                     IDocumentDB documentsDB) {
+        IClassificationDBBuilder builder = new TroveClassificationFullDBBuilder(
+                documentsDB, categoriesDB);
+        for (int document = 0; document < _documentsCount; ++document) {
+            int end = _documentsOffsets.get(document + 1);
+            for (int i = _documentsOffsets.get(document); i < end; ++i)
+                builder.setDocumentCategory(document,
+                        _documentsCategories.get(i),
+                        _documentsPrimary.get(i) != 0);
+        }
+        IClassificationDB classificationDB = builder.getClassificationDB();
+        classificationDB.setName(new String(_name));
+        return classificationDB;
+    }
+}
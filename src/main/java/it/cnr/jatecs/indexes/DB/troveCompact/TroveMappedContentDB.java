@@ -0,0 +1,223 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.utils.iterators.EmptyIntIterator;
+import it.cnr.jatecs.utils.iterators.IntBufferIterator;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.nio.IntBuffer;
+
+/**
+ * Read-only content DB served directly from the buffers of an index written
+ * by {@link TroveMappedIndexRW}. The removal methods are not supported, use
+ * {@link #cloneDB(IDocumentDB, IFeatureDB)} to obtain a modifiable in-memory
+ * copy.
+ */
+public class TroveMappedContentDB implements IContentDB {
+
+    protected String _name;
+    protected IFeatureDB _featuresDB;
+    protected IDocumentDB _documentsDB;
+    protected IntBuffer _documentsOffsets;
+    protected IntBuffer _documentsFeatures;
+    protected IntBuffer _documentsFrequencies;
+    protected IntBuffer _documentsLengths;
+    protected IntBuffer _featuresOffsets;
+    protected IntBuffer _featuresDocuments;
+    protected int _documentsCount;
+    protected int _featuresCount;
+
+    public TroveMappedContentDB(IDocumentDB documentsDB,
+                                IFeatureDB featuresDB, IntBuffer documentsOffsets,
+                                IntBuffer documentsFeatures, IntBuffer documentsFrequencies,
+                                IntBuffer documentsLengths, IntBuffer featuresOffsets,
+                                IntBuffer featuresDocuments) {
+        super();
+        _documentsDB = documentsDB;
+        _featuresDB = featuresDB;
+        _documentsOffsets = documentsOffsets;
+        _documentsFeatures = documentsFeatures;
+        _documentsFrequencies = documentsFrequencies;
+        _documentsLengths = documentsLengths;
+        _featuresOffsets = featuresOffsets;
+        _featuresDocuments = featuresDocuments;
+        _documentsCount = documentsOffsets.capacity() - 1;
+        _featuresCount = featuresOffsets.capacity() - 1;
+        _name = "generic";
+    }
+
+    public IFeatureDB getFeatureDB() {
+        return _featuresDB;
+    }
+
+    public IDocumentDB getDocumentDB() {
+        return _documentsDB;
+    }
+
+    public int getDocumentLength(int document) {
+        if (document >= 0 && document < _documentsCount)
+            return _documentsLengths.get(document);
+        else
+            return 0;
+    }
+
+    public int getDocumentFeaturesCount(int document) {
+        if (document >= 0 && document < _documentsCount)
+            return _documentsOffsets.get(document + 1)
+                    - _documentsOffsets.get(document);
+        else
+            return 0;
+    }
+
+    public IIntIterator getDocumentFeatures(int document) {
+        if (document >= 0 && document < _documentsCount)
+            return new IntBufferIterator(_documentsFeatures,
+                    _documentsOffsets.get(document),
+                    _documentsOffsets.get(document + 1));
+        else
+            return new EmptyIntIterator();
+    }
+
+    public int getFeatureDocumentsCount(int feature) {
+        if (feature >= 0 && feature < _featuresCount)
+            return _featuresOffsets.get(feature + 1)
+                    - _featuresOffsets.get(feature);
+        else
+            return 0;
+    }
+
+    public IIntIterator getFeatureDocuments(int feature) {
+        if (feature >= 0 && feature < _featuresCount)
+            return new IntBufferIterator(_featuresDocuments,
+                    _featuresOffsets.get(feature),
+                    _featuresOffsets.get(feature + 1));
+        else
+            return new EmptyIntIterator();
+    }
+
+    public boolean hasDocumentFeature(int document, int feature) {
+        return getDocumentFeaturePosition(document, feature) >= 0;
+    }
+
+    public int getDocumentFeatureFrequency(int document, int feature) {
+        int pos = getDocumentFeaturePosition(document, feature);
+        if (pos >= 0)
+            return _documentsFrequencies.get(pos);
+        else
+            return 0;
+    }
+
+    /**
+     * @param document the document id
+     * @param feature  the feature id
+     * @return the position of the pair in the document-feature postings, or
+     * -1 if the document does not contain the feature
+     */
+    public int getDocumentFeaturePosition(int document, int feature) {
+        if (document < 0 || document >= _documentsCount)
+            return -1;
+        int low = _documentsOffsets.get(document);
+        int high = _documentsOffsets.get(document + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midFeature = _documentsFeatures.get(mid);
+            if (midFeature < feature)
+                low = mid + 1;
+            else if (midFeature > feature)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @param document the document id
+     * @return the position of the first feature of the document in the
+     * document-feature postings
+     */
+    public int getDocumentFeaturesStart(int document) {
+        if (document < 0 || document >= _documentsCount)
+            return _documentsFeatures.capacity();
+        return _documentsOffsets.get(document);
+    }
+
+    /**
+     * @return the total number of (document, feature) pairs stored
+     */
+    public int getDocumentFeaturesEntriesCount() {
+        return _documentsFeatures.capacity();
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public IIntIterator getUnusedFeatures() {
+        TIntArrayList zeroFeatures = new TIntArrayList();
+        IIntIterator it = _featuresDB.getFeatures();
+        while (it.hasNext()) {
+            int feat = it.next();
+            if (getFeatureDocumentsCount(feat) == 0)
+                zeroFeatures.add(feat);
+        }
+
+        return new TIntArrayListIterator(zeroFeatures);
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The mapped content DB is read-only, clone it to modify it");
+    }
+
+    public void removeFeatures(IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The mapped content DB is read-only, clone it to modify it");
+    }
+
+    public IContentDB cloneDB(IDocumentDB docDB, IFeatureDB featDB) {
+        TroveContentCompactDBBuilder builder = new TroveContentCompactDBBuilder(
+                docDB, featDB);
+        for (int document = 0; document < _documentsCount; ++document) {
+            int end = _documentsOffsets.get(document + 1);
+            for (int i = _documentsOffsets.get(document); i < end; ++i)
+                builder.setDocumentFeatureFrequency(document,
+                        _documentsFeatures.get(i), _documentsFrequencies.get(i));
+        }
+        IContentDB contentDB = builder.getContentDB();
+        contentDB.setName(new String(_name));
+        return contentDB;
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.*;
+import it.cnr.jatecs.io.FileSystemStorageManager;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.io.RamStorageManager;
+import it.cnr.jatecs.utils.Os;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Utility class which handles the storage of a whole index in a single
+ * binary resource that can be memory mapped. When read from a
+ * {@link FileSystemStorageManager} the content, weighting and classification
+ * DBs are served directly from the mapped file by
+ * {@link TroveMappedContentDB}, {@link TroveMappedWeightingDB} and
+ * {@link TroveMappedClassificationDB}, so opening an index does not require
+ * to deserialize its postings and processes opening the same index share
+ * the same pages of the OS cache. The dictionaries (features, documents,
+ * categories) and the domain DB are small and are loaded in memory.
+ * <p>
+ * The resource starts with a magic number and a format version, followed by
+ * a sequence of blocks. Each block has a 16 bytes header (type, payload
+ * length, padding) and a payload padded to a multiple of 8 bytes. Unknown
+ * block types are skipped on read, so new blocks can be added without
+ * breaking older readers.
+ */
+public class TroveMappedIndexRW {
+
+    public static final int MAGIC = 0x4A544D49;
+    public static final int VERSION = 1;
+
+    protected static final int BLOCK_NAMES = 1;
+    protected static final int BLOCK_FEATURES = 2;
+    protected static final int BLOCK_DOCUMENTS = 3;
+    protected static final int BLOCK_CATEGORIES = 4;
+    protected static final int BLOCK_DOMAIN = 5;
+    protected static final int BLOCK_CONTENT_DOCUMENTS_OFFSETS = 10;
+    protected static final int BLOCK_CONTENT_DOCUMENTS_FEATURES = 11;
+    protected static final int BLOCK_CONTENT_DOCUMENTS_FREQUENCIES = 12;
+    protected static final int BLOCK_CONTENT_DOCUMENTS_LENGTHS = 13;
+    protected static final int BLOCK_CONTENT_FEATURES_OFFSETS = 14;
+    protected static final int BLOCK_CONTENT_FEATURES_DOCUMENTS = 15;
+    protected static final int BLOCK_WEIGHTING_WEIGHTS = 20;
+    protected static final int BLOCK_CLASSIFICATION_DOCUMENTS_OFFSETS = 30;
+    protected static final int BLOCK_CLASSIFICATION_DOCUMENTS_CATEGORIES = 31;
+    protected static final int BLOCK_CLASSIFICATION_DOCUMENTS_PRIMARY = 32;
+    protected static final int BLOCK_CLASSIFICATION_CATEGORIES_OFFSETS = 33;
+    protected static final int BLOCK_CLASSIFICATION_CATEGORIES_DOCUMENTS = 34;
+
+    private static final String DB_NAME = "db";
+
+    public TroveMappedIndexRW() {
+        super();
+    }
+
+    /**
+     * Read the named index from the given storage manager. If the storage
+     * manager is a {@link FileSystemStorageManager} the index is memory
+     * mapped, otherwise it is copied in a heap buffer.
+     *
+     * @param storageManager The storage manager.
+     * @param indexName      The resource name of the index.
+     * @return The read index. Its content, weighting and classification DBs
+     * are read-only.
+     * @throws NullPointerException     Raised if specified storage manager is 'null'.
+     * @throws IllegalArgumentException Raised if specified index name is 'null', empty or
+     *                                  invalid resource name.
+     * @throws IllegalStateException    Raised if the storage manager is not open.
+     */
+    public IIndex read(IStorageManager storageManager, String indexName) {
+        if (storageManager == null)
+            throw new NullPointerException(
+                    "The specified storage manager is 'null'");
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open");
+        if (indexName == null || indexName.isEmpty()
+                || !storageManager.isResourceAvailable(indexName))
+            throw new IllegalArgumentException("The index name <" + indexName
+                    + "> is not available on this storage manager");
+
+        try {
+            HashMap<Integer, ByteBuffer> blocks;
+            if (storageManager instanceof FileSystemStorageManager) {
+                File file = new File(
+                        ((FileSystemStorageManager) storageManager).getBaseDir()
+                                + Os.pathSeparator() + indexName);
+                blocks = mapBlocks(file);
+            } else {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                InputStream is = storageManager
+                        .getInputStreamForResource(indexName);
+                try {
+                    Os.copy(is, bos);
+                } finally {
+                    is.close();
+                }
+                blocks = sliceBlocks(ByteBuffer.wrap(bos.toByteArray()));
+            }
+
+            DataInputStream names = new DataInputStream(
+                    new ByteArrayInputStream(getBytes(blocks, BLOCK_NAMES)));
+            String name = names.readUTF();
+            String contentName = names.readUTF();
+            String weightingName = names.readUTF();
+            String classificationName = names.readUTF();
+
+            IFeatureDB featuresDB = new TroveFeaturesDBRW().read(
+                    toStorageManager(getBytes(blocks, BLOCK_FEATURES)), DB_NAME);
+            IDocumentDB documentsDB = new TroveDocumentsDBRW().read(
+                    toStorageManager(getBytes(blocks, BLOCK_DOCUMENTS)), DB_NAME);
+            ICategoryDB categoriesDB = new TroveCategoriesDBRW().read(
+                    toStorageManager(getBytes(blocks, BLOCK_CATEGORIES)),
+                    DB_NAME);
+            IDomainDB domainDB = new TroveDomainDBRW(categoriesDB, featuresDB)
+                    .read(toStorageManager(getBytes(blocks, BLOCK_DOMAIN)),
+                            DB_NAME);
+
+            TroveMappedContentDB contentDB = new TroveMappedContentDB(
+                    documentsDB, featuresDB, getBlock(blocks,
+                    BLOCK_CONTENT_DOCUMENTS_OFFSETS).asIntBuffer(),
+                    getBlock(blocks, BLOCK_CONTENT_DOCUMENTS_FEATURES)
+                            .asIntBuffer(), getBlock(blocks,
+                    BLOCK_CONTENT_DOCUMENTS_FREQUENCIES).asIntBuffer(),
+                    getBlock(blocks, BLOCK_CONTENT_DOCUMENTS_LENGTHS)
+                            .asIntBuffer(), getBlock(blocks,
+                    BLOCK_CONTENT_FEATURES_OFFSETS).asIntBuffer(),
+                    getBlock(blocks, BLOCK_CONTENT_FEATURES_DOCUMENTS)
+                            .asIntBuffer());
+            contentDB.setName(contentName);
+
+            TroveMappedWeightingDB weightingDB = new TroveMappedWeightingDB(
+                    contentDB, getBlock(blocks, BLOCK_WEIGHTING_WEIGHTS)
+                    .asDoubleBuffer());
+            weightingDB.setName(weightingName);
+
+            TroveMappedClassificationDB classificationDB = new TroveMappedClassificationDB(
+                    documentsDB, categoriesDB, getBlock(blocks,
+                    BLOCK_CLASSIFICATION_DOCUMENTS_OFFSETS).asIntBuffer(),
+                    getBlock(blocks, BLOCK_CLASSIFICATION_DOCUMENTS_CATEGORIES)
+                            .asShortBuffer(), getBlock(blocks,
+                    BLOCK_CLASSIFICATION_DOCUMENTS_PRIMARY), getBlock(
+                    blocks, BLOCK_CLASSIFICATION_CATEGORIES_OFFSETS)
+                    .asIntBuffer(), getBlock(blocks,
+                    BLOCK_CLASSIFICATION_CATEGORIES_DOCUMENTS).asIntBuffer());
+            classificationDB.setName(classificationName);
+
+            IIndex index = new GenericIndex(featuresDB, documentsDB,
+                    categoriesDB, domainDB, contentDB, weightingDB,
+                    classificationDB);
+            index.setName(name);
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException("Reading mapped index from storage manager", e);
+        }
+    }
+
+    /**
+     * Write the specified index on the given storage manager by using the
+     * given resource name. If the resource already exists on the storage
+     * manager and the parameter overwrite is true, the old version will be
+     * removed. In case the resource already exists and the parameter
+     * overwrite is false, the method does nothing.
+     *
+     * @param storageManager The storage manager.
+     * @param index          The index to write.
+     * @param indexName      The resource name.
+     * @param overwrite      True if an old index with the same name must be
+     *                       overwritten, false otherwise.
+     * @throws NullPointerException     Raised if the storage manager is 'null' or the index is
+     *                                  'null'.
+     * @throws IllegalArgumentException Raised if the index name is invalid.
+     * @throws IllegalStateException    Raised if the storage manager is not open.
+     */
+    public void write(IStorageManager storageManager, IIndex index,
+                      String indexName, boolean overwrite) {
+        if (storageManager == null)
+            throw new NullPointerException(
+                    "The specified storage manager is 'null'");
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open");
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+        if (indexName == null || indexName.isEmpty())
+            throw new IllegalArgumentException("The index name <" + indexName
+                    + "> is invalid");
+
+        if (storageManager.isResourceAvailable(indexName) && !overwrite)
+            return;
+
+        if (storageManager.isResourceAvailable(indexName) && overwrite)
+            storageManager.deleteResource(indexName);
+
+        BlockWriter writer = new BlockWriter(new DataOutputStream(
+                new BufferedOutputStream(
+                        storageManager.getOutputStreamForResource(indexName))));
+        try {
+            writer.writeHeader();
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream names = new DataOutputStream(bos);
+            names.writeUTF(index.getName());
+            names.writeUTF(index.getContentDB().getName());
+            names.writeUTF(index.getWeightingDB().getName());
+            names.writeUTF(index.getClassificationDB().getName());
+            names.flush();
+            writer.writeBytes(BLOCK_NAMES, bos.toByteArray());
+
+            RamStorageManager ram = new RamStorageManager();
+            ram.open();
+            new TroveFeaturesDBRW().write(ram, index.getFeatureDB(), DB_NAME,
+                    true);
+            writer.writeBytes(BLOCK_FEATURES, getBytes(ram));
+            new TroveDocumentsDBRW().write(ram, index.getDocumentDB(),
+                    DB_NAME, true);
+            writer.writeBytes(BLOCK_DOCUMENTS, getBytes(ram));
+            new TroveCategoriesDBRW().write(ram, index.getCategoryDB(),
+                    DB_NAME, true);
+            writer.writeBytes(BLOCK_CATEGORIES, getBytes(ram));
+            new TroveDomainDBRW(index.getCategoryDB(), index.getFeatureDB())
+                    .write(ram, index.getDomainDB(), DB_NAME, true);
+            writer.writeBytes(BLOCK_DOMAIN, getBytes(ram));
+            ram.close();
+
+            writeContent(writer, index.getContentDB(),
+                    index.getWeightingDB());
+            writeClassification(writer, index.getClassificationDB());
+        } catch (IOException e) {
+            throw new RuntimeException("Writing mapped index on storage manager",
+                    e);
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Finally closing stream", e);
+            }
+        }
+    }
+
+    protected void writeContent(BlockWriter writer, IContentDB contentDB,
+                                IWeightingDB weightingDB) throws IOException {
+        int documents = contentDB.getDocumentDB().getDocumentsCount();
+        int features = contentDB.getFeatureDB().getFeaturesCount();
+
+        int[] documentsOffsets = new int[documents + 1];
+        for (int doc = 0; doc < documents; ++doc)
+            documentsOffsets[doc + 1] = documentsOffsets[doc]
+                    + contentDB.getDocumentFeaturesCount(doc);
+        int entries = documentsOffsets[documents];
+        writer.writeInts(BLOCK_CONTENT_DOCUMENTS_OFFSETS, documentsOffsets);
+
+        writer.beginBlock(BLOCK_CONTENT_DOCUMENTS_FEATURES, 4L * entries);
+        for (int doc = 0; doc < documents; ++doc) {
+            int[] feats = getDocumentFeatures(contentDB, doc);
+            for (int i = 0; i < feats.length; ++i)
+                writer.out.writeInt(feats[i]);
+        }
+        writer.endBlock();
+
+        writer.beginBlock(BLOCK_CONTENT_DOCUMENTS_FREQUENCIES, 4L * entries);
+        for (int doc = 0; doc < documents; ++doc) {
+            int[] feats = getDocumentFeatures(contentDB, doc);
+            for (int i = 0; i < feats.length; ++i)
+                writer.out.writeInt(contentDB.getDocumentFeatureFrequency(doc,
+                        feats[i]));
+        }
+        writer.endBlock();
+
+        writer.beginBlock(BLOCK_CONTENT_DOCUMENTS_LENGTHS, 4L * documents);
+        for (int doc = 0; doc < documents; ++doc)
+            writer.out.writeInt(contentDB.getDocumentLength(doc));
+        writer.endBlock();
+
+        int[] featuresOffsets = new int[features + 1];
+        for (int feat = 0; feat < features; ++feat)
+            featuresOffsets[feat + 1] = featuresOffsets[feat]
+                    + contentDB.getFeatureDocumentsCount(feat);
+        writer.writeInts(BLOCK_CONTENT_FEATURES_OFFSETS, featuresOffsets);
+
+        writer.beginBlock(BLOCK_CONTENT_FEATURES_DOCUMENTS,
+                4L * featuresOffsets[features]);
+        for (int feat = 0; feat < features; ++feat) {
+            IIntIterator docs = contentDB.getFeatureDocuments(feat);
+            while (docs.hasNext())
+                writer.out.writeInt(docs.next());
+        }
+        writer.endBlock();
+
+        writer.beginBlock(BLOCK_WEIGHTING_WEIGHTS, 8L * entries);
+        for (int doc = 0; doc < documents; ++doc) {
+            int[] feats = getDocumentFeatures(contentDB, doc);
+            for (int i = 0; i < feats.length; ++i)
+                writer.out.writeDouble(weightingDB.getDocumentFeatureWeight(
+                        doc, feats[i]));
+        }
+        writer.endBlock();
+    }
+
+    protected void writeClassification(BlockWriter writer,
+                                       IClassificationDB classificationDB) throws IOException {
+        int documents = classificationDB.getDocumentDB().getDocumentsCount();
+        int categories = classificationDB.getCategoryDB().getCategoriesCount();
+
+        int[] documentsOffsets = new int[documents + 1];
+        for (int doc = 0; doc < documents; ++doc)
+            documentsOffsets[doc + 1] = documentsOffsets[doc]
+                    + classificationDB.getDocumentCategoriesCount(doc);
+        int entries = documentsOffsets[documents];
+        writer.writeInts(BLOCK_CLASSIFICATION_DOCUMENTS_OFFSETS,
+                documentsOffsets);
+
+        writer.beginBlock(BLOCK_CLASSIFICATION_DOCUMENTS_CATEGORIES,
+                2L * entries);
+        for (int doc = 0; doc < documents; ++doc) {
+            short[] cats = getDocumentCategories(classificationDB, doc);
+            for (int i = 0; i < cats.length; ++i)
+                writer.out.writeShort(cats[i]);
+        }
+        writer.endBlock();
+
+        writer.beginBlock(BLOCK_CLASSIFICATION_DOCUMENTS_PRIMARY, entries);
+        for (int doc = 0; doc < documents; ++doc) {
+            short[] cats = getDocumentCategories(classificationDB, doc);
+            for (int i = 0; i < cats.length; ++i)
+                writer.out.writeByte(classificationDB.isPrimaryCategory(doc,
+                        cats[i]) ? 1 : 0);
+        }
+        writer.endBlock();
+
+        int[] categoriesOffsets = new int[categories + 1];
+        for (short cat = 0; cat < categories; ++cat)
+            categoriesOffsets[cat + 1] = categoriesOffsets[cat]
+                    + classificationDB.getCategoryDocumentsCount(cat);
+        writer.writeInts(BLOCK_CLASSIFICATION_CATEGORIES_OFFSETS,
+                categoriesOffsets);
+
+        writer.beginBlock(BLOCK_CLASSIFICATION_CATEGORIES_DOCUMENTS,
+                4L * categoriesOffsets[categories]);
+        for (short cat = 0; cat < categories; ++cat) {
+            IIntIterator docs = classificationDB.getCategoryDocuments(cat);
+            while (docs.hasNext())
+                writer.out.writeInt(docs.next());
+        }
+        writer.endBlock();
+    }
+
+    protected static int[] getDocumentFeatures(IContentDB contentDB, int doc) {
+        int[] feats = new int[contentDB.getDocumentFeaturesCount(doc)];
+        IIntIterator it = contentDB.getDocumentFeatures(doc);
+        int i = 0;
+        while (it.hasNext())
+            feats[i++] = it.next();
+        Arrays.sort(feats);
+        return feats;
+    }
+
+    protected static short[] getDocumentCategories(
+            IClassificationDB classificationDB, int doc) {
+        short[] cats = new short[classificationDB
+                .getDocumentCategoriesCount(doc)];
+        IShortIterator it = classificationDB.getDocumentCategories(doc);
+        int i = 0;
+        while (it.hasNext())
+            cats[i++] = it.next();
+        Arrays.sort(cats);
+        return cats;
+    }
+
+    private static byte[] getBytes(RamStorageManager ram) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        InputStream is = ram.getInputStreamForResource(DB_NAME);
+        try {
+            Os.copy(is, bos);
+        } finally {
+            is.close();
+        }
+        return bos.toByteArray();
+    }
+
+    private static IStorageManager toStorageManager(byte[] data)
+            throws IOException {
+        RamStorageManager ram = new RamStorageManager();
+        ram.open();
+        OutputStream os = ram.getOutputStreamForResource(DB_NAME);
+        os.write(data);
+        os.close();
+        return ram;
+    }
+
+    private static ByteBuffer getBlock(HashMap<Integer, ByteBuffer> blocks,
+                                       int type) {
+        ByteBuffer block = blocks.get(type);
+        if (block == null)
+            throw new IllegalStateException("The mapped index has no block of type "
+                    + type);
+        return block.duplicate();
+    }
+
+    private static byte[] getBytes(HashMap<Integer, ByteBuffer> blocks,
+                                   int type) {
+        ByteBuffer block = getBlock(blocks, type);
+        byte[] data = new byte[block.remaining()];
+        block.get(data);
+        return data;
+    }
+
+    private static void checkHeader(int magic, int version) {
+        if (magic != MAGIC)
+            throw new IllegalStateException("The resource is not a mapped index");
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported mapped index version "
+                    + version);
+    }
+
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private static HashMap<Integer, ByteBuffer> mapBlocks(File file)
+            throws IOException {
+        HashMap<Integer, ByteBuffer> blocks = new HashMap<Integer, ByteBuffer>();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(16);
+            readFully(channel, header, 0, 8);
+            checkHeader(header.getInt(0), header.getInt(4));
+            long pos = 8;
+            while (pos < size) {
+                readFully(channel, header, pos, 16);
+                int type = header.getInt(0);
+                long length = header.getLong(4);
+                if (length > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Block of type " + type
+                            + " is too large to be mapped");
+                blocks.put(type, channel.map(FileChannel.MapMode.READ_ONLY,
+                        pos + 16, length));
+                pos += 16 + padded(length);
+            }
+        } finally {
+            // The mappings remain valid after the channel is closed.
+            raf.close();
+        }
+        return blocks;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  long pos, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0)
+                throw new EOFException("Truncated mapped index");
+        }
+    }
+
+    private static HashMap<Integer, ByteBuffer> sliceBlocks(ByteBuffer data) {
+        HashMap<Integer, ByteBuffer> blocks = new HashMap<Integer, ByteBuffer>();
+        checkHeader(data.getInt(0), data.getInt(4));
+        int pos = 8;
+        while (pos < data.capacity()) {
+            int type = data.getInt(pos);
+            int length = (int) data.getLong(pos + 4);
+            ByteBuffer block = data.duplicate();
+            block.position(pos + 16);
+            block.limit(pos + 16 + length);
+            blocks.put(type, block.slice());
+            pos += 16 + (int) padded(length);
+        }
+        return blocks;
+    }
+
+    /**
+     * Sequential writer of the blocks of a mapped index.
+     */
+    protected static class BlockWriter {
+
+        protected final DataOutputStream out;
+        private long _blockLength;
+
+        protected BlockWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        protected void writeHeader() throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        protected void beginBlock(int type, long length) throws IOException {
+            out.writeInt(type);
+            out.writeLong(length);
+            out.writeInt(0);
+            _blockLength = length;
+        }
+
+        protected void endBlock() throws IOException {
+            for (long i = _blockLength; i < padded(_blockLength); ++i)
+                out.writeByte(0);
+        }
+
+        protected void writeBytes(int type, byte[] data) throws IOException {
+            beginBlock(type, data.length);
+            out.write(data);
+            endBlock();
+        }
+
+        protected void writeInts(int type, int[] data) throws IOException {
+            beginBlock(type, 4L * data.length);
+            for (int i = 0; i < data.length; ++i)
+                out.writeInt(data[i]);
+            endBlock();
+        }
+
+        protected void close() throws IOException {
+            out.close();
+        }
+    }
+}
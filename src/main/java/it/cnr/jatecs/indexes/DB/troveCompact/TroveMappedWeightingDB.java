@@ -0,0 +1,116 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Read-only weighting DB served directly from the buffers of an index written
+ * by {@link TroveMappedIndexRW}. The weights are aligned with the
+ * document-feature postings of the linked {@link TroveMappedContentDB}.
+ */
+public class TroveMappedWeightingDB implements IWeightingDB {
+
+    protected String _name;
+    protected TroveMappedContentDB _contentDB;
+    protected DoubleBuffer _weights;
+
+    public TroveMappedWeightingDB(TroveMappedContentDB contentDB,
+                                  DoubleBuffer weights) {
+        super();
+        _contentDB = contentDB;
+        _weights = weights;
+        _name = "generic";
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public IContentDB getContentDB() {
+        return _contentDB;
+    }
+
+    public double getDefaultWeight() {
+        return 1.0;
+    }
+
+    public double getNoWeight() {
+        return 0.0;
+    }
+
+    public double getDocumentFeatureWeight(int document, int feature) {
+        int pos = _contentDB.getDocumentFeaturePosition(document, feature);
+        if (pos >= 0)
+            return _weights.get(pos);
+        else
+            return 0.0;
+    }
+
+    /**
+     * @param position a position in the document-feature postings of the
+     *                 content DB
+     * @return the weight stored at the given position
+     */
+    public double getWeightAt(int position) {
+        return _weights.get(position);
+    }
+
+    public void removeDocuments(IIntIterator removedDocuments) {
+        throw new UnsupportedOperationException(
+                "The mapped weighting DB is read-only, clone it to modify it");
+    }
+
+    public void removeFeatures(IIntIterator removedFeatures) {
+        throw new UnsupportedOperationException(
+                "The mapped weighting DB is read-only, clone it to modify it");
+    }
+
+    public IWeightingDB cloneDB(IContentDB contentDB) {
+        TroveWeightingDBBuilder builder = new TroveWeightingDBBuilder(contentDB);
+        int documents = _contentDB.getDocumentDB().getDocumentsCount();
+        for (int document = 0; document < documents; ++document) {
+            int pos = _contentDB.getDocumentFeaturesStart(document);
+            IIntIterator features = _contentDB.getDocumentFeatures(document);
+            while (features.hasNext()) {
+                builder.setDocumentFeatureWeight(document, features.next(),
+                        _weights.get(pos));
+                ++pos;
+            }
+        }
+        IWeightingDB weightingDB = builder.getWeightingDB();
+        weightingDB.setName(new String(_name));
+        return weightingDB;
+    }
+
+}
@@ -155,6 +155,69 @@ public class TroveReadWriteHelper {
         return indexRW.read(storageManager, dbName);
     }
 
+    /**
+     * Write the given index in a single resource using the memory mappable
+     * format of {@link TroveMappedIndexRW}.
+     *
+     * @param storageManager The storage manager to use.
+     * @param index          The index to write.
+     * @param name           The name of the index.
+     * @param overwrite      True if the index must be overwritten, false otherwise.
+     * @throws NullPointerException     Raised if the storage manager is 'null' or the index is
+     *                                  'null'.
+     * @throws IllegalArgumentException Raised if the specified index name is invalid.
+     * @throws IllegalStateException    Raised if the specified storage manager is not open.
+     */
+    public static void writeMappedIndex(IStorageManager storageManager,
+                                        IIndex index, String name, boolean overwrite) {
+        if (storageManager == null)
+            throw new NullPointerException(
+                    "The specified storage manager is 'null'");
+
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException(
+                    "The specified index name is 'null' or empty");
+
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open!");
+
+        String indexName = name + storageManager.getPathSeparator() + "mapped";
+        new TroveMappedIndexRW().write(storageManager, index, indexName,
+                overwrite);
+    }
+
+    /**
+     * Read the specified index written with
+     * {@link #writeMappedIndex(IStorageManager, IIndex, String, boolean)}. On
+     * a {@link it.cnr.jatecs.io.FileSystemStorageManager} the content,
+     * weighting and classification DBs are memory mapped and read-only.
+     *
+     * @param storageManager The storage manager to use.
+     * @param indexName      The index name.
+     * @return The read index object.
+     * @throws NullPointerException     Raised if storage manager is 'null'.
+     * @throws IllegalArgumentException Raised if index name is invalid.
+     * @throws IllegalStateException    Raised if the storage manager is not open.
+     */
+    public static IIndex readMappedIndex(IStorageManager storageManager,
+                                         String indexName) {
+        if (storageManager == null)
+            throw new NullPointerException(
+                    "The specified storage manager is 'null'");
+        if (indexName == null || indexName.isEmpty())
+            throw new IllegalArgumentException("The index name <" + indexName
+                    + "> is invalid");
+
+        if (!storageManager.isOpen())
+            throw new IllegalStateException("The storage manager is not open!");
+
+        String dbName = indexName + storageManager.getPathSeparator() + "mapped";
+        return new TroveMappedIndexRW().read(storageManager, dbName);
+    }
+
     /**
      * Read the named domain DB from the specified storage manager.
      *
@@ -0,0 +1,398 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Arrays;
+
+/**
+ * Weighting DB storing the weights in a flat primitive array aligned with the
+ * document-feature postings of a {@link TroveContentCompactDB}: the weight of
+ * the i-th feature of a document is at position
+ * {@link TroveContentCompactDB#getDocumentFeaturesStart(int)} + i. Besides the
+ * methods of {@link IWeightingDB} it gives positional and bulk access to the
+ * weights, which avoids a lookup for each (document, feature) pair when
+ * scanning whole documents. Weights can be optionally kept in float precision
+ * to halve the memory used.
+ * <p>
+ * Features added to the content DB after the creation of the weighting DB get
+ * the default weight. The postings and the weights aligned with them are
+ * published together in a single {@link Weights} holder, so that concurrent
+ * readers never pair the postings of a version with the weights of another.
+ */
+public class TroveWeightingCompactDB implements IWeightingDB {
+
+    protected String _name;
+    protected TroveContentCompactDB _contentDB;
+    protected volatile Weights _weights;
+
+    public TroveWeightingCompactDB(TroveContentCompactDB contentDB) {
+        this(contentDB, false);
+    }
+
+    /**
+     * @param contentDB      the content DB
+     * @param floatPrecision true to store the weights as floats, false to
+     *                       store them as doubles
+     */
+    public TroveWeightingCompactDB(TroveContentCompactDB contentDB,
+                                   boolean floatPrecision) {
+        super();
+        if (contentDB == null)
+            throw new NullPointerException("The specified content DB is 'null'");
+        _contentDB = contentDB;
+        _weights = new Weights(contentDB.getDocumentsPostings(), floatPrecision,
+                getDefaultWeight());
+        _name = "generic";
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public IContentDB getContentDB() {
+        return _contentDB;
+    }
+
+    public double getDefaultWeight() {
+        return 1.0;
+    }
+
+    public double getNoWeight() {
+        return 0.0;
+    }
+
+    /**
+     * @return true if the weights are stored in float precision
+     */
+    public boolean isFloatPrecision() {
+        return _weights.floatWeights != null;
+    }
+
+    public double getDocumentFeatureWeight(int document, int feature) {
+        Weights w = sync();
+        int pos = w.postings.getPosition(document, feature);
+        if (pos >= 0)
+            return w.get(pos);
+        else
+            return getNoWeight();
+    }
+
+    /**
+     * @param position a position in the document-feature postings of the
+     *                 content DB, see
+     *                 {@link TroveContentCompactDB#getDocumentFeaturePosition(int, int)}
+     * @return the weight stored at the given position
+     */
+    public double getWeightAt(int position) {
+        return sync().get(position);
+    }
+
+    /**
+     * Copy the features of a document and their weights in the given
+     * buffers, in increasing feature order.
+     *
+     * @param document the document id
+     * @param features the buffer for the features, at least
+     *                 {@link IContentDB#getDocumentFeaturesCount(int)} long
+     * @param weights  the buffer for the weights, at least
+     *                 {@link IContentDB#getDocumentFeaturesCount(int)} long
+     * @return the number of features of the document
+     */
+    public int getDocumentFeaturesWeights(int document, int[] features,
+                                          double[] weights) {
+        Weights w = sync();
+        int size = w.postings.getRowSize(document);
+        if (size == 0)
+            return 0;
+        w.postings.decodeRow(document, features);
+        w.getRow(document, weights);
+        return size;
+    }
+
+    /**
+     * Copy the weights of a document in the given buffer, in the same order
+     * of {@link IContentDB#getDocumentFeatures(int)}.
+     *
+     * @param document the document id
+     * @param weights  the buffer for the weights, at least
+     *                 {@link IContentDB#getDocumentFeaturesCount(int)} long
+     * @return the number of features of the document
+     */
+    public int getDocumentWeights(int document, double[] weights) {
+        return sync().getRow(document, weights);
+    }
+
+    public synchronized void removeDocuments(IIntIterator removedDocuments) {
+        Weights w = sync();
+        int documents = w.postings.getRowsCount();
+        boolean[] removed = new boolean[documents];
+        int removedCount = 0;
+        while (removedDocuments.hasNext()) {
+            int document = removedDocuments.next();
+            if (document >= 0 && document < documents && !removed[document]) {
+                removed[document] = true;
+                ++removedCount;
+            }
+        }
+        if (removedCount == 0)
+            return;
+
+        TroveCompactPostings postings = w.postings.removeRows(removed,
+                removedCount);
+        int entries = 0;
+        for (int d = 0; d < documents; ++d) {
+            if (removed[d])
+                continue;
+            int size = w.postings.getRowSize(d);
+            w.copy(w.postings.getRowStart(d), entries, size);
+            entries += size;
+        }
+        _weights = w.truncate(postings, entries);
+    }
+
+    public synchronized void removeFeatures(IIntIterator removedFeatures) {
+        Weights w = sync();
+        // The content DB has not been modified yet, so it still knows the
+        // old number of features.
+        int features = _contentDB._featuresPostings.getRowsCount();
+        int[] map = new int[features];
+        boolean any = false;
+        while (removedFeatures.hasNext()) {
+            int feature = removedFeatures.next();
+            if (feature >= 0 && feature < features) {
+                map[feature] = -1;
+                any = true;
+            }
+        }
+        if (!any)
+            return;
+        int newFeatures = 0;
+        for (int f = 0; f < features; ++f) {
+            if (map[f] == 0)
+                map[f] = newFeatures++;
+        }
+
+        int documents = w.postings.getRowsCount();
+        int entries = 0;
+        for (int d = 0; d < documents; ++d) {
+            TroveCompactPostings.PostingsIterator it = new TroveCompactPostings.PostingsIterator(
+                    w.postings, d);
+            while (it.hasNext()) {
+                if (map[it.nextInt()] >= 0) {
+                    w.copy(it.position(), entries, 1);
+                    ++entries;
+                }
+            }
+        }
+        _weights = w.truncate(w.postings.mapIds(map), entries);
+    }
+
+    public IWeightingDB cloneDB(IContentDB contentDB) {
+        if (!(contentDB instanceof TroveContentCompactDB)) {
+            TroveWeightingDBBuilder builder = new TroveWeightingDBBuilder(
+                    contentDB);
+            int documents = contentDB.getDocumentDB().getDocumentsCount();
+            for (int document = 0; document < documents; ++document) {
+                IIntIterator features = contentDB.getDocumentFeatures(document);
+                while (features.hasNext()) {
+                    int feature = features.next();
+                    builder.setDocumentFeatureWeight(document, feature,
+                            getDocumentFeatureWeight(document, feature));
+                }
+            }
+            IWeightingDB weightingDB = builder.getWeightingDB();
+            weightingDB.setName(new String(_name));
+            return weightingDB;
+        }
+
+        Weights w = sync();
+        TroveWeightingCompactDB weightingDB = new TroveWeightingCompactDB(
+                (TroveContentCompactDB) contentDB, w.floatWeights != null);
+        weightingDB._name = new String(_name);
+        weightingDB._weights = new Weights(w.postings,
+                w.weights != null ? w.weights.clone() : null,
+                w.floatWeights != null ? w.floatWeights.clone() : null);
+        return weightingDB;
+    }
+
+    /**
+     * Set the weight of a feature in a document, if the document contains the
+     * feature.
+     */
+    void setDocumentFeatureWeight(int document, int feature, double weight) {
+        Weights w = sync();
+        int pos = w.postings.getPosition(document, feature);
+        if (pos >= 0)
+            w.set(pos, weight);
+    }
+
+    /**
+     * Align the weights with the current postings of the content DB, in case
+     * the content DB has been modified.
+     *
+     * @return the current postings and weights, to be used together
+     */
+    protected Weights sync() {
+        Weights current = _weights;
+        if (_contentDB.getDocumentsPostings() == current.postings)
+            return current;
+        synchronized (this) {
+            current = _weights;
+            TroveCompactPostings postings = _contentDB.getDocumentsPostings();
+            if (postings == current.postings)
+                return current;
+
+            // Merge the old and new rows, carrying the weights of the
+            // entries which are still present.
+            Weights merged = new Weights(postings,
+                    current.floatWeights != null, getDefaultWeight());
+            TroveCompactPostings old = current.postings;
+            int rows = Math.min(postings.getRowsCount(), old.getRowsCount());
+            for (int r = 0; r < rows; ++r) {
+                if (old.getRowSize(r) == 0 || postings.getRowSize(r) == 0)
+                    continue;
+                TroveCompactPostings.PostingsIterator oldIt = new TroveCompactPostings.PostingsIterator(
+                        old, r);
+                TroveCompactPostings.PostingsIterator newIt = new TroveCompactPostings.PostingsIterator(
+                        postings, r);
+                int oldId = oldIt.nextInt();
+                int newId = newIt.nextInt();
+                while (true) {
+                    if (oldId < newId) {
+                        if (!oldIt.hasNext())
+                            break;
+                        oldId = oldIt.nextInt();
+                    } else if (oldId > newId) {
+                        if (!newIt.hasNext())
+                            break;
+                        newId = newIt.nextInt();
+                    } else {
+                        if (merged.weights != null)
+                            merged.weights[newIt.position()] = current.weights[oldIt
+                                    .position()];
+                        else
+                            merged.floatWeights[newIt.position()] = current.floatWeights[oldIt
+                                    .position()];
+                        if (!oldIt.hasNext() || !newIt.hasNext())
+                            break;
+                        oldId = oldIt.nextInt();
+                        newId = newIt.nextInt();
+                    }
+                }
+            }
+            _weights = merged;
+            return merged;
+        }
+    }
+
+    /**
+     * The postings and the weights aligned with them, either in double or in
+     * float precision.
+     */
+    protected static class Weights {
+
+        final TroveCompactPostings postings;
+        final double[] weights;
+        final float[] floatWeights;
+
+        Weights(TroveCompactPostings postings, double[] weights,
+                float[] floatWeights) {
+            this.postings = postings;
+            this.weights = weights;
+            this.floatWeights = floatWeights;
+        }
+
+        /**
+         * Create the weights of the postings, set to the default weight.
+         */
+        Weights(TroveCompactPostings postings, boolean floatPrecision,
+                double defaultWeight) {
+            this.postings = postings;
+            int entries = postings.getEntriesCount();
+            if (floatPrecision) {
+                weights = null;
+                floatWeights = new float[entries];
+                Arrays.fill(floatWeights, (float) defaultWeight);
+            } else {
+                weights = new double[entries];
+                floatWeights = null;
+                Arrays.fill(weights, defaultWeight);
+            }
+        }
+
+        double get(int position) {
+            if (weights != null)
+                return weights[position];
+            else
+                return floatWeights[position];
+        }
+
+        void set(int position, double weight) {
+            if (weights != null)
+                weights[position] = weight;
+            else
+                floatWeights[position] = (float) weight;
+        }
+
+        int getRow(int document, double[] buffer) {
+            int size = postings.getRowSize(document);
+            if (size == 0)
+                return 0;
+            int start = postings.getRowStart(document);
+            if (weights != null)
+                System.arraycopy(weights, start, buffer, 0, size);
+            else
+                for (int i = 0; i < size; ++i)
+                    buffer[i] = floatWeights[start + i];
+            return size;
+        }
+
+        void copy(int from, int to, int size) {
+            if (weights != null)
+                System.arraycopy(weights, from, weights, to, size);
+            else
+                System.arraycopy(floatWeights, from, floatWeights, to, size);
+        }
+
+        /**
+         * @return the first entries of the weights, aligned with the new
+         * postings
+         */
+        Weights truncate(TroveCompactPostings newPostings, int entries) {
+            return new Weights(newPostings,
+                    weights != null ? Arrays.copyOf(weights, entries) : null,
+                    floatWeights != null ? Arrays.copyOf(floatWeights, entries)
+                            : null);
+        }
+    }
+}
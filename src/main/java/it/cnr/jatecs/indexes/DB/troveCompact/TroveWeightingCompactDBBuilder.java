@@ -0,0 +1,59 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDBBuilder;
+
+public class TroveWeightingCompactDBBuilder implements IWeightingDBBuilder {
+
+    protected TroveWeightingCompactDB _weightingDB;
+
+    public TroveWeightingCompactDBBuilder(TroveContentCompactDB contentDB) {
+        this(contentDB, false);
+    }
+
+    public TroveWeightingCompactDBBuilder(TroveContentCompactDB contentDB,
+                                          boolean floatPrecision) {
+        super();
+        _weightingDB = new TroveWeightingCompactDB(contentDB, floatPrecision);
+    }
+
+    // This builder can be also used to modify an exiting weighting
+    // by using this constructor and passing an already existing
+    // TroveWeightingCompactDB
+    public TroveWeightingCompactDBBuilder(TroveWeightingCompactDB weightingDB) {
+        _weightingDB = weightingDB;
+    }
+
+    public void setDocumentFeatureWeight(int document, int feature,
+                                         double weight) {
+        _weightingDB.setDocumentFeatureWeight(document, feature, weight);
+    }
+
+    public IWeightingDB getWeightingDB() {
+        return _weightingDB;
+    }
+}
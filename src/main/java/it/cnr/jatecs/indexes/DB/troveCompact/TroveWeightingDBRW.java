@@ -26,6 +26,7 @@ package it.cnr.jatecs.indexes.DB.troveCompact;
 
 import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
 import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDBBuilder;
 import it.cnr.jatecs.io.IStorageManager;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
@@ -69,8 +70,12 @@ public class TroveWeightingDBRW {
 
         InputStream is = storageManager.getInputStreamForResource(dbName);
         DataInputStream dis = new DataInputStream(is);
-        TroveWeightingDBBuilder weightingDBBuilder = new TroveWeightingDBBuilder(
-                _contentDB);
+        IWeightingDBBuilder weightingDBBuilder;
+        if (_contentDB instanceof TroveContentCompactDB)
+            weightingDBBuilder = new TroveWeightingCompactDBBuilder(
+                    (TroveContentCompactDB) _contentDB);
+        else
+            weightingDBBuilder = new TroveWeightingDBBuilder(_contentDB);
 
         try {
             weightingDBBuilder.getWeightingDB().setName(dis.readUTF());
@@ -33,6 +33,15 @@ import it.cnr.jatecs.indexing.corpus.*;
 import it.cnr.jatecs.module.JatecsModule;
 import it.cnr.jatecs.utils.JatecsLogger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
 /**
  * @author Tiziano Fagni, Andrea Esuli
  */
@@ -48,6 +57,17 @@ public class FullIndexConstructor extends JatecsModule {
      */
     private IFeatureExtractor _extr;
 
+    /**
+     * The features extractors used by the workers of the parallel pipeline,
+     * one for each worker, or null to index on a single thread.
+     */
+    private List<IFeatureExtractor> _extractors;
+
+    /**
+     * The maximum number of documents in the parallel pipeline.
+     */
+    private int _queueSize = 1000;
+
     private boolean _cleanCategories = false;
     private IIndexBuilder _indexBuilder;
 
@@ -106,6 +126,42 @@ public class FullIndexConstructor extends JatecsModule {
         assert (extractor != null);
 
         _extr = extractor;
+        _extractors = null;
+    }
+
+    /**
+     * Set the feature extractors to use in the parallel indexing pipeline. A
+     * reader thread reads the documents from the corpus, a worker thread for
+     * each given extractor computes the features, and the documents are
+     * added to the index builder in the same order they are read, so the
+     * documents IDs are the same of the sequential indexing. Each extractor
+     * is used by a single thread, so the extractors do not need to be
+     * thread-safe but they must not share state (e.g. the same stemming
+     * module).
+     *
+     * @param extractors The feature extractors, one for each worker thread.
+     */
+    public void setFeatureExtractors(List<IFeatureExtractor> extractors) {
+        if (extractors == null)
+            throw new NullPointerException("The specified extractors list is 'null'");
+        if (extractors.isEmpty())
+            throw new IllegalArgumentException("The specified extractors list is empty");
+
+        _extr = extractors.get(0);
+        _extractors = new ArrayList<IFeatureExtractor>(extractors);
+    }
+
+    /**
+     * Set the maximum number of documents which can be in the parallel
+     * pipeline at the same time, i.e. read but not yet added to the index.
+     *
+     * @param queueSize The maximum number of documents in the pipeline.
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The queue size must be greater than 0");
+
+        _queueSize = queueSize;
     }
 
     /**
@@ -120,6 +176,31 @@ public class FullIndexConstructor extends JatecsModule {
         msg += "\n++ Begin preparing the complete index:";
         JatecsLogger.status().println(msg);
 
+        if (_extractors != null && _extractors.size() > 1)
+            indexDocumentsParallel();
+        else
+            indexDocumentsSequential();
+
+        if (_cleanCategories) {
+            _indexBuilder.getIndex().cleanCategories();
+        }
+        JatecsLogger.status().println(
+                "Done. Indexed "
+                        + _indexBuilder.getIndex().getDocumentDB()
+                        .getDocumentsCount()
+                        + " documents, "
+                        + _indexBuilder.getIndex().getCategoryDB()
+                        .getCategoriesCount()
+                        + " categories and "
+                        + _indexBuilder.getIndex().getFeatureDB()
+                        .getFeaturesCount() + " features.");
+
+    }
+
+    /**
+     * Read, process and index the documents on the current thread.
+     */
+    protected void indexDocumentsSequential() {
         // Read all documents from the given reader.
         CorpusDocument doc = null;
 
@@ -139,31 +220,83 @@ public class FullIndexConstructor extends JatecsModule {
             doc = _reader.next();
 
             count++;
-
-            // Counter for std-out purpose.
-            if ((count % 25) == 0)
-                JatecsLogger.status().print("" + count);
-            else
-                JatecsLogger.status().print(".");
-
-            if ((count % 50) == 0)
-                JatecsLogger.status().print("\n");
-        }
-        if (_cleanCategories) {
-            _indexBuilder.getIndex().cleanCategories();
+            printProgress(count);
         }
         _reader.close();
-        JatecsLogger.status().println(
-                "Done. Indexed "
-                        + _indexBuilder.getIndex().getDocumentDB()
-                        .getDocumentsCount()
-                        + " documents, "
-                        + _indexBuilder.getIndex().getCategoryDB()
-                        .getCategoriesCount()
-                        + " categories and "
-                        + _indexBuilder.getIndex().getFeatureDB()
-                        .getFeaturesCount() + " features.");
+    }
+
+    /**
+     * Read the documents on a separate thread, process them with a worker
+     * thread for each feature extractor and index them on the current thread
+     * in reading order.
+     */
+    protected void indexDocumentsParallel() {
+        final Pipeline pipeline = new Pipeline(_queueSize);
+
+        Thread readerThread = new Thread(new Runnable() {
+            public void run() {
+                int count = 0;
+                try {
+                    _reader.begin();
+                    CorpusDocument doc = _reader.next();
+                    while (doc != null) {
+                        pipeline.window.acquire();
+                        pipeline.input.put(new PipelineDocument(count, doc));
+                        ++count;
+                        doc = _reader.next();
+                    }
+                    _reader.close();
+                } catch (Throwable t) {
+                    pipeline.fail(t);
+                } finally {
+                    pipeline.setTotal(count);
+                    // Stop the workers.
+                    for (int i = 0; i < _extractors.size(); ++i) {
+                        try {
+                            pipeline.input.put(PipelineDocument.END);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }, "FullIndexConstructor-reader");
+        readerThread.setDaemon(true);
+
+        ExecutorService workers = Executors.newFixedThreadPool(_extractors
+                .size());
+        try {
+            readerThread.start();
+            for (int i = 0; i < _extractors.size(); ++i)
+                workers.submit(new PipelineWorker(pipeline, _extractors.get(i)));
+
+            int count = 0;
+            ProcessedCorpusDocument predoc;
+            while ((predoc = pipeline.takeResult(count)) != null) {
+                indexDocument(predoc);
+                pipeline.window.release();
+
+                count++;
+                printProgress(count);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while indexing documents", e);
+        } finally {
+            workers.shutdownNow();
+            readerThread.interrupt();
+        }
+    }
+
+    private void printProgress(int count) {
+        // Counter for std-out purpose.
+        if ((count % 25) == 0)
+            JatecsLogger.status().print("" + count);
+        else
+            JatecsLogger.status().print(".");
 
+        if ((count % 50) == 0)
+            JatecsLogger.status().print("\n");
     }
 
     /**
@@ -202,4 +335,112 @@ public class FullIndexConstructor extends JatecsModule {
     public boolean mustProcessModule() {
         return true;
     }
+
+    /**
+     * A document read from the corpus with its position in reading order.
+     */
+    private static class PipelineDocument {
+
+        static final PipelineDocument END = new PipelineDocument(-1, null);
+
+        final int sequence;
+        final CorpusDocument document;
+
+        PipelineDocument(int sequence, CorpusDocument document) {
+            this.sequence = sequence;
+            this.document = document;
+        }
+    }
+
+    /**
+     * The state shared by the stages of the parallel indexing.
+     */
+    private static class Pipeline {
+
+        /**
+         * Bounds the documents read but not yet indexed.
+         */
+        final Semaphore window;
+        final BlockingQueue<PipelineDocument> input;
+        private final HashMap<Integer, ProcessedCorpusDocument> _results;
+        private int _total;
+        private Throwable _failure;
+
+        Pipeline(int queueSize) {
+            window = new Semaphore(queueSize);
+            input = new ArrayBlockingQueue<PipelineDocument>(queueSize);
+            _results = new HashMap<Integer, ProcessedCorpusDocument>();
+            _total = -1;
+        }
+
+        synchronized void putResult(int sequence, ProcessedCorpusDocument doc) {
+            _results.put(sequence, doc);
+            notifyAll();
+        }
+
+        synchronized void setTotal(int total) {
+            _total = total;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable t) {
+            if (_failure == null)
+                _failure = t;
+            notifyAll();
+        }
+
+        /**
+         * Wait for the processed document with the given sequence number.
+         *
+         * @return the document, or null if all the documents have been
+         * returned
+         */
+        synchronized ProcessedCorpusDocument takeResult(int sequence)
+                throws InterruptedException {
+            while (true) {
+                if (_failure != null)
+                    throw new RuntimeException("Processing documents", _failure);
+                ProcessedCorpusDocument doc = _results.remove(sequence);
+                if (doc != null)
+                    return doc;
+                if (_total >= 0 && sequence >= _total)
+                    return null;
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Computes the features of the documents taken from the pipeline input.
+     */
+    private static class PipelineWorker implements Runnable {
+
+        private final Pipeline _pipeline;
+        private final IFeatureExtractor _extractor;
+
+        PipelineWorker(Pipeline pipeline, IFeatureExtractor extractor) {
+            _pipeline = pipeline;
+            _extractor = extractor;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    PipelineDocument item = _pipeline.input.take();
+                    if (item == PipelineDocument.END)
+                        break;
+                    CorpusDocument doc = item.document;
+                    _pipeline.putResult(item.sequence,
+                            new ProcessedCorpusDocument(doc.name(), doc
+                                    .documentType(), _extractor
+                                    .extractFeatures(doc.content()), doc
+                                    .categories()));
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested.
+            } catch (Throwable t) {
+                _pipeline.fail(t);
+            }
+        }
+    }
 }
@@ -30,6 +30,11 @@ import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
 public abstract class BaseSimilarityFunction implements ISimilarityFunction {
 
+    protected IIndex _vectorsIndex1;
+    protected DocumentVectors _vectors1;
+    protected IIndex _vectorsIndex2;
+    protected DocumentVectors _vectors2;
+
     public double compute(TIntDoubleHashMap doc1, int doc2, IIndex index) {
 
         TIntDoubleHashMap d2 = new TIntDoubleHashMap(index.getFeatureDB()
@@ -92,4 +97,28 @@ public abstract class BaseSimilarityFunction implements ISimilarityFunction {
         return compute(ar1, ar2, features);
     }
 
+    /**
+     * Get the packed vectors of the index of the first document of a pair,
+     * keeping them at hand for the following calls.
+     */
+    protected DocumentVectors getVectors1(IIndex index) {
+        if (_vectorsIndex1 != index || !_vectors1.isValidFor(index)) {
+            _vectors1 = DocumentVectors.get(index);
+            _vectorsIndex1 = index;
+        }
+        return _vectors1;
+    }
+
+    /**
+     * Get the packed vectors of the index of the second document of a pair,
+     * keeping them at hand for the following calls.
+     */
+    protected DocumentVectors getVectors2(IIndex index) {
+        if (_vectorsIndex2 != index || !_vectors2.isValidFor(index)) {
+            _vectors2 = DocumentVectors.get(index);
+            _vectorsIndex2 = index;
+        }
+        return _vectors2;
+    }
+
 }
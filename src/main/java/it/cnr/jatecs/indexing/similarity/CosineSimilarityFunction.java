@@ -30,14 +30,6 @@ import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
 public class CosineSimilarityFunction extends BaseSimilarityFunction {
 
-    protected IIntIterator _docs1Feats;
-    protected IIndex _idx1;
-    protected int _doc1;
-
-    protected IIndex _idx2;
-    protected IIntIterator _docs2Feats;
-    protected int _doc2;
-
     public CosineSimilarityFunction() {
     }
 
@@ -79,142 +71,27 @@ public class CosineSimilarityFunction extends BaseSimilarityFunction {
 
     @Override
     public double compute(int doc1, int doc2, IIndex index) {
-        IIntIterator feats1 = index.getContentDB().getDocumentFeatures(doc1);
-        IIntIterator feats2 = index.getContentDB().getDocumentFeatures(doc2);
-
-        int feat1 = -1;
-        int feat2 = -1;
-        if (feats1.hasNext())
-            feat1 = feats1.next();
-        else
-            return 0;
-
-        if (feats2.hasNext())
-            feat2 = feats2.next();
-        else
-            return 0;
-
-        double numerator = 0;
-        double denominator1 = 0;
-        double denominator2 = 0;
-        while (feat1 != Integer.MAX_VALUE || feat2 != Integer.MAX_VALUE) {
-
-            if (feat1 < feat2) {
-                double doc1s = index.getWeightingDB().getDocumentFeatureWeight(doc1, feat1);
-                denominator1 += (doc1s * doc1s);
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-            } else if (feat2 < feat1) {
-                double doc2s = index.getWeightingDB().getDocumentFeatureWeight(doc2, feat2);
-                denominator2 += (doc2s * doc2s);
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            } else {
-                double doc1s = index.getWeightingDB().getDocumentFeatureWeight(doc1, feat1);
-                double doc2s = index.getWeightingDB().getDocumentFeatureWeight(doc2, feat2);
-                numerator += (doc1s * doc2s);
-                denominator1 += (doc1s * doc1s);
-                denominator2 += (doc2s * doc2s);
-
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            }
-        }
-
-        double denominator = Math.sqrt(denominator1) * Math.sqrt(denominator2);
-
-        double similarity = numerator / denominator;
-        if (similarity > 1)
-            similarity = 1;
-
-        return similarity;
+        DocumentVectors vectors = getVectors1(index);
+        return compute(vectors, doc1, vectors, doc2);
     }
 
-
     @Override
     public double compute(int doc1, IIndex idx1, int doc2, IIndex idx2) {
-        if (_idx1 != idx1 || doc1 != _doc1) {
-            _docs1Feats = idx1.getContentDB().getDocumentFeatures(doc1);
-            _idx1 = idx1;
-            _doc1 = doc1;
-        }
-
-        IIntIterator feats1 = _docs1Feats;
-        feats1.begin();
-
-        if (_idx2 != idx2 || doc2 != _doc2) {
-            _docs2Feats = idx2.getContentDB().getDocumentFeatures(doc2);
-            _idx2 = idx2;
-            _doc2 = doc2;
-        }
-        IIntIterator feats2 = _docs2Feats;
-        feats2.begin();
-
-        int feat1 = -1;
-        int feat2 = -1;
-        if (feats1.hasNext())
-            feat1 = feats1.next();
-        else
-            return 0;
+        return compute(getVectors1(idx1), doc1, getVectors2(idx2), doc2);
+    }
 
-        if (feats2.hasNext())
-            feat2 = feats2.next();
-        else
+    /**
+     * Cosine computed on the packed vectors of the two documents, using
+     * their precomputed norms.
+     */
+    protected double compute(DocumentVectors vectors1, int doc1,
+                             DocumentVectors vectors2, int doc2) {
+        if (vectors1.getDocumentFeaturesCount(doc1) == 0
+                || vectors2.getDocumentFeaturesCount(doc2) == 0)
             return 0;
 
-        double numerator = 0;
-        double denominator1 = 0;
-        double denominator2 = 0;
-        while (feat1 != Integer.MAX_VALUE || feat2 != Integer.MAX_VALUE) {
-
-            if (feat1 < feat2) {
-                double doc1s = idx1.getWeightingDB().getDocumentFeatureWeight(doc1, feat1);
-                denominator1 += (doc1s * doc1s);
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-            } else if (feat2 < feat1) {
-                double doc2s = idx2.getWeightingDB().getDocumentFeatureWeight(doc2, feat2);
-                denominator2 += (doc2s * doc2s);
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            } else {
-                double doc1s = idx1.getWeightingDB().getDocumentFeatureWeight(doc1, feat1);
-                double doc2s = idx2.getWeightingDB().getDocumentFeatureWeight(doc2, feat2);
-                numerator += (doc1s * doc2s);
-                denominator1 += (doc1s * doc1s);
-                denominator2 += (doc2s * doc2s);
-
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            }
-        }
-
-        double denominator = Math.sqrt(denominator1) * Math.sqrt(denominator2);
-        assert (denominator != 0);
+        double numerator = vectors1.dot(doc1, vectors2, doc2);
+        double denominator = vectors1.getNorm(doc1) * vectors2.getNorm(doc2);
 
         double similarity = numerator / denominator;
         // Correct round problems.
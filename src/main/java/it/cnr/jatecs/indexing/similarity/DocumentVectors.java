@@ -0,0 +1,316 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.similarity;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingCompactDB;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Packed copy of the weighted documents of an index, used by the similarity
+ * functions to avoid a weight lookup for each (document, feature) pair. The
+ * features of each document are stored in increasing order in a single
+ * array, with their weights in a parallel array, together with the norm of
+ * each document.
+ * <p>
+ * The vectors of an index are built on the first call of
+ * {@link #get(IIndex)} and shared by all the callers. They are rebuilt when
+ * the index changes its weighting DB or its number of documents or features,
+ * or after a call to {@link #invalidate(IIndex)}, which
+ * {@link it.cnr.jatecs.indexes.DB.generic.GenericIndex} does on every
+ * removal of documents or features. Call {@link #invalidate(IIndex)} if the
+ * weights of an index are modified otherwise.
+ */
+public class DocumentVectors {
+
+    private static final Map<IIndex, DocumentVectors> _cache = new WeakHashMap<IIndex, DocumentVectors>();
+
+    protected IContentDB _contentDB;
+    protected IWeightingDB _weightingDB;
+    protected int _documentsCount;
+    protected int _featuresCount;
+    protected int[] _offsets;
+    protected int[] _features;
+    protected double[] _weights;
+    protected double[] _squaredNorms;
+    protected double[] _norms;
+    protected volatile boolean _valid;
+
+    /**
+     * Build the vectors of all the documents of the given index.
+     *
+     * @param index the index
+     */
+    public DocumentVectors(IIndex index) {
+        super();
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+        _contentDB = index.getContentDB();
+        _weightingDB = index.getWeightingDB();
+        _documentsCount = index.getDocumentDB().getDocumentsCount();
+        _featuresCount = index.getFeatureDB().getFeaturesCount();
+
+        _offsets = new int[_documentsCount + 1];
+        int entries = 0;
+        for (int doc = 0; doc < _documentsCount; ++doc) {
+            _offsets[doc] = entries;
+            entries += _contentDB.getDocumentFeaturesCount(doc);
+        }
+        _offsets[_documentsCount] = entries;
+        _features = new int[entries];
+        _weights = new double[entries];
+        _squaredNorms = new double[_documentsCount];
+        _norms = new double[_documentsCount];
+
+        TroveWeightingCompactDB compact = _weightingDB instanceof TroveWeightingCompactDB ? (TroveWeightingCompactDB) _weightingDB
+                : null;
+        int[] features = new int[16];
+        double[] weights = new double[16];
+        for (int doc = 0; doc < _documentsCount; ++doc) {
+            int start = _offsets[doc];
+            int size = _offsets[doc + 1] - start;
+            if (compact != null) {
+                if (features.length < size) {
+                    features = new int[size];
+                    weights = new double[size];
+                }
+                compact.getDocumentFeaturesWeights(doc, features, weights);
+                System.arraycopy(features, 0, _features, start, size);
+                System.arraycopy(weights, 0, _weights, start, size);
+            } else {
+                int pos = start;
+                IIntIterator it = _contentDB.getDocumentFeatures(doc);
+                while (it.hasNext()) {
+                    int feat = it.next();
+                    _features[pos] = feat;
+                    _weights[pos] = _weightingDB.getDocumentFeatureWeight(doc,
+                            feat);
+                    ++pos;
+                }
+            }
+
+            double norm = 0;
+            for (int i = start; i < start + size; ++i)
+                norm += _weights[i] * _weights[i];
+            _squaredNorms[doc] = norm;
+            _norms[doc] = Math.sqrt(norm);
+        }
+        _valid = true;
+    }
+
+    /**
+     * Get the shared vectors of an index, building them if they are missing
+     * or no longer valid.
+     *
+     * @param index the index
+     * @return the vectors of the documents of the index
+     */
+    public static DocumentVectors get(IIndex index) {
+        synchronized (_cache) {
+            DocumentVectors vectors = _cache.get(index);
+            if (vectors == null || !vectors.isValidFor(index)) {
+                vectors = new DocumentVectors(index);
+                _cache.put(index, vectors);
+            }
+            return vectors;
+        }
+    }
+
+    /**
+     * Drop the shared vectors of an index, if any. The instances already
+     * obtained through {@link #get(IIndex)} are marked as no longer valid.
+     *
+     * @param index the index
+     */
+    public static void invalidate(IIndex index) {
+        synchronized (_cache) {
+            DocumentVectors vectors = _cache.remove(index);
+            if (vectors != null)
+                vectors._valid = false;
+        }
+    }
+
+    /**
+     * @param index an index
+     * @return true if the vectors are still an exact copy of the documents of
+     * the index
+     */
+    public boolean isValidFor(IIndex index) {
+        return _valid && index.getWeightingDB() == _weightingDB
+                && index.getContentDB() == _contentDB
+                && index.getDocumentDB().getDocumentsCount() == _documentsCount
+                && index.getFeatureDB().getFeaturesCount() == _featuresCount;
+    }
+
+    public int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    /**
+     * @param doc the document id
+     * @return the position of the first feature of the document in
+     * {@link #getFeatures()} and {@link #getWeights()}
+     */
+    public int getStart(int doc) {
+        if (doc < 0 || doc >= _documentsCount)
+            return 0;
+        return _offsets[doc];
+    }
+
+    /**
+     * @param doc the document id
+     * @return the position following the last feature of the document in
+     * {@link #getFeatures()} and {@link #getWeights()}
+     */
+    public int getEnd(int doc) {
+        if (doc < 0 || doc >= _documentsCount)
+            return 0;
+        return _offsets[doc + 1];
+    }
+
+    public int getDocumentFeaturesCount(int doc) {
+        return getEnd(doc) - getStart(doc);
+    }
+
+    /**
+     * @return the features of all the documents, not to be modified
+     */
+    public int[] getFeatures() {
+        return _features;
+    }
+
+    /**
+     * @return the weights of all the documents, not to be modified
+     */
+    public double[] getWeights() {
+        return _weights;
+    }
+
+    /**
+     * @param doc the document id
+     * @return the sum of the squared weights of the document
+     */
+    public double getSquaredNorm(int doc) {
+        if (doc < 0 || doc >= _documentsCount)
+            return 0;
+        return _squaredNorms[doc];
+    }
+
+    /**
+     * @param doc the document id
+     * @return the euclidean norm of the document
+     */
+    public double getNorm(int doc) {
+        if (doc < 0 || doc >= _documentsCount)
+            return 0;
+        return _norms[doc];
+    }
+
+    /**
+     * Compute the dot product of a document of these vectors and a document
+     * of the given vectors, merging their features.
+     *
+     * @param doc1  the document id in these vectors
+     * @param other the vectors of the second document, can be this instance
+     * @param doc2  the document id in the other vectors
+     * @return the dot product of the two documents
+     */
+    public double dot(int doc1, DocumentVectors other, int doc2) {
+        int[] features1 = _features;
+        double[] weights1 = _weights;
+        int[] features2 = other._features;
+        double[] weights2 = other._weights;
+        int i = getStart(doc1);
+        int end1 = getEnd(doc1);
+        int j = other.getStart(doc2);
+        int end2 = other.getEnd(doc2);
+
+        double dot = 0;
+        while (i < end1 && j < end2) {
+            int feat1 = features1[i];
+            int feat2 = features2[j];
+            if (feat1 < feat2)
+                ++i;
+            else if (feat2 < feat1)
+                ++j;
+            else {
+                dot += weights1[i] * weights2[j];
+                ++i;
+                ++j;
+            }
+        }
+        return dot;
+    }
+
+    /**
+     * Compute the squared euclidean distance between a document of these
+     * vectors and a document of the given vectors, merging their features.
+     *
+     * @param doc1  the document id in these vectors
+     * @param other the vectors of the second document, can be this instance
+     * @param doc2  the document id in the other vectors
+     * @return the sum of the squared differences of the weights of the two
+     * documents
+     */
+    public double squaredDistance(int doc1, DocumentVectors other, int doc2) {
+        int[] features1 = _features;
+        double[] weights1 = _weights;
+        int[] features2 = other._features;
+        double[] weights2 = other._weights;
+        int i = getStart(doc1);
+        int end1 = getEnd(doc1);
+        int j = other.getStart(doc2);
+        int end2 = other.getEnd(doc2);
+
+        double distance = 0;
+        while (i < end1 && j < end2) {
+            int feat1 = features1[i];
+            int feat2 = features2[j];
+            if (feat1 < feat2) {
+                distance += weights1[i] * weights1[i];
+                ++i;
+            } else if (feat2 < feat1) {
+                distance += weights2[j] * weights2[j];
+                ++j;
+            } else {
+                double dif = weights1[i] - weights2[j];
+                distance += dif * dif;
+                ++i;
+                ++j;
+            }
+        }
+        for (; i < end1; ++i)
+            distance += weights1[i] * weights1[i];
+        for (; j < end2; ++j)
+            distance += weights2[j] * weights2[j];
+        return distance;
+    }
+
+}
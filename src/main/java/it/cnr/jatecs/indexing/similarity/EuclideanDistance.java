@@ -60,99 +60,15 @@ public class EuclideanDistance extends BaseSimilarityFunction {
 
     @Override
     public double compute(int doc1, int doc2, IIndex index) {
-        IIntIterator feats1 = index.getContentDB().getDocumentFeatures(doc1);
-        IIntIterator feats2 = index.getContentDB().getDocumentFeatures(doc2);
-
-        int feat1 = -1;
-        int feat2 = -1;
-        if (feats1.hasNext())
-            feat1 = feats1.next();
-        if (feats2.hasNext())
-            feat2 = feats2.next();
-
-        double score = 0;
-        while (feat1 != Integer.MAX_VALUE || feat2 != Integer.MAX_VALUE) {
-
-            if (feat1 < feat2) {
-                score += Math.pow(index.getWeightingDB().getDocumentFeatureWeight(doc1, feat1), 2);
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-            } else if (feat2 < feat1) {
-                score += Math.pow(index.getWeightingDB().getDocumentFeatureWeight(doc2, feat2), 2);
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            } else {
-                score += Math.pow(index.getWeightingDB().getDocumentFeatureWeight(doc1, feat1) - index.getWeightingDB().getDocumentFeatureWeight(doc2, feat2), 2);
-
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            }
-        }
-
-        score = Math.sqrt(score);
-
-        return score;
+        DocumentVectors vectors = getVectors1(index);
+        return Math.sqrt(vectors.squaredDistance(doc1, vectors, doc2));
     }
 
 
     @Override
     public double compute(int doc1, IIndex idx1, int doc2, IIndex idx2) {
-        IIntIterator feats1 = idx1.getContentDB().getDocumentFeatures(doc1);
-        IIntIterator feats2 = idx2.getContentDB().getDocumentFeatures(doc2);
-
-        int feat1 = -1;
-        int feat2 = -1;
-        if (feats1.hasNext())
-            feat1 = feats1.next();
-        if (feats2.hasNext())
-            feat2 = feats2.next();
-
-        double score = 0;
-        while (feat1 != Integer.MAX_VALUE || feat2 != Integer.MAX_VALUE) {
-
-            if (feat1 < feat2) {
-                score += Math.pow(idx1.getWeightingDB().getDocumentFeatureWeight(doc1, feat1), 2);
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-            } else if (feat2 < feat1) {
-                score += Math.pow(idx2.getWeightingDB().getDocumentFeatureWeight(doc2, feat2), 2);
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            } else {
-                score += Math.pow(idx1.getWeightingDB().getDocumentFeatureWeight(doc1, feat1) - idx2.getWeightingDB().getDocumentFeatureWeight(doc2, feat2), 2);
-
-                if (feats1.hasNext())
-                    feat1 = feats1.next();
-                else
-                    feat1 = Integer.MAX_VALUE;
-
-                if (feats2.hasNext())
-                    feat2 = feats2.next();
-                else
-                    feat2 = Integer.MAX_VALUE;
-            }
-        }
-
-        score = Math.sqrt(score);
-
-        return score;
+        return Math.sqrt(getVectors1(idx1).squaredDistance(doc1,
+                getVectors2(idx2), doc2));
     }
 
 
@@ -34,33 +34,7 @@ public class EuclideanSquareDistance extends BaseSimilarityFunction {
 	@Override
 	public double compute(int doc1, IIndex idx1, int doc2, IIndex idx2) 
 	{
-		IIntIterator feats1 = idx1.getContentDB().getDocumentFeatures(doc1);
-		IIntIterator feats2 = idx2.getContentDB().getDocumentFeatures(doc2);
-
-		int feat1=(feats1.hasNext()?feats1.next():Integer.MAX_VALUE);
-		int feat2=(feats2.hasNext()?feats2.next():Integer.MAX_VALUE);
-		double score = 0;
-		
-		while(feat1 != Integer.MAX_VALUE || feat2 != Integer.MAX_VALUE){
-			double w1=0;
-			double w2=0;
-			
-			if (feat1 <= feat2){
-				w1=idx1.getWeightingDB().getDocumentFeatureWeight(doc1, feat1);
-				feat1=(feats1.hasNext()?feats1.next():Integer.MAX_VALUE);
-			}
-			
-			if (feat2 <= feat1){
-				w2=idx2.getWeightingDB().getDocumentFeatureWeight(doc2, feat2);
-				feat2=(feats2.hasNext()?feats2.next():Integer.MAX_VALUE);
-			}			
-			
-			double dif=(w1-w2);
-			score+=(dif*dif);
-			
-		}
-
-		return score;
+		return getVectors1(idx1).squaredDistance(doc1, getVectors2(idx2), doc2);
 	}
 
 
@@ -31,59 +31,96 @@ import it.cnr.jatecs.utils.TextualProgressBar;
 import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
-import java.util.TreeSet;
-
 public class GlobalTSR implements ITsr {
 
     protected ITsrFunction _func;
     protected int _numBestFeature;
     protected IGlobalTSRPolicy _global;
+    protected int _threads;
 
     public GlobalTSR(ITsrFunction function, IGlobalTSRPolicy global) {
         _func = function;
         _global = global;
         _numBestFeature = 2000;
+        _threads = 1;
     }
 
     public void setNumberOfBestFeatures(int numFeatures) {
         _numBestFeature = numFeatures;
     }
 
-    public void computeTSR(IIndex index) {
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used to score the features, 1 by default.
+     * Only the functions computed on the contingency table of a pair (see
+     * {@link TsrContingencyTable#isContingencyFunction(ITsrFunction)}) are
+     * computed in parallel, the policy must be safe to call from several
+     * threads.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public void computeTSR(final IIndex index) {
         TextualProgressBar bar = new TextualProgressBar(
                 "Compute global TSR with " + _func.getClass().getName());
         int total = index.getFeatureDB().getFeaturesCount();
         int step = 0;
 
-        TreeSet<FeatureEntry> best = new TreeSet<FeatureEntry>();
         TIntArrayList toRemove = new TIntArrayList();
 
-        IIntIterator it = index.getFeatureDB().getFeatures();
-        while (it.hasNext()) {
-            int featID = it.next();
+        final boolean contingency = TsrContingencyTable
+                .isContingencyFunction(_func);
+        final TsrContingencyTable table = contingency ? new TsrContingencyTable(
+                index) : null;
+        final int categories = index.getCategoryDB().getCategoriesCount();
 
-            double[] scores = new double[index.getCategoryDB()
-                    .getCategoriesCount()];
-
-            for (short catID = 0; catID < scores.length; catID++) {
-                if (!index.getDomainDB().hasCategoryFeature(catID, featID))
-                    scores[catID] = 0;
-                else
-                    scores[catID] = _func.compute(catID, featID, index);
+        TIntArrayList feats = new TIntArrayList();
+        IIntIterator it = index.getFeatureDB().getFeatures();
+        while (it.hasNext())
+            feats.add(it.next());
+        final int[] features = feats.toNativeArray();
+        final double[] featuresScores = new double[features.length];
+
+        new TsrParallelLoop() {
+            @Override
+            protected void run(int from, int to) {
+                double[] scores = new double[categories];
+                int[] counts = new int[categories];
+                for (int i = from; i < to; i++) {
+                    int featID = features[i];
+                    if (contingency)
+                        table.getFeatureCounts(featID, counts);
+                    for (short catID = 0; catID < scores.length; catID++) {
+                        if (!index.getDomainDB().hasCategoryFeature(catID,
+                                featID))
+                            scores[catID] = 0;
+                        else if (contingency)
+                            scores[catID] = table.compute(_func, catID,
+                                    featID, counts[catID]);
+                        else
+                            scores[catID] = _func.compute(catID, featID,
+                                    index);
+                    }
+
+                    // Compute feature global value.
+                    featuresScores[i] = _global.compute(scores, index);
+                }
             }
+        }.execute(contingency ? _threads : 1, features.length);
 
-            // Compute feature global value.
-            double score = _global.compute(scores, index);
-
-            FeatureEntry fe = new FeatureEntry();
-            fe.featureID = featID;
-            fe.score = score;
-            best.add(fe);
-            if (best.size() > _numBestFeature) {
-                toRemove.add(best.first().featureID);
-                best.remove(best.first());
-
-            }
+        TsrTopK best = new TsrTopK(Math.max(0, _numBestFeature));
+        for (int i = 0; i < features.length; i++) {
+            int worst = best.add(features[i], featuresScores[i]);
+            if (worst >= 0)
+                toRemove.add(worst);
 
             step++;
             bar.signal((step * 100) / total);
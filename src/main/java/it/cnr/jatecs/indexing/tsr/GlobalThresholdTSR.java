@@ -38,6 +38,8 @@ public class GlobalThresholdTSR implements ITsr {
 
     protected ITsrFunction _function;
 
+    protected int _threads;
+
     /**
      * removes features with a tsr score under the given threshold
      *
@@ -48,9 +50,28 @@ public class GlobalThresholdTSR implements ITsr {
         super();
         _threshold = threshold;
         _function = function;
+        _threads = 1;
+    }
+
+    public int getThreads() {
+        return _threads;
     }
 
-    public void computeTSR(IIndex index) {
+    /**
+     * Set the number of threads used to score the features, 1 by default.
+     * Only the functions computed on the contingency table of a pair (see
+     * {@link TsrContingencyTable#isContingencyFunction(ITsrFunction)}) are
+     * computed in parallel.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public void computeTSR(final IIndex index) {
         TextualProgressBar bar = new TextualProgressBar(
                 "Compute global threshold ("
                         + Os.generateDoubleString(_threshold, 3)
@@ -60,14 +81,38 @@ public class GlobalThresholdTSR implements ITsr {
 
         TIntArrayList toRemove = new TIntArrayList();
 
-        IIntIterator it = index.getFeatureDB().getFeatures();
-        while (it.hasNext()) {
-            int featID = it.next();
+        final boolean contingency = TsrContingencyTable
+                .isContingencyFunction(_function)
+                && index.getCategoryDB().getCategoriesCount() > 0;
+        final TsrContingencyTable table = contingency ? new TsrContingencyTable(
+                index) : null;
 
-            double score = _function.compute((short) 0, featID, index);
-
-            if (score < _threshold)
-                toRemove.add(featID);
+        TIntArrayList feats = new TIntArrayList();
+        IIntIterator it = index.getFeatureDB().getFeatures();
+        while (it.hasNext())
+            feats.add(it.next());
+        final int[] features = feats.toNativeArray();
+        final double[] scores = new double[features.length];
+
+        new TsrParallelLoop() {
+            @Override
+            protected void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    int featID = features[i];
+                    if (contingency)
+                        scores[i] = table.compute(_function, (short) 0,
+                                featID, table.getFeatureCategoryDocumentsCount(
+                                        featID, (short) 0));
+                    else
+                        scores[i] = _function.compute((short) 0, featID,
+                                index);
+                }
+            }
+        }.execute(contingency ? _threads : 1, features.length);
+
+        for (int i = 0; i < features.length; i++) {
+            if (scores[i] < _threshold)
+                toRemove.add(features[i]);
 
             step++;
             bar.signal((step * 100) / total);
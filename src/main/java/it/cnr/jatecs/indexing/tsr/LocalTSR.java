@@ -25,14 +25,13 @@
 package it.cnr.jatecs.indexing.tsr;
 
 import gnu.trove.TIntArrayList;
+import gnu.trove.TShortArrayList;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.utils.TextualProgressBar;
 import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-import java.util.TreeSet;
-
 public class LocalTSR implements ITsr {
 
     protected ITsrFunction _func;
@@ -42,9 +41,12 @@ public class LocalTSR implements ITsr {
 
     protected double _minThreshold;
 
+    protected int _threads;
+
     public LocalTSR(ITsrFunction func) {
         _func = func;
         _numBestFeatureForCategory = 40;
+        _threads = 1;
     }
 
     /**
@@ -74,42 +76,77 @@ public class LocalTSR implements ITsr {
         _numBestFeatureForCategory = numFeatures;
     }
 
-    public void computeTSR(IIndex index) {
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Set the number of threads used to score the categories, 1 by default.
+     * Only the functions computed on the contingency table of a pair (see
+     * {@link TsrContingencyTable#isContingencyFunction(ITsrFunction)}) are
+     * computed in parallel.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        _threads = threads;
+    }
+
+    public void computeTSR(final IIndex index) {
         TextualProgressBar bar = new TextualProgressBar(
                 "Compute local TSR with " + _func.getClass().getName());
         int total = index.getCategoryDB().getCategoriesCount();
         int step = 0;
 
+        final boolean contingency = TsrContingencyTable
+                .isContingencyFunction(_func);
+        final TsrContingencyTable table = contingency ? new TsrContingencyTable(
+                index) : null;
+
+        TShortArrayList cats = new TShortArrayList();
         IShortIterator itCats = index.getCategoryDB().getCategories();
         while (itCats.hasNext()) {
             short catID = itCats.next();
-            if (index.getClassificationDB().getCategoryDocumentsCount(catID) == 0)
-                continue;
-
-            TreeSet<FeatureEntry> best = new TreeSet<FeatureEntry>();
-            TIntArrayList toRemove = new TIntArrayList();
-
-            // For each valid feature in this category compute TEF.
-            IIntIterator itFeats = index.getDomainDB().getCategoryFeatures(
-                    catID);
-            while (itFeats.hasNext()) {
-                int featID = itFeats.next();
-                double tef = _func.compute(catID, featID, index);
-
-                FeatureEntry fe = new FeatureEntry();
-                fe.featureID = featID;
-                fe.score = tef;
-                best.add(fe);
-                if (best.size() > _numBestFeatureForCategory) {
-                    toRemove.add(best.first().featureID);
-                    best.remove(best.first());
-
+            if (index.getClassificationDB().getCategoryDocumentsCount(catID) != 0)
+                cats.add(catID);
+        }
+        final short[] categories = cats.toNativeArray();
+        final TIntArrayList[] toRemove = new TIntArrayList[categories.length];
+
+        new TsrParallelLoop() {
+            @Override
+            protected void run(int from, int to) {
+                TsrTopK best = new TsrTopK(Math.max(0,
+                        _numBestFeatureForCategory));
+                for (int i = from; i < to; i++) {
+                    short catID = categories[i];
+                    best.clear();
+                    toRemove[i] = new TIntArrayList();
+
+                    // For each valid feature in this category compute TEF.
+                    IIntIterator itFeats = index.getDomainDB()
+                            .getCategoryFeatures(catID);
+                    while (itFeats.hasNext()) {
+                        int featID = itFeats.next();
+                        double tef = contingency ? table.compute(_func, catID,
+                                featID, table.getFeatureCategoryDocumentsCount(
+                                        featID, catID))
+                                : _func.compute(catID, featID, index);
+
+                        int worst = best.add(featID, tef);
+                        if (worst >= 0)
+                            toRemove[i].add(worst);
+                    }
                 }
             }
+        }.execute(contingency ? _threads : 1, categories.length);
 
+        for (int i = 0; i < categories.length; i++) {
             // Remove the worst features.
-            index.getDomainDB().removeCategoryFeatures(catID,
-                    new TIntArrayListIterator(toRemove));
+            index.getDomainDB().removeCategoryFeatures(categories[i],
+                    new TIntArrayListIterator(toRemove[i]));
 
             step++;
             bar.signal((step * 100) / total);
@@ -33,7 +33,6 @@ import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -52,12 +51,15 @@ public class RoundRobinTSR implements ITsr {
 	private TIntHashSet _bestFeatsSet;
 	
 	private int _rounds;
+
+	protected int _threads;
 	
 	
 	public RoundRobinTSR(ITsrFunction func)	{
 		_func = func;
 		_numBestFeatures = 2000;
 		_minThreshold = 0.0;
+		_threads = 1;
 		excludedFeaturesPrefixes = new HashSet<String>();
 	}
 
@@ -127,20 +129,34 @@ public class RoundRobinTSR implements ITsr {
 		return _numBestFeatures;
 	}
 	
-	public TreeSet<FeatureEntry> selectBestFeatures(IIndex index){
+	public int getThreads() {
+		return _threads;
+	}
+
+	/**
+	 * Set the number of threads used to score the categories, 1 by default.
+	 * Only the functions computed on the contingency table of a pair (see
+	 * {@link TsrContingencyTable#isContingencyFunction(ITsrFunction)}) are
+	 * computed in parallel.
+	 * 
+	 * @param threads
+	 *            The number of threads.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		_threads = threads;
+	}
+
+	public TreeSet<FeatureEntry> selectBestFeatures(final IIndex index){
 		JatecsLogger.status().println("Start computing Round Robin TSR using "+_func.getClass().getName());
 		TextualProgressBar bar = new TextualProgressBar("Select best features for each category");
 
-		int total = index.getCategoryDB().getCategoriesCount();
-		int step = 0;
-		
 		if(_minThreshold!=0)
 			_numBestFeatures = (int)Math.round((index.getFeatureDB().getFeaturesCount()*_minThreshold));		
 		
-		HashMap<Short, TreeSet<FeatureEntry>> bests = new HashMap<Short, TreeSet<FeatureEntry>>();
-
 		// First compute which features to keep (excluded from TSR process).
-		HashSet<Integer> featuresToKeep = new HashSet<Integer>();
+		final HashSet<Integer> featuresToKeep = new HashSet<Integer>();
 		if (excludedFeaturesPrefixes.size() > 0) {
 			IIntIterator features = index.getFeatureDB().getFeatures();
 			while (features.hasNext()) {
@@ -160,48 +176,58 @@ public class RoundRobinTSR implements ITsr {
 			}
 		}
 
-		IShortIterator itCats = index.getCategoryDB().getCategories();
+		final boolean contingency = TsrContingencyTable.isContingencyFunction(_func);
+		final TsrContingencyTable table = contingency ? new TsrContingencyTable(
+				index) : null;
 
-		while(itCats.hasNext()){
-			short catID = itCats.next();
-			if (index.getClassificationDB().getCategoryDocumentsCount(catID) == 0)
-				continue;
+		final int categoriesCount = index.getCategoryDB().getCategoriesCount();
+		final int[][] bestFeatures = new int[categoriesCount][];
+		final double[][] bestScores = new double[categoriesCount][];
+		final int numBestFeatures = Math.max(0, _numBestFeatures);
 
-			TreeSet<FeatureEntry> best = new TreeSet<FeatureEntry>();
+		new TsrParallelLoop() {
+			@Override
+			protected void run(int from, int to) {
+				TsrTopK best = new TsrTopK(numBestFeatures);
+				for (int i = from; i < to; i++) {
+					short catID = (short) i;
+					if (index.getClassificationDB().getCategoryDocumentsCount(catID) == 0)
+						continue;
 
-			// For each valid feature in this category compute TEF.
-			IIntIterator itFeats = index.getDomainDB().getCategoryFeatures(catID);
-			while(itFeats.hasNext()){
-				int featID = itFeats.next();
+					best.clear();
 
-				// Check if this feature must be excluded from TSR process.
-				if (featuresToKeep.contains(featID))
-					continue;
+					// For each valid feature in this category compute TEF.
+					IIntIterator itFeats = index.getDomainDB().getCategoryFeatures(catID);
+					while(itFeats.hasNext()){
+						int featID = itFeats.next();
+
+						// Check if this feature must be excluded from TSR process.
+						if (featuresToKeep.contains(featID))
+							continue;
 
-				double tef = _func.compute(catID, featID, index);
+						double tef = contingency ? table.compute(_func, catID, featID,
+								table.getFeatureCategoryDocumentsCount(featID, catID))
+								: _func.compute(catID, featID, index);
 
-				assert(!Double.isNaN(tef));				
-				
-				FeatureEntry fe = new FeatureEntry(featID, tef);
-				best.add(fe);
+						assert(!Double.isNaN(tef));
+
+						best.add(featID, tef);
+					}
 
-				if (best.size() > _numBestFeatures){
-					best.remove(best.first());
+					// Sorted from the best to the worst.
+					bestFeatures[i] = new int[best.size()];
+					bestScores[i] = new double[best.size()];
+					best.drainSorted(bestFeatures[i], bestScores[i]);
 				}
-				assert (best.size() <= _numBestFeatures);
 			}
-
-			bests.put(catID, best);			
-			
-			step++;
-			bar.signal((step * 100) / total);
-		}
+		}.execute(contingency ? _threads : 1, categoriesCount);
 
 		bar.signal(100);
 
 		// Select the best _numBestFeatures features in a round robin manner.
 		JatecsLogger.status().print("Selecting best features among categories using round robin...");
 		TreeSet<FeatureEntry> bestFeatEntrySet=new TreeSet<FeatureEntry>();
+		int[] polled = new int[categoriesCount];
 		
 		_rounds=0;
 
@@ -218,16 +244,15 @@ public class RoundRobinTSR implements ITsr {
 						.getCategoryDocumentsCount(catID) == 0)
 					continue;
 
-				TreeSet<FeatureEntry> f = bests.get(catID);
-
-				if (f.size() == 0)
+				if (polled[catID] == bestFeatures[catID].length)
 					continue;
 
 				allEmpty = false;
-				FeatureEntry fe  = f.pollLast();
-				if (!_bestFeatsSet.contains(fe.featureID)){
-					_bestFeatsSet.add(fe.featureID);
-					bestFeatEntrySet.add(fe);
+				int pos = polled[catID]++;
+				int featID = bestFeatures[catID][pos];
+				if (!_bestFeatsSet.contains(featID)){
+					_bestFeatsSet.add(featID);
+					bestFeatEntrySet.add(new FeatureEntry(featID, bestScores[catID][pos]));
 				}
 			}
 			
@@ -0,0 +1,213 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.tsr;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.Arrays;
+
+/**
+ * The number of documents of each category containing each feature,
+ * computed with a single sweep over the postings of the content DB. Only the
+ * non zero counts are stored, sorted by feature and category.
+ * <p>
+ * The table gives the same values of
+ * {@link IIndex#getFeatureCategoryDocumentsCount(int, short)} and is used to
+ * compute the TSR functions which depend only on the 4-cell contingency table
+ * of a (feature, category) pair, see {@link #compute(ITsrFunction, short, int)}.
+ * It is not updated if the content or the classification of the index
+ * change.
+ */
+public class TsrContingencyTable {
+
+    protected IIndex _index;
+    protected int _documentsCount;
+    protected int _categoriesCount;
+    protected int _featuresCount;
+    protected int[] _categoriesDocuments;
+    protected int[] _featuresDocuments;
+    protected int[] _offsets;
+    protected short[] _categories;
+    protected int[] _counts;
+
+    public TsrContingencyTable(IIndex index) {
+        if (index == null)
+            throw new NullPointerException("The specified index is 'null'");
+        _index = index;
+        IContentDB content = index.getContentDB();
+        IClassificationDB classification = index.getClassificationDB();
+        _documentsCount = index.getDocumentDB().getDocumentsCount();
+        _categoriesCount = index.getCategoryDB().getCategoriesCount();
+        _featuresCount = index.getFeatureDB().getFeaturesCount();
+
+        _categoriesDocuments = new int[_categoriesCount];
+        for (short catID = 0; catID < _categoriesCount; catID++)
+            _categoriesDocuments[catID] = classification
+                    .getCategoryDocumentsCount(catID);
+
+        // The categories of each document.
+        int[] docOffsets = new int[_documentsCount + 1];
+        for (int docID = 0; docID < _documentsCount; docID++)
+            docOffsets[docID + 1] = docOffsets[docID]
+                    + classification.getDocumentCategoriesCount(docID);
+        short[] docCategories = new short[docOffsets[_documentsCount]];
+        for (int docID = 0; docID < _documentsCount; docID++) {
+            int pos = docOffsets[docID];
+            IShortIterator it = classification.getDocumentCategories(docID);
+            while (it.hasNext() && pos < docOffsets[docID + 1])
+                docCategories[pos++] = it.next();
+        }
+
+        // Accumulate the counts of each feature in a dense row.
+        int[] row = new int[_categoriesCount];
+        short[] touched = new short[_categoriesCount];
+        _featuresDocuments = new int[_featuresCount];
+        _offsets = new int[_featuresCount + 1];
+        _categories = new short[Math.max(16, _featuresCount)];
+        _counts = new int[_categories.length];
+        int size = 0;
+        for (int featID = 0; featID < _featuresCount; featID++) {
+            int touchedCount = 0;
+            int documents = 0;
+            IIntIterator docs = content.getFeatureDocuments(featID);
+            while (docs.hasNext()) {
+                int docID = docs.next();
+                documents++;
+                if (docID >= _documentsCount)
+                    continue;
+                for (int i = docOffsets[docID]; i < docOffsets[docID + 1]; i++) {
+                    short catID = docCategories[i];
+                    if (row[catID]++ == 0)
+                        touched[touchedCount++] = catID;
+                }
+            }
+            _featuresDocuments[featID] = documents;
+
+            Arrays.sort(touched, 0, touchedCount);
+            if (size + touchedCount > _categories.length) {
+                int capacity = Math.max(size + touchedCount,
+                        _categories.length * 2);
+                _categories = Arrays.copyOf(_categories, capacity);
+                _counts = Arrays.copyOf(_counts, capacity);
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                short catID = touched[i];
+                _categories[size] = catID;
+                _counts[size] = row[catID];
+                row[catID] = 0;
+                size++;
+            }
+            _offsets[featID + 1] = size;
+        }
+        _categories = Arrays.copyOf(_categories, size);
+        _counts = Arrays.copyOf(_counts, size);
+    }
+
+    public IIndex getIndex() {
+        return _index;
+    }
+
+    public int getDocumentsCount() {
+        return _documentsCount;
+    }
+
+    public int getCategoryDocumentsCount(short catID) {
+        return _categoriesDocuments[catID];
+    }
+
+    public int getFeatureDocumentsCount(int featID) {
+        return _featuresDocuments[featID];
+    }
+
+    /**
+     * @return the number of documents of the category containing the feature
+     */
+    public int getFeatureCategoryDocumentsCount(int featID, short catID) {
+        int pos = Arrays.binarySearch(_categories, _offsets[featID],
+                _offsets[featID + 1], catID);
+        return pos >= 0 ? _counts[pos] : 0;
+    }
+
+    /**
+     * Copy in a dense row the number of documents of each category
+     * containing the feature.
+     *
+     * @param featID the feature ID
+     * @param counts the array to fill, indexed by category ID
+     */
+    public void getFeatureCounts(int featID, int[] counts) {
+        Arrays.fill(counts, 0, _categoriesCount, 0);
+        for (int i = _offsets[featID]; i < _offsets[featID + 1]; i++)
+            counts[_categories[i]] = _counts[i];
+    }
+
+    /**
+     * Compute the score of a feature in a category. The functions which
+     * compute the score of a pair only from its contingency table are fed
+     * with the counts of the table, the other ones are computed on the
+     * index. Checking the function has a cost, in loops use
+     * {@link #isContingencyFunction(ITsrFunction)} once and
+     * {@link #compute(ITsrFunction, short, int, int)}.
+     */
+    public double compute(ITsrFunction func, short catID, int featID) {
+        if (!isContingencyFunction(func))
+            return func.compute(catID, featID, _index);
+        return compute(func, catID, featID,
+                getFeatureCategoryDocumentsCount(featID, catID));
+    }
+
+    /**
+     * Compute the score of a pair from its contingency table, with the count
+     * of the pair already known. The function must satisfy
+     * {@link #isContingencyFunction(ITsrFunction)}.
+     */
+    public double compute(ITsrFunction func, short catID, int featID, int tp) {
+        int fp = _featuresDocuments[featID] - tp;
+        int fn = _categoriesDocuments[catID] - tp;
+        int tn = (_documentsCount - _categoriesDocuments[catID]) - fp;
+        return func.compute(tp, fp, fn, tn);
+    }
+
+    /**
+     * @return true if the function computes the score of a pair only from its
+     * contingency table, i.e. it does not redefine the index based
+     * computation of {@link ATsrFunction}
+     */
+    public static boolean isContingencyFunction(ITsrFunction func) {
+        if (!(func instanceof ATsrFunction))
+            return false;
+        try {
+            return func.getClass()
+                    .getMethod("compute", short.class, int.class, IIndex.class)
+                    .getDeclaringClass() == ATsrFunction.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
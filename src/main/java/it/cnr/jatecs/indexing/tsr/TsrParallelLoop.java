@@ -0,0 +1,89 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.tsr;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A loop over the range [0, size) split in chunks run on a fork-join pool.
+ * Each chunk is processed by a single thread, so the buffers allocated by
+ * {@link #run(int, int)} are reused for all the items of the chunk.
+ */
+public abstract class TsrParallelLoop {
+
+    /**
+     * Process the items in [from, to).
+     */
+    protected abstract void run(int from, int to);
+
+    /**
+     * Run the loop with the given number of threads, sequentially in the
+     * calling thread if the number is 1.
+     */
+    public void execute(int threads, int size) {
+        if (size <= 0)
+            return;
+        if (threads <= 1 || size == 1) {
+            run(0, size);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            int grain = Math.max(1, size / (threads * 8));
+            pool.invoke(new RangeTask(this, 0, size, grain));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    protected static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TsrParallelLoop _loop;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+
+        public RangeTask(TsrParallelLoop loop, int from, int to, int grain) {
+            _loop = loop;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _grain) {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new RangeTask(_loop, _from, middle, _grain),
+                        new RangeTask(_loop, middle, _to, _grain));
+                return;
+            }
+            _loop.run(_from, _to);
+        }
+    }
+}
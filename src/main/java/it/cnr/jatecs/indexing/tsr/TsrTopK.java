@@ -0,0 +1,142 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.tsr;
+
+import java.util.Arrays;
+
+/**
+ * Keep the k best features by score with a bounded min-heap of primitives.
+ * Features are ordered as {@link FeatureEntry}, by score and then by feature
+ * ID, so the selected set does not depend on the order of insertion.
+ */
+public class TsrTopK {
+
+    protected int _k;
+    protected int _size;
+    protected int[] _features;
+    protected double[] _scores;
+
+    public TsrTopK(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("The number of features can not be negative");
+        _k = k;
+        _size = 0;
+        _features = new int[Math.max(1, Math.min(k, 1024))];
+        _scores = new double[_features.length];
+    }
+
+    public int getK() {
+        return _k;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Add a feature to the best ones.
+     *
+     * @param featID the feature ID, not negative
+     * @param score  the score of the feature
+     * @return the ID of the feature left out of the best k, the added one or
+     * one previously added, or -1 if no feature has been left out
+     */
+    public int add(int featID, double score) {
+        if (_size < _k) {
+            if (_size == _features.length) {
+                int capacity = (int) Math.min(_k, _features.length * 2L);
+                _features = Arrays.copyOf(_features, capacity);
+                _scores = Arrays.copyOf(_scores, capacity);
+            }
+            int pos = _size++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (compare(_scores[parent], _features[parent], score, featID) <= 0)
+                    break;
+                _features[pos] = _features[parent];
+                _scores[pos] = _scores[parent];
+                pos = parent;
+            }
+            _features[pos] = featID;
+            _scores[pos] = score;
+            return -1;
+        }
+        if (_size == 0 || compare(score, featID, _scores[0], _features[0]) <= 0)
+            return featID;
+        int evicted = _features[0];
+        siftDown(featID, score, _size);
+        return evicted;
+    }
+
+    /**
+     * Empty the heap, moving the best features in the given arrays sorted
+     * from the best to the worst.
+     *
+     * @return the number of features copied
+     */
+    public int drainSorted(int[] features, double[] scores) {
+        int count = _size;
+        while (_size > 0) {
+            int last = --_size;
+            features[last] = _features[0];
+            scores[last] = _scores[0];
+            if (last > 0)
+                siftDown(_features[last], _scores[last], last);
+        }
+        return count;
+    }
+
+    protected void siftDown(int featID, double score, int size) {
+        int pos = 0;
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size
+                    && compare(_scores[right], _features[right],
+                    _scores[child], _features[child]) < 0)
+                child = right;
+            if (compare(score, featID, _scores[child], _features[child]) <= 0)
+                break;
+            _features[pos] = _features[child];
+            _scores[pos] = _scores[child];
+            pos = child;
+        }
+        _features[pos] = featID;
+        _scores[pos] = score;
+    }
+
+    protected static int compare(double score1, int feat1, double score2,
+                                 int feat2) {
+        int cmp = Double.compare(score1, score2);
+        if (cmp == 0)
+            cmp = feat1 < feat2 ? -1 : (feat1 == feat2 ? 0 : 1);
+        return cmp;
+    }
+}
@@ -27,7 +27,6 @@ package it.cnr.jatecs.quantification;
 import gnu.trove.TShortDoubleHashMap;
 import it.cnr.jatecs.classification.ClassificationMode;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
 import it.cnr.jatecs.classification.interfaces.IClassifierRuntimeCustomizer;
 import it.cnr.jatecs.classification.module.Classifier;
@@ -36,8 +35,6 @@ import it.cnr.jatecs.quantification.interfaces.IQuantifier;
 import it.cnr.jatecs.quantification.interfaces.IScalingFunction;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-import java.util.Hashtable;
-
 public class PAQuantifier implements IQuantifier {
 
     private IClassifier classifier;
@@ -88,10 +85,8 @@ public class PAQuantifier implements IQuantifier {
             int nDocument = 0;
 
             while (document < confidences.getDocumentCount()) {
-                Hashtable<Short, ClassifierRangeWithScore> docScores = confidences
-                        .getDocumentScoresAsHashtable(document);
-                double scaledScore = scalingFunction.scale(docScores
-                        .get(category).score);
+                double scaledScore = scalingFunction.scale(confidences
+                        .getScore(document, category));
                 ;
                 pp += scaledScore;
                 ++document;
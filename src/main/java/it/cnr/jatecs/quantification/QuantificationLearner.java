@@ -30,7 +30,6 @@ import gnu.trove.TShortDoubleHashMap;
 import gnu.trove.TShortObjectHashMap;
 import it.cnr.jatecs.classification.ClassificationMode;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.classification.interfaces.*;
 import it.cnr.jatecs.classification.validator.SimpleKFoldEvaluator;
 import it.cnr.jatecs.evaluation.ContingencyTable;
@@ -45,7 +44,6 @@ import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Hashtable;
 
 public class QuantificationLearner {
 
@@ -277,10 +275,8 @@ public class QuantificationLearner {
             int pDocument = 0;
             int nDocument = 0;
             while (document < confidences.getDocumentCount()) {
-                Hashtable<Short, ClassifierRangeWithScore> docScores = confidences
-                        .getDocumentScoresAsHashtable(document);
-                double scaledScore = scalingFunction.scale(docScores
-                        .get(category).score);
+                double scaledScore = scalingFunction.scale(confidences
+                        .getScore(document, category));
                 if (trueClassification.hasDocumentCategory(document, category)) {
                     ppp += scaledScore;
                     ++pDocument;
@@ -316,12 +312,10 @@ public class QuantificationLearner {
 
         int document = 0;
         while (document < confidences.getDocumentCount()) {
-            Hashtable<Short, ClassifierRangeWithScore> docScores = confidences
-                    .getDocumentScoresAsHashtable(document);
             categories.begin();
             while (categories.hasNext()) {
                 short category = categories.next();
-                double score = docScores.get(category).score;
+                double score = confidences.getScore(document, category);
                 scores.get(category).add(score);
             }
             ++document;
@@ -340,9 +334,7 @@ public class QuantificationLearner {
                 int fn = 0;
                 document = 0;
                 while (document < confidences.getDocumentCount()) {
-                    Hashtable<Short, ClassifierRangeWithScore> docScores = confidences
-                            .getDocumentScoresAsHashtable(document);
-                    double score = docScores.get(category).score;
+                    double score = confidences.getScore(document, category);
                     if (trueClassification.hasDocumentCategory(document,
                             category)) {
                         if (score > currThreshold) {
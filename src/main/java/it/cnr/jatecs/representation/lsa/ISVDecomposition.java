@@ -0,0 +1,60 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.lsa;
+
+import Jama.Matrix;
+
+/**
+ * A truncated Singular Value Decomposition A = U S V' of the
+ * term-by-document matrix of an index.
+ * */
+public interface ISVDecomposition {
+
+	/**
+	 * @return the terms x rank matrix U
+	 * */
+	public Matrix getU();
+
+	/**
+	 * @return the rank x terms matrix U'
+	 * */
+	public Matrix getU_t();
+
+	/**
+	 * @return the rank x rank diagonal matrix of the singular values, sorted
+	 * in decreasing order
+	 * */
+	public Matrix getS();
+
+	/**
+	 * @return the rank x documents matrix V'
+	 * */
+	public Matrix getVt();
+
+	/**
+	 * @return the number of singular values computed
+	 * */
+	public int getRank();
+}
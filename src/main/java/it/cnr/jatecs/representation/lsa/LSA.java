@@ -25,18 +25,14 @@
 package it.cnr.jatecs.representation.lsa;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 
 import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveContentDBBuilder;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
 import it.cnr.jatecs.representation.randomprojections.IProjectionMethod;
-import it.cnr.jatecs.representation.vector.SparseMatrix;
-import it.cnr.jatecs.representation.vector.SparseMatrix.XY;
+import it.cnr.jatecs.representation.vector.CompressedMatrix;
+import it.cnr.jatecs.representation.vector.CompressedMatrixBuilder;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.iterators.IntArrayIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
@@ -44,7 +40,9 @@ import Jama.Matrix;
 
 /**
  * Implementation of Latent Semantic Analysis, wrapping the SVDlibc software
- * (which might be obtained externally from {@code https://tedlab.mit.edu/~dr/SVDLIBC/}).
+ * (which might be obtained externally from {@code https://tedlab.mit.edu/~dr/SVDLIBC/})
+ * or computing the decomposition in process with {@link TruncatedSVD}, see
+ * {@link SVDlibcCustomizer}.
  * For an overview, see e.g., {@code Deerwester, S., Dumais, S. T., Furnas, G. W., Landauer, 
  * T. K., & Harshman, R. (1990). Indexing by latent semantic analysis. Journal of the American 
  * society for information science, 41(6), 391.}
@@ -73,7 +71,7 @@ public class LSA implements IProjectionMethod{
 		
 		try {
 			JatecsLogger.status().println("Start singular value decomposition");
-			SVDlibc SVD = new SVDlibc(_index, _customizer);
+			ISVDecomposition SVD = _customizer.decompose(_index);
 			Ut=SVD.getU_t();
 			S=SVD.getS();
 			Vt=SVD.getVt();
@@ -109,7 +107,7 @@ public class LSA implements IProjectionMethod{
 		}
 
 		JatecsLogger.status().println("Start generating Latent Testing Index");
-		SparseMatrix testlatent = transformIndex(testindex);
+		CompressedMatrix testlatent = transformIndex(testindex);
 		Matrix testlatentDense = timesDenseSparse(Ut, testlatent);
 
 		JatecsLogger.status().println("\tcreating Jatecs Index");
@@ -117,32 +115,24 @@ public class LSA implements IProjectionMethod{
 		return latentTesting;
 	}
 	
-	private Matrix timesDenseSparse(Matrix D, SparseMatrix S) {		
+	private Matrix timesDenseSparse(Matrix D, CompressedMatrix S) {		
 		if(D.getColumnDimension()!=S.getRowsDimension()){
 			System.err.println("Dimensions must agree: exit"); System.exit(0);
 		}
 		int f=D.getRowDimension();
 		int c=S.getColumnDimensions();
-		
-		List<Set<Integer>> colsNonZeroDims=new ArrayList<Set<Integer>>();
-		for(int i = 0; i < c; i++)
-			colsNonZeroDims.add(new HashSet<Integer>());
-		for(XY xy:S.getNonZeroPositions()){
-			int col=xy.y;
-			int dim=xy.x;
-			colsNonZeroDims.get(col).add(dim);
-		}
+		double[][] d=D.getArray();
 		
 		JatecsLogger.status().println("Creating a "+f+"x"+c+" matrix...");
 		Matrix R=new Matrix(f, c);
+		double[][] r=R.getArray();
 		
-		for(int i=0; i < f; i ++){
-			for(int j = 0; j < c; j++){
-				double dot=0;
-				for(int k:colsNonZeroDims.get(j)){
-					dot+=D.get(i, k)*S.get(k, j);
-				}
-				R.set(i, j, dot);
+		for(int j = 0; j < c; j++){
+			for(int pos = S.getColumnStart(j); pos < S.getColumnEnd(j); pos++){
+				int k=S.getRowAt(pos);
+				double v=S.getColumnValueAt(pos);
+				for(int i=0; i < f; i ++)
+					r[i][j]+=d[i][k]*v;
 			}
 		}
 		
@@ -188,26 +178,26 @@ public class LSA implements IProjectionMethod{
 		return _computed;
 	}
 	
-	private SparseMatrix transformIndex(IIndex index) {		
+	private CompressedMatrix transformIndex(IIndex index) {		
 		int d = index.getDocumentDB().getDocumentsCount();
 		int t = index.getFeatureDB().getFeaturesCount();
 
 		// term x documents matrix
-		SparseMatrix matrix=new SparseMatrix(t, d);		
+		CompressedMatrixBuilder matrix=new CompressedMatrixBuilder(t, d);		
 
 		IIntIterator docit = index.getDocumentDB().getDocuments();
 		for (int col=0; docit.hasNext();col++) {
 			int doc = docit.next();
 
-			IIntIterator featit = index.getFeatureDB().getFeatures();
-			for (int fil=0; featit.hasNext(); fil++) {
+			IIntIterator featit = index.getContentDB().getDocumentFeatures(doc);
+			while (featit.hasNext()) {
 				int feat = featit.next();
 				double w = index.getWeightingDB().getDocumentFeatureWeight(doc, feat);
-				matrix.set(fil, col, w);
+				matrix.set(feat, col, w);
 			}
 		}
 
-		return matrix;
+		return matrix.getMatrix();
 	}
 
 	
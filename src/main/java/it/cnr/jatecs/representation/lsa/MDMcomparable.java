@@ -102,9 +102,9 @@ public class MDMcomparable implements IProjectionMethod{
 	private Matrix generateMDM(){
 		JatecsLogger.status().println("Start Multilingual Domain Model (MDM) generation");		
 		
-		SVDlibc SVD=null;
+		ISVDecomposition SVD=null;
 		try {
-			SVD = new SVDlibc(_index, _customizer);
+			SVD = _customizer.decompose(_index);
 		} catch (IOException e) {
 			JatecsLogger.execution().println("Error calling svdlibc.");
 			e.printStackTrace();
@@ -46,7 +46,7 @@ import Jama.Matrix;
  * Wrapper of the SVDlibc software (publicly available in {@code https://tedlab.mit.edu/~dr/SVDLIBC/}.
  * Computes the matrix factorization according to Singular Value Decomposition.
  * */
-public class SVDlibc {
+public class SVDlibc implements ISVDecomposition {
 	
 	private int _k;
 	private Matrix Ut;
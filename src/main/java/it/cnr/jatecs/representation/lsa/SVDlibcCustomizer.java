@@ -24,22 +24,63 @@
 
 package it.cnr.jatecs.representation.lsa;
 
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import java.io.IOException;
 
 /**
- * Configuration for the SVDlibc wrapper.
- * See {@code https://tedlab.mit.edu/~dr/SVDLIBC/}
+ * Configuration for the Singular Value Decomposition: the SVDlibc wrapper
+ * (see {@code https://tedlab.mit.edu/~dr/SVDLIBC/}) when the path of the
+ * executable is given, the in-process {@link TruncatedSVD} otherwise.
  * */
 public class SVDlibcCustomizer {
 	private String _SVDlibcPath = "";
 	private int _k;
 	private boolean _useFrequencies;
 	private boolean _verbose;
+	private int _oversampling;
+	private int _powerIterations;
+	private int _threads;
+	private long _seed;
 	
 	public SVDlibcCustomizer(String SVDlibcPath, int k){
 		_SVDlibcPath=SVDlibcPath;
 		_k=k;
 		_useFrequencies=false;
 		_verbose=true;
+		_oversampling=10;
+		_powerIterations=2;
+		_threads=Runtime.getRuntime().availableProcessors();
+		_seed=0;
+	}
+
+	/**
+	 * Configuration for the in-process {@link TruncatedSVD}.
+	 * @param k the number of singular values to compute
+	 * */
+	public SVDlibcCustomizer(int k){
+		this(null, k);
+	}
+
+	/**
+	 * @return true if the decomposition is computed in process, i.e. no
+	 * SVDlibc executable is set
+	 * */
+	public boolean isNativeSVD(){
+		return _SVDlibcPath==null || _SVDlibcPath.isEmpty();
+	}
+
+	/**
+	 * Computes the decomposition of the term-by-document matrix of the index
+	 * with the configured method.
+	 * @param index the index
+	 * @return the decomposition
+	 * */
+	public ISVDecomposition decompose(IIndex index) throws IOException{
+		if(isNativeSVD())
+			return new TruncatedSVD(index, this);
+		else
+			return new SVDlibc(index, this);
 	}
 
 	public String getSVDlibcPath() {
@@ -82,4 +123,58 @@ public class SVDlibcCustomizer {
 		return !_useFrequencies;
 	}
 
+	public int getOversampling() {
+		return _oversampling;
+	}
+
+	/**
+	 * Sets the number of random vectors added to the rank in the native SVD,
+	 * 10 by default.
+	 * */
+	public void setOversampling(int oversampling) {
+		if(oversampling<0)
+			throw new IllegalArgumentException("The oversampling can not be negative");
+		_oversampling = oversampling;
+	}
+
+	public int getPowerIterations() {
+		return _powerIterations;
+	}
+
+	/**
+	 * Sets the number of power iterations of the native SVD, 2 by default.
+	 * More iterations give more accurate singular vectors when the
+	 * singular values decay slowly.
+	 * */
+	public void setPowerIterations(int powerIterations) {
+		if(powerIterations<0)
+			throw new IllegalArgumentException("The number of power iterations can not be negative");
+		_powerIterations = powerIterations;
+	}
+
+	public int getThreads() {
+		return _threads;
+	}
+
+	/**
+	 * Sets the number of threads of the native SVD, by default the number of
+	 * available processors.
+	 * */
+	public void setThreads(int threads) {
+		if(threads<1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		_threads = threads;
+	}
+
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * Sets the seed of the random test matrix of the native SVD.
+	 * */
+	public void setSeed(long seed) {
+		_seed = seed;
+	}
+
 }
@@ -0,0 +1,284 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.lsa;
+
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.utils.JatecsLogger;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import Jama.Matrix;
+import Jama.QRDecomposition;
+import Jama.SingularValueDecomposition;
+
+/**
+ * In-process randomized truncated Singular Value Decomposition of the
+ * term-by-document matrix of an index, as described in {@code Halko, N.,
+ * Martinsson, P. G., & Tropp, J. A. (2011). Finding structure with
+ * randomness: Probabilistic algorithms for constructing approximate matrix
+ * decompositions. SIAM review, 53(2), 217-288.}
+ * The sparse matrix is read from the content (or weighting) DB and kept in
+ * compressed row form, by terms and by documents, so that the sparse-dense
+ * products are computed in parallel over the rows. The dense factorizations
+ * are done by Jama on matrices with (rank + oversampling) columns.
+ * */
+public class TruncatedSVD implements ISVDecomposition {
+
+	private int _k;
+	private Matrix Ut;
+	private Matrix S;
+	private Matrix Vt;
+	private SVDlibcCustomizer _customizer;
+
+	private int _terms;
+	private int _documents;
+	private int[] _termOffsets;
+	private int[] _termDocuments;
+	private double[] _termValues;
+	private int[] _documentOffsets;
+	private int[] _documentTerms;
+	private double[] _documentValues;
+
+	public TruncatedSVD(IIndex index, SVDlibcCustomizer customizer) {
+		if (index == null)
+			throw new NullPointerException("The specified index is 'null'");
+		if (customizer == null)
+			throw new NullPointerException("The specified customizer is 'null'");
+		_customizer = customizer;
+		_k = _customizer.getK();
+		loadMatrix(index, _customizer.isUseFrequencies());
+		SVD();
+	}
+
+	public Matrix getU(){
+		return Ut.transpose();
+	}
+
+	public Matrix getU_t(){
+		return Ut;
+	}
+
+	public Matrix getS(){
+		return S;
+	}
+
+	public Matrix getVt(){
+		return Vt;
+	}
+
+	public int getRank(){
+		return _k;
+	}
+
+	private void loadMatrix(IIndex index, boolean useFrequencies) {
+		sout("Loading the term-by-document matrix");
+		_terms = index.getFeatureDB().getFeaturesCount();
+		_documents = index.getDocumentDB().getDocumentsCount();
+
+		_termOffsets = new int[_terms + 1];
+		for (int t = 0; t < _terms; t++)
+			_termOffsets[t + 1] = _termOffsets[t] + index.getContentDB().getFeatureDocumentsCount(t);
+		int nonZeros = _termOffsets[_terms];
+		_termDocuments = new int[nonZeros];
+		_termValues = new double[nonZeros];
+		int[] documentCounts = new int[_documents + 1];
+		for (int t = 0; t < _terms; t++) {
+			int pos = _termOffsets[t];
+			IIntIterator docit = index.getContentDB().getFeatureDocuments(t);
+			while (docit.hasNext() && pos < _termOffsets[t + 1]) {
+				int doc = docit.next();
+				_termDocuments[pos] = doc;
+				_termValues[pos] = useFrequencies ? index.getContentDB().getDocumentFeatureFrequency(doc, t)
+						: index.getWeightingDB().getDocumentFeatureWeight(doc, t);
+				documentCounts[doc + 1]++;
+				pos++;
+			}
+		}
+
+		// Transposed copy, by documents.
+		_documentOffsets = new int[_documents + 1];
+		for (int d = 0; d < _documents; d++)
+			_documentOffsets[d + 1] = _documentOffsets[d] + documentCounts[d + 1];
+		int[] next = new int[_documents];
+		System.arraycopy(_documentOffsets, 0, next, 0, _documents);
+		_documentTerms = new int[nonZeros];
+		_documentValues = new double[nonZeros];
+		for (int t = 0; t < _terms; t++) {
+			for (int pos = _termOffsets[t]; pos < _termOffsets[t + 1]; pos++) {
+				int p = next[_termDocuments[pos]]++;
+				_documentTerms[p] = t;
+				_documentValues[p] = _termValues[pos];
+			}
+		}
+		sout("Matrix " + _terms + " x " + _documents + " with " + nonZeros + " non zero values");
+	}
+
+	private void SVD() {
+		sout("Start processing Singular Value Decomposition");
+		int l = Math.min(_k + _customizer.getOversampling(), Math.min(_terms, _documents));
+		if (l <= 0) {
+			_k = 0;
+			Ut = new Matrix(0, _terms);
+			S = new Matrix(0, 0);
+			Vt = new Matrix(0, _documents);
+			return;
+		}
+
+		int threads = _customizer.getThreads();
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		try {
+			// Random gaussian test matrix, documents x l.
+			Random random = new Random(_customizer.getSeed());
+			double[][] omega = new double[_documents][l];
+			for (int d = 0; d < _documents; d++)
+				for (int c = 0; c < l; c++)
+					omega[d][c] = random.nextGaussian();
+
+			// Range of A, terms x l.
+			sout("Computing the range of the matrix");
+			Matrix Q = orthonormalize(times(pool, omega, l));
+			for (int i = 0; i < _customizer.getPowerIterations(); i++) {
+				sout("Power iteration " + (i + 1));
+				Matrix Z = orthonormalize(transposeTimes(pool, Q.getArray(), l));
+				Q = orthonormalize(times(pool, Z.getArray(), l));
+			}
+
+			// B' = A' Q, documents x l, and its SVD B' = W Sigma X'.
+			sout("Decomposing the projected matrix");
+			Matrix Bt = transposeTimes(pool, Q.getArray(), l);
+			SingularValueDecomposition svd = new SingularValueDecomposition(Bt);
+			double[] sigma = svd.getSingularValues();
+
+			// A ~ Q B = (Q X) Sigma W'.
+			int rank = Math.min(_k, l);
+			double tolerance = sigma.length > 0 ? sigma[0] * 1e-12 : 0;
+			while (rank > 0 && sigma[rank - 1] <= tolerance)
+				rank--;
+			_k = rank;
+
+			Matrix U = Q.times(svd.getV().getMatrix(0, l - 1, 0, rank - 1));
+			Ut = U.transpose();
+			Vt = svd.getU().getMatrix(0, _documents - 1, 0, rank - 1).transpose();
+			S = new Matrix(rank, rank, 0.0);
+			for (int i = 0; i < rank; i++)
+				S.set(i, i, sigma[i]);
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+		sout("[done.]");
+	}
+
+	private static Matrix orthonormalize(Matrix m) {
+		return new QRDecomposition(m).getQ();
+	}
+
+	/**
+	 * @return A x, with x of size documents x l
+	 * */
+	private Matrix times(ForkJoinPool pool, double[][] x, int l) {
+		double[][] result = new double[_terms][l];
+		multiply(pool, new MultiplyTask(_termOffsets, _termDocuments, _termValues, x, result, 0, _terms));
+		return new Matrix(result, _terms, l);
+	}
+
+	/**
+	 * @return A' y, with y of size terms x l
+	 * */
+	private Matrix transposeTimes(ForkJoinPool pool, double[][] y, int l) {
+		double[][] result = new double[_documents][l];
+		multiply(pool, new MultiplyTask(_documentOffsets, _documentTerms, _documentValues, y, result, 0, _documents));
+		return new Matrix(result, _documents, l);
+	}
+
+	private static void multiply(ForkJoinPool pool, MultiplyTask task) {
+		if (pool != null)
+			pool.invoke(task);
+		else
+			task.multiply(task._from, task._to);
+	}
+
+	/**
+	 * Product of a compressed sparse matrix and a dense matrix, split over
+	 * the rows of the sparse one.
+	 * */
+	protected static class MultiplyTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final int GRAIN = 256;
+
+		private final int[] _offsets;
+		private final int[] _columns;
+		private final double[] _values;
+		private final double[][] _dense;
+		private final double[][] _result;
+		private final int _from;
+		private final int _to;
+
+		public MultiplyTask(int[] offsets, int[] columns, double[] values,
+				double[][] dense, double[][] result, int from, int to) {
+			_offsets = offsets;
+			_columns = columns;
+			_values = values;
+			_dense = dense;
+			_result = result;
+			_from = from;
+			_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from > GRAIN) {
+				int middle = (_from + _to) >>> 1;
+				invokeAll(new MultiplyTask(_offsets, _columns, _values, _dense, _result, _from, middle),
+						new MultiplyTask(_offsets, _columns, _values, _dense, _result, middle, _to));
+				return;
+			}
+			multiply(_from, _to);
+		}
+
+		protected void multiply(int from, int to) {
+			for (int r = from; r < to; r++) {
+				double[] row = _result[r];
+				for (int pos = _offsets[r]; pos < _offsets[r + 1]; pos++) {
+					double v = _values[pos];
+					double[] dense = _dense[_columns[pos]];
+					for (int c = 0; c < row.length; c++)
+						row[c] += v * dense[c];
+				}
+			}
+		}
+	}
+
+	private void sout(String msg){
+		if(_customizer.isVerbose()){
+			JatecsLogger.status().println(msg);
+		}
+	}
+}
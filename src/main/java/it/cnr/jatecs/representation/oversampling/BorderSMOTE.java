@@ -13,7 +13,11 @@ public class BorderSMOTE extends SMOTE{
 	private int _k;
 
 	public BorderSMOTE(IIndex index, int k, short catid) {
-		super(index, k, catid);
+		this(index, k, catid, 1);
+	}
+	
+	public BorderSMOTE(IIndex index, int k, short catid, int threads) {
+		super(index, k, catid, threads);
 		_k=k;
 		searchDangerSet();
 	}
@@ -0,0 +1,317 @@
+package it.cnr.jatecs.representation.oversampling;
+
+import it.cnr.jatecs.classification.knn.KnnTopKHeap;
+import it.cnr.jatecs.classification.knn.SimilarDocument;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.DocumentVectors;
+import it.cnr.jatecs.indexing.similarity.EuclideanSquareDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the k nearest neighbours, by squared euclidean distance, of a set of
+ * documents among all the documents of an index. It is the search backend
+ * shared by the SMOTE-based samplers.
+ *
+ * The distance between q and d is computed as |q|^2 + |d|^2 - 2 q.d, with
+ * the norms precomputed and the dot products accumulated through a
+ * feature to (document, weight) table, so only the documents sharing a
+ * feature with q are scored. The documents sharing no feature with q are at
+ * distance |q|^2 + |d|^2, and are visited in increasing order of norm only
+ * while they can still enter the k nearest. The queries are split in shards
+ * which are processed in parallel, each thread keeping its own primitive
+ * accumulators and top-k heap.
+ *
+ * The distances returned are the ones of {@link EuclideanSquareDistance}.
+ */
+public class EuclideanKnnSearcher {
+
+	private static final int SHARD_SIZE=64;
+
+	private int _threads;
+
+	public EuclideanKnnSearcher(){
+		_threads=1;
+	}
+
+	public int getThreads() {
+		return _threads;
+	}
+
+	public void setThreads(int threads) {
+		if(threads <= 0)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		_threads=threads;
+	}
+
+	/**
+	 * Search the nearest neighbours of each query document, nearest first.
+	 *
+	 * @param index the index
+	 * @param queries the IDs of the query documents
+	 * @param k the number of neighbours, reduced to the number of documents
+	 * minus one if greater
+	 * @return the neighbours of each query document, with their squared
+	 * euclidean distance as score
+	 */
+	public HashMap<Integer, List<SimilarDocument>> search(IIndex index, List<Integer> queries, int k) {
+		if(queries==null)
+			throw new NullPointerException("The specified queries are 'null'");
+		int[] queriesArray=new int[queries.size()];
+		for(int i = 0; i < queriesArray.length; i++)
+			queriesArray[i]=queries.get(i);
+
+		Neighbours neighbours=search(index, queriesArray, k);
+		HashMap<Integer, List<SimilarDocument>> result=new HashMap<>();
+		for(int i = 0; i < queriesArray.length; i++){
+			List<SimilarDocument> list=new ArrayList<SimilarDocument>(neighbours.k);
+			for(int j = i*neighbours.k; j < (i+1)*neighbours.k; j++)
+				list.add(new SimilarDocument(neighbours.documents[j], neighbours.distances[j]));
+			result.put(queriesArray[i], list);
+		}
+		return result;
+	}
+
+	/**
+	 * Search the nearest neighbours of each query document, nearest first.
+	 *
+	 * @param index the index
+	 * @param queries the IDs of the query documents
+	 * @param k the number of neighbours, reduced to the number of documents
+	 * minus one if greater
+	 * @return the rows of neighbours, in the order of the queries
+	 */
+	public Neighbours search(IIndex index, int[] queries, int k) {
+		if(index==null)
+			throw new NullPointerException("The specified index is 'null'");
+		if(queries==null)
+			throw new NullPointerException("The specified queries are 'null'");
+		if(k <= 0)
+			throw new IllegalArgumentException("The number of neighbours must be positive");
+
+		final Postings postings=new Postings(index, k);
+		Neighbours neighbours=new Neighbours(queries.length, postings.k);
+		if(queries.length==0 || postings.k==0)
+			return neighbours;
+
+		ThreadLocal<Worker> workers=new ThreadLocal<Worker>(){
+			@Override
+			protected Worker initialValue() {
+				return new Worker(postings);
+			}
+		};
+		int shards=(queries.length+SHARD_SIZE-1)/SHARD_SIZE;
+		ForkJoinPool pool=new ForkJoinPool(Math.min(_threads, shards));
+		try{
+			pool.invoke(new ShardsTask(workers, queries, neighbours, 0, shards));
+		}
+		finally{
+			pool.shutdown();
+		}
+		return neighbours;
+	}
+
+	/**
+	 * The neighbours of a list of queries, in rows of k documents sorted by
+	 * increasing distance.
+	 */
+	public static class Neighbours {
+		public final int k;
+		public final int[] documents;
+		public final double[] distances;
+
+		Neighbours(int queries, int k){
+			this.k=k;
+			this.documents=new int[queries*k];
+			this.distances=new double[queries*k];
+		}
+	}
+
+	/**
+	 * The packed vectors of an index, with the table of their features and
+	 * the documents sorted by norm.
+	 */
+	private static class Postings {
+		final DocumentVectors vectors;
+		final int k;
+		final int[] offsets;
+		final int[] documents;
+		final double[] weights;
+		final int[] byNorm;
+
+		Postings(IIndex index, int neighbours){
+			vectors=DocumentVectors.get(index);
+			int nD=vectors.getDocumentsCount();
+			k=Math.min(neighbours, Math.max(0, nD-1));
+			int[] features=vectors.getFeatures();
+			double[] docWeights=vectors.getWeights();
+
+			int nF=index.getFeatureDB().getFeaturesCount();
+			for(int i = 0; i < features.length; i++)
+				nF=Math.max(nF, features[i]+1);
+			offsets=new int[nF+1];
+			for(int i = 0; i < features.length; i++)
+				offsets[features[i]+1]++;
+			for(int f = 0; f < nF; f++)
+				offsets[f+1]+=offsets[f];
+			documents=new int[features.length];
+			weights=new double[features.length];
+			int[] next=Arrays.copyOf(offsets, nF);
+			for(int doc = 0; doc < nD; doc++){
+				int end=vectors.getEnd(doc);
+				for(int i = vectors.getStart(doc); i < end; i++){
+					int pos=next[features[i]]++;
+					documents[pos]=doc;
+					weights[pos]=docWeights[i];
+				}
+			}
+
+			//sort the documents by norm, with the smallest IDs first on ties
+			double[] norms=new double[nD];
+			for(int doc = 0; doc < nD; doc++)
+				norms[doc]=vectors.getSquaredNorm(doc);
+			Integer[] sorted=new Integer[nD];
+			for(int doc = 0; doc < nD; doc++)
+				sorted[doc]=doc;
+			Arrays.sort(sorted, new NormComparator(norms));
+			byNorm=new int[nD];
+			for(int i = 0; i < nD; i++)
+				byNorm[i]=sorted[i];
+		}
+	}
+
+	private static class NormComparator implements Comparator<Integer> {
+		private final double[] _norms;
+
+		NormComparator(double[] norms){
+			_norms=norms;
+		}
+
+		@Override
+		public int compare(Integer d1, Integer d2) {
+			int cmp=Double.compare(_norms[d1], _norms[d2]);
+			if(cmp==0)
+				cmp=Integer.compare(d1, d2);
+			return cmp;
+		}
+	}
+
+	/**
+	 * The buffers used by a thread.
+	 */
+	private static class Worker {
+		private final Postings _postings;
+		private final double[] _dots;
+		private final int[] _stamps;
+		private int _stamp;
+		private final int[] _touched;
+		private final KnnTopKHeap _heap;
+		private final int[] _heapDocs;
+		private final double[] _heapScores;
+
+		Worker(Postings postings){
+			_postings=postings;
+			int nD=postings.vectors.getDocumentsCount();
+			_dots=new double[nD];
+			_stamps=new int[nD];
+			_touched=new int[nD];
+			_heap=new KnnTopKHeap(postings.k);
+			_heapDocs=new int[postings.k];
+			_heapScores=new double[postings.k];
+		}
+
+		void search(int query, Neighbours neighbours, int row) {
+			DocumentVectors vectors=_postings.vectors;
+			int[] features=vectors.getFeatures();
+			double[] weights=vectors.getWeights();
+			int[] offsets=_postings.offsets;
+
+			if(++_stamp==0){
+				Arrays.fill(_stamps, 0);
+				_stamp=1;
+			}
+			int touched=0;
+			int queryEnd=vectors.getEnd(query);
+			for(int i = vectors.getStart(query); i < queryEnd; i++){
+				double weight=weights[i];
+				int end=offsets[features[i]+1];
+				for(int p = offsets[features[i]]; p < end; p++){
+					int doc=_postings.documents[p];
+					if(_stamps[doc]!=_stamp){
+						_stamps[doc]=_stamp;
+						_dots[doc]=0;
+						_touched[touched++]=doc;
+					}
+					_dots[doc]+=weight*_postings.weights[p];
+				}
+			}
+
+			//the heap keeps the highest scores, so it is fed with the opposite of the distances
+			KnnTopKHeap heap=_heap;
+			heap.clear(_postings.k);
+			double queryNorm=vectors.getSquaredNorm(query);
+			for(int i = 0; i < touched; i++){
+				int doc=_touched[i];
+				if(doc==query) continue;
+				double distance=queryNorm+vectors.getSquaredNorm(doc)-2*_dots[doc];
+				heap.offer(doc, -Math.max(distance, 0));
+			}
+
+			//the documents sharing no feature, closest first
+			for(int doc : _postings.byNorm){
+				double distance=queryNorm+vectors.getSquaredNorm(doc);
+				if(heap.isFull() && -distance < heap.minScore())
+					break;
+				if(doc!=query && _stamps[doc]!=_stamp)
+					heap.offer(doc, -distance);
+			}
+
+			int count=heap.drainAscending(_heapDocs, _heapScores);
+			int offset=row*_postings.k;
+			for(int i = 0; i < count; i++){
+				int doc=_heapDocs[count-1-i];
+				neighbours.documents[offset+i]=doc;
+				neighbours.distances[offset+i]=vectors.squaredDistance(query, vectors, doc);
+			}
+		}
+	}
+
+	private static class ShardsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ThreadLocal<Worker> _workers;
+		private final int[] _queries;
+		private final Neighbours _neighbours;
+		private final int _from;
+		private final int _to;
+
+		ShardsTask(ThreadLocal<Worker> workers, int[] queries, Neighbours neighbours, int from, int to){
+			_workers=workers;
+			_queries=queries;
+			_neighbours=neighbours;
+			_from=from;
+			_to=to;
+		}
+
+		@Override
+		protected void compute() {
+			if(_to-_from > 1){
+				int middle=(_from+_to)>>>1;
+				invokeAll(new ShardsTask(_workers, _queries, _neighbours, _from, middle),
+						new ShardsTask(_workers, _queries, _neighbours, middle, _to));
+				return;
+			}
+			Worker worker=_workers.get();
+			int end=Math.min(_queries.length, (_from+1)*SHARD_SIZE);
+			for(int row = _from*SHARD_SIZE; row < end; row++)
+				worker.search(_queries[row], _neighbours, row);
+		}
+	}
+}
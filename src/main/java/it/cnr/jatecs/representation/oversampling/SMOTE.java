@@ -1,12 +1,8 @@
 package it.cnr.jatecs.representation.oversampling;
 
 import it.cnr.jatecs.classification.knn.SimilarDocument;
-import it.cnr.jatecs.classification.knn.TextualKnnSearcherCached;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexes.utils.DocSet;
-import it.cnr.jatecs.indexing.similarity.EuclideanSquareDistance;
-import it.cnr.jatecs.representation.vector.IndexVectorizer;
-import it.cnr.jatecs.representation.vector.SparseMatrix;
 import it.cnr.jatecs.representation.vector.SparseVector;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
@@ -15,8 +11,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
-import java.util.TreeSet;
 
 public class SMOTE extends AbstractBaselineDocSampler{
 	
@@ -25,102 +19,39 @@ public class SMOTE extends AbstractBaselineDocSampler{
 	private Random _rand;
 
 	public SMOTE(IIndex index, int k, short catid) {
+		this(index, k, catid, 1);
+	}
+	
+	public SMOTE(IIndex index, int k, short catid, int threads) {
 		init(index, catid);		
 		_rand=new Random();
-		_nearest_neigbours=computeNN(_index, DocSet.genCatDocset(_index, catid), k);
+		_nearest_neigbours=computeNN(_index, DocSet.genCatDocset(_index, catid), k, threads);
 	}	
 	
 	protected static HashMap<Integer, List<SimilarDocument>> computeNN(IIndex index, DocSet forDocuments, int k) {
-		HashMap<Integer, List<SimilarDocument>> nearest_neigbours=new HashMap<>();
-		List<Integer> doclist=forDocuments.asList();
-		
-		int progress=0;
-		int totalsteps=doclist.size();
-		JatecsLogger.status().println("Knn for " + totalsteps + " documents: ");
-		
-		TextualKnnSearcherCached knn=new TextualKnnSearcherCached(new EuclideanSquareDistance());
-		
-		for(int docID_i : doclist){
-			List<SimilarDocument> neigbours=knn.search(index, docID_i, k);
-			nearest_neigbours.put(docID_i,neigbours);
-			
-			if(progress++%(Math.max(totalsteps/10,1))==0)
-				JatecsLogger.status().print("..."+(progress*100/totalsteps)+"%");
-		}
-		JatecsLogger.status().println("");
-		
-		knn.clear();
+		return computeNN(index, forDocuments, k, 1);
+	}
+	
+	protected static HashMap<Integer, List<SimilarDocument>> computeNN(IIndex index, DocSet forDocuments, int k, int threads) {
+		JatecsLogger.status().println("Knn for " + forDocuments.size() + " documents");
 		
-		return nearest_neigbours;
+		EuclideanKnnSearcher knn=new EuclideanKnnSearcher();
+		knn.setThreads(threads);
+		return knn.search(index, forDocuments.asList(), k);
 	}
 	
 	protected static HashMap<Integer, List<DocSim>> computeNNfaster(IIndex index, DocSet forDocuments, int k) {
-		int nD=index.getDocumentDB().getDocumentsCount();
-		SparseMatrix _distcache=new SparseMatrix(nD, nD);
-		
 		HashMap<Integer, List<DocSim>> nearest_neigbours=new HashMap<>();
-		
-		List<Integer> alldocuments=DocSet.genDocset(index.getDocumentDB()).asList();
-		
-		IndexVectorizer docvectorizer = new IndexVectorizer(index);
-		HashMap<Integer, SparseVector> docVector = new HashMap<>();
-		for(int docid:alldocuments){
-			docVector.put(docid, docvectorizer.getDocumentWeights(docid));
+		HashMap<Integer, List<SimilarDocument>> neighbours=computeNN(index, forDocuments, k);
+		for(int docID_i : neighbours.keySet()){
+			List<DocSim> docsims=new ArrayList<DocSim>();
+			for(SimilarDocument neighbour : neighbours.get(docID_i))
+				docsims.add(new DocSim(neighbour.docID, neighbour.score));
+			nearest_neigbours.put(docID_i, docsims);
 		}
-		
-		List<Integer> doclist=forDocuments.asList();
-		int progress=0;
-		int totalsteps=doclist.size();
-		JatecsLogger.status().println("Knn for " + totalsteps + " documents: ");
-		for(int docID_i : doclist){
-			TreeSet<DocSim> neighbours = new TreeSet<DocSim>();
-			
-			double distThreshold = Double.MAX_VALUE;
-			SparseVector docvec_i=docVector.get(docID_i);
-			
-			for(int docID_j : alldocuments){
-				if(docID_i==docID_j) continue;
-				
-				double distance = _distcache.get(Math.min(docID_i, docID_j), Math.max(docID_i, docID_j));
-				if(distance==0){				
-					distance = euclideanSquaredDistanceThresholded(docvec_i, docVector.get(docID_j), distThreshold);
-					_distcache.set(Math.min(docID_i, docID_j), Math.max(docID_i, docID_j), distance);
-				}
-					
-				neighbours.add(new DocSim(docID_j, distance));
-				if(neighbours.size()>k){
-					neighbours.pollLast();
-					distThreshold = Math.min(neighbours.last().distance, distThreshold);
-				}
-			}
-
-			nearest_neigbours.put(docID_i, new ArrayList<DocSim>(neighbours));
-			
-			if(progress++%(Math.max(totalsteps/10,1))==0)
-				JatecsLogger.status().print("..."+(progress*100/totalsteps)+"%");
-		}
-		JatecsLogger.status().println("");
-		
 		return nearest_neigbours;
 	}
 	
-	
-
-	
-	private static double euclideanSquaredDistanceThresholded(SparseVector v1, SparseVector v2, double threshold){				
-		double dist = 0.0;
-		Set<Integer> dims = SparseVector.getNonZeroDimensions(v1, v2);
-	    for(int dim:dims){
-			double diff = (v1.get(dim) - v2.get(dim));
-			dist += (diff*diff);
-			if(dist >= threshold)
-				return Double.MAX_VALUE;
-		}
-		return dist;
-	}
-	
-	
-
 	@Override
 	protected void positiveSampleDoc(int docID, GenericIndexBuilderRows indexbuilder){
 		String oldName=_index.getDocumentDB().getDocumentName(docID);
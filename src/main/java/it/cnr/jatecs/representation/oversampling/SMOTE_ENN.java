@@ -13,8 +13,15 @@ import it.cnr.jatecs.utils.iterators.IntArrayIterator;
 
 public class SMOTE_ENN extends SMOTE{
 
+	private int _threads;
+
 	public SMOTE_ENN(IIndex index, int k, short catid) {
-		super(index, k, catid);		
+		this(index, k, catid, 1);
+	}
+	
+	public SMOTE_ENN(IIndex index, int k, short catid, int threads) {
+		super(index, k, catid, threads);
+		_threads=threads;
 	}
 
 	@Override
@@ -24,14 +31,18 @@ public class SMOTE_ENN extends SMOTE{
 		super.clear();
 		
 		//removes all misclassified documents according to a 3-NN check
-		removeMisclassifiedKnn(3, resampled, _uniqueCatID);
+		removeMisclassifiedKnn(3, resampled, _uniqueCatID, _threads);
 		
 		return resampled;		
 	}
 
 	public static void removeMisclassifiedKnn(int k, IIndex resampled, short uniqueCatID) {
+		removeMisclassifiedKnn(k, resampled, uniqueCatID, 1);
+	}
+	
+	public static void removeMisclassifiedKnn(int k, IIndex resampled, short uniqueCatID, int threads) {
 		DocSet documentIDs=DocSet.genDocset(resampled.getDocumentDB());
-		HashMap<Integer, List<SimilarDocument>> neigbours = computeNN(resampled, documentIDs, k);
+		HashMap<Integer, List<SimilarDocument>> neigbours = computeNN(resampled, documentIDs, k, threads);
 		
 		List<Integer> misclassified=new ArrayList<Integer>();
 		
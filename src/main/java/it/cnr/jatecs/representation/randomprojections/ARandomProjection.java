@@ -29,16 +29,23 @@ import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveContentDBBuilder;
 import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
 import it.cnr.jatecs.representation.vector.AVector;
+import it.cnr.jatecs.representation.vector.CompressedMatrix;
+import it.cnr.jatecs.representation.vector.CompressedMatrixBuilder;
 import it.cnr.jatecs.representation.vector.DenseMatrix;
+import it.cnr.jatecs.representation.vector.DenseVector;
 import it.cnr.jatecs.representation.vector.IMatrix;
 import it.cnr.jatecs.representation.vector.IMatrix.MATRIX_MODE;
-import it.cnr.jatecs.representation.vector.SparseMatrix;
+import it.cnr.jatecs.representation.vector.LongSparseMatrix;
 import it.cnr.jatecs.representation.vector.SparseVector;
 import it.cnr.jatecs.utils.JatecsLogger;
 import it.cnr.jatecs.utils.iterators.IntArrayIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public abstract class ARandomProjection implements IProjectionMethod{
 	protected IIndex _index;
@@ -48,6 +55,9 @@ public abstract class ARandomProjection implements IProjectionMethod{
 	protected HashMap<Integer, AVector> _randomIndexes;
 	protected IMatrix matrix;
 	private MATRIX_MODE matrix_mode=MATRIX_MODE.DENSE_MATRIX;
+	protected long _seed;
+	protected boolean _streaming;
+	protected int _threads;
 
 	public ARandomProjection(IIndex index, int dim) {
 		_index = index;
@@ -56,13 +66,55 @@ public abstract class ARandomProjection implements IProjectionMethod{
 		_latentTraining = null;
 		_randomIndexes = new HashMap<Integer, AVector>();
 		matrix=null;
+		_seed = new Random().nextLong();
+		_streaming = false;
+		_threads = Runtime.getRuntime().availableProcessors();
 	}
 
 	public void setMatrixMode(MATRIX_MODE newMode){
 		matrix_mode=newMode;
 	}
 	
+	/**
+	 * Sets the seed of the hash from which the random index vectors are
+	 * generated, by default a random one. The same seed gives the same
+	 * projection in both the streaming and the matrix modes.
+	 * @param seed the seed
+	 * */
+	public void setRandomSeed(long seed){
+		_seed = seed;
+	}
+
+	/**
+	 * In streaming mode no random index vector nor latent matrix is stored:
+	 * the index vectors are generated from a seeded hash and each index is
+	 * projected in a single pass, in parallel shards of documents, directly
+	 * into the content and weighting DBs of the latent index. Test indexes
+	 * are projected in the same way, without keeping the training matrix
+	 * resident.
+	 * @param streaming true to enable the streaming mode
+	 * */
+	public void setStreaming(boolean streaming){
+		_streaming = streaming;
+	}
+
+	/**
+	 * Sets the number of threads used in streaming mode, by default the
+	 * number of available processors.
+	 * @param threads the number of threads
+	 * */
+	public void setThreads(int threads){
+		if(threads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		_threads = threads;
+	}
+
 	public void project() {
+		if (_streaming) {
+			_computed = true;
+			return;
+		}
+
 		initIndexes();
 		
 		switch(matrix_mode){
@@ -71,7 +123,7 @@ public abstract class ARandomProjection implements IProjectionMethod{
 				break;
 			case SPARSE_MATRIX:
 			default:
-				matrix = new SparseMatrix(_index.getDocumentDB().getDocumentsCount(), _dim); 
+				matrix = new LongSparseMatrix(_index.getDocumentDB().getDocumentsCount(), _dim); 
 				break;
 		}		
 		
@@ -80,7 +132,87 @@ public abstract class ARandomProjection implements IProjectionMethod{
 		_computed = true;
 	}
 
-	protected abstract void initIndexes();	
+	/**
+	 * Generates the random index vectors of all the features of the index.
+	 * */
+	protected void initIndexes() {
+		if (_randomIndexes.isEmpty()) {
+			prepareIndexes();
+			int[] dims = new int[getIndexNonZeros()];
+			double[] values = new double[dims.length];
+			IIntIterator featit = _index.getFeatureDB().getFeatures();
+			while (featit.hasNext()) {
+				int feat = featit.next();
+				int nonZeros = generateIndex(feat, dims, values);
+				AVector index = dims.length >= _dim ? new DenseVector(_dim) : new SparseVector(_dim);
+				for (int i = 0; i < nonZeros; i++)
+					index.set(dims[i], values[i]);
+				_randomIndexes.put(feat, index);
+			}
+		}
+	}
+
+	/**
+	 * Called before the generation of random index vectors, to compute the
+	 * data they depend on.
+	 * */
+	protected void prepareIndexes() {
+	}
+
+	/**
+	 * @return the maximum number of non zero values of a random index vector
+	 * */
+	protected abstract int getIndexNonZeros();
+
+	/**
+	 * Generates the random index vector of a feature from the seed, it must
+	 * be safe to call from several threads.
+	 * @param feat the feature
+	 * @param dims the array filled with the non zero dimensions, all distinct
+	 * @param values the array filled with the non zero values
+	 * @return the number of non zero values
+	 * */
+	protected abstract int generateIndex(int feat, int[] dims, double[] values);
+
+	/**
+	 * @return a hash of the seed, a feature and a counter
+	 * */
+	protected long hash(int feat, int counter) {
+		long h = _seed + 0x9e3779b97f4a7c15L * (((long) feat << 32) ^ (counter & 0xffffffffL));
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * @return a value uniformly distributed in [0,1) from a hash
+	 * */
+	protected static double uniform(long hash) {
+		return (hash >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Fills the non zero dimensions from position start with distinct random
+	 * dimensions, with a random sign.
+	 * @return the number of non zero values
+	 * */
+	protected int generateSparseIndex(int feat, int start, int nonZeros, double nonZeroValue, int[] dims, double[] values) {
+		int changes = start;
+		int counter = 0;
+		while (changes < nonZeros) {
+			long h = hash(feat, counter++);
+			int dim = (int) ((h >>> 1) % _dim);
+			boolean used = false;
+			for (int i = 0; i < changes && !used; i++)
+				used = dims[i] == dim;
+			if (!used) {
+				dims[changes] = dim;
+				values[changes] = (h & 1) == 0 ? nonZeroValue : -nonZeroValue;
+				changes++;
+			}
+		}
+		return changes;
+	}
 
 	protected void generateLatentMatrix(IIndex index, IMatrix mat) {
 		JatecsLogger.execution().println("Start generating latent matrix");
@@ -106,7 +238,20 @@ public abstract class ARandomProjection implements IProjectionMethod{
 	}
 
 	protected void addIndex(IMatrix mat, int doc, AVector vect, double times) {
-		if (vect instanceof SparseVector) {
+		if (mat instanceof LongSparseMatrix) {
+			LongSparseMatrix sparse = (LongSparseMatrix) mat;
+			if (vect instanceof SparseVector) {
+				SparseVector v = (SparseVector) vect;
+				int[] nonZeroDimensions = v.getNonZeroDimensions();
+				for (int nonZeroDim : nonZeroDimensions)
+					sparse.add(doc, nonZeroDim, v.get(nonZeroDim) * times);
+			}
+			else{
+				for(int i = 0; i < vect.size(); i++)
+					sparse.add(doc, i, vect.get(i) * times);
+			}
+		}
+		else if (vect instanceof SparseVector) {
 			SparseVector v = (SparseVector) vect;
 			int[] nonZeroDimensions = v.getNonZeroDimensions();
 			for (int nonZeroDim : nonZeroDimensions) {
@@ -131,6 +276,10 @@ public abstract class ARandomProjection implements IProjectionMethod{
 			return _latentTraining;
 
 		JatecsLogger.status().println("Start generating Latent Training Index");
+		if (_streaming) {
+			_latentTraining = projectIndex(_index);
+			return _latentTraining;
+		}
 		_latentTraining = buildIndexFromMatrix(matrix, _index);
 		matrix=null;
 		
@@ -143,12 +292,15 @@ public abstract class ARandomProjection implements IProjectionMethod{
 		}
 
 		JatecsLogger.status().println("Start generating Latent Testing Index");
+		if (_streaming)
+			return projectIndex(testindex);
+
 		IMatrix testmatrix=null;
 		if(matrix_mode==MATRIX_MODE.DENSE_MATRIX){
 			testmatrix = new DenseMatrix(testindex.getDocumentDB().getDocumentsCount(), _dim);
 		}
 		else{
-			testmatrix = new SparseMatrix(testindex.getDocumentDB().getDocumentsCount(), _dim);
+			testmatrix = new LongSparseMatrix(testindex.getDocumentDB().getDocumentsCount(), _dim);
 		}
 		generateLatentMatrix(testindex, testmatrix);
 
@@ -156,8 +308,149 @@ public abstract class ARandomProjection implements IProjectionMethod{
 		return latentTesting;
 	}
 
-	private IIndex buildIndexFromMatrix(IMatrix latent, IIndex origIndex) {
+	/**
+	 * Projects an index in a single pass, see {@link #setStreaming(boolean)}.
+	 * */
+	protected IIndex projectIndex(final IIndex origIndex) {
+		prepareIndexes();
+
+		IIndex latentIndex = cloneLatentIndex(origIndex);
+		TroveContentDBBuilder content = new TroveContentDBBuilder(
+				latentIndex.getDocumentDB(), latentIndex.getFeatureDB());
+		TroveWeightingDBBuilder weighting = new TroveWeightingDBBuilder(
+				content.getContentDB());
 
+		int documents = origIndex.getDocumentDB().getDocumentsCount();
+		int block = Math.min(documents, 1024 * _threads);
+		int[][] rowDims = new int[block][];
+		double[][] rowValues = new double[block][];
+		ForkJoinPool pool = _threads > 1 ? new ForkJoinPool(_threads) : null;
+		try {
+			for (int start = 0; start < documents; start += block) {
+				int count = Math.min(block, documents - start);
+				ProjectTask task = new ProjectTask(this, origIndex, start, 0, count,
+						Math.max(1, count / (_threads * 8)), rowDims, rowValues);
+				if (pool != null)
+					pool.invoke(task);
+				else
+					task.project(0, count);
+
+				for (int i = 0; i < count; i++) {
+					int d = start + i;
+					int[] dims = rowDims[i];
+					double[] values = rowValues[i];
+					for (int j = 0; j < dims.length; j++) {
+						content.setDocumentFeatureFrequency(d, dims[j], 1);
+						weighting.setDocumentFeatureWeight(d, dims[j], values[j]);
+					}
+					rowDims[i] = null;
+					rowValues[i] = null;
+				}
+			}
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+
+		return new GenericIndex("Lantent index",
+				latentIndex.getFeatureDB(), latentIndex.getDocumentDB(),
+				latentIndex.getCategoryDB(), latentIndex.getDomainDB(),
+				content.getContentDB(), weighting.getWeightingDB(),
+				latentIndex.getClassificationDB());
+	}
+
+	protected static class ProjectTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ARandomProjection _projection;
+		private final IIndex _index;
+		private final int _offset;
+		private final int _from;
+		private final int _to;
+		private final int _grain;
+		private final int[][] _rowDims;
+		private final double[][] _rowValues;
+
+		public ProjectTask(ARandomProjection projection, IIndex index, int offset,
+				int from, int to, int grain, int[][] rowDims, double[][] rowValues) {
+			_projection = projection;
+			_index = index;
+			_offset = offset;
+			_from = from;
+			_to = to;
+			_grain = grain;
+			_rowDims = rowDims;
+			_rowValues = rowValues;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from > _grain) {
+				int middle = (_from + _to) >>> 1;
+				invokeAll(new ProjectTask(_projection, _index, _offset, _from, middle,
+						_grain, _rowDims, _rowValues),
+						new ProjectTask(_projection, _index, _offset, middle, _to,
+								_grain, _rowDims, _rowValues));
+				return;
+			}
+			project(_from, _to);
+		}
+
+		/**
+		 * Projects the documents of the shard, with buffers reused for all
+		 * of them.
+		 * */
+		protected void project(int from, int to) {
+			int dim = _projection._dim;
+			double[] row = new double[dim];
+			int[] touched = new int[dim];
+			boolean[] used = new boolean[dim];
+			int[] dims = new int[_projection.getIndexNonZeros()];
+			double[] values = new double[dims.length];
+			for (int i = from; i < to; i++) {
+				int doc = _offset + i;
+				int touchedCount = 0;
+				IIntIterator featdocit = _index.getContentDB().getDocumentFeatures(doc);
+				while (featdocit.hasNext()) {
+					int feat = featdocit.next();
+					double weight = _index.getWeightingDB().getDocumentFeatureWeight(doc, feat);
+					int nonZeros = _projection.generateIndex(feat, dims, values);
+					for (int j = 0; j < nonZeros; j++) {
+						int l = dims[j];
+						if (!used[l]) {
+							used[l] = true;
+							touched[touchedCount++] = l;
+						}
+						row[l] = row[l] + (values[j] * weight);
+					}
+				}
+
+				Arrays.sort(touched, 0, touchedCount);
+				int size = 0;
+				for (int j = 0; j < touchedCount; j++)
+					if (row[touched[j]] != 0)
+						size++;
+				int[] rowDims = new int[size];
+				double[] rowValues = new double[size];
+				size = 0;
+				for (int j = 0; j < touchedCount; j++) {
+					int l = touched[j];
+					if (row[l] != 0) {
+						rowDims[size] = l;
+						rowValues[size] = row[l];
+						size++;
+					}
+					row[l] = 0;
+					used[l] = false;
+				}
+				_rowDims[i] = rowDims;
+				_rowValues[i] = rowValues;
+			}
+		}
+	}
+
+	private IIndex cloneLatentIndex(IIndex origIndex) {
 		IIndex latentIndex = origIndex.cloneIndex();
 
 		// remove exceeding features
@@ -169,6 +462,12 @@ public abstract class ARandomProjection implements IProjectionMethod{
 				toRemove[i] = i;
 			latentIndex.getFeatureDB().removeFeatures(new IntArrayIterator(toRemove));
 		}
+		return latentIndex;
+	}
+
+	private IIndex buildIndexFromMatrix(IMatrix latent, IIndex origIndex) {
+
+		IIndex latentIndex = cloneLatentIndex(origIndex);
 
 		// modify feature names to "lantent_i" pseudo-names
 		// to do
@@ -182,13 +481,25 @@ public abstract class ARandomProjection implements IProjectionMethod{
 				content.getContentDB());
 		int documents = origIndex.getDocumentDB().getDocumentsCount();
 		int lantentFeats = _dim;
-		for (int l = 0; l < lantentFeats; l++) {// latent features
+		if (latent instanceof LongSparseMatrix) {
+			CompressedMatrix compressed = CompressedMatrixBuilder.compress(latent);
 			for (int d = 0; d < documents; d++) {// documents
-				//double weight = latent[d][l];
-				double weight = latent.get(d, l);
-				if(weight!=0){
+				for (int pos = compressed.getRowStart(d); pos < compressed.getRowEnd(d); pos++) {
+					int l = compressed.getColumnAt(pos);// latent features
 					content.setDocumentFeatureFrequency(d, l, 1);
-					weighting.setDocumentFeatureWeight(d, l, weight);
+					weighting.setDocumentFeatureWeight(d, l, compressed.getValueAt(pos));
+				}
+			}
+		}
+		else {
+			for (int l = 0; l < lantentFeats; l++) {// latent features
+				for (int d = 0; d < documents; d++) {// documents
+					//double weight = latent[d][l];
+					double weight = latent.get(d, l);
+					if(weight!=0){
+						content.setDocumentFeatureFrequency(d, l, 1);
+						weighting.setDocumentFeatureWeight(d, l, weight);
+					}
 				}
 			}
 		}
@@ -25,11 +25,7 @@
 package it.cnr.jatecs.representation.randomprojections;
 
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
-import it.cnr.jatecs.representation.vector.DenseVector;
 import it.cnr.jatecs.utils.JatecsLogger;
-import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
-
-import java.util.Random;
 
 /**
  * Implementation of the Achlioptas random mapping, with ternary distribution.
@@ -45,31 +41,36 @@ public class AchlioptasIndexing extends ARandomProjection {
 		super(index, k);		
 	}
 
+	@Override
 	protected void initIndexes() {
 		JatecsLogger.status().println("Start Achlioptas Indexing generation");
-		if (_randomIndexes.isEmpty()) {
-			// generate random indexes
-			Random r=new Random();
-			IIntIterator featit = _index.getFeatureDB().getFeatures();			
-			while (featit.hasNext()) {
-				int feat = featit.next();
-				DenseVector newindex = new DenseVector(_dim);
-				for(int i = 0; i < _dim; i++){
-					double rand = r.nextDouble();
-					// Sqrt(3) times ...
-					// +1 with prob 1/6
-					// 0 with prob 2/3
-					// -1 with prob 1/6
-					if(rand < 1.0/6.0)
-						newindex.set(i, sqrt_3);
-					else if(rand > 5.0/6.0)
-						newindex.set(i, -sqrt_3);
-					else 
-						newindex.set(i, 0);
-				}				
-				_randomIndexes.put(feat, newindex);
+		super.initIndexes();
+	}
+
+	@Override
+	protected int getIndexNonZeros() {
+		return _dim;
+	}
+
+	@Override
+	protected int generateIndex(int feat, int[] dims, double[] values) {
+		int nonZeros = 0;
+		for(int i = 0; i < _dim; i++){
+			double rand = uniform(hash(feat, i));
+			// Sqrt(3) times ...
+			// +1 with prob 1/6
+			// 0 with prob 2/3
+			// -1 with prob 1/6
+			if(rand < 1.0/6.0){
+				dims[nonZeros] = i;
+				values[nonZeros++] = sqrt_3;
+			}
+			else if(rand > 5.0/6.0){
+				dims[nonZeros] = i;
+				values[nonZeros++] = -sqrt_3;
 			}
 		}
+		return nonZeros;
 	}
 
 }
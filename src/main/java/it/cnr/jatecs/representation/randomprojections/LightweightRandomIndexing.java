@@ -48,6 +48,7 @@ public class LightweightRandomIndexing extends ARandomProjection{
 	private Random rand;
 	private static final int _nonZeros=2;// number of non zeros to be added
 	private IDocumentLanguageDB _docLangDB;
+	private HashSet<Integer> _common;
 
 	public LightweightRandomIndexing(IMultilingualIndex index, int dim) {
 		super(index,dim);
@@ -56,32 +57,42 @@ public class LightweightRandomIndexing extends ARandomProjection{
 		_docLangDB=index.getDocumentLanguageDB();
 	}
 	
+	@Override
 	public void setRandomSeed(long seed){
+		super.setRandomSeed(seed);
 		rand=new Random(seed);
 	}
 
 	@Override
 	protected void initIndexes() {
 		JatecsLogger.status().println("Start Random Indexing generation");
-		if (_randomIndexes.isEmpty()) {
-			
-			HashSet<Integer> common = getCommonTerms(_docLangDB);
-			JatecsLogger.status().println("Common terms = " + common.size());
-			
-			// generate random indexes
-			int basedim=0;
-			IIntIterator featit = _index.getFeatureDB().getFeatures();
-			while (featit.hasNext()) {
-				int feat = featit.next();
-				if(common.contains(feat)){
-					_randomIndexes.put(feat, generateCommonIndex(_dim, 1.0, basedim));
-				}
-				else{
-					_randomIndexes.put(feat, generateRandomIndex(_dim, _nonZeros, basedim));
-				}
-				basedim = (basedim+1)%_dim;
-			}
+		super.initIndexes();
+	}
+
+	@Override
+	protected void prepareIndexes() {
+		if (_common == null) {
+			_common = getCommonTerms(_docLangDB);
+			JatecsLogger.status().println("Common terms = " + _common.size());
+		}
+	}
+
+	@Override
+	protected int getIndexNonZeros() {
+		return Math.min(_nonZeros, _dim);
+	}
+
+	@Override
+	protected int generateIndex(int feat, int[] dims, double[] values) {
+		// the base dimension cycles over the latent dimensions
+		int basedim = feat % _dim;
+		dims[0] = basedim;
+		if(_common.contains(feat)){
+			values[0] = 1.0*_nonZeros;
+			return 1;
 		}
+		values[0] = (hash(feat, -1) & 1) == 0 ? _nonZeros : -_nonZeros;
+		return generateSparseIndex(feat, 1, getIndexNonZeros(), _nonZeros, dims, values);
 	}
 	
 	
@@ -137,11 +148,6 @@ public class LightweightRandomIndexing extends ARandomProjection{
 		return index;
 	}
 	
-	private static SparseVector generateCommonIndex(int n, double nonZeroValue, int basedim) {
-		SparseVector index = new SparseVector(n);		
-		index.set(basedim, nonZeroValue*_nonZeros);
-		return index;
-	}
 
 }
 
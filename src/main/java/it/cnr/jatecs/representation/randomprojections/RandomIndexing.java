@@ -24,11 +24,8 @@
 
 package it.cnr.jatecs.representation.randomprojections;
 
-import java.util.Random;
 import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
-import it.cnr.jatecs.representation.vector.SparseVector;
 import it.cnr.jatecs.utils.JatecsLogger;
-import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 
 /**
  * Implementation of the Random Indexing method. See e.g., 
@@ -54,32 +51,17 @@ public class RandomIndexing extends ARandomProjection{
 	@Override
 	protected void initIndexes() {
 		JatecsLogger.status().println("Start Random Indexing generation");
-		if (_randomIndexes.isEmpty()) {
-			// generate random indexes
-			IIntIterator featit = _index.getFeatureDB().getFeatures();
-			while (featit.hasNext()) {
-				int feat = featit.next();
-				_randomIndexes.put(feat, generateRandomIndex(_dim, _nonZeros));
-			}
-		}
+		super.initIndexes();
 	}
-	
-	private static SparseVector generateRandomIndex(int k, int nonZeros) {
-		return generateRandomIndex(k, nonZeros, 1);
+
+	@Override
+	protected int getIndexNonZeros() {
+		return Math.min(_nonZeros, _dim);
 	}
 
-	private static SparseVector generateRandomIndex(int k, int nonZeros, double nonZeroValue) {
-		SparseVector index = new SparseVector(k);
-		int changes = 0;
-		Random R = new Random();
-		while (changes < nonZeros) {
-			int dim = R.nextInt(k);
-			if (index.get(dim) == 0) {
-				index.set(dim, R.nextDouble() < 0.5 ? nonZeroValue : -nonZeroValue);
-				changes++;
-			}
-		}
-		return index;
+	@Override
+	protected int generateIndex(int feat, int[] dims, double[] values) {
+		return generateSparseIndex(feat, 0, getIndexNonZeros(), 1, dims, values);
 	}
 
 }
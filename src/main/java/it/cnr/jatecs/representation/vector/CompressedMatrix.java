@@ -0,0 +1,191 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.vector;
+
+import java.util.Arrays;
+
+/**
+ * Implements an immutable sparse matrix in compressed sparse row (CSR) form,
+ * with a compressed sparse column (CSC) copy built on the first column
+ * access. The non zero entries of a row are sorted by column, the ones of a
+ * column by row, and are read by position:
+ * <pre>
+ * for (int pos = m.getRowStart(row); pos &lt; m.getRowEnd(row); pos++)
+ *     use(m.getColumnAt(pos), m.getValueAt(pos));
+ * </pre>
+ * Instances are built by {@link CompressedMatrixBuilder}.
+ * */
+public class CompressedMatrix implements IMatrix{
+
+	private int _rows;
+	private int _cols;
+	private int[] _rowOffsets;
+	private int[] _columns;
+	private double[] _values;
+	private volatile int[] _columnOffsets;
+	private int[] _columnRows;
+	private double[] _columnValues;
+
+	/**
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 * @param rowOffsets the start of each row in the entries, followed by the
+	 * number of entries
+	 * @param columns the column of each entry, sorted in each row
+	 * @param values the value of each entry
+	 * */
+	CompressedMatrix(int rows, int cols, int[] rowOffsets, int[] columns, double[] values){
+		_rows=rows;
+		_cols=cols;
+		_rowOffsets=rowOffsets;
+		_columns=columns;
+		_values=values;
+	}
+
+	public int getRowsDimension() {
+		return _rows;
+	}
+
+	public int getColumnDimensions() {
+		return _cols;
+	}
+
+	/**
+	 * @return the number of non zero entries of the matrix
+	 * */
+	public int getNonZeroCount(){
+		return _values.length;
+	}
+
+	public void set(int x, int y, double v) {
+		throw new UnsupportedOperationException(
+				"The compressed matrix is read-only, use a CompressedMatrixBuilder to modify it");
+	}
+
+	public double get(int x, int y) {
+		if(x<0||y<0||x>=_rows||y>=_cols)
+			throw new NullPointerException("Out of range!");
+		int pos=Arrays.binarySearch(_columns, _rowOffsets[x], _rowOffsets[x+1], y);
+		return pos>=0 ? _values[pos] : 0;
+	}
+
+	/**
+	 * @return the position of the first entry of the row
+	 * */
+	public int getRowStart(int row){
+		return _rowOffsets[row];
+	}
+
+	/**
+	 * @return the position following the last entry of the row
+	 * */
+	public int getRowEnd(int row){
+		return _rowOffsets[row+1];
+	}
+
+	/**
+	 * @return the column of the entry at the given row position
+	 * */
+	public int getColumnAt(int pos){
+		return _columns[pos];
+	}
+
+	/**
+	 * @return the value of the entry at the given row position
+	 * */
+	public double getValueAt(int pos){
+		return _values[pos];
+	}
+
+	/**
+	 * @return the position of the first entry of the column
+	 * */
+	public int getColumnStart(int col){
+		buildColumns();
+		return _columnOffsets[col];
+	}
+
+	/**
+	 * @return the position following the last entry of the column
+	 * */
+	public int getColumnEnd(int col){
+		buildColumns();
+		return _columnOffsets[col+1];
+	}
+
+	/**
+	 * @return the row of the entry at the given column position
+	 * */
+	public int getRowAt(int pos){
+		return _columnRows[pos];
+	}
+
+	/**
+	 * @return the value of the entry at the given column position
+	 * */
+	public double getColumnValueAt(int pos){
+		return _columnValues[pos];
+	}
+
+	/**
+	 * @return the transposed matrix, sharing the arrays of the column form
+	 * */
+	public CompressedMatrix transpose(){
+		buildColumns();
+		CompressedMatrix t=new CompressedMatrix(_cols, _rows, _columnOffsets, _columnRows, _columnValues);
+		t._columnOffsets=_rowOffsets;
+		t._columnRows=_columns;
+		t._columnValues=_values;
+		return t;
+	}
+
+	private void buildColumns(){
+		if(_columnOffsets==null)
+			buildColumnsOnce();
+	}
+
+	private synchronized void buildColumnsOnce(){
+		if(_columnOffsets!=null)
+			return;
+		int[] offsets=new int[_cols+1];
+		for(int i=0; i<_columns.length; i++)
+			offsets[_columns[i]+1]++;
+		for(int c=0; c<_cols; c++)
+			offsets[c+1]+=offsets[c];
+		int[] next=Arrays.copyOf(offsets, _cols);
+		int[] rows=new int[_columns.length];
+		double[] values=new double[_columns.length];
+		for(int r=0; r<_rows; r++){
+			for(int pos=_rowOffsets[r]; pos<_rowOffsets[r+1]; pos++){
+				int p=next[_columns[pos]]++;
+				rows[p]=r;
+				values[p]=_values[pos];
+			}
+		}
+		_columnRows=rows;
+		_columnValues=values;
+		_columnOffsets=offsets;
+	}
+}
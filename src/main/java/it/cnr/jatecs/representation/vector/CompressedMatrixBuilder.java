@@ -0,0 +1,127 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.vector;
+
+/**
+ * Builds a {@link CompressedMatrix} by random access on a
+ * {@link LongSparseMatrix}, and converts matrices between the two forms.
+ * */
+public class CompressedMatrixBuilder {
+
+	private LongSparseMatrix _matrix;
+
+	public CompressedMatrixBuilder(int rows, int cols){
+		_matrix=new LongSparseMatrix(rows, cols);
+	}
+
+	/**
+	 * @param matrix the matrix to build on, modified by the builder
+	 * */
+	public CompressedMatrixBuilder(LongSparseMatrix matrix){
+		if(matrix==null)
+			throw new NullPointerException("The specified matrix is 'null'");
+		_matrix=matrix;
+	}
+
+	public void set(int x, int y, double v){
+		_matrix.set(x, y, v);
+	}
+
+	public double add(int x, int y, double v){
+		return _matrix.add(x, y, v);
+	}
+
+	public double get(int x, int y){
+		return _matrix.get(x, y);
+	}
+
+	public LongSparseMatrix getSparseMatrix(){
+		return _matrix;
+	}
+
+	/**
+	 * @return the compressed copy of the matrix built so far
+	 * */
+	public CompressedMatrix getMatrix(){
+		int rows=_matrix.getRowsDimension();
+		int cols=_matrix.getColumnDimensions();
+		long[] keys=_matrix.getSortedKeys();
+		int[] rowOffsets=new int[rows+1];
+		int[] columns=new int[keys.length];
+		double[] values=new double[keys.length];
+		for(int i=0; i<keys.length; i++){
+			long key=keys[i];
+			rowOffsets[(int)(key/cols)+1]++;
+			columns[i]=(int)(key%cols);
+			values[i]=_matrix.getByKey(key);
+		}
+		for(int r=0; r<rows; r++)
+			rowOffsets[r+1]+=rowOffsets[r];
+		return new CompressedMatrix(rows, cols, rowOffsets, columns, values);
+	}
+
+	/**
+	 * @return the compressed form of any matrix
+	 * */
+	public static CompressedMatrix compress(IMatrix matrix){
+		if(matrix==null)
+			throw new NullPointerException("The specified matrix is 'null'");
+		if(matrix instanceof CompressedMatrix)
+			return (CompressedMatrix)matrix;
+		if(matrix instanceof LongSparseMatrix)
+			return new CompressedMatrixBuilder((LongSparseMatrix)matrix).getMatrix();
+
+		int rows=matrix.getRowsDimension();
+		int cols=matrix.getColumnDimensions();
+		CompressedMatrixBuilder builder;
+		if(matrix instanceof SparseMatrix){
+			SparseMatrix sparse=(SparseMatrix)matrix;
+			builder=new CompressedMatrixBuilder(new LongSparseMatrix(rows, cols, sparse.getNonZeroPositions().size()));
+			for(SparseMatrix.XY xy : sparse.getNonZeroPositions())
+				builder.set(xy.x, xy.y, sparse.get(xy.x, xy.y));
+		}
+		else{
+			builder=new CompressedMatrixBuilder(rows, cols);
+			for(int x=0; x<rows; x++)
+				for(int y=0; y<cols; y++)
+					builder.set(x, y, matrix.get(x, y));
+		}
+		return builder.getMatrix();
+	}
+
+	/**
+	 * @return a modifiable copy of a compressed matrix
+	 * */
+	public static LongSparseMatrix decompress(CompressedMatrix matrix){
+		if(matrix==null)
+			throw new NullPointerException("The specified matrix is 'null'");
+		LongSparseMatrix sparse=new LongSparseMatrix(matrix.getRowsDimension(),
+				matrix.getColumnDimensions(), matrix.getNonZeroCount());
+		for(int r=0; r<matrix.getRowsDimension(); r++)
+			for(int pos=matrix.getRowStart(r); pos<matrix.getRowEnd(r); pos++)
+				sparse.set(r, matrix.getColumnAt(pos), matrix.getValueAt(pos));
+		return sparse;
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.vector;
+
+import java.util.Arrays;
+
+/**
+ * Implements a sparse version of the class matrix on an open addressing hash
+ * table of primitive long keys (the row-major position of the entry) and
+ * double values, so that no object is allocated to read or write an entry.
+ * It is meant for the random-access building of a matrix, see
+ * {@link CompressedMatrixBuilder} to convert it in a {@link CompressedMatrix}
+ * for the read phase.
+ * */
+public class LongSparseMatrix implements IMatrix{
+
+	private static final long FREE = -1L;
+
+	private static final double MAX_LOAD = 0.6;
+
+	private int _rows;
+	private int _cols;
+	private long[] _keys;
+	private double[] _values;
+	private int _size;
+	private int _mask;
+	private int _threshold;
+
+	public LongSparseMatrix(int rows, int cols){
+		this(rows, cols, 16);
+	}
+
+	/**
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 * @param expectedNonZeros the expected number of non zero entries, used
+	 * to size the table
+	 * */
+	public LongSparseMatrix(int rows, int cols, int expectedNonZeros){
+		if(rows<0||cols<0)
+			throw new IllegalArgumentException("The matrix dimensions can not be negative");
+		_rows=rows;
+		_cols=cols;
+		allocate(capacityFor(Math.max(expectedNonZeros, 8)));
+	}
+
+	public int getRowsDimension(){
+		return _rows;
+	}
+
+	public int getColumnDimensions(){
+		return _cols;
+	}
+
+	/**
+	 * @return the number of non zero entries of the matrix
+	 * */
+	public int getNonZeroCount(){
+		return _size;
+	}
+
+	public void set(int x, int y, double v){
+		long key=key(x, y);
+		int slot=find(key);
+		if(v==0.0){
+			if(_keys[slot]!=FREE)
+				remove(slot);
+			return;
+		}
+		if(_keys[slot]==FREE){
+			_keys[slot]=key;
+			_values[slot]=v;
+			if(++_size>_threshold)
+				rehash(_keys.length*2);
+		}
+		else
+			_values[slot]=v;
+	}
+
+	/**
+	 * Adds a value to the entry at row x and column y.
+	 * @param x matrix row
+	 * @param y matrix column
+	 * @param v value to be added
+	 * @return the new value of the entry
+	 * */
+	public double add(int x, int y, double v){
+		long key=key(x, y);
+		int slot=find(key);
+		if(_keys[slot]==FREE){
+			if(v!=0.0){
+				_keys[slot]=key;
+				_values[slot]=v;
+				if(++_size>_threshold)
+					rehash(_keys.length*2);
+			}
+			return v;
+		}
+		double value=_values[slot]+v;
+		if(value==0.0)
+			remove(slot);
+		else
+			_values[slot]=value;
+		return value;
+	}
+
+	public double get(int x, int y){
+		int slot=find(key(x, y));
+		return _keys[slot]==FREE ? 0 : _values[slot];
+	}
+
+	public void clear() {
+		Arrays.fill(_keys, FREE);
+		_size=0;
+	}
+
+	/**
+	 * Copies the non zero entries of the matrix in the given arrays, in no
+	 * particular order.
+	 * @param rows the rows of the entries
+	 * @param cols the columns of the entries
+	 * @param values the values of the entries
+	 * @return the number of entries copied
+	 * */
+	public int getNonZeroEntries(int[] rows, int[] cols, double[] values){
+		int n=0;
+		for(int slot=0; slot<_keys.length; slot++){
+			long key=_keys[slot];
+			if(key!=FREE){
+				rows[n]=(int)(key/_cols);
+				cols[n]=(int)(key%_cols);
+				values[n]=_values[slot];
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return the row-major positions (row*columns+column) of the non zero
+	 * entries, sorted
+	 * */
+	long[] getSortedKeys(){
+		long[] keys=new long[_size];
+		int n=0;
+		for(int slot=0; slot<_keys.length; slot++)
+			if(_keys[slot]!=FREE)
+				keys[n++]=_keys[slot];
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * @return the value stored at the given row-major position
+	 * */
+	double getByKey(long key){
+		int slot=find(key);
+		return _keys[slot]==FREE ? 0 : _values[slot];
+	}
+
+	private long key(int x, int y){
+		if(x<0||y<0||x>=_rows||y>=_cols)
+			throw new NullPointerException("Out of range!");
+		return (long)x*_cols+y;
+	}
+
+	private int find(long key){
+		int slot=hash(key)&_mask;
+		while(true){
+			long k=_keys[slot];
+			if(k==key||k==FREE)
+				return slot;
+			slot=(slot+1)&_mask;
+		}
+	}
+
+	private void remove(int slot){
+		// Backward shift deletion, keeps the probe sequences without holes.
+		int free=slot;
+		int next=(free+1)&_mask;
+		while(_keys[next]!=FREE){
+			int home=hash(_keys[next])&_mask;
+			if(((next-home)&_mask)>=((next-free)&_mask)){
+				_keys[free]=_keys[next];
+				_values[free]=_values[next];
+				free=next;
+			}
+			next=(next+1)&_mask;
+		}
+		_keys[free]=FREE;
+		_size--;
+	}
+
+	private void rehash(int capacity){
+		long[] keys=_keys;
+		double[] values=_values;
+		allocate(capacity);
+		for(int slot=0; slot<keys.length; slot++){
+			if(keys[slot]!=FREE){
+				int s=find(keys[slot]);
+				_keys[s]=keys[slot];
+				_values[s]=values[slot];
+			}
+		}
+	}
+
+	private void allocate(int capacity){
+		_keys=new long[capacity];
+		Arrays.fill(_keys, FREE);
+		_values=new double[capacity];
+		_mask=capacity-1;
+		_threshold=(int)(capacity*MAX_LOAD);
+	}
+
+	private static int capacityFor(int entries){
+		long capacity=Long.highestOneBit((long)(entries/MAX_LOAD)+1)<<1;
+		if(capacity>(1<<30))
+			throw new IllegalArgumentException("Too many entries for the matrix: "+entries);
+		return (int)capacity;
+	}
+
+	private static int hash(long key){
+		key^=(key>>>33);
+		key*=0xff51afd7ed558ccdL;
+		key^=(key>>>33);
+		return (int)key;
+	}
+}
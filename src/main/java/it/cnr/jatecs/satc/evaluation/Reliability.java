@@ -26,13 +26,10 @@ package it.cnr.jatecs.satc.evaluation;
 
 import gnu.trove.TIntHashSet;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-import java.util.Hashtable;
-
 public class Reliability {
 
     protected double[] slopes;
@@ -76,12 +73,11 @@ public class Reliability {
             docsIter.begin();
             while (docsIter.hasNext()) {
                 int docId = docsIter.next();
-                Hashtable<Short, ClassifierRangeWithScore> catConfidences = predConfidences
-                        .getDocumentScoresAsHashtable(docId);
-                ClassifierRangeWithScore value = catConfidences.get(catId);
+                double score = predConfidences.getScore(docId, catId);
+                double border = predConfidences.getBorder(docId, catId);
                 // double predLabel = probability(Math.abs(value.score -
                 // value.border), catId);
-                double predLabel = scaleConfidence(value.score - value.border,
+                double predLabel = scaleConfidence(score - border,
                         catId);
                 // if ((value.score - value.border) <= 0.0) predLabel =
                 // -predLabel;
@@ -26,7 +26,6 @@ package it.cnr.jatecs.satc.parameterTuning;
 
 import gnu.trove.TIntArrayList;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.classification.adaboost.*;
 import it.cnr.jatecs.classification.interfaces.IClassifier;
 import it.cnr.jatecs.classification.interfaces.IClassifierRuntimeCustomizer;
@@ -50,7 +49,6 @@ import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
 import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
 
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
 
@@ -275,10 +273,8 @@ public class ProbabilitySlope extends JatecsModule {
                 docsIter.begin();
                 while (docsIter.hasNext()) {
                     int docId = docsIter.next();
-                    Hashtable<Short, ClassifierRangeWithScore> catConfidences = predConfidences
-                            .getDocumentScoresAsHashtable(docId);
-                    ClassifierRangeWithScore value = catConfidences.get(catId);
-                    catConfidencesVect.add(value.score - value.border);
+                    catConfidencesVect.add(predConfidences.getScore(docId, catId)
+                            - predConfidences.getBorder(docId, catId));
                 }
             }
 
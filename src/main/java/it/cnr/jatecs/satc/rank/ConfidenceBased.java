@@ -27,13 +27,8 @@ package it.cnr.jatecs.satc.rank;
 import gnu.trove.TIntDoubleHashMap;
 import gnu.trove.TIntHashSet;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.utils.Ranker;
 
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
-
 public class ConfidenceBased extends StaticRank {
 
     protected TIntHashSet[] docCategoriesFilter;
@@ -56,7 +51,7 @@ public class ConfidenceBased extends StaticRank {
     }
 
     public ConfidenceBased(int trainSize, ClassificationScoreDB classification, TIntHashSet categoriesFilter, double[] probabilitySlopes) {
-        this(trainSize, classification, categoriesFilter, probabilitySlopes, classification.getDocumentScoresAsSet(0).size());
+        this(trainSize, classification, categoriesFilter, probabilitySlopes, classification.getDocumentScoresCount(0));
     }
 
     public double probability(double x, int catId) {
@@ -72,16 +67,13 @@ public class ConfidenceBased extends StaticRank {
     public TIntDoubleHashMap getTable() {
         TIntDoubleHashMap rank = new TIntDoubleHashMap((int) (testSize + testSize * 0.25), (float) 0.75);
         for (int docId = 0; docId < testSize; docId++) {
-            Set<Entry<Short, ClassifierRangeWithScore>> entries = classification.getDocumentScoresAsSet(docId);
-            Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = entries.iterator();
+            int count = classification.getDocumentScoresCount(docId);
             double sum = 0.0;
-            while (iterator.hasNext()) {
-                Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-                if (categoriesFilter.contains(next.getKey()) && docCategoriesFilter[docId].contains(next.getKey())) {
-                    ClassifierRangeWithScore value = next.getValue();
-                    sum += probability(Math.abs(value.score - value.border), next.getKey());
-                    //System.out.println(docId + " " + next.getKey() + " " + probability(Math.abs(value.score - value.border), next.getKey()));
-                    //System.out.println(next.getKey() + " " + slopes[next.getKey()] + " " + value.score);
+            for (int i = 0; i < count; i++) {
+                short catId = classification.getDocumentCategory(docId, i);
+                if (categoriesFilter.contains(catId) && docCategoriesFilter[docId].contains(catId)) {
+                    double score = classification.getDocumentScore(docId, i);
+                    sum += probability(Math.abs(score - classification.getDocumentBorder(docId, i)), catId);
                 }
             }
             rank.put(docId, sum);
@@ -101,13 +93,12 @@ public class ConfidenceBased extends StaticRank {
 
     private TIntHashSet filterByTopProbabilities(int docId, int topK) {
         TIntDoubleHashMap topProbRank = new TIntDoubleHashMap((int) (testSize + testSize * 0.25), (float) 0.75);
-        Set<Entry<Short, ClassifierRangeWithScore>> entries = classification.getDocumentScoresAsSet(docId);
-        Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = entries.iterator();
-        while (iterator.hasNext()) {
-            Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-            if (categoriesFilter.contains(next.getKey())) {
-                ClassifierRangeWithScore value = next.getValue();
-                topProbRank.put(next.getKey(), probability(Math.abs(value.score - value.border), next.getKey()));
+        int count = classification.getDocumentScoresCount(docId);
+        for (int i = 0; i < count; i++) {
+            short catId = classification.getDocumentCategory(docId, i);
+            if (categoriesFilter.contains(catId)) {
+                double score = classification.getDocumentScore(docId, i);
+                topProbRank.put(catId, probability(Math.abs(score - classification.getDocumentBorder(docId, i)), catId));
             }
         }
         Ranker r = new Ranker();
@@ -29,18 +29,12 @@ import gnu.trove.TIntDoubleHashMap;
 import gnu.trove.TIntHashSet;
 import gnu.trove.TIntIterator;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.evaluation.ContingencyTable;
 import it.cnr.jatecs.evaluation.ContingencyTableSet;
 import it.cnr.jatecs.satc.interfaces.IGain;
 import it.cnr.jatecs.satc.interfaces.IIncrementalRank;
 import it.cnr.jatecs.utils.Ranker;
 
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
-
 /**
  * @author giacomo
  */
@@ -63,13 +57,12 @@ public class Incremental extends UtilityBased implements IIncrementalRank {
         microAlreadySeen = new TIntHashSet((int) (testSize + testSize * 0.25), (float) 0.75);
         probabilities = new double[testSize][numOfCategories];
         for (int docId = 0; docId < testSize; docId++) {
-            Set<Entry<Short, ClassifierRangeWithScore>> entries = classification.getDocumentScoresAsSet(docId);
-            Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = entries.iterator();
-            while (iterator.hasNext()) {
-                Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-                ClassifierRangeWithScore value = next.getValue();
-                if (categoriesFilter.contains(next.getKey())) {
-                    probabilities[docId][catMap.get(next.getKey())] = probability(Math.abs(value.score - value.border), next.getKey());
+            int count = classification.getDocumentScoresCount(docId);
+            for (int i = 0; i < count; i++) {
+                short catId = classification.getDocumentCategory(docId, i);
+                if (categoriesFilter.contains(catId)) {
+                    double score = classification.getDocumentScore(docId, i);
+                    probabilities[docId][catMap.get(catId)] = probability(Math.abs(score - classification.getDocumentBorder(docId, i)), catId);
                 }
             }
         }
@@ -108,16 +101,16 @@ public class Incremental extends UtilityBased implements IIncrementalRank {
                     continue;
                 }
                 // Iter only on the categories with changed contingencies
-                int[] keys = currGainsFP.keys();
-                Hashtable<Short, ClassifierRangeWithScore> entries = classification.getDocumentScoresAsHashtable(docId);
-                for (int i = 0; i < keys.length; i++) {
-                    short catId = (short) keys[i];
-                    if (entries.containsKey(catId)) {
-                        ClassifierRangeWithScore value = entries.get(catId);
-                        if (value.score > value.border) {
+                int count = classification.getDocumentScoresCount(docId);
+                for (int i = 0; i < count; i++) {
+                    short catId = classification.getDocumentCategory(docId, i);
+                    if (currGainsFP.containsKey(catId)) {
+                        double score = classification.getDocumentScore(docId, i);
+                        double border = classification.getDocumentBorder(docId, i);
+                        if (score > border) {
                             macroUtilities[docId][catMap.get(catId)] = currGainsFP.get(catId) * probabilities[docId][catMap.get(catId)];
                             //System.out.println(docId + " " + catId + " + " + currGainsFP.get(catId) + " " + probabilities[docId][catMap.get(catId)]);
-                        } else if (value.score < value.border) {
+                        } else if (score < border) {
                             macroUtilities[docId][catMap.get(catId)] = currGainsFN.get(catId) * probabilities[docId][catMap.get(catId)];
                             //System.out.println(docId + " " + catId + " - " + currGainsFN.get(catId) + " " + probabilities[docId][catMap.get(catId)]);
                         } else {
@@ -166,15 +159,15 @@ public class Incremental extends UtilityBased implements IIncrementalRank {
                     if (microAlreadySeen.contains(docId)) {
                         continue;
                     }
-                    Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = classification.getDocumentScoresAsSet(docId).iterator();
-                    while (iterator.hasNext()) {
-                        Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-                        int catId = catMap.get(next.getKey());
-                        ClassifierRangeWithScore value = next.getValue();
+                    int count = classification.getDocumentScoresCount(docId);
+                    for (int i = 0; i < count; i++) {
+                        int catId = catMap.get(classification.getDocumentCategory(docId, i));
+                        double score = classification.getDocumentScore(docId, i);
+                        double border = classification.getDocumentBorder(docId, i);
                         // the current gain has to be set to allow an update of the utilities
-                        if (value.score > value.border) {
+                        if (score > border) {
                             microUtilities[docId][catId] = currGainFP * probabilities[docId][catId];
-                        } else if (value.score < value.border) {
+                        } else if (score < border) {
                             microUtilities[docId][catId] = currGainFN * probabilities[docId][catId];
                         } else {
                             //microUtilities[docId][catId] = 1.0 * probabilities[docId][catId];
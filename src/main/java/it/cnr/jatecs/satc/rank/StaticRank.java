@@ -44,7 +44,8 @@ abstract public class StaticRank implements IStaticRank {
         this.testSize = classification.getDocumentCount();
         if (categoriesFilter == null || categoriesFilter.isEmpty()) {
             this.categoriesFilter = new TIntHashSet((int) (testSize + testSize * 0.25), (float) 0.75);
-            for (short i = 0; i < classification.getDocumentScoresAsSet(0).size(); i++) {
+            int categories = classification.getDocumentScoresCount(0);
+            for (short i = 0; i < categories; i++) {
                 this.categoriesFilter.add(i);
             }
         } else {
@@ -29,15 +29,10 @@ import gnu.trove.TIntHashSet;
 import gnu.trove.TIntIntHashMap;
 import gnu.trove.TIntIterator;
 import it.cnr.jatecs.classification.ClassificationScoreDB;
-import it.cnr.jatecs.classification.ClassifierRangeWithScore;
 import it.cnr.jatecs.evaluation.ContingencyTable;
 import it.cnr.jatecs.evaluation.ContingencyTableSet;
 import it.cnr.jatecs.satc.interfaces.IGain;
 
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
-
 public class UtilityBased extends ConfidenceBased {
 
     protected TIntIntHashMap catMap;
@@ -57,7 +52,7 @@ public class UtilityBased extends ConfidenceBased {
                         double[] probabilitySlopes, double[] prevalencies) {
         this(trainSize, classification, categoriesFilter, estimation,
                 evaluation, gain, probabilitySlopes, prevalencies,
-                classification.getDocumentScoresAsSet(0).size(), 1.0, 1.0);
+                classification.getDocumentScoresCount(0), 1.0, 1.0);
     }
 
     // FIXME trainSize redundant, use the total() method of each
@@ -104,34 +99,20 @@ public class UtilityBased extends ConfidenceBased {
 
         for (int docId = 0; docId < testSize; docId++) {
 
-            Set<Entry<Short, ClassifierRangeWithScore>> entries = classification
-                    .getDocumentScoresAsSet(docId);
-            Iterator<Entry<Short, ClassifierRangeWithScore>> iterator = entries
-                    .iterator();
-
-            while (iterator.hasNext()) {
-                Entry<Short, ClassifierRangeWithScore> next = iterator.next();
-                if (categoriesFilter.contains(next.getKey())) {
-                    int currCat = catMap.get(next.getKey());
-                    ClassifierRangeWithScore value = next.getValue();
-                    // System.out.println(next.getKey() + " " +
-                    // slopes[next.getKey()] + " " + value.score);
-                    // System.out.println(String.valueOf(docId) + ' ' +
-                    // String.valueOf(next.getKey()) + ' ' +
-                    // String.valueOf(value.score) + ' ' +
-                    // String.valueOf(value.border) +
-                    // ' ' + String.valueOf(p) + ' ' +
-                    // String.valueOf(gainsFP[currCat]) + ' ' +
-                    // String.valueOf(gainsFN[currCat]) + ' ' +
-                    // String.valueOf(gainFP) + ' ' + String.valueOf(gainFN));
-                    double p = probability(
-                            Math.abs(value.score - value.border), next.getKey());
-                    if (value.score > value.border) {
+            int count = classification.getDocumentScoresCount(docId);
+            for (int i = 0; i < count; i++) {
+                short catId = classification.getDocumentCategory(docId, i);
+                if (categoriesFilter.contains(catId)) {
+                    int currCat = catMap.get(catId);
+                    double score = classification.getDocumentScore(docId, i);
+                    double border = classification.getDocumentBorder(docId, i);
+                    double p = probability(Math.abs(score - border), catId);
+                    if (score > border) {
                         macroUtilities[docId][currCat] = gainsFP[currCat] * p;
                         // System.out.println(docId + " " + next.getKey() +
                         // " + " + gainsFP[currCat] + " " + p);
                         microUtilities[docId][currCat] = gainFP * p;
-                    } else if (value.score < value.border) {
+                    } else if (score < border) {
                         macroUtilities[docId][currCat] = gainsFN[currCat] * p;
                         // System.out.println(docId + " " + next.getKey() +
                         // " - " + gainsFN[currCat] + " " + p);
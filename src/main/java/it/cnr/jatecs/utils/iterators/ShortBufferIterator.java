@@ -0,0 +1,74 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.utils.iterators;
+
+import java.nio.ShortBuffer;
+import java.util.Iterator;
+
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+/**
+ * Iterator on a range of a {@link ShortBuffer}. Only absolute gets are used,
+ * so many iterators can concurrently read the same buffer.
+ */
+public class ShortBufferIterator implements IShortIterator {
+
+    private ShortBuffer _buffer;
+    private int _start;
+    private int _end;
+    private int _pos;
+
+    public ShortBufferIterator(ShortBuffer buffer, int start, int end) {
+        _buffer = buffer;
+        _start = start;
+        _end = end;
+        _pos = start;
+    }
+
+    public boolean hasNext() {
+        return _pos < _end;
+    }
+
+    public Short next() {
+        short val = _buffer.get(_pos);
+        ++_pos;
+        return val;
+    }
+
+    public void begin() {
+        _pos = _start;
+    }
+
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Remove not allowed for this IShortIterator implementation.");		
+	}
+
+	@Override
+	public Iterator<Short> iterator() {
+		return this;
+	}
+}
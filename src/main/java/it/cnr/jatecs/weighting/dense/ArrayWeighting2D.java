@@ -0,0 +1,119 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.dense;
+
+import java.util.Arrays;
+
+/**
+ * Two dimensional weighting matrix stored in a heap float array.
+ */
+public class ArrayWeighting2D extends BaseWeighting2D {
+
+    protected float[] _weights;
+
+    public ArrayWeighting2D(int firstDimensionSize, int secondDimensionSize,
+                            boolean firstMajor) {
+        super(firstDimensionSize, secondDimensionSize, firstMajor);
+        if (size() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The matrix is too big: "
+                    + firstDimensionSize + "x" + secondDimensionSize);
+        _weights = new float[firstDimensionSize * secondDimensionSize];
+    }
+
+    @Override
+    protected float get(long position) {
+        return _weights[(int) position];
+    }
+
+    @Override
+    protected void put(long position, float weight) {
+        _weights[(int) position] = weight;
+    }
+
+    @Override
+    public void getFirstRow(int firstIndex, double[] weights) {
+        float[] w = _weights;
+        if (_firstMajor) {
+            int start = firstIndex * _secondDim;
+            for (int i = 0; i < _secondDim; ++i)
+                weights[i] = w[start + i];
+        } else
+            super.getFirstRow(firstIndex, weights);
+    }
+
+    @Override
+    public void setFirstRow(int firstIndex, double[] weights) {
+        float[] w = _weights;
+        if (_firstMajor) {
+            int start = firstIndex * _secondDim;
+            for (int i = 0; i < _secondDim; ++i)
+                w[start + i] = (float) weights[i];
+        } else
+            super.setFirstRow(firstIndex, weights);
+    }
+
+    @Override
+    public void getSecondRow(int secondIndex, double[] weights) {
+        float[] w = _weights;
+        if (!_firstMajor) {
+            int start = secondIndex * _firstDim;
+            for (int i = 0; i < _firstDim; ++i)
+                weights[i] = w[start + i];
+        } else
+            super.getSecondRow(secondIndex, weights);
+    }
+
+    @Override
+    public void setSecondRow(int secondIndex, double[] weights) {
+        float[] w = _weights;
+        if (!_firstMajor) {
+            int start = secondIndex * _firstDim;
+            for (int i = 0; i < _firstDim; ++i)
+                w[start + i] = (float) weights[i];
+        } else
+            super.setSecondRow(secondIndex, weights);
+    }
+
+    @Override
+    public void fill(double weight) {
+        Arrays.fill(_weights, (float) weight);
+    }
+
+    @Override
+    public void divide(double divisor) {
+        float[] w = _weights;
+        for (int i = 0; i < w.length; ++i)
+            w[i] = (float) (w[i] / divisor);
+    }
+
+    @Override
+    public double sum() {
+        float[] w = _weights;
+        double sum = 0;
+        for (int i = 0; i < w.length; ++i)
+            sum += w[i];
+        return sum;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.dense;
+
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
+import it.cnr.jatecs.weighting.interfaces.IWeighting3D;
+
+/**
+ * Base implementation of a {@link IWeighting2DManager} storing the weights
+ * in single precision at the positions computed by {@link #position(int, int)}.
+ */
+public abstract class BaseWeighting2D implements IWeighting2DManager {
+
+    protected String _name;
+    protected int _firstDim;
+    protected int _secondDim;
+    protected boolean _firstMajor;
+
+    public BaseWeighting2D(int firstDimensionSize, int secondDimensionSize,
+                           boolean firstMajor) {
+        if (firstDimensionSize < 0 || secondDimensionSize < 0)
+            throw new IllegalArgumentException("The dimensions must be non negative");
+        _name = "generic";
+        _firstDim = firstDimensionSize;
+        _secondDim = secondDimensionSize;
+        _firstMajor = firstMajor;
+    }
+
+    protected abstract float get(long position);
+
+    protected abstract void put(long position, float weight);
+
+    protected long position(int firstIndex, int secondIndex) {
+        if (_firstMajor)
+            return (long) firstIndex * _secondDim + secondIndex;
+        else
+            return (long) secondIndex * _firstDim + firstIndex;
+    }
+
+    /**
+     * @return the number of weights of the matrix
+     */
+    protected long size() {
+        return (long) _firstDim * _secondDim;
+    }
+
+    public boolean isFirstMajor() {
+        return _firstMajor;
+    }
+
+    public int getFirstDimensionSize() {
+        return _firstDim;
+    }
+
+    public int getSecondDimensionSize() {
+        return _secondDim;
+    }
+
+    public int getThirdDimensionSize() {
+        return 1;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public IWeighting3D getWeighting() {
+        return this;
+    }
+
+    public double getWeight(int firstIndex, int secondIndex, int thirdIndex) {
+        return get(position(firstIndex, secondIndex));
+    }
+
+    public void setWeight(double weight, int firstIndex, int secondIndex,
+                          int thirdIndex) {
+        put(position(firstIndex, secondIndex), (float) weight);
+    }
+
+    public double getWeight(int firstIndex, int secondIndex) {
+        return get(position(firstIndex, secondIndex));
+    }
+
+    public void setWeight(double weight, int firstIndex, int secondIndex) {
+        put(position(firstIndex, secondIndex), (float) weight);
+    }
+
+    public void getFirstRow(int firstIndex, double[] weights) {
+        long pos = position(firstIndex, 0);
+        int step = _firstMajor ? 1 : _firstDim;
+        for (int i = 0; i < _secondDim; ++i, pos += step)
+            weights[i] = get(pos);
+    }
+
+    public void setFirstRow(int firstIndex, double[] weights) {
+        long pos = position(firstIndex, 0);
+        int step = _firstMajor ? 1 : _firstDim;
+        for (int i = 0; i < _secondDim; ++i, pos += step)
+            put(pos, (float) weights[i]);
+    }
+
+    public void getSecondRow(int secondIndex, double[] weights) {
+        long pos = position(0, secondIndex);
+        int step = _firstMajor ? _secondDim : 1;
+        for (int i = 0; i < _firstDim; ++i, pos += step)
+            weights[i] = get(pos);
+    }
+
+    public void setSecondRow(int secondIndex, double[] weights) {
+        long pos = position(0, secondIndex);
+        int step = _firstMajor ? _secondDim : 1;
+        for (int i = 0; i < _firstDim; ++i, pos += step)
+            put(pos, (float) weights[i]);
+    }
+
+    public void fill(double weight) {
+        long size = size();
+        float value = (float) weight;
+        for (long i = 0; i < size; ++i)
+            put(i, value);
+    }
+
+    public void divide(double divisor) {
+        long size = size();
+        for (long i = 0; i < size; ++i)
+            put(i, (float) (get(i) / divisor));
+    }
+
+    public void divideFirstRow(int firstIndex, double divisor) {
+        long pos = position(firstIndex, 0);
+        int step = _firstMajor ? 1 : _firstDim;
+        for (int i = 0; i < _secondDim; ++i, pos += step)
+            put(pos, (float) (get(pos) / divisor));
+    }
+
+    public double sum() {
+        long size = size();
+        double sum = 0;
+        for (long i = 0; i < size; ++i)
+            sum += get(i);
+        return sum;
+    }
+
+    public double sumFirstRow(int firstIndex) {
+        long pos = position(firstIndex, 0);
+        int step = _firstMajor ? 1 : _firstDim;
+        double sum = 0;
+        for (int i = 0; i < _secondDim; ++i, pos += step)
+            sum += get(pos);
+        return sum;
+    }
+}
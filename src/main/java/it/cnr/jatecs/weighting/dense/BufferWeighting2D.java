@@ -0,0 +1,184 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.dense;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Two dimensional weighting matrix stored out of the Java heap, either in
+ * direct buffers ({@link #allocateDirect(int, int, boolean)}) or in a memory
+ * mapped file ({@link #map(File, int, int, boolean)}). The weights are split
+ * in blocks of whole rows of the major dimension, each one in its own buffer
+ * of at most {@link #MAX_BLOCK_SIZE} bytes, so that the matrix is not limited
+ * by the size of a single buffer.
+ */
+public class BufferWeighting2D extends BaseWeighting2D {
+
+    public static final long MAX_BLOCK_SIZE = 1 << 30;
+
+    protected FloatBuffer[] _blocks;
+    protected long _blockSize;
+    protected MappedByteBuffer[] _mapped;
+    protected RandomAccessFile _file;
+
+    /**
+     * @param buffers   the buffers of the blocks
+     * @param blockSize the number of weights of each block, the last one can
+     *                  be smaller
+     */
+    protected BufferWeighting2D(int firstDimensionSize,
+                                int secondDimensionSize, boolean firstMajor, ByteBuffer[] buffers,
+                                long blockSize) {
+        super(firstDimensionSize, secondDimensionSize, firstMajor);
+        _blocks = new FloatBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; ++i)
+            _blocks[i] = buffers[i].order(ByteOrder.nativeOrder()).asFloatBuffer();
+        _blockSize = blockSize;
+    }
+
+    /**
+     * Create a matrix stored in direct buffers, initialized to 0.
+     */
+    public static BufferWeighting2D allocateDirect(int firstDimensionSize,
+                                                   int secondDimensionSize, boolean firstMajor) {
+        return allocateDirect(firstDimensionSize, secondDimensionSize,
+                firstMajor, MAX_BLOCK_SIZE);
+    }
+
+    static BufferWeighting2D allocateDirect(int firstDimensionSize,
+                                            int secondDimensionSize, boolean firstMajor, long maxBlockSize) {
+        long blockSize = getBlockSize(firstDimensionSize, secondDimensionSize,
+                firstMajor, maxBlockSize);
+        long size = ((long) firstDimensionSize) * secondDimensionSize;
+        ByteBuffer[] buffers = new ByteBuffer[getBlocksCount(size, blockSize)];
+        for (int i = 0; i < buffers.length; ++i)
+            buffers[i] = ByteBuffer.allocateDirect((int) (Math.min(blockSize,
+                    size - i * blockSize) * 4));
+        return new BufferWeighting2D(firstDimensionSize, secondDimensionSize,
+                firstMajor, buffers, blockSize);
+    }
+
+    /**
+     * Create a matrix stored in a memory mapped file, overwriting the file if
+     * it exists. Call {@link #close()} to release the file.
+     */
+    public static BufferWeighting2D map(File file, int firstDimensionSize,
+                                        int secondDimensionSize, boolean firstMajor) throws IOException {
+        return map(file, firstDimensionSize, secondDimensionSize, firstMajor,
+                MAX_BLOCK_SIZE);
+    }
+
+    static BufferWeighting2D map(File file, int firstDimensionSize,
+                                 int secondDimensionSize, boolean firstMajor, long maxBlockSize)
+            throws IOException {
+        long blockSize = getBlockSize(firstDimensionSize, secondDimensionSize,
+                firstMajor, maxBlockSize);
+        long size = ((long) firstDimensionSize) * secondDimensionSize;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(size * 4);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[getBlocksCount(
+                    size, blockSize)];
+            for (int i = 0; i < mapped.length; ++i) {
+                long start = i * blockSize;
+                mapped[i] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                        start * 4, Math.min(blockSize, size - start) * 4);
+            }
+            BufferWeighting2D matrix = new BufferWeighting2D(
+                    firstDimensionSize, secondDimensionSize, firstMajor, mapped,
+                    blockSize);
+            matrix._mapped = mapped;
+            matrix._file = raf;
+            matrix._name = file.getName();
+            return matrix;
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of weights of a block, made of as many rows of the
+     * major dimension as fit in the maximum block size
+     */
+    private static long getBlockSize(int firstDimensionSize,
+                                     int secondDimensionSize, boolean firstMajor, long maxBlockSize) {
+        if (firstDimensionSize < 0 || secondDimensionSize < 0)
+            throw new IllegalArgumentException("The dimensions must be non negative");
+        long rowSize = firstMajor ? secondDimensionSize : firstDimensionSize;
+        if (rowSize * 4 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The matrix rows are too big: "
+                    + firstDimensionSize + "x" + secondDimensionSize);
+        if (rowSize == 0)
+            return 1;
+        return Math.max(1, maxBlockSize / (rowSize * 4)) * rowSize;
+    }
+
+    private static int getBlocksCount(long size, long blockSize) {
+        return (int) ((size + blockSize - 1) / blockSize);
+    }
+
+    public boolean isMapped() {
+        return _mapped != null;
+    }
+
+    /**
+     * Write the changes to the mapped file and close it. Nothing is done for
+     * direct buffers.
+     */
+    public void close() throws IOException {
+        if (_mapped == null || _file == null)
+            return;
+        for (MappedByteBuffer mapped : _mapped)
+            mapped.force();
+        _file.close();
+        _file = null;
+    }
+
+    @Override
+    protected float get(long position) {
+        if (_blocks.length == 1)
+            return _blocks[0].get((int) position);
+        return _blocks[(int) (position / _blockSize)].get(
+                (int) (position % _blockSize));
+    }
+
+    @Override
+    protected void put(long position, float weight) {
+        if (_blocks.length == 1)
+            _blocks[0].put((int) position, weight);
+        else
+            _blocks[(int) (position / _blockSize)].put(
+                    (int) (position % _blockSize), weight);
+    }
+}
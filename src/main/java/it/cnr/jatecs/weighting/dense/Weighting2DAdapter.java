@@ -0,0 +1,155 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.dense;
+
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
+import it.cnr.jatecs.weighting.interfaces.IWeighting3D;
+import it.cnr.jatecs.weighting.interfaces.IWeighting3DManager;
+
+/**
+ * View of the slice with third index 0 of a {@link IWeighting3DManager} as a
+ * {@link IWeighting2DManager}. The weights are read and written unchanged,
+ * in the same order of the single weight loops.
+ */
+public class Weighting2DAdapter implements IWeighting2DManager {
+
+    protected IWeighting3DManager _matrix;
+
+    public Weighting2DAdapter(IWeighting3DManager matrix) {
+        if (matrix == null)
+            throw new NullPointerException("The specified matrix is 'null'");
+        _matrix = matrix;
+    }
+
+    /**
+     * @return the matrix itself if it is a {@link IWeighting2DManager}, an
+     * adapter otherwise
+     */
+    public static IWeighting2DManager adapt(IWeighting3DManager matrix) {
+        if (matrix instanceof IWeighting2DManager)
+            return (IWeighting2DManager) matrix;
+        return new Weighting2DAdapter(matrix);
+    }
+
+    public boolean isFirstMajor() {
+        return false;
+    }
+
+    public double getWeight(int firstIndex, int secondIndex, int thirdIndex) {
+        return _matrix.getWeight(firstIndex, secondIndex, thirdIndex);
+    }
+
+    public int getFirstDimensionSize() {
+        return _matrix.getFirstDimensionSize();
+    }
+
+    public int getSecondDimensionSize() {
+        return _matrix.getSecondDimensionSize();
+    }
+
+    public int getThirdDimensionSize() {
+        return 1;
+    }
+
+    public String getName() {
+        return _matrix.getName();
+    }
+
+    public void setName(String name) {
+        _matrix.setName(name);
+    }
+
+    public void setWeight(double weight, int firstIndex, int secondIndex,
+                          int thirdIndex) {
+        _matrix.setWeight(weight, firstIndex, secondIndex, thirdIndex);
+    }
+
+    public IWeighting3D getWeighting() {
+        return this;
+    }
+
+    public double getWeight(int firstIndex, int secondIndex) {
+        return _matrix.getWeight(firstIndex, secondIndex, 0);
+    }
+
+    public void setWeight(double weight, int firstIndex, int secondIndex) {
+        _matrix.setWeight(weight, firstIndex, secondIndex, 0);
+    }
+
+    public void getFirstRow(int firstIndex, double[] weights) {
+        int size = _matrix.getSecondDimensionSize();
+        for (int i = 0; i < size; ++i)
+            weights[i] = _matrix.getWeight(firstIndex, i, 0);
+    }
+
+    public void setFirstRow(int firstIndex, double[] weights) {
+        int size = _matrix.getSecondDimensionSize();
+        for (int i = 0; i < size; ++i)
+            _matrix.setWeight(weights[i], firstIndex, i, 0);
+    }
+
+    public void getSecondRow(int secondIndex, double[] weights) {
+        int size = _matrix.getFirstDimensionSize();
+        for (int i = 0; i < size; ++i)
+            weights[i] = _matrix.getWeight(i, secondIndex, 0);
+    }
+
+    public void setSecondRow(int secondIndex, double[] weights) {
+        int size = _matrix.getFirstDimensionSize();
+        for (int i = 0; i < size; ++i)
+            _matrix.setWeight(weights[i], i, secondIndex, 0);
+    }
+
+    public void fill(double weight) {
+        for (int i = 0; i < _matrix.getFirstDimensionSize(); ++i)
+            for (int j = 0; j < _matrix.getSecondDimensionSize(); ++j)
+                _matrix.setWeight(weight, i, j, 0);
+    }
+
+    public void divide(double divisor) {
+        for (int i = 0; i < _matrix.getFirstDimensionSize(); ++i)
+            divideFirstRow(i, divisor);
+    }
+
+    public void divideFirstRow(int firstIndex, double divisor) {
+        for (int j = 0; j < _matrix.getSecondDimensionSize(); ++j)
+            _matrix.setWeight(_matrix.getWeight(firstIndex, j, 0) / divisor,
+                    firstIndex, j, 0);
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < _matrix.getFirstDimensionSize(); ++i)
+            sum += sumFirstRow(i);
+        return sum;
+    }
+
+    public double sumFirstRow(int firstIndex) {
+        double sum = 0;
+        for (int j = 0; j < _matrix.getSecondDimensionSize(); ++j)
+            sum += _matrix.getWeight(firstIndex, j, 0);
+        return sum;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.interfaces;
+
+/**
+ * A weighting matrix with only two dimensions, stored in a single primitive
+ * array whose storage order is given by {@link #isFirstMajor()}. The third
+ * dimension of {@link IWeighting3D} has size 1 and its index is ignored.
+ * <p>
+ * The row methods copy or update a whole row at once, they are much faster
+ * than the single weight methods when accessing rows stored contiguously (see
+ * {@link #isFirstMajor()}).
+ */
+public interface IWeighting2DManager extends IWeighting3DManager {
+
+    /**
+     * @return true if the weights of the same first index are stored
+     * contiguously, false if the weights of the same second index are
+     */
+    public boolean isFirstMajor();
+
+    public double getWeight(int firstIndex, int secondIndex);
+
+    public void setWeight(double weight, int firstIndex, int secondIndex);
+
+    /**
+     * Copy the weights of a first index, indexed by the second index.
+     *
+     * @param firstIndex the first index
+     * @param weights    the array to fill, at least as long as the second
+     *                   dimension
+     */
+    public void getFirstRow(int firstIndex, double[] weights);
+
+    public void setFirstRow(int firstIndex, double[] weights);
+
+    /**
+     * Copy the weights of a second index, indexed by the first index.
+     *
+     * @param secondIndex the second index
+     * @param weights     the array to fill, at least as long as the first
+     *                    dimension
+     */
+    public void getSecondRow(int secondIndex, double[] weights);
+
+    public void setSecondRow(int secondIndex, double[] weights);
+
+    /**
+     * Set all the weights to the same value.
+     */
+    public void fill(double weight);
+
+    /**
+     * Divide all the weights by the same value.
+     */
+    public void divide(double divisor);
+
+    /**
+     * Divide all the weights of a first index by the same value.
+     */
+    public void divideFirstRow(int firstIndex, double divisor);
+
+    /**
+     * @return the sum of all the weights
+     */
+    public double sum();
+
+    /**
+     * @return the sum of the weights of a first index
+     */
+    public double sumFirstRow(int firstIndex);
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.classification.adaboost.AdaBoostClassifier;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearner;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearnerCustomizer;
+import it.cnr.jatecs.classification.adaboost.DistributionMatrixType;
+import it.cnr.jatecs.classification.adaboost.HypothesisData;
+import it.cnr.jatecs.classification.mpboost.MPWeakLearner;
+import it.cnr.jatecs.classification.mpboost.MPWeakLearnerMultiThread;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.weighting.dense.ArrayWeighting2D;
+import it.cnr.jatecs.weighting.dense.BufferWeighting2D;
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdaBoostDistributionMatrixTest {
+
+	protected static IIndex buildIndex() {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b", "c" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(5);
+		for (int i = 0; i < 200; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(60);
+			String[] cats = random.nextBoolean() ? new String[] { "a" }
+					: new String[] { "b", random.nextBoolean() ? "c" : "a" };
+			builder.addDocument("d" + i, feats, cats);
+		}
+		return builder.getIndex();
+	}
+
+	protected static AdaBoostClassifier learn(IIndex index,
+			DistributionMatrixType type, boolean categoryMajor) {
+		AdaBoostLearner learner = new AdaBoostLearner();
+		AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) learner
+				.getRuntimeCustomizer();
+		customizer.setNumIterations(20);
+		customizer.setWeakLearner(new MPWeakLearner());
+		customizer.setDistributionMatrixType(type);
+		customizer.setCategoryMajorDistributionMatrix(categoryMajor);
+		customizer.keepDistributionMatrix(false);
+		return (AdaBoostClassifier) learner.build(index);
+	}
+
+	protected static void compare(AdaBoostClassifier expected,
+			AdaBoostClassifier found, double delta) {
+		assertEquals(expected._hypothesis.length, found._hypothesis.length);
+		for (int i = 0; i < expected._hypothesis.length; i++) {
+			for (short cat = 0; cat < 3; cat++) {
+				HypothesisData a = expected._hypothesis[i].value(cat);
+				HypothesisData b = found._hypothesis[i].value(cat);
+				assertEquals(a.pivot, b.pivot);
+				assertEquals(a.c0, b.c0, delta);
+				assertEquals(a.c1, b.c1, delta);
+			}
+		}
+	}
+
+	@Test
+	public void learnTest() {
+		IIndex index = buildIndex();
+		AdaBoostClassifier reference = learn(index,
+				DistributionMatrixType.MEMORY_MAPPED, false);
+		AdaBoostClassifier heap = learn(index, DistributionMatrixType.HEAP,
+				false);
+		compare(reference, heap, 1e-4);
+		compare(heap, learn(index, DistributionMatrixType.DIRECT, false), 0);
+		compare(heap, learn(index,
+				DistributionMatrixType.MEMORY_MAPPED_FLOAT, false), 0);
+		compare(reference, learn(index, DistributionMatrixType.HEAP, true),
+				1e-4);
+	}
+
+	@Test
+	public void rowsTest() {
+		IWeighting2DManager[] matrices = new IWeighting2DManager[] {
+				new ArrayWeighting2D(3, 5, true),
+				new ArrayWeighting2D(3, 5, false),
+				BufferWeighting2D.allocateDirect(3, 5, true),
+				BufferWeighting2D.allocateDirect(3, 5, false) };
+		for (IWeighting2DManager matrix : matrices) {
+			for (int i = 0; i < 3; i++)
+				for (int j = 0; j < 5; j++)
+					matrix.setWeight(i * 5 + j, i, j, 0);
+			double[] row = new double[5];
+			matrix.getFirstRow(2, row);
+			for (int j = 0; j < 5; j++)
+				assertEquals(10 + j, row[j], 0);
+			double[] column = new double[3];
+			matrix.getSecondRow(4, column);
+			for (int i = 0; i < 3; i++)
+				assertEquals(i * 5 + 4, column[i], 0);
+			assertEquals(105, matrix.sum(), 0);
+			assertEquals(35, matrix.sumFirstRow(1), 0);
+			column[1] = 100;
+			matrix.setSecondRow(4, column);
+			assertEquals(100, matrix.getWeight(1, 4), 0);
+			matrix.divideFirstRow(0, 2);
+			assertEquals(1.5, matrix.getWeight(0, 3), 0);
+			matrix.fill(4);
+			matrix.divide(8);
+			assertEquals(7.5, matrix.sum(), 0);
+		}
+	}
+
+	@Test
+	public void shutdownTest() {
+		IIndex index = buildIndex();
+		final int[] shutdowns = new int[1];
+		AdaBoostLearner learner = new AdaBoostLearner();
+		AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) learner
+				.getRuntimeCustomizer();
+		customizer.setNumIterations(5);
+		customizer.setWeakLearner(new MPWeakLearnerMultiThread(3) {
+			@Override
+			public void shutdown() {
+				super.shutdown();
+				shutdowns[0]++;
+			}
+		});
+		customizer.setDistributionMatrixType(DistributionMatrixType.HEAP);
+		customizer.keepDistributionMatrix(false);
+		assertTrue(learner.build(index) instanceof AdaBoostClassifier);
+		assertEquals(1, shutdowns[0]);
+		// the threads are created again when the learner is reused
+		learner.build(index);
+		assertEquals(2, shutdowns[0]);
+	}
+}
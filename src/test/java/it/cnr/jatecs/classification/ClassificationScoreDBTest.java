@@ -0,0 +1,258 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ClassificationScoreDBTest {
+
+	private static final int DOCUMENTS = 200;
+	private static final int CATEGORIES = 30;
+
+	private static ClassifierRange range(double border) {
+		ClassifierRange range = new ClassifierRange();
+		range.border = border;
+		range.minimum = -1;
+		range.maximum = 1;
+		return range;
+	}
+
+	/**
+	 * Fill the DB with random scores, at most one for each category of a
+	 * document, returning the expected scores as a table of doubles.
+	 */
+	private static double[][] fill(ClassificationScoreDB db, Random random) {
+		double[][] expected = new double[DOCUMENTS][CATEGORIES];
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			for (int cat = 0; cat < CATEGORIES; cat++)
+				expected[doc][cat] = Double.NaN;
+			if (doc % 7 == 3)
+				continue;
+			List<Short> categories = new ArrayList<Short>();
+			for (short cat = 0; cat < CATEGORIES; cat++) {
+				if (random.nextInt(4) != 0)
+					categories.add(cat);
+			}
+			Collections.shuffle(categories, random);
+			for (short cat : categories) {
+				double score = random.nextGaussian();
+				// a few scores have a range which differs from the one of their category
+				double border = doc % 11 == 5 && cat % 3 == 0 ? 0.5 : 0;
+				db.insertScore(doc, cat, score, range(border));
+				expected[doc][cat] = score;
+			}
+		}
+		return expected;
+	}
+
+	private static void assertEqualDBs(ClassificationScoreDB expected,
+			ClassificationScoreDB db) {
+		assertEquals(expected.getLayout(), db.getLayout());
+		assertEquals(expected.getWidth(), db.getWidth());
+		assertEquals(expected.getDocumentCount(), db.getDocumentCount());
+		for (int doc = 0; doc < expected.getDocumentCount(); doc++) {
+			assertEquals(expected.getDocumentScoresCount(doc),
+					db.getDocumentScoresCount(doc));
+			for (int i = 0; i < expected.getDocumentScoresCount(doc); i++) {
+				short cat = expected.getDocumentCategory(doc, i);
+				assertEquals(cat, db.getDocumentCategory(doc, i));
+				assertEquals(expected.getDocumentScore(doc, i),
+						db.getDocumentScore(doc, i), 0);
+				assertEquals(expected.getScore(doc, cat), db.getScore(doc, cat),
+						0);
+				assertEquals(expected.getClassifierRange(doc, cat).border, db
+						.getClassifierRange(doc, cat).border, 0);
+			}
+		}
+	}
+
+	private static void roundTrip(ClassificationScoreDB db) throws IOException {
+		File file = File.createTempFile("scores", ".dat");
+		try {
+			db.writeBinary(file);
+			ClassificationScoreDB read = ClassificationScoreDB.readBinary(file,
+					false);
+			assertFalse(read.isReadOnly());
+			assertEqualDBs(db, read);
+
+			ClassificationScoreDB mapped = ClassificationScoreDB.readBinary(
+					file, true);
+			assertTrue(mapped.isReadOnly());
+			assertEqualDBs(db, mapped);
+			try {
+				mapped.insertScore(0, (short) 0, 0, range(0));
+				fail();
+			} catch (UnsupportedOperationException e) {
+			}
+			ClassificationScoreDB copy = mapped.cloneDB();
+			copy.insertScore(0, (short) 0, 10, range(0));
+			assertEquals(10, copy.getScore(0, (short) 0), 0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void sparseTest() throws IOException {
+		ClassificationScoreDB db = new ClassificationScoreDB(DOCUMENTS);
+		double[][] expected = fill(db, new Random(1));
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			Hashtable<Short, ClassifierRangeWithScore> scores = db
+					.getDocumentScoresAsHashtable(doc);
+			int count = 0;
+			for (short cat = 0; cat < CATEGORIES; cat++) {
+				if (Double.isNaN(expected[doc][cat])) {
+					assertFalse(db.hasScore(doc, cat));
+					assertNull(scores.get(cat));
+					assertTrue(Double.isNaN(db.getBorder(doc, cat)));
+					continue;
+				}
+				count++;
+				assertEquals(expected[doc][cat], db.getScore(doc, cat), 0);
+				assertEquals(expected[doc][cat], scores.get(cat).score, 0);
+				double border = doc % 11 == 5 && cat % 3 == 0 ? 0.5 : 0;
+				assertEquals(border, scores.get(cat).border, 0);
+				assertEquals(border, db.getBorder(doc, cat), 0);
+			}
+			assertEquals(count, scores.size());
+			assertEquals(count, db.getDocumentScoresAsSet(doc).size());
+			for (int i = 0; i < db.getDocumentScoresCount(doc); i++) {
+				short category = db.getDocumentCategory(doc, i);
+				assertEquals(scores.get(category).border,
+						db.getDocumentBorder(doc, i), 0);
+			}
+		}
+
+		short cat = db.getDocumentCategory(0, 0);
+		int count = db.getDocumentScoresCount(0);
+		db.insertScore(0, cat, 2, range(0.5));
+		assertEquals(count, db.getDocumentScoresCount(0));
+		assertEquals(2, db.getScore(0, cat), 0);
+		assertEquals(0.5, db.getClassifierRange(0, cat).border, 0);
+		db.removeScore(0, cat);
+		assertEquals(count - 1, db.getDocumentScoresCount(0));
+		assertTrue(Double.isNaN(db.getScore(0, cat)));
+		assertNull(db.getClassifierRange(0, cat));
+		roundTrip(db);
+
+		File file = File.createTempFile("scores", ".txt");
+		try {
+			ClassificationScoreDB.write(file.getPath(), db);
+			assertEqualDBs(db, ClassificationScoreDB.read(file.getPath()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void denseTest() throws IOException {
+		ClassificationScoreDB db = new ClassificationScoreDB(DOCUMENTS,
+				ClassificationScoreLayout.DENSE, CATEGORIES);
+		double[][] expected = fill(db, new Random(2));
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			int count = 0;
+			for (short cat = 0; cat < CATEGORIES; cat++) {
+				assertEquals((float) expected[doc][cat], db.getScore(doc, cat), 0);
+				if (!Double.isNaN(expected[doc][cat])) {
+					assertEquals(cat, db.getDocumentCategory(doc, count));
+					count++;
+				}
+			}
+			assertEquals(count, db.getDocumentScoresCount(doc));
+		}
+		try {
+			db.insertScore(0, (short) CATEGORIES, 0, range(0));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		roundTrip(db);
+	}
+
+	@Test
+	public void topNTest() throws IOException {
+		int n = 5;
+		ClassificationScoreDB db = new ClassificationScoreDB(DOCUMENTS,
+				ClassificationScoreLayout.TOP_N, n);
+		double[][] expected = fill(db, new Random(3));
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			List<Float> scores = new ArrayList<Float>();
+			for (int cat = 0; cat < CATEGORIES; cat++) {
+				if (!Double.isNaN(expected[doc][cat]))
+					scores.add((float) expected[doc][cat]);
+			}
+			Collections.sort(scores, Collections.reverseOrder());
+			assertEquals(Math.min(n, scores.size()),
+					db.getDocumentScoresCount(doc));
+			for (int i = 0; i < db.getDocumentScoresCount(doc); i++) {
+				short cat = db.getDocumentCategory(doc, i);
+				assertEquals(scores.get(i), db.getDocumentScore(doc, i), 0);
+				assertEquals((float) expected[doc][cat], db.getScore(doc, cat),
+						0);
+			}
+		}
+		roundTrip(db);
+	}
+
+	@Test
+	public void writerTest() throws IOException {
+		ClassificationScoreDB db = new ClassificationScoreDB(DOCUMENTS);
+		fill(db, new Random(4));
+		File file = File.createTempFile("scores", ".dat");
+		try {
+			ClassificationScoreWriter writer = new ClassificationScoreWriter(
+					file, DOCUMENTS);
+			for (int doc = 0; doc < DOCUMENTS; doc++) {
+				for (int i = db.getDocumentScoresCount(doc) - 1; i >= 0; i--) {
+					short cat = db.getDocumentCategory(doc, i);
+					writer.insertScore(doc, cat, db.getDocumentScore(doc, i),
+							db.getClassifierRange(doc, cat));
+				}
+			}
+			try {
+				writer.insertScore(0, (short) 0, 0, range(0));
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+			writer.close();
+			assertEqualDBs(db, ClassificationScoreDB.readBinary(file, true));
+		} finally {
+			file.delete();
+		}
+	}
+}
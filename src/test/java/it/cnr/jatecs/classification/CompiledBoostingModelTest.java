@@ -0,0 +1,160 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import it.cnr.jatecs.classification.adaboost.AdaBoostClassifier;
+import it.cnr.jatecs.classification.adaboost.AdaBoostClassifierCustomizer;
+import it.cnr.jatecs.classification.adaboost.AdaBoostDataManager;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearner;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearnerCustomizer;
+import it.cnr.jatecs.classification.adaboost.CompiledBoostingModel;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.io.FileSystemStorageManager;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.io.RamStorageManager;
+import it.cnr.jatecs.utils.Os;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompiledBoostingModelTest {
+
+	protected static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		String[] cats = new String[] { "a", "b", "c" };
+		catsBuilder.setCategories(cats);
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { cats[random.nextInt(cats.length)] });
+		}
+		return builder.getIndex();
+	}
+
+	protected static AdaBoostClassifier learn(IIndex index, int iterations) {
+		AdaBoostLearner learner = new AdaBoostLearner();
+		AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) learner
+				.getRuntimeCustomizer();
+		customizer.setNumIterations(iterations);
+		return (AdaBoostClassifier) learner.build(index);
+	}
+
+	/**
+	 * Compare the grouped scores with the ones of the hypotheses applied one
+	 * by one.
+	 */
+	protected static void check(AdaBoostClassifier classifier, IIndex index) {
+		AdaBoostClassifierCustomizer customizer = (AdaBoostClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		for (int doc = 0; doc < documents; doc++) {
+			customizer.groupHypothesis(true);
+			ClassificationResult grouped = classifier.classify(index, doc);
+			customizer.groupHypothesis(false);
+			ClassificationResult expected = classifier.classify(index, doc);
+			assertEquals(doc, grouped.documentID);
+			assertEquals(expected.categoryID.size(), grouped.categoryID.size());
+			for (int i = 0; i < expected.categoryID.size(); i++) {
+				assertEquals(expected.categoryID.get(i),
+						grouped.categoryID.get(i));
+				assertEquals(expected.score.get(i), grouped.score.get(i), 1e-9);
+			}
+		}
+		customizer.groupHypothesis(true);
+	}
+
+	@Test
+	public void classifyTest() {
+		IIndex index = buildIndex(120, 30, 3);
+		AdaBoostClassifier classifier = learn(index, 60);
+		check(classifier, index);
+
+		AdaBoostClassifierCustomizer customizer = (AdaBoostClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		customizer.setNumIterations(17);
+		check(classifier, index);
+		assertEquals(17, classifier.getCompiledModel().getIterations());
+	}
+
+	protected static void readWrite(IStorageManager storageManager,
+			IIndex index) {
+		AdaBoostClassifier classifier = learn(index, 40);
+		CompiledBoostingModel compiled = classifier.getCompiledModel();
+		AdaBoostDataManager dataManager = new AdaBoostDataManager();
+		dataManager.write(storageManager, "cl1", classifier);
+
+		AdaBoostClassifier read = (AdaBoostClassifier) dataManager.read(
+				storageManager, "cl1");
+		CompiledBoostingModel readCompiled = read.getCompiledModel();
+		assertNotNull(readCompiled);
+		assertEquals(compiled.getEntriesCount(),
+				readCompiled.getEntriesCount());
+		assertEquals(compiled.getFeaturesCount(),
+				readCompiled.getFeaturesCount());
+		int documents = index.getDocumentDB().getDocumentsCount();
+		for (int doc = 0; doc < documents; doc++) {
+			ClassificationResult expected = classifier.classify(index, doc);
+			ClassificationResult result = read.classify(index, doc);
+			for (int i = 0; i < expected.score.size(); i++)
+				assertEquals(expected.score.get(i), result.score.get(i), 0);
+		}
+		check(read, index);
+	}
+
+	@Test
+	public void ramReadWriteTest() throws IOException {
+		RamStorageManager storageManager = new RamStorageManager();
+		storageManager.open();
+		readWrite(storageManager, buildIndex(80, 25, 5));
+		storageManager.close();
+	}
+
+	@Test
+	public void mappedReadWriteTest() throws IOException {
+		String dir = Os.getTemporaryDirectory() + Os.pathSeparator()
+				+ "compiledBoosting" + System.nanoTime();
+		FileSystemStorageManager storageManager = new FileSystemStorageManager(
+				dir, true);
+		storageManager.open();
+		try {
+			readWrite(storageManager, buildIndex(80, 25, 7));
+		} finally {
+			storageManager.close();
+			Os.delete(new File(dir));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import static org.junit.Assert.assertEquals;
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.evaluation.ClassificationComparer;
+import it.cnr.jatecs.evaluation.ContingencyTable;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.utils.Os;
+import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ThresholdSweepTest {
+
+	@Test
+	public void evaluateTest() {
+		evaluateTest(false);
+	}
+
+	/**
+	 * The counts of the pairwise comparison of the scores with the
+	 * threshold, where a NaN score is never above nor below it.
+	 */
+	@Test
+	public void unassignedAsNegativesTest() {
+		evaluateTest(true);
+	}
+
+	private void evaluateTest(boolean unassignedAsNegatives) {
+		Random random = new Random(1);
+		double[] scores = new double[500];
+		boolean[] relevant = new boolean[scores.length];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = random.nextInt(10) == 0 ? Double.NaN : Math
+					.round(random.nextGaussian() * 10) / 10.0;
+			relevant[i] = random.nextBoolean();
+		}
+		ThresholdSweep sweep = new ThresholdSweep(scores, relevant,
+				unassignedAsNegatives);
+		double[] thresholds = sweep.getDistinctScores();
+		ContingencyTable[] tables = sweep.evaluate(thresholds);
+		for (int t = 0; t < thresholds.length; t++) {
+			if (t > 0)
+				assertEquals(true, thresholds[t - 1] < thresholds[t]);
+			int tp = 0, fp = 0, fn = 0, tn = 0;
+			for (int i = 0; i < scores.length; i++) {
+				boolean assigned = scores[i] >= thresholds[t];
+				if (assigned && relevant[i])
+					tp++;
+				else if (assigned)
+					fp++;
+				else if (relevant[i]
+						&& !(unassignedAsNegatives && Double.isNaN(scores[i])))
+					fn++;
+				else
+					tn++;
+			}
+			assertEquals(tp, tables[t].tp());
+			assertEquals(fp, tables[t].fp());
+			assertEquals(fn, tables[t].fn());
+			assertEquals(tn, tables[t].tn());
+		}
+	}
+
+	@Test
+	public void gridTest() {
+		int documents = 300;
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(2);
+		for (int i = 0; i < documents; i++)
+			builder.addDocument("d" + i, new String[] { "f" },
+					new String[] { random.nextInt(3) == 0 ? "a" : "b" });
+		IIndex validation = builder.getIndex();
+		short catID = 0;
+
+		// Some documents have no result, the scores hit the grid values.
+		List<ClassificationResult> list = new ArrayList<ClassificationResult>();
+		for (int i = 0; i < documents; i++) {
+			if (random.nextInt(20) == 0)
+				continue;
+			ClassificationResult res = new ClassificationResult();
+			res.documentID = i;
+			res.categoryID.add(catID);
+			boolean relevant = validation.getClassificationDB()
+					.hasDocumentCategory(i, catID);
+			res.score.add(Math.round((random.nextDouble() * 1.6 - 0.8
+					+ (relevant ? 0.3 : 0)) * 100) / 100.0);
+			list.add(res);
+		}
+		ClassificationResult[] results = list
+				.toArray(new ClassificationResult[list.size()]);
+
+		ThresholdClassifierOptimizer optimizer = new ThresholdClassifierOptimizer();
+		List<Double> grid = new ArrayList<Double>();
+		double threshold = Os.generateDouble(optimizer._minimum,
+				optimizer._decimalPrecision);
+		while (threshold <= optimizer._maximum) {
+			grid.add(threshold);
+			threshold = Os.generateDouble(threshold + optimizer._step,
+					optimizer._decimalPrecision);
+		}
+		double[] gridArray = new double[grid.size()];
+		for (int i = 0; i < gridArray.length; i++)
+			gridArray[i] = grid.get(i);
+		ThresholdSweep sweep = ThresholdSweep.fromResults(results, validation,
+				catID);
+
+		for (ThresholdOptimizerType type : ThresholdOptimizerType.values()) {
+			optimizer.setOptimizationType(type);
+
+			// The selection done by labelling and comparing at each step.
+			double bestThreshold = optimizer._minimum;
+			double bestEffectiveness = Double.MIN_VALUE;
+			TShortArrayList categories = new TShortArrayList();
+			categories.add(catID);
+			for (double t : gridArray) {
+				IClassificationDBBuilder labels = new TroveClassificationDBBuilder(
+						validation.getDocumentDB(), validation.getCategoryDB());
+				for (ClassificationResult res : results)
+					if (res.score.get(0) >= t)
+						labels.setDocumentCategory(res.documentID, catID);
+				ContingencyTable ct = new ClassificationComparer(
+						labels.getClassificationDB(),
+						validation.getClassificationDB(),
+						new TShortArrayListIterator(categories)).evaluate()
+						.getCategoryContingencyTable(catID);
+				double effectiveness = ThresholdSweep.getEffectiveness(ct,
+						type);
+				if (effectiveness > bestEffectiveness) {
+					bestThreshold = t;
+					bestEffectiveness = effectiveness;
+				}
+			}
+
+			double[] best = optimizer.selectThreshold(sweep, gridArray);
+			assertEquals(bestThreshold, best[0], 0);
+			assertEquals(bestEffectiveness, best[1], 0);
+		}
+	}
+}
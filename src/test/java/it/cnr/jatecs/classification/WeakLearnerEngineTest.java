@@ -0,0 +1,69 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification;
+
+import it.cnr.jatecs.classification.adaboost.AdaBoostClassifier;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearner;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearnerCustomizer;
+import it.cnr.jatecs.classification.adaboost.IWeakLearner;
+import it.cnr.jatecs.classification.adaboost.MHWeakLearner;
+import it.cnr.jatecs.classification.mpboost.MPWeakLearner;
+import it.cnr.jatecs.classification.mpboost.MPWeakLearnerMultiThread;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import org.junit.Test;
+
+public class WeakLearnerEngineTest {
+
+	protected static AdaBoostClassifier learn(IIndex index, IWeakLearner wl) {
+		AdaBoostLearner learner = new AdaBoostLearner();
+		AdaBoostLearnerCustomizer customizer = (AdaBoostLearnerCustomizer) learner
+				.getRuntimeCustomizer();
+		customizer.setNumIterations(15);
+		customizer.setWeakLearner(wl);
+		customizer.keepDistributionMatrix(false);
+		return (AdaBoostClassifier) learner.build(index);
+	}
+
+	@Test
+	public void mpTest() {
+		IIndex index = AdaBoostDistributionMatrixTest.buildIndex();
+		AdaBoostClassifier expected = learn(index, new MPWeakLearner());
+		MPWeakLearnerMultiThread wl = new MPWeakLearnerMultiThread(3);
+		AdaBoostDistributionMatrixTest.compare(expected, learn(index, wl), 0);
+		// The threads are reused by a second learning.
+		AdaBoostDistributionMatrixTest.compare(expected, learn(index, wl), 0);
+		wl.shutdown();
+	}
+
+	@Test
+	public void mhTest() {
+		IIndex index = AdaBoostDistributionMatrixTest.buildIndex();
+		AdaBoostClassifier expected = learn(index, new MHWeakLearner());
+		MHWeakLearner wl = new MHWeakLearner(4);
+		AdaBoostDistributionMatrixTest.compare(expected, learn(index, wl), 0);
+		wl.shutdown();
+	}
+}
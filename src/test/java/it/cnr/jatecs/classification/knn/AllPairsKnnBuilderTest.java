@@ -0,0 +1,144 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import static org.junit.Assert.assertEquals;
+import gnu.trove.TIntArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class AllPairsKnnBuilderTest {
+
+	private static void checkTable(IIndex index, KnnNeighboursTable table, int k) {
+		CosineSimilarityFunction cosine = new CosineSimilarityFunction();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		assertEquals(documents, table.getDocumentsCount());
+		assertEquals(k, table.getNeighboursCount());
+		int[] docs = new int[k];
+		double[] scores = new double[k];
+		for (int doc = 0; doc < documents; doc++) {
+			KnnTopKHeap heap = new KnnTopKHeap(k);
+			for (int d = 0; d < documents; d++) {
+				if (d != doc)
+					heap.offer(d, cosine.compute(doc, d, index));
+			}
+			heap.drainAscending(docs, scores);
+			for (int i = 0; i < k; i++) {
+				assertEquals(docs[k - 1 - i], table.getNeighbour(doc, i));
+				assertEquals((float) scores[k - 1 - i], table.getScore(doc, i),
+						0);
+			}
+		}
+	}
+
+	@Test
+	public void buildTest() {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(250, 100, 11);
+		AllPairsKnnBuilder builder = new AllPairsKnnBuilder();
+		checkTable(index, builder.build(index, 15), 15);
+
+		builder.setThreads(3);
+		builder.setBlockSize(17);
+		checkTable(index, builder.build(index, 15), 15);
+		// More neighbours than documents.
+		checkTable(index, builder.build(index, 1000), 249);
+	}
+
+	@Test
+	public void fileTest() throws IOException {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(200, 80, 12);
+		AllPairsKnnBuilder builder = new AllPairsKnnBuilder();
+		builder.setThreads(2);
+		builder.setBlockSize(13);
+		File file = File.createTempFile("neighbours", ".dat");
+		File copy = File.createTempFile("neighbours", ".dat");
+		try {
+			KnnNeighboursTable table = builder.build(index, 10, file);
+			checkTable(index, table, 10);
+			table.write(copy);
+			checkTable(index, KnnNeighboursTable.read(copy, false), 10);
+			checkTable(index, KnnNeighboursTable.read(file, true), 10);
+		} finally {
+			file.delete();
+			copy.delete();
+		}
+	}
+
+	/**
+	 * A table computed on the whole index must give the results of a cosine
+	 * search between two subsets of its documents.
+	 */
+	@Test
+	public void searcherTest() {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(300, 100, 13);
+		KnnNeighboursTable table = new AllPairsKnnBuilder().build(index, 12);
+
+		TIntArrayList training = new TIntArrayList();
+		TIntArrayList test = new TIntArrayList();
+		for (int doc = 0; doc < 300; doc++) {
+			if (doc % 3 == 0)
+				test.add(doc);
+			else
+				training.add(doc);
+		}
+		IIndex trainingIndex = index.cloneIndex();
+		trainingIndex.removeDocuments(new TIntArrayListIterator(test), false);
+		IIndex testIndex = index.cloneIndex();
+		testIndex.removeDocuments(new TIntArrayListIterator(training), false);
+
+		TextualKnnSearcher expected = new TextualKnnSearcher();
+		expected.setSimilarityFunction(new CosineSimilarityFunction());
+		TextualKnnSearcher searcher = new TextualKnnSearcher();
+		searcher.setSimilarityFunction(new CosineSimilarityFunction());
+		searcher.setNeighboursTable(table, training.toNativeArray(),
+				test.toNativeArray());
+		CosineSimilarityFunction cosine = new CosineSimilarityFunction();
+		KnnResults expectedResults = new KnnResults();
+		KnnResults results = new KnnResults();
+		// The larger k need the fallback to the exhaustive search.
+		for (int k = 1; k <= 12; k += 5) {
+			for (int doc = 0; doc < test.size(); doc++) {
+				expected.search(testIndex, doc, trainingIndex, k,
+						expectedResults);
+				searcher.search(testIndex, doc, trainingIndex, k, results);
+				assertEquals(expectedResults.size(), results.size());
+				// Documents with the same float similarity may be swapped.
+				for (int i = 0; i < results.size(); i++) {
+					assertEquals(expectedResults.getScore(i),
+							results.getScore(i), 1e-6);
+					assertEquals(cosine.compute(doc, testIndex,
+							results.getDocument(i), trainingIndex),
+							results.getScore(i), 1e-6);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+
+public class InvertedIndexKnnSearcherTest {
+
+	protected static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[random.nextInt(20)];
+			for (int j = 0; j < feats.length; j++) {
+				// Skewed distribution, to have long postings.
+				int feat = random.nextBoolean() ? random.nextInt(5) : random
+						.nextInt(features);
+				feats[j] = "f" + feat;
+			}
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextBoolean() ? "a" : "b" });
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weighting = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < documents; doc++) {
+			IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+			while (it.hasNext())
+				weighting.setDocumentFeatureWeight(doc, it.next(),
+						random.nextDouble());
+		}
+		return new GenericIndex(index.getFeatureDB(), index.getDocumentDB(),
+				index.getCategoryDB(), index.getDomainDB(),
+				index.getContentDB(), weighting.getWeightingDB(),
+				index.getClassificationDB());
+	}
+
+	/**
+	 * Exhaustive search, in the same order returned by the searchers.
+	 */
+	protected static double[] bruteForce(IIndex index, int doc, int k) {
+		CosineSimilarityFunction cosine = new CosineSimilarityFunction();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		KnnTopKHeap heap = new KnnTopKHeap(k);
+		for (int d = 0; d < documents; d++) {
+			double score = index.getContentDB().getDocumentFeaturesCount(doc) == 0 ? 0
+					: cosine.compute(doc, index, d, index);
+			heap.offer(d, score);
+		}
+		int[] docs = new int[k];
+		double[] scores = new double[k];
+		heap.drainAscending(docs, scores);
+		return scores;
+	}
+
+	@Test
+	public void searchTest() {
+		IIndex index = buildIndex(400, 150, 1);
+		InvertedIndexKnnSearcher pruned = new InvertedIndexKnnSearcher();
+		InvertedIndexKnnSearcher exhaustive = new InvertedIndexKnnSearcher();
+		exhaustive.setPruning(false);
+		for (int k = 1; k <= 30; k += 7) {
+			for (int doc = 0; doc < 400; doc += 3) {
+				double[] expected = bruteForce(index, doc, k);
+				Vector<SimilarDocument> a = pruned.search(index, doc, index, k);
+				Vector<SimilarDocument> b = exhaustive.search(index, doc,
+						index, k);
+				assertEquals(k, a.size());
+				assertEquals(k, b.size());
+				for (int i = 0; i < k; i++) {
+					assertEquals(expected[i], a.get(i).score, 1e-9);
+					assertEquals(a.get(i).docID, b.get(i).docID);
+					assertEquals(a.get(i).score, b.get(i).score, 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void blockSearchTest() {
+		IIndex index = buildIndex(300, 100, 2);
+		InvertedIndexKnnSearcher searcher = new InvertedIndexKnnSearcher();
+		IKnnSearcher clone = searcher.cloneSearcher();
+		// The buffers of a block are reused by the next ones, the large
+		// block is split.
+		int[] large = new int[150];
+		for (int i = 0; i < large.length; i++)
+			large[i] = (i * 7) % 300;
+		int[][] blocks = new int[][] { { 5, 0, 17, 299, 42, 43, 120 }, large,
+				{ 43, 5, 200 } };
+		for (int[] block : blocks) {
+			List<Vector<SimilarDocument>> results = searcher.search(index,
+					block, index, 10);
+			assertEquals(block.length, results.size());
+			for (int i = 0; i < block.length; i++) {
+				Vector<SimilarDocument> expected = clone.search(index,
+						block[i], index, 10);
+				Vector<SimilarDocument> found = results.get(i);
+				assertEquals(expected.size(), found.size());
+				for (int j = 0; j < expected.size(); j++) {
+					assertEquals(expected.get(j).docID, found.get(j).docID);
+					assertEquals(expected.get(j).score, found.get(j).score, 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void heapTest() {
+		Random random = new Random(3);
+		KnnTopKHeap heap = new KnnTopKHeap(10);
+		double[] scores = new double[1000];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = random.nextInt(100);
+			heap.offer(i, scores[i]);
+		}
+		int[] docs = new int[10];
+		double[] top = new double[10];
+		assertEquals(10, heap.drainAscending(docs, top));
+		assertEquals(0, heap.size());
+		for (int i = 1; i < 10; i++) {
+			assertEquals(true, top[i - 1] < top[i]
+					|| (top[i - 1] == top[i] && docs[i - 1] > docs[i]));
+		}
+		int better = 0;
+		for (int i = 0; i < scores.length; i++)
+			if (scores[i] > top[0] || (scores[i] == top[0] && i < docs[0]))
+				better++;
+		assertEquals(9, better);
+	}
+}
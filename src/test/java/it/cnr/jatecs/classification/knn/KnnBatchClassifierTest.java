@@ -0,0 +1,84 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.classification.ClassificationResult;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import org.junit.Test;
+
+public class KnnBatchClassifierTest {
+
+	protected static void check(IClassifier classifier, IIndex test) {
+		KnnBatchClassifier batch = new KnnBatchClassifier(classifier);
+		batch.setThreads(4);
+		batch.setBlockSize(8);
+		ClassificationResult[] results = batch.classify(test);
+		assertEquals(test.getDocumentDB().getDocumentsCount(), results.length);
+		for (int doc = 0; doc < results.length; doc++) {
+			ClassificationResult expected = classifier.classify(test, doc);
+			assertEquals(doc, results[doc].documentID);
+			assertEquals(expected.categoryID.size(),
+					results[doc].categoryID.size());
+			for (int i = 0; i < expected.categoryID.size(); i++) {
+				assertEquals(expected.categoryID.get(i),
+						results[doc].categoryID.get(i));
+				assertEquals(expected.score.get(i), results[doc].score.get(i),
+						0);
+			}
+		}
+	}
+
+	@Test
+	public void knnTest() {
+		IIndex training = InvertedIndexKnnSearcherTest.buildIndex(300, 100, 1);
+		IIndex test = InvertedIndexKnnSearcherTest.buildIndex(150, 100, 2);
+		KnnClassifier classifier = new KnnClassifier(training);
+		KnnClassifierCustomizer cust = (KnnClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		cust.setSearcher(new InvertedIndexKnnSearcher());
+		cust.setK((short) 0, 10);
+		cust.setK((short) 1, 5);
+		check(classifier, test);
+
+		cust.setSearcher(new TextualKnnSearcher());
+		check(classifier, test);
+	}
+
+	@Test
+	public void singleLabelTest() {
+		IIndex training = InvertedIndexKnnSearcherTest.buildIndex(300, 100, 3);
+		IIndex test = InvertedIndexKnnSearcherTest.buildIndex(100, 100, 4);
+		SingleLabelKnnClassifier classifier = new SingleLabelKnnClassifier(
+				training);
+		SingleLabelKnnClassifierCustomizer cust = (SingleLabelKnnClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		cust.setSearcher(new InvertedIndexKnnSearcher());
+		cust.setK(7);
+		check(classifier, test);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.knn;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexing.similarity.CosineSimilarityFunction;
+import it.cnr.jatecs.indexing.similarity.EuclideanDistance;
+
+import java.util.Vector;
+
+import org.junit.Test;
+
+public class TextualKnnSearcherTest {
+
+	/**
+	 * The dense cosine path must give exactly the scores of the similarity
+	 * function, and the recycled results the same content of the vectors.
+	 */
+	@Test
+	public void cosineTest() {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(300, 100, 4);
+		TextualKnnSearcher searcher = new TextualKnnSearcher();
+		searcher.setSimilarityFunction(new CosineSimilarityFunction());
+		KnnResults results = new KnnResults(1);
+		for (int k = 1; k <= 30; k += 7) {
+			for (int doc = 0; doc < 300; doc += 5) {
+				double[] expected = InvertedIndexKnnSearcherTest.bruteForce(
+						index, doc, k);
+				searcher.search(index, doc, index, k, results);
+				Vector<SimilarDocument> docs = searcher.search(index, doc,
+						index, k);
+				assertEquals(k, results.size());
+				assertEquals(k, docs.size());
+				for (int i = 0; i < k; i++) {
+					assertEquals(expected[i], results.getScore(i), 0);
+					assertEquals(results.getDocument(i), docs.get(i).docID);
+					assertEquals(results.getScore(i), docs.get(i).score, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * With a distance the most similar documents are the ones with the
+	 * lowest scores.
+	 */
+	@Test
+	public void distanceTest() {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(200, 80, 5);
+		TextualKnnSearcher searcher = new TextualKnnSearcher();
+		EuclideanDistance distance = new EuclideanDistance();
+		KnnResults results = new KnnResults();
+		int k = 12;
+		for (int doc = 0; doc < 200; doc += 7) {
+			KnnTopKHeap heap = new KnnTopKHeap(k);
+			for (int d = 0; d < 200; d++)
+				heap.offer(d, -distance.compute(doc, index, d, index));
+			int[] docs = new int[k];
+			double[] scores = new double[k];
+			heap.drainAscending(docs, scores);
+
+			searcher.search(index, doc, index, k, results);
+			assertEquals(k, results.size());
+			for (int i = 0; i < k; i++) {
+				assertEquals(docs[i], results.getDocument(i));
+				assertEquals(-scores[i], results.getScore(i), 0);
+			}
+			// The most similar document is the document itself.
+			assertEquals(doc, results.getDocument(k - 1));
+		}
+	}
+
+	@Test
+	public void invertedIndexTest() {
+		IIndex index = InvertedIndexKnnSearcherTest.buildIndex(300, 100, 6);
+		InvertedIndexKnnSearcher searcher = new InvertedIndexKnnSearcher();
+		IKnnSearcher clone = searcher.cloneSearcher();
+		KnnResults results = new KnnResults();
+		for (int doc = 0; doc < 300; doc += 3) {
+			searcher.search(index, doc, index, 10, results);
+			Vector<SimilarDocument> expected = clone.search(index, doc,
+					index, 10);
+			assertEquals(expected.size(), results.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).docID, results.getDocument(i));
+				assertEquals(expected.get(i).score, results.getScore(i), 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.module;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.classification.ClassificationMode;
+import it.cnr.jatecs.classification.ClassificationScoreDB;
+import it.cnr.jatecs.classification.ClassifierRangeWithScore;
+import it.cnr.jatecs.classification.adaboost.AdaBoostLearner;
+import it.cnr.jatecs.classification.interfaces.IClassifier;
+import it.cnr.jatecs.classification.knn.InvertedIndexKnnSearcher;
+import it.cnr.jatecs.classification.knn.KnnClassifier;
+import it.cnr.jatecs.classification.knn.KnnClassifierCustomizer;
+import it.cnr.jatecs.classification.naivebayes.NaiveBayesLearner;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.Hashtable;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ClassifierTest {
+
+	protected static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		String[] cats = new String[] { "a", "b", "c" };
+		catsBuilder.setCategories(cats);
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { cats[random.nextInt(cats.length)] });
+		}
+		return builder.getIndex();
+	}
+
+	protected static Classifier run(IIndex index, IClassifier classifier,
+			ClassificationMode mode) {
+		Classifier module = new Classifier(index, classifier, true);
+		module.setClassificationMode(mode);
+		module.setThreads(4);
+		module.setBlockSize(37);
+		module.exec();
+		return module;
+	}
+
+	/**
+	 * Check that the parallel mode gives the same output of the sequential
+	 * one.
+	 */
+	protected static void check(IIndex index, IClassifier classifier) {
+		Classifier sequential = run(index, classifier,
+				ClassificationMode.PER_DOCUMENT);
+		Classifier parallel = run(index, classifier,
+				ClassificationMode.PARALLEL_PER_DOCUMENT);
+
+		IClassificationDB expected = sequential.getClassificationDB();
+		IClassificationDB result = parallel.getClassificationDB();
+		ClassificationScoreDB expectedScores = sequential.getConfidences();
+		ClassificationScoreDB scores = parallel.getConfidences();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		assertEquals(documents, scores.getDocumentCount());
+		for (int doc = 0; doc < documents; doc++) {
+			assertEquals(expected.getDocumentCategoriesCount(doc),
+					result.getDocumentCategoriesCount(doc));
+			IShortIterator cats = expected.getDocumentCategories(doc);
+			while (cats.hasNext())
+				assertEquals(true,
+						result.hasDocumentCategory(doc, cats.next()));
+
+			Hashtable<Short, ClassifierRangeWithScore> e = expectedScores
+					.getDocumentScoresAsHashtable(doc);
+			Hashtable<Short, ClassifierRangeWithScore> r = scores
+					.getDocumentScoresAsHashtable(doc);
+			assertEquals(e.size(), r.size());
+			for (Short catID : e.keySet()) {
+				assertEquals(e.get(catID).score, r.get(catID).score, 0);
+				assertEquals(e.get(catID).border, r.get(catID).border, 0);
+			}
+		}
+	}
+
+	@Test
+	public void parallelTest() {
+		IIndex training = buildIndex(200, 40, 1);
+		IIndex test = buildIndex(150, 40, 2);
+
+		check(test, new NaiveBayesLearner().build(training));
+		check(test, new AdaBoostLearner().build(training));
+
+		KnnClassifier knn = new KnnClassifier(training);
+		KnnClassifierCustomizer cust = (KnnClassifierCustomizer) knn
+				.getRuntimeCustomizer();
+		cust.setSearcher(new InvertedIndexKnnSearcher());
+		cust.setK((short) 0, 10);
+		cust.setK((short) 1, 5);
+		cust.setK((short) 2, 7);
+		check(test, knn);
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.naivebayes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import it.cnr.jatecs.classification.ClassificationResult;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NaiveBayesClassifierTest {
+
+	protected static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b", "c" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		String[] cats = new String[] { "a", "b", "c" };
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(20)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { cats[random.nextInt(cats.length)] });
+		}
+		return builder.getIndex();
+	}
+
+	/**
+	 * The product of the weights, as computed before the log-space scoring.
+	 */
+	protected static double reference(NaiveBayesClassifier classifier,
+			IIndex index, int doc, short cat, boolean trueProbabilities) {
+		int priors = classifier._weights.getFirstDimensionSize() - 1;
+		double score = 1.0;
+		IIntIterator feats = index.getContentDB().getDocumentFeatures(doc);
+		while (feats.hasNext())
+			score *= classifier._weights.getWeight(feats.next(), cat, 0);
+		double catRatio = classifier._weights.getWeight(priors, cat, 0);
+		score *= catRatio;
+		if (trueProbabilities)
+			score = score / (score + catRatio);
+		return score;
+	}
+
+	protected static NaiveBayesClassifier build(IIndex index) {
+		return (NaiveBayesClassifier) new NaiveBayesLearner().build(index);
+	}
+
+	@Test
+	public void scoresTest() {
+		IIndex index = buildIndex(200, 60, 5);
+		NaiveBayesClassifier classifier = build(index);
+		NaiveBayesClassifierCustomizer cust = (NaiveBayesClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		for (int pass = 0; pass < 2; pass++) {
+			boolean trueProbabilities = pass == 0;
+			cust.computeTrueProbabilities(trueProbabilities);
+			for (int doc = 0; doc < documents; doc++) {
+				ClassificationResult cr = classifier.classify(index, doc);
+				assertEquals(3, cr.score.size());
+				for (int i = 0; i < cr.score.size(); i++) {
+					short cat = cr.categoryID.get(i);
+					double expected = reference(classifier, index, doc, cat,
+							trueProbabilities);
+					assertEquals(expected, cr.score.get(i),
+							1e-9 * Math.max(1, Math.abs(expected)));
+				}
+			}
+		}
+
+		cust.computeLogScores(true);
+		assertEquals(0.0, classifier.getClassifierRange((short) 0).border, 0);
+		for (int doc = 0; doc < documents; doc++) {
+			ClassificationResult cr = classifier.classify(index, doc);
+			for (int i = 0; i < cr.score.size(); i++) {
+				double expected = Math.log(reference(classifier, index, doc,
+						cr.categoryID.get(i), false));
+				assertEquals(expected, cr.score.get(i), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void batchTest() {
+		IIndex index = buildIndex(300, 80, 7);
+		NaiveBayesClassifier classifier = build(index);
+		NaiveBayesClassifierCustomizer cust = (NaiveBayesClassifierCustomizer) classifier
+				.getRuntimeCustomizer();
+		for (int threads = 1; threads <= 4; threads += 3) {
+			cust.setThreads(threads);
+			ClassificationResult[] results = classifier.classify(index);
+			assertEquals(index.getDocumentDB().getDocumentsCount(),
+					results.length);
+			for (int doc = 0; doc < results.length; doc++) {
+				ClassificationResult expected = classifier.classify(index, doc);
+				assertEquals(doc, results[doc].documentID);
+				assertEquals(expected.score.size(), results[doc].score.size());
+				for (int i = 0; i < expected.score.size(); i++) {
+					assertEquals(expected.categoryID.get(i),
+							results[doc].categoryID.get(i));
+					assertEquals(expected.score.get(i),
+							results[doc].score.get(i), 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void logWeightsSizeTest() {
+		assertEquals(61 * 3, NaiveBayesClassifier.getLogWeightsSize(61, 3));
+		try {
+			// The int product would overflow to a small positive size.
+			NaiveBayesClassifier.getLogWeightsSize(65537, 65537);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.thresholdboost;
+
+import static org.junit.Assert.assertEquals;
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.classification.interfaces.IClassifierRuntimeCustomizer;
+import it.cnr.jatecs.evaluation.ContingencyTable;
+import it.cnr.jatecs.utils.Pair;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+
+public class ThresholdBoostClassifierOptimizerTest {
+
+	/**
+	 * The selection done by building a contingency table for each candidate.
+	 */
+	private static double exhaustive(Vector<Pair<Double, Boolean>> all) {
+		double bestThreshold = Math.abs(Double.MAX_VALUE);
+		double bestEffectiveness = -Double.MAX_VALUE;
+		for (int i = 0; i < all.size(); i++) {
+			double ref = all.get(i).getFirst();
+			ContingencyTable ct = new ContingencyTable();
+			for (int j = 0; j < all.size(); j++) {
+				Pair<Double, Boolean> p = all.get(j);
+				if (p.getFirst() >= ref && p.getSecond())
+					ct.setTP(ct.tp() + 1);
+				else if (p.getFirst() >= ref && !p.getSecond())
+					ct.setFP(ct.fp() + 1);
+				else if (p.getFirst() < ref && p.getSecond())
+					ct.setFN(ct.fn() + 1);
+				else
+					ct.setTN(ct.tn() + 1);
+			}
+			double effectiveness = (ct.f1Pos() + ct.f1Neg()) / 2;
+			if (effectiveness > bestEffectiveness) {
+				bestThreshold = ref;
+				bestEffectiveness = effectiveness;
+			} else if (effectiveness == bestEffectiveness
+					&& Math.abs(ref) < bestThreshold) {
+				bestThreshold = Math.abs(ref);
+				bestEffectiveness = effectiveness;
+			}
+		}
+		return bestThreshold;
+	}
+
+	@Test
+	public void assignTest() {
+		Random random = new Random(4);
+		int categories = 5;
+		Vector<IClassifierRuntimeCustomizer> customizers = new Vector<IClassifierRuntimeCustomizer>();
+		for (int c = 0; c < 3; c++) {
+			ThresholdBoostCustomizerOptimizer cust = new ThresholdBoostCustomizerOptimizer();
+			for (int cat = 0; cat < categories; cat++) {
+				Vector<Pair<Double, Boolean>> scores = new Vector<Pair<Double, Boolean>>();
+				for (int i = 0; i < 80; i++) {
+					boolean relevant = random.nextInt(4) == 0;
+					// Few distinct values, so many candidates tie.
+					double score = random.nextInt(11) / 5.0 - 1
+							+ (relevant ? 0.4 : 0);
+					scores.add(new Pair<Double, Boolean>(score, relevant));
+				}
+				cust._scores.add(scores);
+			}
+			customizers.add(cust);
+		}
+		TShortArrayList internal = new TShortArrayList();
+		TShortArrayList external = new TShortArrayList();
+		for (int cat = 0; cat < categories; cat++) {
+			internal.add((short) cat);
+			external.add((short) (categories - 1 - cat));
+		}
+
+		ThresholdBoostClassifierOptimizer optimizer = new ThresholdBoostClassifierOptimizer();
+		optimizer.setThreads(3);
+		ThresholdBoostClassifierCustomizer target = new ThresholdBoostClassifierCustomizer();
+		optimizer.assignBestClassifierConfiguration(target, external,
+				customizers, internal);
+
+		for (int cat = 0; cat < categories; cat++) {
+			Vector<Pair<Double, Boolean>> all = new Vector<Pair<Double, Boolean>>();
+			for (IClassifierRuntimeCustomizer c : customizers)
+				all.addAll(((ThresholdBoostCustomizerOptimizer) c)._scores
+						.get(cat));
+			all.add(new Pair<Double, Boolean>(0.0, true));
+			assertEquals(exhaustive(all), target.getClassifierRange(
+					external.get(cat)).border, 0);
+		}
+	}
+}
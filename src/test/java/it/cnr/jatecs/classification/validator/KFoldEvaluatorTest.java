@@ -0,0 +1,139 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.classification.validator;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.classification.naivebayes.NaiveBayesClassifierCustomizer;
+import it.cnr.jatecs.classification.naivebayes.NaiveBayesLearner;
+import it.cnr.jatecs.classification.naivebayes.NaiveBayesLearnerCustomizer;
+import it.cnr.jatecs.evaluation.ContingencyTable;
+import it.cnr.jatecs.evaluation.ContingencyTableSet;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KFoldEvaluatorTest {
+
+	protected static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		String[] cats = new String[] { "a", "b", "c" };
+		catsBuilder.setCategories(cats);
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { cats[random.nextInt(cats.length)] });
+		}
+		return builder.getIndex();
+	}
+
+	protected static void assertSameTables(ContingencyTableSet expected,
+			ContingencyTableSet actual) {
+		assertEquals(expected.getEvaluatedCategoriesCount(),
+				actual.getEvaluatedCategoriesCount());
+		for (short cat = 0; cat < expected.getEvaluatedCategoriesCount(); cat++) {
+			ContingencyTable e = expected.getCategoryContingencyTable(cat);
+			ContingencyTable a = actual.getCategoryContingencyTable(cat);
+			assertEquals(e.tp(), a.tp());
+			assertEquals(e.fp(), a.fp());
+			assertEquals(e.fn(), a.fn());
+			assertEquals(e.tn(), a.tn());
+		}
+	}
+
+	/**
+	 * Check that evaluating the folds concurrently gives the same results of
+	 * the sequential evaluation.
+	 */
+	@Test
+	public void simpleParallelTest() {
+		IIndex index = buildIndex(300, 60, 3);
+		SimpleKFoldEvaluator sequential = new SimpleKFoldEvaluator(
+				new NaiveBayesLearner(), new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer(), true);
+		sequential.setEvaluateAllNodes(true);
+		ContingencyTableSet expected = sequential.evaluate(index, null);
+
+		SimpleKFoldEvaluator parallel = new SimpleKFoldEvaluator(
+				new NaiveBayesLearner(), new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer(), true);
+		parallel.setEvaluateAllNodes(true);
+		parallel.setThreads(3);
+		ContingencyTableSet actual = parallel.evaluate(index, null);
+
+		assertSameTables(expected, actual);
+		for (int doc = 0; doc < index.getDocumentDB().getDocumentsCount(); doc++)
+			assertEquals(sequential.getClassification()
+					.getDocumentCategoriesCount(doc), parallel
+					.getClassification().getDocumentCategoriesCount(doc));
+	}
+
+	@Test
+	public void parallelTest() {
+		IIndex index = buildIndex(200, 60, 5);
+		KFoldEvaluator sequential = new KFoldEvaluator(
+				new NaiveBayesLearner(), new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer());
+		ContingencyTableSet expected = sequential.evaluate(index, null);
+
+		KFoldEvaluator parallel = new KFoldEvaluator(new NaiveBayesLearner(),
+				new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer());
+		parallel.setThreads(4);
+		ContingencyTableSet actual = parallel.evaluate(index, null);
+
+		assertSameTables(expected, actual);
+	}
+
+	/**
+	 * Check the parallel evaluation on an index whose content DB has never
+	 * been read, so that the folds fill its caches concurrently.
+	 */
+	@Test
+	public void coldParallelTest() {
+		KFoldEvaluator parallel = new KFoldEvaluator(new NaiveBayesLearner(),
+				new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer());
+		parallel.setThreads(4);
+		ContingencyTableSet actual = parallel.evaluate(
+				buildIndex(5000, 1000, 7), null);
+
+		KFoldEvaluator sequential = new KFoldEvaluator(
+				new NaiveBayesLearner(), new NaiveBayesLearnerCustomizer(),
+				new NaiveBayesClassifierCustomizer());
+		ContingencyTableSet expected = sequential.evaluate(
+				buildIndex(5000, 1000, 7), null);
+
+		assertSameTables(expected, actual);
+	}
+}
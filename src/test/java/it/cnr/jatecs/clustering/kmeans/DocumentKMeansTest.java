@@ -0,0 +1,172 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DocumentKMeansTest {
+
+	private static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextBoolean() ? "a" : "b" });
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weighting = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < documents; doc++) {
+			IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+			while (it.hasNext())
+				weighting.setDocumentFeatureWeight(doc, it.next(),
+						random.nextDouble());
+		}
+		return new GenericIndex(index.getFeatureDB(), index.getDocumentDB(),
+				index.getCategoryDB(), index.getDomainDB(),
+				index.getContentDB(), weighting.getWeightingDB(),
+				index.getClassificationDB());
+	}
+
+	private static int[] allDocuments(IIndex index) {
+		int[] documents = new int[index.getDocumentDB().getDocumentsCount()];
+		for (int i = 0; i < documents.length; i++)
+			documents[i] = i;
+		return documents;
+	}
+
+	private static double squaredDistance(IIndex index, int doc,
+			double[] centroid) {
+		double[] values = centroid.clone();
+		IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+		while (it.hasNext()) {
+			int feat = it.next();
+			values[feat] -= index.getWeightingDB().getDocumentFeatureWeight(
+					doc, feat);
+		}
+		double distance = 0;
+		for (int i = 0; i < values.length; i++)
+			distance += values[i] * values[i];
+		return distance;
+	}
+
+	private static void assertNearest(IIndex index, int[] documents,
+			int[] assignments, double[][] centroids) {
+		for (int i = 0; i < documents.length; i++) {
+			double assigned = squaredDistance(index, documents[i],
+					centroids[assignments[i]]);
+			for (int c = 0; c < centroids.length; c++)
+				assertTrue(assigned <= squaredDistance(index, documents[i],
+						centroids[c]) + 1e-9);
+		}
+	}
+
+	@Test
+	public void fullTest() {
+		IIndex index = buildIndex(300, 40, 7);
+		int[] documents = allDocuments(index);
+		DocumentKMeans kmeans = new DocumentKMeans(8);
+		kmeans.setRandom(new Random(1));
+		kmeans.setThreads(4);
+		int[] assignments = kmeans.cluster(index, documents);
+		double[][] centroids = kmeans.getCentroids();
+		assertEquals(documents.length, assignments.length);
+		assertNearest(index, documents, assignments, centroids);
+
+		// On convergence the centroids are the means of their members.
+		for (int c = 0; c < centroids.length; c++) {
+			double[] mean = new double[centroids[c].length];
+			int count = 0;
+			for (int i = 0; i < documents.length; i++) {
+				if (assignments[i] != c)
+					continue;
+				++count;
+				IIntIterator it = index.getContentDB().getDocumentFeatures(
+						documents[i]);
+				while (it.hasNext()) {
+					int feat = it.next();
+					mean[feat] += index.getWeightingDB()
+							.getDocumentFeatureWeight(documents[i], feat);
+				}
+			}
+			if (count == 0)
+				continue;
+			for (int f = 0; f < mean.length; f++)
+				assertEquals(mean[f] / count, centroids[c][f], 1e-9);
+		}
+
+		// The bounds skip most of the exhaustive distance computations.
+		assertTrue(kmeans.getDistancesCount() < (long) documents.length
+				* centroids.length * kmeans.getIterations());
+	}
+
+	@Test
+	public void threadsTest() {
+		IIndex index = buildIndex(250, 30, 11);
+		int[] documents = allDocuments(index);
+		DocumentKMeans single = new DocumentKMeans(6);
+		single.setRandom(new Random(3));
+		DocumentKMeans parallel = new DocumentKMeans(6);
+		parallel.setRandom(new Random(3));
+		parallel.setThreads(3);
+		assertArrayEquals(single.cluster(index, documents),
+				parallel.cluster(index, documents));
+		assertEquals(single.getIterations(), parallel.getIterations());
+	}
+
+	@Test
+	public void miniBatchTest() {
+		IIndex index = buildIndex(300, 40, 5);
+		int[] documents = new int[150];
+		for (int i = 0; i < documents.length; i++)
+			documents[i] = 2 * i;
+		DocumentKMeans kmeans = new DocumentKMeans(5);
+		kmeans.setRandom(new Random(2));
+		kmeans.setThreads(2);
+		kmeans.setMiniBatchSize(32);
+		kmeans.setMiniBatchIterations(20);
+		int[] assignments = kmeans.cluster(index, documents);
+		assertEquals(20, kmeans.getIterations());
+		assertNearest(index, documents, assignments, kmeans.getCentroids());
+	}
+}
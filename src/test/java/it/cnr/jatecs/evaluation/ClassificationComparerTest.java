@@ -0,0 +1,309 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveClassificationDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ClassificationComparerTest {
+
+	private static final String[] CATEGORIES = { "r", "r1", "r2", "r21",
+			"r22", "s", "rare" };
+
+	private IIndex _index;
+	private IClassificationDB _evaluated;
+
+	private void build(int documents) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(CATEGORIES);
+		catsBuilder.setParentCategory("r1", "r");
+		catsBuilder.setParentCategory("r2", "r");
+		catsBuilder.setParentCategory("r21", "r2");
+		catsBuilder.setParentCategory("r22", "r2");
+		ICategoryDB categoryDB = catsBuilder.getCategoryDB();
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(categoryDB);
+		Random random = new Random(1);
+		for (int i = 0; i < documents; i++)
+			builder.addDocument("d" + i, new String[] { "f" },
+					labels(random));
+		_index = builder.getIndex();
+
+		IClassificationDBBuilder evaluated = new TroveClassificationDBBuilder(
+				_index.getDocumentDB(), _index.getCategoryDB());
+		for (int i = 0; i < documents; i++) {
+			for (String label : labels(random))
+				evaluated.setDocumentCategory(i, _index.getCategoryDB()
+						.getCategory(label));
+		}
+		_evaluated = evaluated.getClassificationDB();
+	}
+
+	private static String[] labels(Random random) {
+		List<String> labels = new ArrayList<String>();
+		for (String category : CATEGORIES) {
+			if (category.equals("rare") ? random.nextInt(100) == 0 : random
+					.nextInt(3) == 0)
+				labels.add(category);
+		}
+		return labels.toArray(new String[labels.size()]);
+	}
+
+	private static void assertEqualSets(ContingencyTableSet expected,
+			ContingencyTableSet set) {
+		assertEquals(expected.getEvaluatedCategoriesCount(),
+				set.getEvaluatedCategoriesCount());
+		IShortIterator it = expected.getEvaluatedCategories();
+		while (it.hasNext()) {
+			short category = it.next();
+			ContingencyTable table = expected
+					.getCategoryContingencyTable(category);
+			ContingencyTable other = set.getCategoryContingencyTable(category);
+			assertEquals(table.getName(), other.getName());
+			assertEquals(table.tp(), other.tp());
+			assertEquals(table.fp(), other.fp());
+			assertEquals(table.fn(), other.fn());
+			assertEquals(table.tn(), other.tn());
+		}
+		assertEquals(expected.getGlobalContingencyTable().tp(), set
+				.getGlobalContingencyTable().tp());
+		assertEquals(expected.getGlobalContingencyTable().tn(), set
+				.getGlobalContingencyTable().tn());
+	}
+
+	/**
+	 * The evaluation done looking up each document in the two
+	 * classifications.
+	 */
+	private ContingencyTableSet flatEvaluation(boolean onlyLeaves) {
+		IClassificationDB target = _index.getClassificationDB();
+		ContingencyTableSet tableSet = new ContingencyTableSet();
+		for (short category = 0; category < CATEGORIES.length; category++) {
+			if (onlyLeaves
+					&& target.getCategoryDB().hasChildCategories(category))
+				continue;
+			tableSet.addContingenyTable(category, table(category, false));
+		}
+		return tableSet;
+	}
+
+	private ContingencyTableSet hierarchicalEvaluation(boolean onlyLeaves) {
+		IClassificationDB target = _index.getClassificationDB();
+		ContingencyTableSet tableSet = new ContingencyTableSet();
+		for (short category = 0; category < CATEGORIES.length; category++) {
+			if (!target.getCategoryDB().hasChildCategories(category))
+				tableSet.addContingenyTable(category, table(category, false));
+			else if (!onlyLeaves) {
+				ContingencyTable table = table(category, true);
+				if (table.tp() + table.fn() > 0)
+					tableSet.addContingenyTable(category, table);
+			}
+		}
+		return tableSet;
+	}
+
+	private ContingencyTable table(short category, boolean own) {
+		IClassificationDB target = _index.getClassificationDB();
+		ContingencyTable table = new ContingencyTable(target.getCategoryDB()
+				.getCategoryName(category));
+		for (int doc = 0; doc < _index.getDocumentDB().getDocumentsCount(); doc++) {
+			boolean evaluatedValue = has(_evaluated, doc, category, own);
+			boolean targetValue = has(target, doc, category, own);
+			if (evaluatedValue && targetValue)
+				table.addTP();
+			else if (evaluatedValue)
+				table.addFP();
+			else if (targetValue)
+				table.addFN();
+			else
+				table.addTN();
+		}
+		return table;
+	}
+
+	private boolean has(IClassificationDB db, int doc, short category,
+			boolean own) {
+		if (!db.hasDocumentCategory(doc, category))
+			return false;
+		if (own) {
+			IShortIterator children = _index.getCategoryDB()
+					.getChildCategories(category);
+			while (children.hasNext()) {
+				if (db.hasDocumentCategory(doc, children.next()))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	@Test
+	public void flatTest() {
+		build(1000);
+		assertTrue(_index.getCategoryDB().hasChildCategories((short) 0));
+		for (int threads = 1; threads <= 3; threads += 2) {
+			ClassificationComparer comparer = new ClassificationComparer(
+					_evaluated, _index.getClassificationDB());
+			comparer.setThreads(threads);
+			assertEqualSets(flatEvaluation(false), comparer.evaluate());
+			assertEqualSets(flatEvaluation(true), comparer.evaluate(true));
+		}
+	}
+
+	@Test
+	public void hierarchicalTest() {
+		build(1000);
+		for (int threads = 1; threads <= 3; threads += 2) {
+			HierarchicalClassificationComparer comparer = new HierarchicalClassificationComparer(
+					_evaluated, _index.getClassificationDB());
+			comparer.setThreads(threads);
+			assertEqualSets(hierarchicalEvaluation(false), comparer.evaluate());
+			assertEqualSets(hierarchicalEvaluation(true),
+					comparer.evaluate(true));
+		}
+	}
+
+	@Test
+	public void bitsetsTest() {
+		build(130);
+		short[] categories = { 0, 1, 2, 3, 4, 5, 6 };
+		ClassificationBitsets sets = new ClassificationBitsets(
+				_index.getClassificationDB(), 130, categories, 2);
+		for (short category : categories) {
+			int count = 0;
+			for (int doc = 0; doc < 130; doc++) {
+				boolean has = _index.getClassificationDB().hasDocumentCategory(
+						doc, category);
+				assertEquals(has, sets.hasDocumentCategory(doc, category));
+				if (has)
+					count++;
+			}
+			assertEquals(count, sets.getCategoryDocumentsCount(category));
+			assertEquals(count, ClassificationBitsets.bitCount(sets.copyBits(
+					category, null)));
+		}
+	}
+
+	/**
+	 * A classification DB counting the reads of each document and the
+	 * lookups of categories.
+	 */
+	private static class CountingClassificationDB extends
+			TroveClassificationDB {
+
+		private final int[] _reads;
+		private int _lookups;
+
+		CountingClassificationDB(IDocumentDB documentsDB,
+				ICategoryDB categoriesDB) {
+			super(documentsDB, categoriesDB);
+			_reads = new int[documentsDB.getDocumentsCount()];
+		}
+
+		@Override
+		public IShortIterator getDocumentCategories(int document) {
+			_reads[document]++;
+			return super.getDocumentCategories(document);
+		}
+
+		@Override
+		public boolean hasDocumentCategory(int document, short category) {
+			_lookups++;
+			return super.hasDocumentCategory(document, category);
+		}
+
+		@Override
+		public int getCategoryDocumentsCount(short category) {
+			_lookups++;
+			return super.getCategoryDocumentsCount(category);
+		}
+
+		@Override
+		public IIntIterator getCategoryDocuments(short category) {
+			_lookups++;
+			return super.getCategoryDocuments(category);
+		}
+
+		void assertReadOnce() {
+			for (int document = 0; document < _reads.length; document++)
+				assertEquals(1, _reads[document]);
+			assertEquals(0, _lookups);
+			Arrays.fill(_reads, 0);
+		}
+	}
+
+	private CountingClassificationDB counting(IClassificationDB db) {
+		CountingClassificationDB counting = new CountingClassificationDB(
+				db.getDocumentDB(), db.getCategoryDB());
+		IClassificationDBBuilder builder = new TroveClassificationDBBuilder(
+				counting);
+		for (int doc = 0; doc < db.getDocumentDB().getDocumentsCount(); doc++) {
+			IShortIterator it = db.getDocumentCategories(doc);
+			while (it.hasNext())
+				builder.setDocumentCategory(doc, it.next());
+		}
+		return counting;
+	}
+
+	@Test
+	public void documentMajorReadTest() {
+		build(1000);
+		CountingClassificationDB evaluated = counting(_evaluated);
+		CountingClassificationDB target = counting(_index
+				.getClassificationDB());
+		for (int threads = 1; threads <= 3; threads += 2) {
+			ClassificationComparer comparer = new ClassificationComparer(
+					evaluated, target);
+			comparer.setThreads(threads);
+			assertEqualSets(flatEvaluation(false), comparer.evaluate());
+			evaluated.assertReadOnce();
+			target.assertReadOnce();
+
+			HierarchicalClassificationComparer hierarchical = new HierarchicalClassificationComparer(
+					evaluated, target);
+			hierarchical.setThreads(threads);
+			assertEqualSets(hierarchicalEvaluation(false),
+					hierarchical.evaluate());
+			evaluated.assertReadOnce();
+			target.assertReadOnce();
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.generic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TShortArrayList;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.TShortArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexViewTest {
+
+	protected static final int DOCUMENTS = 100;
+	protected static final int FEATURES = 150;
+	protected static final String[] CATEGORIES = { "c0", "c1", "c2", "c3" };
+
+	protected IIndex buildIndex() {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(CATEGORIES);
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(7);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			String[] features = new String[random.nextInt(30)];
+			for (int j = 0; j < features.length; j++)
+				features[j] = "feat" + random.nextInt(FEATURES);
+			String[] categories = new String[random.nextInt(3)];
+			for (int j = 0; j < categories.length; j++)
+				categories[j] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+			builder.addDocument("doc" + i, features, categories);
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weightingBuilder = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			IIntIterator feats = index.getContentDB().getDocumentFeatures(doc);
+			while (feats.hasNext())
+				weightingBuilder.setDocumentFeatureWeight(doc, feats.next(),
+						random.nextDouble());
+		}
+		IIndex weighted = new GenericIndex(index.getFeatureDB(),
+				index.getDocumentDB(), index.getCategoryDB(),
+				index.getDomainDB(), index.getContentDB(),
+				weightingBuilder.getWeightingDB(), index.getClassificationDB());
+		weighted.setName("view");
+		return weighted;
+	}
+
+	protected void assertSameIndex(IIndex expected, IIndex actual) {
+		assertEquals(expected.getName(), actual.getName());
+		int documents = expected.getDocumentDB().getDocumentsCount();
+		int features = expected.getFeatureDB().getFeaturesCount();
+		int categories = expected.getCategoryDB().getCategoriesCount();
+		assertEquals(documents, actual.getDocumentDB().getDocumentsCount());
+		assertEquals(features, actual.getFeatureDB().getFeaturesCount());
+		assertEquals(categories, actual.getCategoryDB().getCategoriesCount());
+		for (short cat = 0; cat < categories; cat++)
+			assertEquals(expected.getCategoryDB().getCategoryName(cat), actual
+					.getCategoryDB().getCategoryName(cat));
+		IContentDB expectedContent = expected.getContentDB();
+		IContentDB actualContent = actual.getContentDB();
+		IWeightingDB expectedWeighting = expected.getWeightingDB();
+		IWeightingDB actualWeighting = actual.getWeightingDB();
+		for (int doc = 0; doc < documents; doc++) {
+			assertEquals(expected.getDocumentDB().getDocumentName(doc), actual
+					.getDocumentDB().getDocumentName(doc));
+			assertEquals(expectedContent.getDocumentLength(doc),
+					actualContent.getDocumentLength(doc));
+			assertEquals(expectedContent.getDocumentFeaturesCount(doc),
+					actualContent.getDocumentFeaturesCount(doc));
+			for (int feat = 0; feat < features; feat++) {
+				assertEquals(
+						expectedContent.getDocumentFeatureFrequency(doc, feat),
+						actualContent.getDocumentFeatureFrequency(doc, feat));
+				assertEquals(
+						expectedWeighting.getDocumentFeatureWeight(doc, feat),
+						actualWeighting.getDocumentFeatureWeight(doc, feat),
+						0.0);
+			}
+			assertEquals(expected.getClassificationDB()
+					.getDocumentCategoriesCount(doc), actual
+					.getClassificationDB().getDocumentCategoriesCount(doc));
+			IShortIterator cats = expected.getClassificationDB()
+					.getDocumentCategories(doc);
+			while (cats.hasNext())
+				assertTrue(actual.getClassificationDB().hasDocumentCategory(
+						doc, cats.next()));
+		}
+		for (int feat = 0; feat < features; feat++) {
+			assertEquals(expectedContent.getFeatureDocumentsCount(feat),
+					actualContent.getFeatureDocumentsCount(feat));
+			IIntIterator expectedDocs = expectedContent
+					.getFeatureDocuments(feat);
+			IIntIterator actualDocs = actualContent.getFeatureDocuments(feat);
+			while (expectedDocs.hasNext())
+				assertEquals(expectedDocs.next(), actualDocs.next());
+			assertTrue(!actualDocs.hasNext());
+		}
+		for (short cat = 0; cat < categories; cat++) {
+			assertEquals(expected.getClassificationDB()
+					.getCategoryDocumentsCount(cat), actual
+					.getClassificationDB().getCategoryDocumentsCount(cat));
+			IIntIterator expectedDocs = expected.getClassificationDB()
+					.getCategoryDocuments(cat);
+			IIntIterator actualDocs = actual.getClassificationDB()
+					.getCategoryDocuments(cat);
+			while (expectedDocs.hasNext())
+				assertEquals(expectedDocs.next(), actualDocs.next());
+			assertTrue(!actualDocs.hasNext());
+		}
+	}
+
+	protected void checkView(IIndex index, TIntArrayList documents,
+			short[] categories) {
+		IIndex expected = index.cloneIndex();
+		if (categories != null) {
+			TShortArrayList removedCategories = new TShortArrayList();
+			for (short cat = 0; cat < CATEGORIES.length; cat++) {
+				boolean kept = false;
+				for (int i = 0; i < categories.length; i++)
+					kept |= categories[i] == cat;
+				if (!kept)
+					removedCategories.add(cat);
+			}
+			expected.removeCategories(new TShortArrayListIterator(
+					removedCategories));
+		}
+		TIntArrayList removedDocuments = new TIntArrayList();
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			if (!documents.contains(doc))
+				removedDocuments.add(doc);
+		}
+		expected.removeDocuments(new TIntArrayListIterator(removedDocuments),
+				false);
+
+		IIndex view = new IndexView(index, documents.toNativeArray(),
+				categories);
+		assertSameIndex(expected, view);
+		assertSameIndex(expected, view.cloneIndex());
+	}
+
+	@Test
+	public void documentsTest() {
+		IIndex index = buildIndex();
+		TIntArrayList documents = new TIntArrayList();
+		for (int doc = 0; doc < DOCUMENTS; doc += 3)
+			documents.add(doc);
+		checkView(index, documents, null);
+	}
+
+	@Test
+	public void categoryTest() {
+		IIndex index = buildIndex();
+		TIntArrayList documents = new TIntArrayList();
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			if (doc % 5 != 2)
+				documents.add(doc);
+		}
+		checkView(index, documents, new short[] { 2 });
+		checkView(index, documents, new short[] { 0, 3 });
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnlyTest() {
+		IIndex index = buildIndex();
+		IIndex view = new IndexView(index, new int[] { 0, 1, 2 }, null);
+		view.removeDocuments(new TIntArrayListIterator(new TIntArrayList(
+				new int[] { 1 })), false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unsortedTest() {
+		new IndexView(buildIndex(), new int[] { 2, 1 }, null);
+	}
+}
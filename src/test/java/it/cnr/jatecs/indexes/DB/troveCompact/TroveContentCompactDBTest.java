@@ -0,0 +1,251 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.io.RamStorageManager;
+import it.cnr.jatecs.utils.iterators.IntArrayIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TroveContentCompactDBTest {
+
+	protected static final int DOCUMENTS = 200;
+	protected static final int FEATURES = 300;
+
+	protected IDocumentDB buildDocumentsDB() {
+		TroveDocumentsDBBuilder builder = new TroveDocumentsDBBuilder();
+		for (int i = 0; i < DOCUMENTS; i++)
+			builder.addDocument("doc" + i);
+		return builder.getDocumentDB();
+	}
+
+	protected IFeatureDB buildFeaturesDB() {
+		TroveFeatureDBBuilder builder = new TroveFeatureDBBuilder();
+		for (int i = 0; i < FEATURES; i++)
+			builder.addFeature("feat" + i);
+		return builder.getFeatureDB();
+	}
+
+	protected void fill(TroveContentFullDBBuilder full,
+			TroveContentCompactDBBuilder compact, long seed) {
+		Random random = new Random(seed);
+		for (int i = 0; i < 8000; i++) {
+			int doc = random.nextInt(DOCUMENTS);
+			// Skewed feature distribution, to have long postings.
+			int feat = random.nextBoolean() ? random.nextInt(10) : random
+					.nextInt(FEATURES);
+			int freq = 1 + random.nextInt(4);
+			if (random.nextInt(5) == 0
+					&& full.getContentDB().hasDocumentFeature(doc, feat))
+				freq = 0;
+			full.setDocumentFeatureFrequency(doc, feat, freq);
+			if (compact != null)
+				compact.setDocumentFeatureFrequency(doc, feat, freq);
+		}
+	}
+
+	protected void assertSameContent(IContentDB expected, IContentDB actual) {
+		int docs = expected.getDocumentDB().getDocumentsCount();
+		int feats = expected.getFeatureDB().getFeaturesCount();
+		for (int doc = 0; doc < docs; doc++) {
+			assertEquals(expected.getDocumentLength(doc),
+					actual.getDocumentLength(doc));
+			assertEquals(expected.getDocumentFeaturesCount(doc),
+					actual.getDocumentFeaturesCount(doc));
+			IIntIterator e = expected.getDocumentFeatures(doc);
+			IIntIterator a = actual.getDocumentFeatures(doc);
+			while (e.hasNext()) {
+				assertTrue(a.hasNext());
+				assertEquals(e.next(), a.next());
+			}
+			assertTrue(!a.hasNext());
+			for (int feat = 0; feat < feats; feat++) {
+				assertEquals(expected.hasDocumentFeature(doc, feat),
+						actual.hasDocumentFeature(doc, feat));
+				assertEquals(expected.getDocumentFeatureFrequency(doc, feat),
+						actual.getDocumentFeatureFrequency(doc, feat));
+			}
+		}
+		for (int feat = 0; feat < feats; feat++) {
+			assertEquals(expected.getFeatureDocumentsCount(feat),
+					actual.getFeatureDocumentsCount(feat));
+			IIntIterator e = expected.getFeatureDocuments(feat);
+			IIntIterator a = actual.getFeatureDocuments(feat);
+			while (e.hasNext()) {
+				assertTrue(a.hasNext());
+				assertEquals(e.next(), a.next());
+			}
+			assertTrue(!a.hasNext());
+		}
+	}
+
+	@Test
+	public void builderTest() {
+		IDocumentDB docsDB = buildDocumentsDB();
+		IFeatureDB featuresDB = buildFeaturesDB();
+		TroveContentFullDBBuilder full = new TroveContentFullDBBuilder(
+				docsDB, featuresDB);
+		TroveContentCompactDBBuilder compact = new TroveContentCompactDBBuilder(
+				docsDB, featuresDB);
+		fill(full, compact, 1);
+		assertSameContent(full.getContentDB(), compact.getContentDB());
+
+		// Updates after a read are merged into the existing postings (a
+		// fresh reference is used, the full DB caches document lengths).
+		TroveContentFullDBBuilder reference = new TroveContentFullDBBuilder(
+				docsDB, featuresDB);
+		fill(reference, null, 1);
+		fill(reference, compact, 2);
+		assertSameContent(reference.getContentDB(), compact.getContentDB());
+	}
+
+	@Test
+	public void removeTest() {
+		IDocumentDB docsDB = buildDocumentsDB();
+		IFeatureDB featuresDB = buildFeaturesDB();
+		TroveContentFullDBBuilder full = new TroveContentFullDBBuilder(
+				docsDB, featuresDB);
+		TroveContentCompactDBBuilder compact = new TroveContentCompactDBBuilder(
+				docsDB, featuresDB);
+		fill(full, compact, 3);
+		IContentDB fullDB = full.getContentDB();
+		IContentDB compactDB = compact.getContentDB();
+		IContentDB clone = compactDB.cloneDB(docsDB.cloneDB(),
+				featuresDB.cloneDB());
+
+		IIntIterator removedDocs = new IntArrayIterator(new int[]{0, 7, 8,
+				30, DOCUMENTS - 1});
+		fullDB.removeDocuments(removedDocs);
+		removedDocs.begin();
+		compactDB.removeDocuments(removedDocs);
+		removedDocs.begin();
+		docsDB.removeDocuments(removedDocs);
+
+		IIntIterator removedFeats = new IntArrayIterator(new int[]{1, 2, 50,
+				FEATURES - 2});
+		fullDB.removeFeatures(removedFeats);
+		removedFeats.begin();
+		compactDB.removeFeatures(removedFeats);
+		removedFeats.begin();
+		featuresDB.removeFeatures(removedFeats);
+
+		assertSameContent(fullDB, compactDB);
+		assertEquals(DOCUMENTS, clone.getDocumentDB().getDocumentsCount());
+		assertTrue(clone.getDocumentFeaturesCount(DOCUMENTS - 1) > 0);
+	}
+
+	@Test
+	public void readWriteTest() throws IOException {
+		IDocumentDB docsDB = buildDocumentsDB();
+		IFeatureDB featuresDB = buildFeaturesDB();
+		TroveContentFullDBBuilder full = new TroveContentFullDBBuilder(
+				docsDB, featuresDB);
+		fill(full, null, 4);
+		IStorageManager storageManager = new RamStorageManager();
+		storageManager.open();
+		TroveContentDBRW dbRW = new TroveContentDBRW(docsDB, featuresDB);
+		dbRW.write(storageManager, full.getContentDB(), "content", true);
+		IContentDB read = dbRW.read(storageManager, "content",
+				TroveContentDBType.Compact);
+		assertTrue(read instanceof TroveContentCompactDB);
+		assertEquals(full.getContentDB().getName(), read.getName());
+		assertSameContent(full.getContentDB(), read);
+	}
+
+	/**
+	 * An empty index whose content DB is a compact one.
+	 */
+	protected IIndex emptyCompactIndex(ICategoryDB categoriesDB,
+			IFeatureDB featuresDB) {
+		IDocumentDB docsDB = new TroveDocumentsDBBuilder().getDocumentDB();
+		IContentDB contentDB = new TroveContentCompactDBBuilder(docsDB,
+				featuresDB).getContentDB();
+		return new GenericIndex("compact", featuresDB, docsDB, categoriesDB,
+				new TroveDomainDB(categoriesDB, featuresDB), contentDB,
+				new TroveWeightingDB(contentDB), new TroveClassificationDBBuilder(
+						docsDB, categoriesDB).getClassificationDB());
+	}
+
+	protected String[] randomDocument(Random random) {
+		String[] features = new String[1 + random.nextInt(30)];
+		for (int i = 0; i < features.length; i++)
+			features[i] = "feat" + random.nextInt(random.nextBoolean() ? 20 : 200);
+		return features;
+	}
+
+	@Test
+	public void indexBuildersTest() {
+		int documents = 3000;
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a" });
+		ICategoryDB categoriesDB = catsBuilder.getCategoryDB();
+
+		// The builders read the frequency of each repeated feature between
+		// the writes of a document.
+		TroveMainIndexBuilder reference = new TroveMainIndexBuilder(categoriesDB);
+		TroveMainIndexBuilder compact = new TroveMainIndexBuilder(
+				emptyCompactIndex(categoriesDB,
+						new TroveFeatureDBBuilder().getFeatureDB()));
+		Random random = new Random(1);
+		for (int i = 0; i < documents; i++) {
+			String[] features = randomDocument(random);
+			reference.addDocument("doc" + i, features, new String[] { "a" });
+			compact.addDocument("doc" + i, features, new String[] { "a" });
+		}
+		assertTrue(compact.getIndex().getContentDB() instanceof TroveContentCompactDB);
+		assertEquals(documents, compact.getIndex().getDocumentDB()
+				.getDocumentsCount());
+		assertSameContent(reference.getIndex().getContentDB(), compact
+				.getIndex().getContentDB());
+
+		TroveDependentIndexBuilder dependentReference = new TroveDependentIndexBuilder(
+				reference.getIndex().getDomainDB());
+		TroveDependentIndexBuilder dependent = new TroveDependentIndexBuilder(
+				emptyCompactIndex(categoriesDB, reference.getIndex()
+						.getFeatureDB()));
+		for (int i = 0; i < documents; i++) {
+			String[] features = randomDocument(random);
+			features[0] = "unknown";
+			dependentReference.addDocument("doc" + i, features,
+					new String[] { "a" });
+			dependent.addDocument("doc" + i, features, new String[] { "a" });
+		}
+		assertSameContent(dependentReference.getIndex().getContentDB(),
+				dependent.getIndex().getContentDB());
+	}
+}
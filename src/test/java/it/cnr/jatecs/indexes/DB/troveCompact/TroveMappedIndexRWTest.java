@@ -0,0 +1,160 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.io.FileSystemStorageManager;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.io.RamStorageManager;
+import it.cnr.jatecs.utils.Os;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IShortIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TroveMappedIndexRWTest {
+
+	protected static final int DOCUMENTS = 100;
+	protected static final int FEATURES = 150;
+	protected static final String[] CATEGORIES = { "c0", "c1", "c2", "c3" };
+
+	protected IIndex buildIndex() {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(CATEGORIES);
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(7);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			String[] features = new String[random.nextInt(30)];
+			for (int j = 0; j < features.length; j++)
+				features[j] = "feat" + random.nextInt(FEATURES);
+			String[] categories = new String[random.nextInt(3)];
+			for (int j = 0; j < categories.length; j++)
+				categories[j] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+			builder.addDocument("doc" + i, features, categories);
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weightingBuilder = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			IIntIterator feats = index.getContentDB().getDocumentFeatures(doc);
+			while (feats.hasNext())
+				weightingBuilder.setDocumentFeatureWeight(doc, feats.next(),
+						random.nextDouble());
+		}
+		IIndex weighted = new GenericIndex(index.getFeatureDB(),
+				index.getDocumentDB(), index.getCategoryDB(),
+				index.getDomainDB(), index.getContentDB(),
+				weightingBuilder.getWeightingDB(), index.getClassificationDB());
+		weighted.setName("mapped");
+		return weighted;
+	}
+
+	protected void assertSameIndex(IIndex expected, IIndex actual) {
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getDocumentDB().getDocumentsCount(), actual
+				.getDocumentDB().getDocumentsCount());
+		assertEquals(expected.getFeatureDB().getFeaturesCount(), actual
+				.getFeatureDB().getFeaturesCount());
+		IContentDB expectedContent = expected.getContentDB();
+		IContentDB actualContent = actual.getContentDB();
+		IWeightingDB expectedWeighting = expected.getWeightingDB();
+		IWeightingDB actualWeighting = actual.getWeightingDB();
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			assertEquals(expectedContent.getDocumentLength(doc),
+					actualContent.getDocumentLength(doc));
+			assertEquals(expectedContent.getDocumentFeaturesCount(doc),
+					actualContent.getDocumentFeaturesCount(doc));
+			for (int feat = 0; feat < expected.getFeatureDB()
+					.getFeaturesCount(); feat++) {
+				assertEquals(
+						expectedContent.getDocumentFeatureFrequency(doc, feat),
+						actualContent.getDocumentFeatureFrequency(doc, feat));
+				assertEquals(
+						expectedWeighting.getDocumentFeatureWeight(doc, feat),
+						actualWeighting.getDocumentFeatureWeight(doc, feat),
+						0.0);
+			}
+			assertEquals(expected.getClassificationDB()
+					.getDocumentCategoriesCount(doc), actual
+					.getClassificationDB().getDocumentCategoriesCount(doc));
+			IShortIterator cats = expected.getClassificationDB()
+					.getDocumentCategories(doc);
+			while (cats.hasNext())
+				assertTrue(actual.getClassificationDB().hasDocumentCategory(
+						doc, cats.next()));
+		}
+		for (int feat = 0; feat < expected.getFeatureDB().getFeaturesCount(); feat++)
+			assertEquals(expectedContent.getFeatureDocumentsCount(feat),
+					actualContent.getFeatureDocumentsCount(feat));
+		for (short cat = 0; cat < CATEGORIES.length; cat++)
+			assertEquals(expected.getClassificationDB()
+					.getCategoryDocumentsCount(cat), actual
+					.getClassificationDB().getCategoryDocumentsCount(cat));
+	}
+
+	@Test
+	public void ramTest() throws IOException {
+		IIndex index = buildIndex();
+		IStorageManager storageManager = new RamStorageManager();
+		storageManager.open();
+		TroveReadWriteHelper.writeMappedIndex(storageManager, index, "idx",
+				true);
+		IIndex read = TroveReadWriteHelper.readMappedIndex(storageManager,
+				"idx");
+		assertSameIndex(index, read);
+		assertSameIndex(index, read.cloneIndex());
+		storageManager.close();
+	}
+
+	@Test
+	public void fileSystemTest() throws IOException {
+		IIndex index = buildIndex();
+		File dir = new File(Os.getTemporaryDirectory(), "jatecsMappedTest"
+				+ System.nanoTime());
+		IStorageManager storageManager = new FileSystemStorageManager(
+				dir.getAbsolutePath(), true);
+		storageManager.open();
+		try {
+			TroveReadWriteHelper.writeMappedIndex(storageManager, index,
+					"idx", true);
+			IIndex read = TroveReadWriteHelper.readMappedIndex(
+					storageManager, "idx");
+			assertSameIndex(index, read);
+		} finally {
+			storageManager.close();
+			Os.deleteDirectory(dir);
+		}
+	}
+}
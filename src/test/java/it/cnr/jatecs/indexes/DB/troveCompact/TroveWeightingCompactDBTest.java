@@ -0,0 +1,247 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexes.DB.troveCompact;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.interfaces.IContentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IDocumentDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IFeatureDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IWeightingDB;
+import it.cnr.jatecs.io.IStorageManager;
+import it.cnr.jatecs.io.RamStorageManager;
+import it.cnr.jatecs.utils.iterators.IntArrayIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TroveWeightingCompactDBTest {
+
+	protected static final int DOCUMENTS = 150;
+	protected static final int FEATURES = 200;
+
+	protected IDocumentDB _docsDB;
+	protected IFeatureDB _featuresDB;
+	protected TroveContentFullDBBuilder _full;
+	protected TroveContentCompactDBBuilder _compact;
+
+	protected void buildContent(long seed) {
+		TroveDocumentsDBBuilder docsBuilder = new TroveDocumentsDBBuilder();
+		for (int i = 0; i < DOCUMENTS; i++)
+			docsBuilder.addDocument("doc" + i);
+		_docsDB = docsBuilder.getDocumentDB();
+		TroveFeatureDBBuilder featsBuilder = new TroveFeatureDBBuilder();
+		for (int i = 0; i < FEATURES; i++)
+			featsBuilder.addFeature("feat" + i);
+		_featuresDB = featsBuilder.getFeatureDB();
+		_full = new TroveContentFullDBBuilder(_docsDB, _featuresDB);
+		_compact = new TroveContentCompactDBBuilder(_docsDB, _featuresDB);
+		Random random = new Random(seed);
+		for (int i = 0; i < 3000; i++) {
+			int doc = random.nextInt(DOCUMENTS);
+			int feat = random.nextInt(FEATURES);
+			int freq = 1 + random.nextInt(3);
+			_full.setDocumentFeatureFrequency(doc, feat, freq);
+			_compact.setDocumentFeatureFrequency(doc, feat, freq);
+		}
+	}
+
+	protected void fillWeights(IWeightingDB reference,
+			TroveWeightingCompactDB compact, long seed) {
+		TroveWeightingDBBuilder referenceBuilder = new TroveWeightingDBBuilder(
+				(TroveWeightingDB) reference);
+		TroveWeightingCompactDBBuilder compactBuilder = new TroveWeightingCompactDBBuilder(
+				compact);
+		Random random = new Random(seed);
+		for (int i = 0; i < 2000; i++) {
+			int doc = random.nextInt(DOCUMENTS);
+			int feat = random.nextInt(FEATURES);
+			double weight = random.nextDouble();
+			referenceBuilder.setDocumentFeatureWeight(doc, feat, weight);
+			compactBuilder.setDocumentFeatureWeight(doc, feat, weight);
+		}
+	}
+
+	protected void assertSameWeights(IWeightingDB expected,
+			TroveWeightingCompactDB actual, double delta) {
+		IContentDB content = actual.getContentDB();
+		int docs = content.getDocumentDB().getDocumentsCount();
+		int feats = content.getFeatureDB().getFeaturesCount();
+		int[] features = new int[feats];
+		double[] weights = new double[feats];
+		for (int doc = 0; doc < docs; doc++) {
+			for (int feat = 0; feat < feats; feat++)
+				assertEquals(expected.getDocumentFeatureWeight(doc, feat),
+						actual.getDocumentFeatureWeight(doc, feat), delta);
+			int size = actual.getDocumentFeaturesWeights(doc, features,
+					weights);
+			assertEquals(content.getDocumentFeaturesCount(doc), size);
+			IIntIterator it = content.getDocumentFeatures(doc);
+			for (int i = 0; i < size; i++) {
+				int feat = it.next();
+				assertEquals(feat, features[i]);
+				assertEquals(expected.getDocumentFeatureWeight(doc, feat),
+						weights[i], delta);
+			}
+		}
+	}
+
+	@Test
+	public void weightsTest() {
+		buildContent(1);
+		TroveWeightingDB reference = new TroveWeightingDB(
+				_full.getContentDB());
+		TroveWeightingCompactDB compact = new TroveWeightingCompactDB(
+				(TroveContentCompactDB) _compact.getContentDB());
+		fillWeights(reference, compact, 2);
+		assertSameWeights(reference, compact, 0.0);
+
+		TroveWeightingCompactDB floats = new TroveWeightingCompactDB(
+				(TroveContentCompactDB) _compact.getContentDB(), true);
+		fillWeights(new TroveWeightingDB(_full.getContentDB()), floats, 2);
+		assertSameWeights(reference, floats, 1e-6);
+
+		// New entries in the content DB get the default weight, the old ones
+		// keep their weight.
+		_full.setDocumentFeatureFrequency(3, FEATURES - 1, 2);
+		_compact.setDocumentFeatureFrequency(3, FEATURES - 1, 2);
+		_full.setDocumentFeatureFrequency(DOCUMENTS - 1, 0, 1);
+		_compact.setDocumentFeatureFrequency(DOCUMENTS - 1, 0, 1);
+		assertSameWeights(reference, compact, 0.0);
+	}
+
+	/**
+	 * Readers on several threads realign the weights with a content DB
+	 * modified after their creation, each one must see the postings and the
+	 * weights of the same version.
+	 */
+	@Test
+	public void concurrentSyncTest() throws Exception {
+		buildContent(7);
+		final TroveWeightingDB reference = new TroveWeightingDB(
+				_full.getContentDB());
+		final TroveWeightingCompactDB compact = new TroveWeightingCompactDB(
+				(TroveContentCompactDB) _compact.getContentDB());
+		fillWeights(reference, compact, 8);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 20; round++) {
+				_full.setDocumentFeatureFrequency(round, FEATURES - 1 - round, 1);
+				_compact.setDocumentFeatureFrequency(round,
+						FEATURES - 1 - round, 1);
+				List<Future<Void>> futures = new ArrayList<Future<Void>>();
+				for (int t = 0; t < 4; t++) {
+					futures.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() {
+							assertSameWeights(reference, compact, 0.0);
+							return null;
+						}
+					}));
+				}
+				for (Future<Void> future : futures)
+					future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void removeTest() {
+		buildContent(3);
+		IContentDB compactDB = _compact.getContentDB();
+		TroveWeightingDB reference = new TroveWeightingDB(
+				_full.getContentDB());
+		TroveWeightingCompactDB compact = new TroveWeightingCompactDB(
+				(TroveContentCompactDB) compactDB, true);
+		fillWeights(reference, compact, 4);
+		IWeightingDB clone = compact.cloneDB(compactDB.cloneDB(
+				_docsDB.cloneDB(), _featuresDB.cloneDB()));
+
+		// Same order used by GenericIndex.
+		IIntIterator removedDocs = new IntArrayIterator(new int[]{0, 5, 6,
+				40, DOCUMENTS - 1});
+		compact.removeDocuments(removedDocs);
+		removedDocs.begin();
+		compactDB.removeDocuments(removedDocs);
+		removedDocs.begin();
+		_docsDB.removeDocuments(removedDocs);
+
+		IIntIterator removedFeats = new IntArrayIterator(new int[]{0, 10, 11,
+				FEATURES - 1});
+		compact.removeFeatures(removedFeats);
+		removedFeats.begin();
+		compactDB.removeFeatures(removedFeats);
+		removedFeats.begin();
+		_featuresDB.removeFeatures(removedFeats);
+
+		// Check against the clone, TroveWeightingDB.removeFeatures shifts the
+		// features in hash order, so it can not be used as reference here.
+		for (int doc = 0; doc < DOCUMENTS - 5; doc++) {
+			int oldDoc = oldId(doc, new int[]{0, 5, 6, 40, DOCUMENTS - 1});
+			for (int feat = 0; feat < FEATURES - 4; feat++) {
+				int oldFeat = oldId(feat, new int[]{0, 10, 11, FEATURES - 1});
+				assertEquals(clone.getDocumentFeatureWeight(oldDoc, oldFeat),
+						compact.getDocumentFeatureWeight(doc, feat), 1e-6);
+			}
+		}
+		assertEquals(DOCUMENTS, clone.getContentDB().getDocumentDB()
+				.getDocumentsCount());
+	}
+
+	protected static int oldId(int id, int[] removed) {
+		for (int i = 0; i < removed.length; i++)
+			if (removed[i] <= id)
+				id++;
+		return id;
+	}
+
+	@Test
+	public void readWriteTest() throws IOException {
+		buildContent(5);
+		TroveWeightingCompactDB compact = new TroveWeightingCompactDB(
+				(TroveContentCompactDB) _compact.getContentDB());
+		TroveWeightingDB reference = new TroveWeightingDB(
+				_full.getContentDB());
+		fillWeights(reference, compact, 6);
+		IStorageManager storageManager = new RamStorageManager();
+		storageManager.open();
+		TroveWeightingDBRW dbRW = new TroveWeightingDBRW(
+				_compact.getContentDB());
+		dbRW.write(storageManager, compact, "weighting", true);
+		IWeightingDB read = dbRW.read(storageManager, "weighting");
+		assertEquals(TroveWeightingCompactDB.class, read.getClass());
+		assertSameWeights(reference, (TroveWeightingCompactDB) read, 0.0);
+	}
+}
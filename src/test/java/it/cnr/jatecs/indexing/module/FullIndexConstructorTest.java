@@ -0,0 +1,137 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.module;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.interfaces.ICategoryDB;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexing.corpus.BagOfWordsFeatureExtractor;
+import it.cnr.jatecs.indexing.corpus.CorpusDocument;
+import it.cnr.jatecs.indexing.corpus.CorpusReader;
+import it.cnr.jatecs.indexing.corpus.DocumentType;
+import it.cnr.jatecs.indexing.corpus.IFeatureExtractor;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FullIndexConstructorTest {
+
+	protected static final int DOCUMENTS = 500;
+	protected static final String[] CATEGORIES = { "a", "b", "c" };
+
+	protected static class MemoryCorpusReader extends CorpusReader {
+
+		private int _next;
+
+		public MemoryCorpusReader(ICategoryDB catsDB) {
+			super(catsDB);
+		}
+
+		@Override
+		public void begin() {
+			_next = 0;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public CorpusDocument next() {
+			if (_next >= DOCUMENTS)
+				return null;
+			Random random = new Random(_next);
+			StringBuilder content = new StringBuilder();
+			int words = random.nextInt(50);
+			for (int i = 0; i < words; i++) {
+				int word = random.nextInt(300);
+				content.append((char) ('a' + word % 26))
+						.append((char) ('a' + word / 26)).append("xx ");
+			}
+			List<String> categories = Arrays.asList(CATEGORIES[random
+					.nextInt(CATEGORIES.length)]);
+			CorpusDocument doc = new CorpusDocument("doc" + _next,
+					DocumentType.TRAINING, content.toString(), categories);
+			++_next;
+			return doc;
+		}
+	}
+
+	protected IIndex buildIndex(int threads) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(CATEGORIES);
+		ICategoryDB catsDB = catsBuilder.getCategoryDB();
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(catsDB);
+		FullIndexConstructor constructor = new FullIndexConstructor(
+				new MemoryCorpusReader(catsDB), builder);
+		if (threads > 1) {
+			List<IFeatureExtractor> extractors = new ArrayList<IFeatureExtractor>();
+			for (int i = 0; i < threads; i++)
+				extractors.add(new BagOfWordsFeatureExtractor());
+			constructor.setFeatureExtractors(extractors);
+			constructor.setQueueSize(16);
+		}
+		constructor.exec();
+		return builder.getIndex();
+	}
+
+	@Test
+	public void parallelTest() {
+		IIndex sequential = buildIndex(1);
+		IIndex parallel = buildIndex(4);
+
+		assertEquals(DOCUMENTS, parallel.getDocumentDB().getDocumentsCount());
+		assertEquals(sequential.getFeatureDB().getFeaturesCount(), parallel
+				.getFeatureDB().getFeaturesCount());
+		for (int doc = 0; doc < DOCUMENTS; doc++) {
+			assertEquals(sequential.getDocumentDB().getDocumentName(doc),
+					parallel.getDocumentDB().getDocumentName(doc));
+			assertEquals(sequential.getContentDB().getDocumentLength(doc),
+					parallel.getContentDB().getDocumentLength(doc));
+			IIntIterator feats = sequential.getContentDB().getDocumentFeatures(
+					doc);
+			while (feats.hasNext()) {
+				int feat = feats.next();
+				// Features are numbered in order of first appearance, so the
+				// ids are the same as well.
+				assertEquals(sequential.getFeatureDB().getFeatureName(feat),
+						parallel.getFeatureDB().getFeatureName(feat));
+				assertEquals(sequential.getContentDB()
+						.getDocumentFeatureFrequency(doc, feat), parallel
+						.getContentDB().getDocumentFeatureFrequency(doc, feat));
+			}
+			assertEquals(sequential.getClassificationDB()
+					.getDocumentCategories(doc).next(), parallel
+					.getClassificationDB().getDocumentCategories(doc).next());
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.similarity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntDoubleHashMap;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.utils.iterators.TIntArrayListIterator;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DocumentVectorsTest {
+
+	private static IIndex buildIndex(int documents, int features, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(15)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextBoolean() ? "a" : "b" });
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weighting = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < documents; doc++) {
+			IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+			while (it.hasNext())
+				weighting.setDocumentFeatureWeight(doc, it.next(),
+						random.nextDouble());
+		}
+		return new GenericIndex(index.getFeatureDB(), index.getDocumentDB(),
+				index.getCategoryDB(), index.getDomainDB(),
+				index.getContentDB(), weighting.getWeightingDB(),
+				index.getClassificationDB());
+	}
+
+	private static TIntDoubleHashMap dense(IIndex index, int doc) {
+		TIntDoubleHashMap weights = new TIntDoubleHashMap();
+		IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+		while (it.hasNext()) {
+			int feat = it.next();
+			weights.put(feat,
+					index.getWeightingDB().getDocumentFeatureWeight(doc, feat));
+		}
+		return weights;
+	}
+
+	private static void checkFunctions(IIndex index) {
+		CosineSimilarityFunction cosine = new CosineSimilarityFunction();
+		EuclideanDistance euclidean = new EuclideanDistance();
+		EuclideanSquareDistance square = new EuclideanSquareDistance();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		IIntIterator features = index.getFeatureDB().getFeatures();
+		for (int doc1 = 0; doc1 < documents; doc1 += 3) {
+			TIntDoubleHashMap weights1 = dense(index, doc1);
+			for (int doc2 = 0; doc2 < documents; doc2 += 2) {
+				TIntDoubleHashMap weights2 = dense(index, doc2);
+				assertEquals(cosine.compute(weights1, weights2, features),
+						cosine.compute(doc1, doc2, index), 0);
+				assertEquals(cosine.compute(weights1, weights2, features),
+						cosine.compute(doc1, index, doc2, index), 0);
+				assertEquals(euclidean.compute(weights1, weights2, features),
+						euclidean.compute(doc1, doc2, index), 1e-12);
+				assertEquals(square.compute(weights1, weights2, features),
+						square.compute(doc1, index, doc2, index), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void functionsTest() {
+		checkFunctions(buildIndex(150, 60, 1));
+	}
+
+	@Test
+	public void normsTest() {
+		IIndex index = buildIndex(100, 40, 2);
+		DocumentVectors vectors = DocumentVectors.get(index);
+		assertSame(vectors, DocumentVectors.get(index));
+		for (int doc = 0; doc < 100; doc++) {
+			double norm = 0;
+			IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+			while (it.hasNext()) {
+				double weight = index.getWeightingDB()
+						.getDocumentFeatureWeight(doc, it.next());
+				norm += weight * weight;
+			}
+			assertEquals(norm, vectors.getSquaredNorm(doc), 0);
+			assertEquals(Math.sqrt(norm), vectors.getNorm(doc), 0);
+			assertEquals(norm, vectors.dot(doc, vectors, doc), 1e-12);
+			assertEquals(0, vectors.squaredDistance(doc, vectors, doc), 0);
+		}
+	}
+
+	/**
+	 * Removing documents or features must drop the cached vectors, also those
+	 * kept by the functions.
+	 */
+	@Test
+	public void invalidationTest() {
+		IIndex index = buildIndex(120, 50, 3);
+		checkFunctions(index);
+		DocumentVectors vectors = DocumentVectors.get(index);
+
+		TIntArrayList removed = new TIntArrayList();
+		for (int doc = 0; doc < 120; doc += 4)
+			removed.add(doc);
+		index.removeDocuments(new TIntArrayListIterator(removed), false);
+		assertFalse(vectors.isValidFor(index));
+		assertNotSame(vectors, DocumentVectors.get(index));
+		checkFunctions(index);
+
+		vectors = DocumentVectors.get(index);
+		removed.clear();
+		for (int feat = 0; feat < 50; feat += 5)
+			removed.add(feat);
+		index.removeFeatures(new TIntArrayListIterator(removed));
+		assertFalse(vectors.isValidFor(index));
+		checkFunctions(index);
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.tsr;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class ParallelTsrTest {
+
+	protected static TreeSet<String> featureNames(IIndex index) {
+		TreeSet<String> names = new TreeSet<String>();
+		for (int featID = 0; featID < index.getFeatureDB().getFeaturesCount(); featID++)
+			names.add(index.getFeatureDB().getFeatureName(featID));
+		return names;
+	}
+
+	protected static TreeSet<String> globalReference(IIndex index,
+			ITsrFunction func, IGlobalTSRPolicy policy, int k) {
+		TreeSet<FeatureEntry> best = new TreeSet<FeatureEntry>();
+		int categories = index.getCategoryDB().getCategoriesCount();
+		for (int featID = 0; featID < index.getFeatureDB().getFeaturesCount(); featID++) {
+			double[] scores = new double[categories];
+			for (short catID = 0; catID < categories; catID++)
+				scores[catID] = func.compute(catID, featID, index);
+			best.add(new FeatureEntry(featID, policy.compute(scores, index)));
+			if (best.size() > k)
+				best.remove(best.first());
+		}
+		TreeSet<String> names = new TreeSet<String>();
+		for (FeatureEntry fe : best)
+			names.add(index.getFeatureDB().getFeatureName(fe.featureID));
+		return names;
+	}
+
+	@Test
+	public void topKTest() {
+		Random random = new Random(3);
+		for (int k = 0; k < 20; k++) {
+			TreeSet<FeatureEntry> expected = new TreeSet<FeatureEntry>();
+			TreeSet<Integer> expectedRemoved = new TreeSet<Integer>();
+			TreeSet<Integer> removed = new TreeSet<Integer>();
+			TsrTopK best = new TsrTopK(k);
+			for (int featID = 0; featID < 200; featID++) {
+				double score = random.nextInt(10) / 2.0;
+				expected.add(new FeatureEntry(featID, score));
+				if (expected.size() > k)
+					expectedRemoved.add(expected.pollFirst().featureID);
+				int worst = best.add(featID, score);
+				if (worst >= 0)
+					removed.add(worst);
+			}
+			assertEquals(expectedRemoved, removed);
+			int[] features = new int[best.size()];
+			double[] scores = new double[best.size()];
+			assertEquals(expected.size(), best.drainSorted(features, scores));
+			for (int i = 0; i < features.length; i++) {
+				FeatureEntry fe = expected.pollLast();
+				assertEquals(fe.featureID, features[i]);
+				assertEquals(fe.score, scores[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void globalTest() {
+		IGlobalTSRPolicy[] policies = { new MaximumTSRPolicy(),
+				new SumTSRPolicy(), new WeightedSumTSRPolicy() };
+		ITsrFunction[] funcs = { new InformationGain(), new ChiSquare() };
+		for (IGlobalTSRPolicy policy : policies) {
+			for (ITsrFunction func : funcs) {
+				TreeSet<String> expected = globalReference(
+						TsrContingencyTableTest.buildIndex(), func, policy, 17);
+				for (int threads = 1; threads <= 4; threads += 3) {
+					IIndex index = TsrContingencyTableTest.buildIndex();
+					GlobalTSR tsr = new GlobalTSR(func, policy);
+					tsr.setNumberOfBestFeatures(17);
+					tsr.setThreads(threads);
+					tsr.computeTSR(index);
+					assertEquals(expected, featureNames(index));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void globalThresholdTest() {
+		IIndex index = TsrContingencyTableTest.buildIndex();
+		TreeSet<String> expected = new TreeSet<String>();
+		ITsrFunction func = new ChiSquare();
+		for (int featID = 0; featID < index.getFeatureDB().getFeaturesCount(); featID++)
+			if (func.compute((short) 0, featID, index) >= 0.5)
+				expected.add(index.getFeatureDB().getFeatureName(featID));
+
+		GlobalThresholdTSR tsr = new GlobalThresholdTSR(0.5, func);
+		tsr.setThreads(4);
+		tsr.computeTSR(index);
+		assertEquals(expected, featureNames(index));
+	}
+
+	@Test
+	public void localTest() {
+		IIndex reference = TsrContingencyTableTest.buildIndex();
+		ITsrFunction func = new InformationGain();
+		int categories = reference.getCategoryDB().getCategoriesCount();
+		int features = reference.getFeatureDB().getFeaturesCount();
+		boolean[][] expected = new boolean[categories][features];
+		for (short catID = 0; catID < categories; catID++) {
+			TreeSet<FeatureEntry> best = new TreeSet<FeatureEntry>();
+			for (int featID = 0; featID < features; featID++) {
+				best.add(new FeatureEntry(featID, func.compute(catID, featID,
+						reference)));
+				if (best.size() > 9)
+					best.remove(best.first());
+			}
+			for (FeatureEntry fe : best)
+				expected[catID][fe.featureID] = true;
+		}
+
+		IIndex index = TsrContingencyTableTest.buildIndex();
+		LocalTSR tsr = new LocalTSR(func);
+		tsr.setNumberOfBestFeaturesForCategory(9);
+		tsr.setThreads(4);
+		tsr.computeTSR(index);
+		for (short catID = 0; catID < categories; catID++)
+			for (int featID = 0; featID < features; featID++)
+				assertEquals(expected[catID][featID], index.getDomainDB()
+						.hasCategoryFeature(catID, featID));
+	}
+
+	@Test
+	public void roundRobinTest() {
+		ITsrFunction func = new ChiSquare();
+		RoundRobinTSR sequential = new RoundRobinTSR(func);
+		sequential.setNumberOfBestFeatures(13);
+		TreeSet<FeatureEntry> expected = sequential
+				.selectBestFeatures(TsrContingencyTableTest.buildIndex());
+		assertEquals(13, expected.size());
+
+		RoundRobinTSR parallel = new RoundRobinTSR(func);
+		parallel.setNumberOfBestFeatures(13);
+		parallel.setThreads(4);
+		TreeSet<FeatureEntry> found = parallel
+				.selectBestFeatures(TsrContingencyTableTest.buildIndex());
+		assertEquals(expected, found);
+	}
+}
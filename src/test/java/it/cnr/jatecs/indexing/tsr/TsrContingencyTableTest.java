@@ -0,0 +1,95 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.indexing.tsr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TsrContingencyTableTest {
+
+	protected static IIndex buildIndex() {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b", "c", "d" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(11);
+		String[] categories = { "a", "b", "c", "d" };
+		for (int i = 0; i < 150; i++) {
+			String[] feats = new String[1 + random.nextInt(12)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(50);
+			String[] cats = new String[random.nextInt(3)];
+			for (int j = 0; j < cats.length; j++)
+				cats[j] = categories[random.nextInt(categories.length)];
+			builder.addDocument("d" + i, feats, cats);
+		}
+		return builder.getIndex();
+	}
+
+	@Test
+	public void countsTest() {
+		IIndex index = buildIndex();
+		TsrContingencyTable table = new TsrContingencyTable(index);
+		int[] counts = new int[index.getCategoryDB().getCategoriesCount()];
+		for (int featID = 0; featID < index.getFeatureDB().getFeaturesCount(); featID++) {
+			assertEquals(index.getContentDB().getFeatureDocumentsCount(featID),
+					table.getFeatureDocumentsCount(featID));
+			table.getFeatureCounts(featID, counts);
+			for (short catID = 0; catID < counts.length; catID++) {
+				int expected = index.getFeatureCategoryDocumentsCount(featID,
+						catID);
+				assertEquals(expected,
+						table.getFeatureCategoryDocumentsCount(featID, catID));
+				assertEquals(expected, counts[catID]);
+			}
+		}
+	}
+
+	@Test
+	public void computeTest() {
+		IIndex index = buildIndex();
+		TsrContingencyTable table = new TsrContingencyTable(index);
+		ITsrFunction[] funcs = { new InformationGain(), new ChiSquare(),
+				new GainRatio(), new MinimumDF(2) };
+		for (ITsrFunction func : funcs) {
+			for (int featID = 0; featID < index.getFeatureDB()
+					.getFeaturesCount(); featID++)
+				for (short catID = 0; catID < index.getCategoryDB()
+						.getCategoriesCount(); catID++)
+					assertEquals(func.compute(catID, featID, index),
+							table.compute(func, catID, featID), 0);
+		}
+		assertTrue(TsrContingencyTable.isContingencyFunction(new ChiSquare()));
+		assertFalse(TsrContingencyTable.isContingencyFunction(new MinimumDF(2)));
+	}
+}
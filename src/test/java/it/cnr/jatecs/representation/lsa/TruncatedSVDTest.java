@@ -0,0 +1,101 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.lsa;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+
+public class TruncatedSVDTest {
+
+	protected static IIndex buildIndex() {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(4);
+		for (int i = 0; i < 90; i++) {
+			String[] feats = new String[1 + random.nextInt(10)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(40);
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextBoolean() ? "a" : "b" });
+		}
+		return builder.getIndex();
+	}
+
+	protected static Matrix termByDocument(IIndex index) {
+		int terms = index.getFeatureDB().getFeaturesCount();
+		int documents = index.getDocumentDB().getDocumentsCount();
+		Matrix a = new Matrix(terms, documents);
+		for (int t = 0; t < terms; t++)
+			for (int d = 0; d < documents; d++)
+				a.set(t, d, index.getWeightingDB().getDocumentFeatureWeight(d, t));
+		return a;
+	}
+
+	@Test
+	public void fullRankTest() {
+		IIndex index = buildIndex();
+		Matrix a = termByDocument(index);
+		SVDlibcCustomizer customizer = new SVDlibcCustomizer(a.getRowDimension());
+		customizer.setVerbose(false);
+		customizer.setThreads(3);
+		TruncatedSVD svd = new TruncatedSVD(index, customizer);
+		Matrix reconstructed = svd.getU().times(svd.getS()).times(svd.getVt());
+		assertEquals(0, a.minus(reconstructed).normF(), 1e-8);
+
+		double[] expected = new SingularValueDecomposition(a.transpose()).getSingularValues();
+		for (int i = 0; i < svd.getRank(); i++)
+			assertEquals(expected[i], svd.getS().get(i, i), 1e-8);
+	}
+
+	@Test
+	public void truncatedTest() {
+		IIndex index = buildIndex();
+		Matrix a = termByDocument(index);
+		SVDlibcCustomizer customizer = new SVDlibcCustomizer(5);
+		customizer.setVerbose(false);
+		customizer.setPowerIterations(6);
+		TruncatedSVD svd = new TruncatedSVD(index, customizer);
+		assertEquals(5, svd.getRank());
+
+		double[] expected = new SingularValueDecomposition(a.transpose()).getSingularValues();
+		for (int i = 0; i < 5; i++)
+			assertEquals(expected[i], svd.getS().get(i, i), expected[i] * 1e-3);
+		// Orthonormal singular vectors.
+		Matrix identity = Matrix.identity(5, 5);
+		assertEquals(0, svd.getU_t().times(svd.getU()).minus(identity).normF(), 1e-8);
+		assertEquals(0, svd.getVt().times(svd.getVt().transpose()).minus(identity).normF(), 1e-8);
+	}
+}
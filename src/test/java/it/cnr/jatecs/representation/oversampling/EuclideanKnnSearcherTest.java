@@ -0,0 +1,148 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.oversampling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.classification.knn.SimilarDocument;
+import it.cnr.jatecs.indexes.DB.generic.GenericIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveWeightingDBBuilder;
+import it.cnr.jatecs.indexing.similarity.EuclideanSquareDistance;
+import it.cnr.jatecs.utils.iterators.interfaces.IIntIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EuclideanKnnSearcherTest {
+
+	private static IIndex buildIndex(int documents, int features,
+			int maxLength, long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < documents; i++) {
+			String[] feats = new String[1 + random.nextInt(maxLength)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(features);
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextInt(4) == 0 ? "a" : "b" });
+		}
+		IIndex index = builder.getIndex();
+		TroveWeightingDBBuilder weighting = new TroveWeightingDBBuilder(
+				index.getContentDB());
+		for (int doc = 0; doc < documents; doc++) {
+			IIntIterator it = index.getContentDB().getDocumentFeatures(doc);
+			while (it.hasNext())
+				weighting.setDocumentFeatureWeight(doc, it.next(),
+						random.nextDouble());
+		}
+		return new GenericIndex(index.getFeatureDB(), index.getDocumentDB(),
+				index.getCategoryDB(), index.getDomainDB(),
+				index.getContentDB(), weighting.getWeightingDB(),
+				index.getClassificationDB());
+	}
+
+	private static void checkExhaustive(IIndex index, int k, int threads) {
+		int documents = index.getDocumentDB().getDocumentsCount();
+		int[] queries = new int[documents];
+		for (int i = 0; i < documents; i++)
+			queries[i] = i;
+		EuclideanKnnSearcher searcher = new EuclideanKnnSearcher();
+		searcher.setThreads(threads);
+		EuclideanKnnSearcher.Neighbours neighbours = searcher.search(index,
+				queries, k);
+		assertEquals(Math.min(k, documents - 1), neighbours.k);
+
+		EuclideanSquareDistance distance = new EuclideanSquareDistance();
+		for (int query = 0; query < documents; query++) {
+			double[] expected = new double[documents - 1];
+			int pos = 0;
+			for (int doc = 0; doc < documents; doc++)
+				if (doc != query)
+					expected[pos++] = distance.compute(query, doc, index);
+			Arrays.sort(expected);
+			for (int i = 0; i < neighbours.k; i++) {
+				int doc = neighbours.documents[query * neighbours.k + i];
+				double found = neighbours.distances[query * neighbours.k + i];
+				assertEquals(distance.compute(query, doc, index), found, 0);
+				assertEquals(expected[i], found, 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void denseTest() {
+		checkExhaustive(buildIndex(200, 30, 15, 3), 5, 1);
+	}
+
+	@Test
+	public void sparseTest() {
+		// Most of the neighbours share no feature with the query.
+		checkExhaustive(buildIndex(200, 2000, 3, 5), 10, 3);
+	}
+
+	@Test
+	public void fewDocumentsTest() {
+		checkExhaustive(buildIndex(4, 10, 5, 7), 10, 2);
+	}
+
+	@Test
+	public void smoteTest() {
+		IIndex index = buildIndex(300, 50, 10, 9);
+		List<Integer> queries = new ArrayList<Integer>();
+		for (int doc = 0; doc < 300; doc += 3)
+			queries.add(doc);
+		HashMap<Integer, List<SimilarDocument>> single = new EuclideanKnnSearcher()
+				.search(index, queries, 5);
+		EuclideanKnnSearcher searcher = new EuclideanKnnSearcher();
+		searcher.setThreads(4);
+		HashMap<Integer, List<SimilarDocument>> parallel = searcher.search(
+				index, queries, 5);
+		assertEquals(queries.size(), parallel.size());
+		for (int doc : queries) {
+			int[] expected = new int[5];
+			int[] found = new int[5];
+			for (int i = 0; i < 5; i++) {
+				expected[i] = single.get(doc).get(i).docID;
+				found[i] = parallel.get(doc).get(i).docID;
+			}
+			assertArrayEquals(expected, found);
+		}
+
+		SMOTE smote = new SMOTE(index, 5, (short) 0, 2);
+		assertEquals(index.getClassificationDB().getCategoryDocumentsCount(
+				(short) 0), smote._nearest_neigbours.size());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.randomprojections;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.indexes.DB.generic.MultilingualIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IIndex;
+import it.cnr.jatecs.indexes.DB.interfaces.IMultilingualIndex;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveCategoryDBBuilder;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveDocumentLanguageDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveLanguagesDB;
+import it.cnr.jatecs.indexes.DB.troveCompact.TroveMainIndexBuilder;
+import it.cnr.jatecs.indexes.utils.LanguageLabel;
+import it.cnr.jatecs.representation.vector.IMatrix.MATRIX_MODE;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StreamingProjectionTest {
+
+	protected static IIndex buildIndex(long seed) {
+		TroveCategoryDBBuilder catsBuilder = new TroveCategoryDBBuilder();
+		catsBuilder.setCategories(new String[] { "a", "b" });
+		TroveMainIndexBuilder builder = new TroveMainIndexBuilder(
+				catsBuilder.getCategoryDB());
+		Random random = new Random(seed);
+		for (int i = 0; i < 120; i++) {
+			String[] feats = new String[1 + random.nextInt(20)];
+			for (int j = 0; j < feats.length; j++)
+				feats[j] = "f" + random.nextInt(80);
+			builder.addDocument("d" + i, feats,
+					new String[] { random.nextBoolean() ? "a" : "b" });
+		}
+		return builder.getIndex();
+	}
+
+	protected static IMultilingualIndex buildMultilingualIndex(long seed) {
+		IIndex index = buildIndex(seed);
+		TroveDocumentLanguageDB langDB = new TroveDocumentLanguageDB(
+				index.getDocumentDB(), new TroveLanguagesDB());
+		for (int doc = 0; doc < index.getDocumentDB().getDocumentsCount(); doc++)
+			langDB.indexDocLang(doc, doc % 2 == 0 ? LanguageLabel.en
+					: LanguageLabel.it);
+		return new MultilingualIndex(index, langDB);
+	}
+
+	protected static void compare(IIndex expected, IIndex found, int dim) {
+		assertEquals(expected.getDocumentDB().getDocumentsCount(), found
+				.getDocumentDB().getDocumentsCount());
+		for (int doc = 0; doc < expected.getDocumentDB().getDocumentsCount(); doc++) {
+			assertEquals(expected.getContentDB().getDocumentFeaturesCount(doc),
+					found.getContentDB().getDocumentFeaturesCount(doc));
+			for (int feat = 0; feat < dim; feat++)
+				assertEquals(expected.getWeightingDB()
+						.getDocumentFeatureWeight(doc, feat), found
+						.getWeightingDB().getDocumentFeatureWeight(doc, feat),
+						0);
+		}
+	}
+
+	protected static void check(ARandomProjection matrix,
+			ARandomProjection streaming, int dim) {
+		matrix.setRandomSeed(17);
+		streaming.setRandomSeed(17);
+		streaming.setStreaming(true);
+		streaming.setThreads(3);
+		compare(matrix.getLatentTrainindex(), streaming.getLatentTrainindex(),
+				dim);
+		compare(matrix.getLatentTestindex(buildIndex(2)),
+				streaming.getLatentTestindex(buildIndex(2)), dim);
+	}
+
+	@Test
+	public void randomIndexingTest() {
+		RandomIndexing dense = new RandomIndexing(buildIndex(1), 30, 4);
+		check(dense, new RandomIndexing(buildIndex(1), 30, 4), 30);
+		RandomIndexing sparse = new RandomIndexing(buildIndex(1), 30, 4);
+		sparse.setMatrixMode(MATRIX_MODE.SPARSE_MATRIX);
+		check(sparse, new RandomIndexing(buildIndex(1), 30, 4), 30);
+	}
+
+	@Test
+	public void achlioptasTest() {
+		check(new AchlioptasIndexing(buildIndex(1), 25),
+				new AchlioptasIndexing(buildIndex(1), 25), 25);
+	}
+
+	@Test
+	public void lightweightRandomIndexingTest() {
+		check(new LightweightRandomIndexing(buildMultilingualIndex(1), 30),
+				new LightweightRandomIndexing(buildMultilingualIndex(1), 30),
+				30);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.representation.vector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressedMatrixTest {
+
+	@Test
+	public void longSparseTest() {
+		Random random = new Random(7);
+		DenseMatrix expected = new DenseMatrix(40, 30);
+		LongSparseMatrix found = new LongSparseMatrix(40, 30, 4);
+		for (int i = 0; i < 20000; i++) {
+			int x = random.nextInt(40);
+			int y = random.nextInt(30);
+			int op = random.nextInt(3);
+			if (op == 0) {
+				double v = random.nextInt(3) == 0 ? 0 : random.nextInt(5) - 2;
+				expected.set(x, y, v);
+				found.set(x, y, v);
+			} else if (op == 1) {
+				double v = random.nextInt(5) - 2;
+				expected.set(x, y, expected.get(x, y) + v);
+				assertEquals(expected.get(x, y), found.add(x, y, v), 0);
+			} else
+				assertEquals(expected.get(x, y), found.get(x, y), 0);
+		}
+		int nonZeros = 0;
+		for (int x = 0; x < 40; x++)
+			for (int y = 0; y < 30; y++) {
+				assertEquals(expected.get(x, y), found.get(x, y), 0);
+				if (expected.get(x, y) != 0)
+					nonZeros++;
+			}
+		assertEquals(nonZeros, found.getNonZeroCount());
+	}
+
+	@Test
+	public void compressTest() {
+		Random random = new Random(9);
+		SparseMatrix sparse = new SparseMatrix(25, 35);
+		for (int i = 0; i < 200; i++)
+			sparse.set(random.nextInt(25), random.nextInt(35),
+					random.nextDouble());
+		CompressedMatrix compressed = CompressedMatrixBuilder.compress(sparse);
+		assertEquals(sparse.getNonZeroPositions().size(),
+				compressed.getNonZeroCount());
+
+		int entries = 0;
+		for (int x = 0; x < 25; x++) {
+			int last = -1;
+			for (int pos = compressed.getRowStart(x); pos < compressed
+					.getRowEnd(x); pos++) {
+				int y = compressed.getColumnAt(pos);
+				assertEquals(true, y > last);
+				assertEquals(sparse.get(x, y), compressed.getValueAt(pos), 0);
+				last = y;
+				entries++;
+			}
+			for (int y = 0; y < 35; y++)
+				assertEquals(sparse.get(x, y), compressed.get(x, y), 0);
+		}
+		assertEquals(compressed.getNonZeroCount(), entries);
+
+		entries = 0;
+		for (int y = 0; y < 35; y++) {
+			int last = -1;
+			for (int pos = compressed.getColumnStart(y); pos < compressed
+					.getColumnEnd(y); pos++) {
+				int x = compressed.getRowAt(pos);
+				assertEquals(true, x > last);
+				assertEquals(sparse.get(x, y), compressed.getColumnValueAt(pos),
+						0);
+				last = x;
+				entries++;
+			}
+		}
+		assertEquals(compressed.getNonZeroCount(), entries);
+
+		CompressedMatrix transposed = compressed.transpose();
+		LongSparseMatrix back = CompressedMatrixBuilder.decompress(compressed);
+		for (int x = 0; x < 25; x++)
+			for (int y = 0; y < 35; y++) {
+				assertEquals(sparse.get(x, y), transposed.get(y, x), 0);
+				assertEquals(sparse.get(x, y), back.get(x, y), 0);
+			}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of JaTeCS.
+ *
+ * JaTeCS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JaTeCS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JaTeCS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The software has been mainly developed by (in alphabetical order):
+ * - Andrea Esuli (andrea.esuli@isti.cnr.it)
+ * - Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ * - Alejandro Moreo Fernández (alejandro.moreo@isti.cnr.it)
+ * Other past contributors were:
+ * - Giacomo Berardi (giacomo.berardi@isti.cnr.it)
+ */
+
+package it.cnr.jatecs.weighting.dense;
+
+import static org.junit.Assert.assertEquals;
+import it.cnr.jatecs.weighting.interfaces.IWeighting2DManager;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class BufferWeighting2DTest {
+
+	private static void assertSameMatrix(IWeighting2DManager expected,
+			IWeighting2DManager matrix) {
+		int first = expected.getFirstDimensionSize();
+		int second = expected.getSecondDimensionSize();
+		for (int i = 0; i < first; i++)
+			for (int j = 0; j < second; j++)
+				assertEquals(expected.getWeight(i, j), matrix.getWeight(i, j), 0);
+		double[] row = new double[second];
+		double[] expectedRow = new double[second];
+		for (int i = 0; i < first; i++) {
+			expected.getFirstRow(i, expectedRow);
+			matrix.getFirstRow(i, row);
+			for (int j = 0; j < second; j++)
+				assertEquals(expectedRow[j], row[j], 0);
+		}
+		assertEquals(expected.sum(), matrix.sum(), 0);
+	}
+
+	private static void blocksTest(BufferWeighting2D matrix, int blocks) {
+		int first = matrix.getFirstDimensionSize();
+		int second = matrix.getSecondDimensionSize();
+		assertEquals(blocks, matrix._blocks.length);
+		ArrayWeighting2D expected = new ArrayWeighting2D(first, second,
+				matrix.isFirstMajor());
+		for (int i = 0; i < first; i++)
+			for (int j = 0; j < second; j++) {
+				expected.setWeight(i * second + j, i, j);
+				matrix.setWeight(i * second + j, i, j);
+			}
+		assertSameMatrix(expected, matrix);
+		double[] column = new double[first];
+		for (int i = 0; i < first; i++)
+			column[i] = -i;
+		expected.setSecondRow(second - 1, column);
+		matrix.setSecondRow(second - 1, column);
+		expected.divideFirstRow(first - 1, 3);
+		matrix.divideFirstRow(first - 1, 3);
+		expected.divide(2);
+		matrix.divide(2);
+		assertSameMatrix(expected, matrix);
+	}
+
+	@Test
+	public void directBlocksTest() {
+		// 2 rows of 5 weights per block
+		blocksTest(BufferWeighting2D.allocateDirect(7, 5, true, 40), 4);
+		// 3 columns of 7 weights per block
+		blocksTest(BufferWeighting2D.allocateDirect(7, 5, false, 90), 2);
+		// one row per block when a row is bigger than a block
+		blocksTest(BufferWeighting2D.allocateDirect(7, 5, true, 4), 7);
+		blocksTest(BufferWeighting2D.allocateDirect(7, 5, true), 1);
+	}
+
+	@Test
+	public void mappedBlocksTest() throws IOException {
+		File file = File.createTempFile("weighting", ".bin");
+		try {
+			BufferWeighting2D matrix = BufferWeighting2D.map(file, 7, 5,
+					false, 60);
+			blocksTest(matrix, 3);
+			matrix.close();
+			assertEquals(7 * 5 * 4, file.length());
+		} finally {
+			file.delete();
+		}
+	}
+}